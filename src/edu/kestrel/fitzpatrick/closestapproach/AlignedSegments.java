@@ -0,0 +1,409 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A cursor over the segments of two routes aligned in time, as for
+ *         {@link DetermineClosestApproachBetweenRoutes#alignTimes(java.util.List, java.util.List)}
+ *         and
+ *         {@link DetermineClosestApproachBetweenRoutes#align(java.util.List, java.util.SortedSet)},
+ *         but without creating the aligned routes: the aligned times are merged
+ *         from the two routes as the cursor advances, and the objects' positions
+ *         at the start and end of the current segment are interpolated into
+ *         reused arrays. The positions are computed exactly as by
+ *         {@link WayPoint#interpolate(WayPoint, WayPoint, long)}, so the
+ *         results are the same as for the aligned routes.
+ *         </p>
+ * 
+ *         <p>
+ *         The cursor is initially positioned at the first aligned time (if any),
+ *         with the objects' positions there given by {@link #getEnd1()} and
+ *         {@link #getEnd2()}. Each call to {@link #next()} moves to the segment
+ *         from the current aligned time to the next one.
+ *         </p>
+ * 
+ *         <p>
+ *         The arrays returned by the accessors are overwritten as the cursor
+ *         advances. Not thread safe.
+ *         </p>
+ */
+public class AlignedSegments {
+	private final Route route1;
+	private final Route route2;
+
+	// The end of the routes' common time period (within the window, if any).
+	private final long lastTime;
+
+	// The index of the next way point of each route whose time has not yet been
+	// merged.
+	private int next1;
+	private int next2;
+	// The index of the way point starting the segment of each route last used for
+	// interpolation.
+	private int segment1;
+	private int segment2;
+
+	// Whether the routes have any time in common.
+	private final boolean empty;
+	// The index of the current segment (-1 before the first call to next()).
+	private int index = -1;
+
+	// The current segment.
+	private long startTime;
+	private long endTime;
+	private double[] start1;
+	private double[] end1;
+	private double[] start2;
+	private double[] end2;
+
+	// Scratch arrays for the separations at the start and end.
+	private final double[] dS;
+	private final double[] dE;
+
+	/**
+	 * Position a cursor at the first aligned time of two routes.
+	 * 
+	 * @param route1 The route for object 1 (two or more way points).
+	 * @param route2 The route for object 2 (two or more way points, with the same
+	 *               dimensions).
+	 */
+	public AlignedSegments(Route route1, Route route2) {
+		this(route1, route2, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * <p>
+	 * Position a cursor at the first aligned time of two routes within a time
+	 * window. The routes are clipped to the window virtually: the aligned times are
+	 * the start and end of the intersection of the window and the routes' common
+	 * period, and the way point times between; the first way point of each route
+	 * in the window is found by binary search, so the cost is logarithmic in the
+	 * routes' lengths plus linear in the number of segments in the window.
+	 * </p>
+	 * 
+	 * <p>
+	 * Positions at the window's start and end are interpolated within the routes'
+	 * own segments, as are all other positions, so a window that covers the
+	 * routes' common period gives exactly the unwindowed segments.
+	 * </p>
+	 * 
+	 * @param route1      The route for object 1 (two or more way points).
+	 * @param route2      The route for object 2 (two or more way points, with the
+	 *                    same dimensions).
+	 * @param windowStart The start of the window.
+	 * @param windowEnd   The end of the window (inclusive).
+	 */
+	public AlignedSegments(Route route1, Route route2, long windowStart, long windowEnd) {
+		super();
+		assert route1.size() >= 2;
+		assert route2.size() >= 2;
+		assert route1.dimensions() == route2.dimensions();
+		this.route1 = route1;
+		this.route2 = route2;
+		int dimensions = route1.dimensions();
+		start1 = new double[dimensions];
+		end1 = new double[dimensions];
+		start2 = new double[dimensions];
+		end2 = new double[dimensions];
+		dS = new double[dimensions];
+		dE = new double[dimensions];
+
+		// The intersection of the two routes' periods and the window.
+		long firstTime = Math.max(windowStart, Math.max(route1.getTime(0), route2.getTime(0)));
+		lastTime = Math.min(windowEnd,
+				Math.min(route1.getTime(route1.size() - 1), route2.getTime(route2.size() - 1)));
+		empty = firstTime > lastTime;
+		if (!empty) {
+			next1 = firstAtOrAfter(route1, firstTime);
+			next2 = firstAtOrAfter(route2, firstTime);
+			segment1 = Math.max(0, next1 - 1);
+			segment2 = Math.max(0, next2 - 1);
+			// The first aligned time is the start of the period, whether or not it is the
+			// time of a way point.
+			endTime = firstTime;
+			if (next1 < route1.size() && route1.getTime(next1) == firstTime) {
+				next1++;
+			}
+			if (next2 < route2.size() && route2.getTime(next2) == firstTime) {
+				next2++;
+			}
+			segment1 = interpolate(route1, segment1, endTime, end1);
+			segment2 = interpolate(route2, segment2, endTime, end2);
+		}
+	}
+
+	/**
+	 * 
+	 * @return The route for object 1.
+	 */
+	public Route getRoute1() {
+		return route1;
+	}
+
+	/**
+	 * 
+	 * @return The route for object 2.
+	 */
+	public Route getRoute2() {
+		return route2;
+	}
+
+	/**
+	 * 
+	 * @return Whether the routes have no time in common (so there are no aligned
+	 *         times).
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * 
+	 * @return Whether there is another aligned time after the current one.
+	 */
+	public boolean hasNext() {
+		return !empty && endTime < lastTime;
+	}
+
+	/**
+	 * Move to the segment from the current aligned time to the next.
+	 * 
+	 * @return Whether there was a next aligned time; if not, the cursor is
+	 *         unchanged.
+	 */
+	public boolean next() {
+		if (!hasNext()) {
+			return false;
+		}
+		double[] swap = start1;
+		start1 = end1;
+		end1 = swap;
+		swap = start2;
+		start2 = end2;
+		end2 = swap;
+		startTime = endTime;
+		advanceEnd();
+		index++;
+		return true;
+	}
+
+	/**
+	 * <p>
+	 * Move forward, without visiting the segments between, to the latest aligned
+	 * time at or before a time (if later than the current aligned time). The
+	 * positions there are interpolated exactly as they would be by calls to
+	 * {@link #next()}, so the segments after are the same. The way points are found
+	 * by binary search, so the cost is logarithmic in the routes' lengths.
+	 * </p>
+	 * 
+	 * <p>
+	 * The segment moved to is not a current segment: its start is undefined until
+	 * the next call to {@link #next()}, and it is not counted by
+	 * {@link #getIndex()}.
+	 * </p>
+	 * 
+	 * @param time A time.
+	 */
+	public void skipTo(long time) {
+		if (!hasNext() || time <= endTime) {
+			return;
+		}
+		long target = Math.min(lastTime, time);
+		long newEnd = target == lastTime ? lastTime : endTime;
+		int last1 = firstAfter(route1, target) - 1;
+		if (last1 >= next1) {
+			newEnd = Math.max(newEnd, route1.getTime(last1));
+		}
+		int last2 = firstAfter(route2, target) - 1;
+		if (last2 >= next2) {
+			newEnd = Math.max(newEnd, route2.getTime(last2));
+		}
+		if (newEnd == endTime) {
+			return;
+		}
+		endTime = newEnd;
+		next1 = Math.max(next1, firstAfter(route1, endTime));
+		next2 = Math.max(next2, firstAfter(route2, endTime));
+		// The segment used is the one ending at or just after the new end, so at most
+		// one step from the one before the next way point.
+		segment1 = interpolate(route1, Math.max(segment1, next1 - 2), endTime, end1);
+		segment2 = interpolate(route2, Math.max(segment2, next2 - 2), endTime, end2);
+	}
+
+	/**
+	 * 
+	 * @return The index of the current segment (0 for the first); -1 before the
+	 *         first call to {@link #next()}. If segments have been skipped (see
+	 *         {@link #skipTo(long)}), the number of segments moved to by
+	 *         {@link #next()}, less one.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * 
+	 * @return The start time of the current segment.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * 
+	 * @return The end time of the current segment (the current aligned time).
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * 
+	 * @return Object 1's position at the start of the current segment.
+	 */
+	public double[] getStart1() {
+		return start1;
+	}
+
+	/**
+	 * 
+	 * @return Object 1's position at the end of the current segment.
+	 */
+	public double[] getEnd1() {
+		return end1;
+	}
+
+	/**
+	 * 
+	 * @return Object 2's position at the start of the current segment.
+	 */
+	public double[] getStart2() {
+		return start2;
+	}
+
+	/**
+	 * 
+	 * @return Object 2's position at the end of the current segment.
+	 */
+	public double[] getEnd2() {
+		return end2;
+	}
+
+	/**
+	 * 
+	 * @return The interpolation parameter for the closest approach in the current
+	 *         segment, as
+	 *         {@link DetermineClosestApproachBetweenLinearSegments#computeClosestK(double[], double[], double[], double[])}.
+	 */
+	public double closestK() {
+		for (int d = 0; d < dS.length; d++) {
+			dS[d] = start1[d] - start2[d];
+			dE[d] = end1[d] - end2[d];
+		}
+		return DetermineClosestApproachBetweenLinearSegments.computeClosestK(dS, dE);
+	}
+
+	/**
+	 * 
+	 * @param closestK The interpolation parameter for the closest approach in the
+	 *                 current segment (see {@link #closestK()}).
+	 * @return The closest approach in the current segment.
+	 */
+	public ClosestApproach closestApproach(double closestK) {
+		return DetermineClosestApproachBetweenLinearSegments.closestApproach(startTime, endTime, start1, end1, start2,
+				end2, closestK);
+	}
+
+	/**
+	 * Merge the next aligned time (the end of the period, if no way point comes
+	 * before it) into the end of the current segment, and interpolate the objects'
+	 * positions there.
+	 */
+	private void advanceEnd() {
+		long time1 = next1 < route1.size() ? route1.getTime(next1) : Long.MAX_VALUE;
+		long time2 = next2 < route2.size() ? route2.getTime(next2) : Long.MAX_VALUE;
+		endTime = Math.min(lastTime, Math.min(time1, time2));
+		if (time1 == endTime) {
+			next1++;
+		}
+		if (time2 == endTime) {
+			next2++;
+		}
+		segment1 = interpolate(route1, segment1, endTime, end1);
+		segment2 = interpolate(route2, segment2, endTime, end2);
+	}
+
+	/**
+	 * Interpolate a route at a time, exactly as a cursor does at an aligned time.
+	 * 
+	 * @param route       A route.
+	 * @param time        A time within the route's period.
+	 * @param coordinates Receives the interpolated coordinates.
+	 */
+	static void interpolate(Route route, long time, double[] coordinates) {
+		interpolate(route, Math.max(0, firstAtOrAfter(route, time) - 1), time, coordinates);
+	}
+
+	/**
+	 * Interpolate a route at a time, using the first segment that ends at or after
+	 * the time (as does
+	 * {@link DetermineClosestApproachBetweenRoutes#align(java.util.List, java.util.SortedSet)}).
+	 * 
+	 * @param route       A route.
+	 * @param segment     The index of a way point at or before the segment to use.
+	 * @param time        A time within the route's period.
+	 * @param coordinates Receives the interpolated coordinates.
+	 * @return The index of the way point starting the segment used.
+	 */
+	private static int interpolate(Route route, int segment, long time, double[] coordinates) {
+		while (segment < route.size() - 2 && time > route.getTime(segment + 1)) {
+			segment++;
+		}
+		long segmentStart = route.getTime(segment);
+		long segmentEnd = route.getTime(segment + 1);
+		double k = ((double) time - segmentStart) / (segmentEnd - segmentStart);
+		for (int d = 0; d < coordinates.length; d++) {
+			double start = route.getCoordinate(segment, d);
+			coordinates[d] = start + k * (route.getCoordinate(segment + 1, d) - start);
+		}
+		return segment;
+	}
+
+	/**
+	 * 
+	 * @return The index of the first way point of the route at or after the time.
+	 */
+	private static int firstAtOrAfter(Route route, long time) {
+		int low = 0;
+		int high = route.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (route.getTime(mid) < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 
+	 * @return The index of the first way point of the route after the time.
+	 */
+	private static int firstAfter(Route route, long time) {
+		int low = 0;
+		int high = route.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (route.getTime(mid) <= time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
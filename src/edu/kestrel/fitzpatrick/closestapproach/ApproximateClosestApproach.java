@@ -0,0 +1,100 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         The closest approach between two objects, computed on simplifications
+ *         of their routes (see {@link RouteSimplifier}), with an interval that
+ *         is guaranteed to contain the distance of the closest approach on the
+ *         original routes. At every instant, each simplified route is within its
+ *         error of the original, so the separation of the objects is within the
+ *         sum of the errors of the separation on the simplified routes; so,
+ *         therefore, is the least separation.
+ *         </p>
+ * 
+ *         <p>
+ *         The time and way points of the closest approaches are those on the
+ *         simplified routes. If the routes do not overlap in time, then there is
+ *         no closest approach: the distance and both bounds are infinite and the
+ *         list of closest approaches is empty.
+ *         </p>
+ */
+public class ApproximateClosestApproach {
+
+	private final double distance;
+	private final double error;
+	private final List<ClosestApproach> closestApproaches;
+
+	/**
+	 * 
+	 * @param closestApproaches The closest approaches between the simplified routes,
+	 *                          in time order (possibly empty).
+	 * @param error             The sum of the simplified routes' errors.
+	 */
+	public ApproximateClosestApproach(List<ClosestApproach> closestApproaches, double error) {
+		super();
+		assert closestApproaches != null;
+		assert error >= 0;
+		this.closestApproaches = closestApproaches;
+		this.error = error;
+		distance = closestApproaches.isEmpty() ? Double.POSITIVE_INFINITY : closestApproaches.get(0).distance();
+	}
+
+	/**
+	 * Create an approximate closest approach for routes that do not overlap in
+	 * time.
+	 */
+	public ApproximateClosestApproach() {
+		this(new ArrayList<>(), 0);
+	}
+
+	/**
+	 * 
+	 * @return The distance of the closest approach between the simplified routes;
+	 *         infinite if the routes do not overlap in time.
+	 */
+	public double distance() {
+		return distance;
+	}
+
+	/**
+	 * 
+	 * @return The greatest difference between {@link #distance()} and the distance
+	 *         of the closest approach between the original routes.
+	 */
+	public double error() {
+		return error;
+	}
+
+	/**
+	 * 
+	 * @return A lower bound on the distance of the closest approach between the
+	 *         original routes.
+	 */
+	public double lowerBound() {
+		return Math.max(0, distance - error);
+	}
+
+	/**
+	 * 
+	 * @return An upper bound on the distance of the closest approach between the
+	 *         original routes.
+	 */
+	public double upperBound() {
+		return distance + error;
+	}
+
+	/**
+	 * 
+	 * @return The closest approaches between the simplified routes, in time order.
+	 *         May be empty, but not null.
+	 */
+	public List<ClosestApproach> closestApproaches() {
+		return closestApproaches;
+	}
+}
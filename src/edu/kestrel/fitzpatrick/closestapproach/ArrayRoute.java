@@ -0,0 +1,56 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         A {@link Route} held in primitive arrays: the times, and the
+ *         coordinates packed one way point after another. The arrays are not
+ *         copied, so should not be modified while the route is in use.
+ */
+public class ArrayRoute implements Route {
+
+	private final long[] times;
+	private final double[] coordinates;
+	private final int dimensions;
+
+	/**
+	 * 
+	 * @param times       The way point times (increasing).
+	 * @param coordinates The way point coordinates: way point i, dimension d is at
+	 *                    [i * dimensions + d].
+	 * @param dimensions  The number of spatial dimensions.
+	 */
+	public ArrayRoute(long[] times, double[] coordinates, int dimensions) {
+		super();
+		assert coordinates.length == times.length * dimensions;
+		this.times = times;
+		this.coordinates = coordinates;
+		this.dimensions = dimensions;
+	}
+
+	@Override
+	public int size() {
+		return times.length;
+	}
+
+	@Override
+	public int dimensions() {
+		return dimensions;
+	}
+
+	@Override
+	public long getTime(int i) {
+		return times[i];
+	}
+
+	@Override
+	public double getCoordinate(int i, int dimension) {
+		return coordinates[i * dimensions + dimension];
+	}
+
+	@Override
+	public void getCoordinates(int i, double[] coordinates) {
+		System.arraycopy(this.coordinates, i * dimensions, coordinates, 0, dimensions);
+	}
+}
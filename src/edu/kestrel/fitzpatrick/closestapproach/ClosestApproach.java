@@ -56,6 +56,22 @@ public class ClosestApproach {
 		distance = wayPoint1.distance(wayPoint2);
 	}
 
+	/**
+	 * Create a closest approach whose way points are provided by a subclass (see
+	 * {@link #wayPoint1()} and {@link #wayPoint2()}), e.g., on demand.
+	 * 
+	 * @param time     The time of the closest approach.
+	 * @param distance The distance between the objects at the closest approach.
+	 */
+	protected ClosestApproach(long time, double distance) {
+		super();
+		assert distance >= 0;
+		this.time = time;
+		this.distance = distance;
+		wayPoint1 = null;
+		wayPoint2 = null;
+	}
+
 	/**
 	 * 
 	 * @return The time of the closest approach. Will be null for parallel motion.
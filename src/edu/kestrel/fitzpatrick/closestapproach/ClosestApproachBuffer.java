@@ -0,0 +1,397 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A growable buffer of closest-approach results, held column-wise in
+ *         primitive arrays: the time of each result, its distance, the id of
+ *         the pair of routes it is for and, optionally, the two objects'
+ *         coordinates (packed one result after another: object 1's coordinates,
+ *         then object 2's). A {@link ClosestApproach} is six or more objects;
+ *         a result in a buffer is a few array elements, and bulk methods such
+ *         as {@link #addClosestApproaches(int, Route, Route)} fill the buffer
+ *         without allocating.
+ *         </p>
+ * 
+ *         <p>
+ *         Results for parallel motion have no time (their time is
+ *         {@link #NO_TIME}) and NaN coordinates. An {@link Entry} reads a
+ *         result in the shape of a {@link ClosestApproach}.
+ *         </p>
+ */
+public class ClosestApproachBuffer {
+	/**
+	 * The time of a result without a time (parallel motion).
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	// The initial capacity, in results.
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final int dimensions;
+	private final boolean withCoordinates;
+
+	private int size;
+	private long[] times;
+	private double[] distances;
+	private int[] pairIds;
+	// Null if coordinates are not kept.
+	private double[] coordinates;
+
+	// Scratch locations for bulk methods.
+	private final double[] scratch1;
+	private final double[] scratch2;
+
+	/**
+	 * 
+	 * @param dimensions      The number of spatial dimensions.
+	 * @param withCoordinates Whether to keep the objects' coordinates.
+	 */
+	public ClosestApproachBuffer(int dimensions, boolean withCoordinates) {
+		this(dimensions, withCoordinates, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * 
+	 * @param dimensions      The number of spatial dimensions.
+	 * @param withCoordinates Whether to keep the objects' coordinates.
+	 * @param capacity        The initial capacity, in results.
+	 */
+	public ClosestApproachBuffer(int dimensions, boolean withCoordinates, int capacity) {
+		super();
+		assert dimensions >= 1;
+		assert capacity >= 0;
+		this.dimensions = dimensions;
+		this.withCoordinates = withCoordinates;
+		times = new long[capacity];
+		distances = new double[capacity];
+		pairIds = new int[capacity];
+		coordinates = withCoordinates ? new double[2 * dimensions * capacity] : null;
+		scratch1 = new double[dimensions];
+		scratch2 = new double[dimensions];
+	}
+
+	/**
+	 * 
+	 * @return The number of results.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return The number of spatial dimensions.
+	 */
+	public int dimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * 
+	 * @return Whether the objects' coordinates are kept.
+	 */
+	public boolean hasCoordinates() {
+		return withCoordinates;
+	}
+
+	/**
+	 * Remove all results, keeping the capacity.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Remove the results from the given index on, keeping the capacity.
+	 * 
+	 * @param size The number of results to keep.
+	 */
+	public void truncate(int size) {
+		assert 0 <= size && size <= this.size;
+		this.size = size;
+	}
+
+	/**
+	 * Add a closest approach.
+	 * 
+	 * @param pairId   The id of the pair of routes.
+	 * @param approach The closest approach.
+	 */
+	public void add(int pairId, ClosestApproach approach) {
+		if (approach.time() == null) {
+			add(pairId, NO_TIME, approach.distance(), null, null);
+		} else if (withCoordinates) {
+			add(pairId, approach.time(), approach.distance(), approach.wayPoint1().getCoordinates(),
+					approach.wayPoint2().getCoordinates());
+		} else {
+			// The coordinates are not kept, so are not fetched.
+			add(pairId, approach.time(), approach.distance(), null, null);
+		}
+	}
+
+	/**
+	 * Add a result.
+	 * 
+	 * @param pairId       The id of the pair of routes.
+	 * @param time         The time of the closest approach ({@link #NO_TIME} if
+	 *                     none).
+	 * @param distance     The distance of the closest approach.
+	 * @param coordinates1 Object 1's coordinates (null if none, or not kept).
+	 * @param coordinates2 Object 2's coordinates (null if none, or not kept).
+	 */
+	public void add(int pairId, long time, double distance, double[] coordinates1, double[] coordinates2) {
+		if (size == times.length) {
+			grow();
+		}
+		times[size] = time;
+		distances[size] = distance;
+		pairIds[size] = pairId;
+		if (withCoordinates) {
+			int offset = 2 * dimensions * size;
+			if (coordinates1 == null) {
+				Arrays.fill(coordinates, offset, offset + 2 * dimensions, Double.NaN);
+			} else {
+				assert coordinates1.length == dimensions && coordinates2.length == dimensions;
+				System.arraycopy(coordinates1, 0, coordinates, offset, dimensions);
+				System.arraycopy(coordinates2, 0, coordinates, offset + dimensions, dimensions);
+			}
+		}
+		size++;
+	}
+
+	/**
+	 * <p>
+	 * Add the closest approaches between two routes, as
+	 * {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(Route, Route)}
+	 * (with the same times, distances and coordinates), but without creating way
+	 * points or closest approaches.
+	 * </p>
+	 * 
+	 * @param pairId The id of the pair of routes.
+	 * @param route1 The route for object 1 (two or more way points, with
+	 *               increasing times).
+	 * @param route2 The route for object 2.
+	 * @return The number of closest approaches added (0 if the routes do not
+	 *         overlap in time).
+	 */
+	public int addClosestApproaches(int pairId, Route route1, Route route2) {
+		assert route1.dimensions() == dimensions;
+		AlignedSegments segments = new AlignedSegments(route1, route2);
+		int first = size;
+		if (segments.isEmpty()) {
+			return 0;
+		} else if (!segments.hasNext()) {
+			// The end time of one route is the start time of the other.
+			add(pairId, segments.getEndTime(), VectorUtils.distance(segments.getEnd1(), segments.getEnd2()),
+					segments.getEnd1(), segments.getEnd2());
+			return 1;
+		}
+
+		// As for lists of way points, exclude a closest approach at the end of a
+		// segment, other than the final segment; keep those with the least distance.
+		double minDistance = Double.POSITIVE_INFINITY;
+		while (segments.next()) {
+			double closestK = segments.closestK();
+			if (segments.hasNext() && !(closestK < 1)) {
+				// (Including parallel motion, NaN closestK.)
+				continue;
+			}
+			double[] s1 = segments.getStart1();
+			double[] e1 = segments.getEnd1();
+			double[] s2 = segments.getStart2();
+			double[] e2 = segments.getEnd2();
+			double distance = DetermineClosestApproachBetweenLinearSegments.distance(s1, e1, s2, e2, closestK);
+			if (distance > minDistance) {
+				continue;
+			} else if (distance < minDistance) {
+				minDistance = distance;
+				truncate(first);
+			}
+			if (Double.isNaN(closestK)) {
+				add(pairId, NO_TIME, distance, null, null);
+			} else {
+				long time = DetermineClosestApproachBetweenLinearSegments.closestTime(segments.getStartTime(),
+						segments.getEndTime(), s1, e1, s2, e2, closestK);
+				VectorUtils.interpolate(s1, e1, closestK, scratch1);
+				VectorUtils.interpolate(s2, e2, closestK, scratch2);
+				add(pairId, time, distance, scratch1, scratch2);
+			}
+		}
+		return size - first;
+	}
+
+	/**
+	 * 
+	 * @param i The index of a result.
+	 * @return Whether the result has a time (i.e., is not for parallel motion).
+	 */
+	public boolean hasTime(int i) {
+		assert i < size;
+		return times[i] != NO_TIME;
+	}
+
+	/**
+	 * 
+	 * @param i The index of a result.
+	 * @return The time of the result; {@link #NO_TIME} if none.
+	 */
+	public long getTime(int i) {
+		assert i < size;
+		return times[i];
+	}
+
+	/**
+	 * 
+	 * @param i The index of a result.
+	 * @return The distance of the result.
+	 */
+	public double getDistance(int i) {
+		assert i < size;
+		return distances[i];
+	}
+
+	/**
+	 * 
+	 * @param i The index of a result.
+	 * @return The id of the pair of routes of the result.
+	 */
+	public int getPairId(int i) {
+		assert i < size;
+		return pairIds[i];
+	}
+
+	/**
+	 * 
+	 * @param i         The index of a result.
+	 * @param object    1 or 2.
+	 * @param dimension A spatial dimension.
+	 * @return The object's coordinate in that dimension; NaN if the result has no
+	 *         time.
+	 */
+	public double getCoordinate(int i, int object, int dimension) {
+		assert i < size;
+		assert withCoordinates;
+		assert object == 1 || object == 2;
+		return coordinates[2 * dimensions * i + (object - 1) * dimensions + dimension];
+	}
+
+	/**
+	 * 
+	 * @return An entry for reading the results, positioned at the first.
+	 */
+	public Entry entry() {
+		return new Entry();
+	}
+
+	private void grow() {
+		int capacity = Math.max(DEFAULT_CAPACITY, 2 * times.length);
+		times = Arrays.copyOf(times, capacity);
+		distances = Arrays.copyOf(distances, capacity);
+		pairIds = Arrays.copyOf(pairIds, capacity);
+		if (withCoordinates) {
+			coordinates = Arrays.copyOf(coordinates, 2 * dimensions * capacity);
+		}
+	}
+
+	/**
+	 * A flyweight that reads the result at its position in the shape of a
+	 * {@link ClosestApproach}. Moving it to another result does not allocate; way
+	 * points are created only when asked for.
+	 */
+	public class Entry {
+		private int index;
+
+		private Entry() {
+			super();
+		}
+
+		/**
+		 * 
+		 * @param i The index of a result.
+		 * @return This entry, positioned at the result.
+		 */
+		public Entry moveTo(int i) {
+			assert 0 <= i && i < size;
+			index = i;
+			return this;
+		}
+
+		/**
+		 * 
+		 * @return The index of the result.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * 
+		 * @return The id of the pair of routes.
+		 */
+		public int pairId() {
+			return getPairId(index);
+		}
+
+		/**
+		 * 
+		 * @return The time of the closest approach. Will be null for parallel motion.
+		 */
+		public Long time() {
+			return hasTime(index) ? getTime(index) : null;
+		}
+
+		/**
+		 * 
+		 * @return The distance between the two objects at their closest approach.
+		 */
+		public double distance() {
+			return getDistance(index);
+		}
+
+		/**
+		 * 
+		 * @return The way point for object 1 at the closest approach. Will be null
+		 *         for parallel motion.
+		 */
+		public WayPoint wayPoint1() {
+			return wayPoint(1);
+		}
+
+		/**
+		 * 
+		 * @return The way point for object 2 at the closest approach. Will be null
+		 *         for parallel motion.
+		 */
+		public WayPoint wayPoint2() {
+			return wayPoint(2);
+		}
+
+		private WayPoint wayPoint(int object) {
+			if (!hasTime(index)) {
+				return null;
+			}
+			double[] coordinates = new double[dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				coordinates[d] = getCoordinate(index, object, d);
+			}
+			return new WayPoint(getTime(index), coordinates);
+		}
+
+		/**
+		 * 
+		 * @return The result as a closest approach. Requires coordinates, unless the
+		 *         result is for parallel motion.
+		 */
+		public ClosestApproach toClosestApproach() {
+			if (!hasTime(index)) {
+				return new ClosestApproach(distance());
+			}
+			return new ClosestApproach(wayPoint1(), wayPoint2());
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A route in a compressed encoding, for storage and transfer. Way point
+ *         times increase steadily and coordinates change slowly, so both are
+ *         encoded as small differences from their predecessors, as variable
+ *         length integers (7 bits per byte, low bits first):
+ *         </p>
+ *         <ul>
+ *         <li>times: delta-of-delta - the first time of a block, then the
+ *         difference to the second, then the change in the difference for each
+ *         following way point (zero for regularly spaced way points, encoded in
+ *         a single byte);</li>
+ *         <li>coordinates, quantized (quantum &gt; 0): each coordinate is
+ *         rounded to a multiple of the quantum, and the difference of the
+ *         multiples from the previous way point is encoded - decoded coordinates
+ *         are within half a quantum of the originals;</li>
+ *         <li>coordinates, lossless (quantum = 0): the bits of each coordinate
+ *         are XORed with those of the previous way point, and the XOR is encoded
+ *         as a control byte, giving the number of trailing zero bytes and the
+ *         number of remaining significant bytes, followed by the significant
+ *         bytes - decoded coordinates are identical to the originals.</li>
+ *         </ul>
+ * 
+ *         <p>
+ *         The way points are encoded in blocks of a fixed number of way points,
+ *         each starting afresh (with no reference to the previous block), and
+ *         the offset of each block is recorded, so any way point can be reached
+ *         by decoding a single block.
+ *         </p>
+ * 
+ *         <p>
+ *         Decoding is performed by a {@link Cursor}, which decodes blocks into
+ *         primitive arrays, keeping the two most recently used, and presents the
+ *         route as a {@link Route} - no WayPoint is created, and the
+ *         closest-approach engine can run directly on cursors (see
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(Route, Route)}).
+ *         </p>
+ * 
+ *         <p>
+ *         A compressed route is immutable and may be shared between threads; a
+ *         cursor is not thread safe.
+ *         </p>
+ */
+public class CompressedRoute {
+	/**
+	 * The default number of way points per block.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64;
+
+	// The version of the serialized form.
+	private static final int VERSION = 1;
+	// The size of the header of the serialized form, in bytes.
+	private static final int HEADER_BYTES = 4 * 4 + 8;
+
+	private final int size;
+	private final int dimensions;
+	private final int blockSize;
+	// The quantum for coordinates; 0 for lossless encoding.
+	private final double quantum;
+	// The encoded blocks; block b is data[blockOffsets[b]] .. data[blockOffsets[b +
+	// 1] - 1].
+	private final byte[] data;
+	private final int[] blockOffsets;
+
+	private CompressedRoute(int size, int dimensions, int blockSize, double quantum, byte[] data,
+			int[] blockOffsets) {
+		super();
+		this.size = size;
+		this.dimensions = dimensions;
+		this.blockSize = blockSize;
+		this.quantum = quantum;
+		this.data = data;
+		this.blockOffsets = blockOffsets;
+	}
+
+	/**
+	 * Encode a route, using the default block size.
+	 * 
+	 * @param route   A route.
+	 * @param quantum The quantum to which coordinates are rounded (positive); 0
+	 *                for lossless encoding.
+	 * @return The compressed route.
+	 */
+	public static CompressedRoute encode(Route route, double quantum) {
+		return encode(route, quantum, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Encode a route.
+	 * 
+	 * @param route     A route.
+	 * @param quantum   The quantum to which coordinates are rounded (positive); 0
+	 *                  for lossless encoding.
+	 * @param blockSize The number of way points per block (positive); reduced to
+	 *                  the number of way points, if greater.
+	 * @return The compressed route.
+	 */
+	public static CompressedRoute encode(Route route, double quantum, int blockSize) {
+		assert quantum >= 0 && !Double.isInfinite(quantum);
+		assert blockSize >= 1;
+		int size = route.size();
+		int dimensions = route.dimensions();
+		// No block is longer than the route, so that a cursor's buffers are no larger
+		// than needed (and fromBytes can reject longer blocks as corrupt).
+		blockSize = Math.min(blockSize, Math.max(1, size));
+		int nBlocks = (size + blockSize - 1) / blockSize;
+		int[] blockOffsets = new int[nBlocks + 1];
+		Encoder encoder = new Encoder(size * (dimensions + 1) * 2 + 16);
+		long[] previous = new long[dimensions];
+		for (int b = 0; b < nBlocks; b++) {
+			blockOffsets[b] = encoder.length;
+			Arrays.fill(previous, 0);
+			long previousTime = 0;
+			long previousDelta = 0;
+			int end = Math.min(size, (b + 1) * blockSize);
+			for (int i = b * blockSize; i < end; i++) {
+				long time = route.getTime(i);
+				long delta = time - previousTime;
+				encoder.putVarLong(zigzag(delta - previousDelta));
+				// The first delta of a block is the time itself; the next is encoded as is.
+				previousDelta = i == b * blockSize ? 0 : delta;
+				previousTime = time;
+				for (int d = 0; d < dimensions; d++) {
+					double coordinate = route.getCoordinate(i, d);
+					if (quantum > 0) {
+						long multiple = Math.round(coordinate / quantum);
+						encoder.putVarLong(zigzag(multiple - previous[d]));
+						previous[d] = multiple;
+					} else {
+						long bits = Double.doubleToRawLongBits(coordinate);
+						encoder.putXor(bits ^ previous[d]);
+						previous[d] = bits;
+					}
+				}
+			}
+		}
+		blockOffsets[nBlocks] = encoder.length;
+		return new CompressedRoute(size, dimensions, blockSize, quantum, Arrays.copyOf(encoder.bytes, encoder.length),
+				blockOffsets);
+	}
+
+	/**
+	 * 
+	 * @return The number of way points.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return The number of spatial dimensions.
+	 */
+	public int dimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * 
+	 * @return The quantum to which coordinates were rounded; 0 if the encoding is
+	 *         lossless.
+	 */
+	public double getQuantum() {
+		return quantum;
+	}
+
+	/**
+	 * 
+	 * @return The number of bytes of encoded way points (excluding the block
+	 *         offsets).
+	 */
+	public int getEncodedSize() {
+		return data.length;
+	}
+
+	/**
+	 * 
+	 * @return A new cursor over the route, initially before the first way point.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * 
+	 * @return The serialized form of the route, for storage or transfer (see
+	 *         {@link #fromBytes(byte[])}).
+	 */
+	public byte[] toBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * blockOffsets.length + data.length)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(VERSION);
+		buffer.putInt(size);
+		buffer.putInt(dimensions);
+		buffer.putInt(blockSize);
+		buffer.putDouble(quantum);
+		for (int offset : blockOffsets) {
+			buffer.putInt(offset);
+		}
+		buffer.put(data);
+		return buffer.array();
+	}
+
+	/**
+	 * 
+	 * @param bytes The serialized form of a route (see {@link #toBytes()}).
+	 * @return The route.
+	 * @throws IllegalArgumentException If the bytes are not the serialized form
+	 *                                  of a route, or are of another version.
+	 */
+	public static CompressedRoute fromBytes(byte[] bytes) {
+		if (bytes.length < HEADER_BYTES) {
+			throw new IllegalArgumentException("Truncated compressed route");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported compressed route version " + version);
+		}
+		int size = buffer.getInt();
+		int dimensions = buffer.getInt();
+		int blockSize = buffer.getInt();
+		double quantum = buffer.getDouble();
+		if (size < 0 || dimensions < 1 || blockSize < 1 || blockSize > Math.max(1, size)
+				|| (long) blockSize * dimensions > Integer.MAX_VALUE || !(quantum >= 0) || Double.isInfinite(quantum)) {
+			throw new IllegalArgumentException("Corrupt compressed route");
+		}
+		// In long arithmetic, so that a corrupt size or block size cannot overflow.
+		long nOffsets = ((long) size + blockSize - 1) / blockSize + 1;
+		if (4 * nOffsets > buffer.remaining()) {
+			throw new IllegalArgumentException("Truncated compressed route");
+		}
+		int[] blockOffsets = new int[(int) nOffsets];
+		for (int b = 0; b < blockOffsets.length; b++) {
+			blockOffsets[b] = buffer.getInt();
+			if (blockOffsets[b] < (b == 0 ? 0 : blockOffsets[b - 1])) {
+				throw new IllegalArgumentException("Corrupt compressed route");
+			}
+		}
+		byte[] data = new byte[buffer.remaining()];
+		buffer.get(data);
+		if (blockOffsets[0] != 0 || blockOffsets[blockOffsets.length - 1] != data.length) {
+			throw new IllegalArgumentException("Corrupt compressed route");
+		}
+		// Each way point takes at least a byte for its time and for each coordinate.
+		if ((long) size * ((long) dimensions + 1) > data.length) {
+			throw new IllegalArgumentException("Corrupt compressed route");
+		}
+		return new CompressedRoute(size, dimensions, blockSize, quantum, data, blockOffsets);
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * A cursor over a compressed route: decodes blocks into primitive arrays,
+	 * keeping the two most recently used. As a {@link Route}, way points may be
+	 * read in any order, but reading them in order (or nearly so) decodes each
+	 * block only once - including reading both ends of a segment that straddles a
+	 * block boundary, or of two routes' segments aligned against each other.
+	 */
+	public class Cursor implements Route {
+		// The two decoded blocks, and their indices (-1 if none).
+		private final long[][] times = new long[2][Math.min(blockSize, size)];
+		private final double[][] coordinates = new double[2][Math.min(blockSize, size) * dimensions];
+		private final int[] blocks = { -1, -1 };
+		// The slot (0 or 1) of the most recently used block.
+		private int recent;
+		// The previous way point's coordinates while decoding (multiples of the quantum,
+		// or bits), and the position in the encoded data.
+		private final long[] previous = new long[dimensions];
+		private int position;
+		// The index of the current way point, for sequential reading.
+		private int current = -1;
+
+		private Cursor() {
+			super();
+		}
+
+		/**
+		 * Move to the next way point.
+		 * 
+		 * @return Whether there was a next way point.
+		 */
+		public boolean next() {
+			if (current + 1 >= size) {
+				return false;
+			}
+			current++;
+			decode(current / blockSize);
+			return true;
+		}
+
+		/**
+		 * Move to a way point.
+		 * 
+		 * @param i The index of the way point; the next call to {@link #next()}
+		 *          moves to the following way point.
+		 */
+		public void seek(int i) {
+			assert 0 <= i && i < size;
+			current = i;
+			decode(i / blockSize);
+		}
+
+		/**
+		 * 
+		 * @return The index of the current way point.
+		 */
+		public int getIndex() {
+			return current;
+		}
+
+		/**
+		 * 
+		 * @return The time of the current way point.
+		 */
+		public long getTime() {
+			return getTime(current);
+		}
+
+		/**
+		 * 
+		 * @param dimension A spatial dimension.
+		 * @return The current way point's coordinate in that dimension.
+		 */
+		public double getCoordinate(int dimension) {
+			return getCoordinate(current, dimension);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int dimensions() {
+			return dimensions;
+		}
+
+		@Override
+		public long getTime(int i) {
+			assert 0 <= i && i < size;
+			int b = i / blockSize;
+			return times[decode(b)][i - b * blockSize];
+		}
+
+		@Override
+		public double getCoordinate(int i, int dimension) {
+			assert 0 <= i && i < size;
+			int b = i / blockSize;
+			return coordinates[decode(b)][(i - b * blockSize) * dimensions + dimension];
+		}
+
+		/**
+		 * Decode a block, unless it is one of the decoded blocks, replacing the less
+		 * recently used.
+		 * 
+		 * @param b The index of the block.
+		 * @return The slot holding the decoded block.
+		 */
+		private int decode(int b) {
+			if (blocks[recent] == b) {
+				return recent;
+			}
+			recent = 1 - recent;
+			if (blocks[recent] == b) {
+				return recent;
+			}
+			blocks[recent] = b;
+			long[] times = this.times[recent];
+			double[] coordinates = this.coordinates[recent];
+			position = blockOffsets[b];
+			long previousTime = 0;
+			long previousDelta = 0;
+			Arrays.fill(previous, 0);
+			int n = Math.min(blockSize, size - b * blockSize);
+			for (int j = 0; j < n; j++) {
+				long delta = unzigzag(readVarLong()) + previousDelta;
+				long time = previousTime + delta;
+				times[j] = time;
+				previousDelta = j == 0 ? 0 : delta;
+				previousTime = time;
+				for (int d = 0; d < dimensions; d++) {
+					if (quantum > 0) {
+						previous[d] += unzigzag(readVarLong());
+						coordinates[j * dimensions + d] = previous[d] * quantum;
+					} else {
+						int control = data[position++] & 0xff;
+						int trailing = control >>> 4;
+						int significant = control & 0xf;
+						long xor = 0;
+						for (int k = 0; k < significant; k++) {
+							xor |= (data[position++] & 0xffL) << (8 * k);
+						}
+						previous[d] ^= xor << (8 * trailing);
+						coordinates[j * dimensions + d] = Double.longBitsToDouble(previous[d]);
+					}
+				}
+			}
+			return recent;
+		}
+
+		private long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte next;
+			do {
+				next = data[position++];
+				value |= (long) (next & 0x7f) << shift;
+				shift += 7;
+			} while (next < 0);
+			return value;
+		}
+	}
+
+	/**
+	 * A growable byte array.
+	 */
+	private static class Encoder {
+		private byte[] bytes;
+		private int length;
+
+		private Encoder(int capacity) {
+			bytes = new byte[Math.max(16, capacity)];
+		}
+
+		private void put(int b) {
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+			}
+			bytes[length++] = (byte) b;
+		}
+
+		private void putVarLong(long value) {
+			while ((value & ~0x7fL) != 0) {
+				put((int) (value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			put((int) value);
+		}
+
+		private void putXor(long xor) {
+			if (xor == 0) {
+				put(0);
+				return;
+			}
+			int trailing = Long.numberOfTrailingZeros(xor) / 8;
+			int significant = 8 - Long.numberOfLeadingZeros(xor) / 8 - trailing;
+			put(trailing << 4 | significant);
+			long bits = xor >>> (8 * trailing);
+			for (int k = 0; k < significant; k++) {
+				put((int) (bits >>> (8 * k)) & 0xff);
+			}
+		}
+	}
+}
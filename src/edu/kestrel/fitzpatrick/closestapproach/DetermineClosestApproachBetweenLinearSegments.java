@@ -116,7 +116,6 @@ public class DetermineClosestApproachBetweenLinearSegments {
 
 		long startTime = start1.getTime();
 		long endTime = end1.getTime();
-		long deltaTime = endTime - startTime;
 		assert startTime == start2.getTime();
 		assert endTime == end2.getTime();
 		assert startTime < endTime;
@@ -128,35 +127,88 @@ public class DetermineClosestApproachBetweenLinearSegments {
 
 		// Determine the interpolation parameter for the closest approach.
 		closestK = computeClosestK(s1, e1, s2, e2);
+		if (Double.isNaN(closestK)) {
+			closestApproach = new ClosestApproach(distance(s1, e1, s2, e2, closestK));
+		} else {
+			// The way points are interpolated only if asked for.
+			closestApproach = new LazyClosestApproach(this, closestTime(startTime, endTime, s1, e1, s2, e2, closestK),
+					distance(s1, e1, s2, e2, closestK));
+		}
+	}
 
+	/**
+	 * <p>
+	 * Determine the closest approach between two objects, given the coordinates of
+	 * their motions over the period [startTime, endTime] and the interpolation
+	 * parameter of their closest approach (see
+	 * {@link #computeClosestK(double[], double[], double[], double[])}).
+	 * </p>
+	 * 
+	 * <p>
+	 * This is the computation performed by the constructor (which, however,
+	 * interpolates the way points only when they are asked for), for callers that
+	 * hold coordinates in their own form (e.g., in reused scratch arrays) rather
+	 * than as way points. The coordinate arrays are not retained.
+	 * </p>
+	 * 
+	 * @param startTime The start time of both motions.
+	 * @param endTime   The end time of both motions (later than the start time).
+	 * @param s1        The starting location of object 1.
+	 * @param e1        The ending location of object 1.
+	 * @param s2        The starting location of object 2.
+	 * @param e2        The ending location of object 2.
+	 * @param closestK  The interpolation parameter for the closest approach (NaN
+	 *                  for parallel motion).
+	 * @return The closest approach.
+	 */
+	public static ClosestApproach closestApproach(long startTime, long endTime, double[] s1, double[] e1,
+			double[] s2, double[] e2, double closestK) {
 		if (Double.isNaN(closestK)) {
-			closestApproach = new ClosestApproach(distance(closestK));
+			return new ClosestApproach(distance(s1, e1, s2, e2, closestK));
 		} else {
-			double closestTime = startTime + closestK * deltaTime;
-			// Make the time discrete - choose the floor or ceiling depending on which gives
-			// the closer approach.
-			long time1 = Math.max(startTime, (long) Math.floor(closestTime));
-			long time2 = Math.min(endTime, time1 + 1);
-			long time;
-			if (time1 == time2) {
-				time = time1;
-			} else {
-				double k1 = ((double) (time1 - startTime)) / deltaTime;
-				double k2 = ((double) (time2 - startTime)) / deltaTime;
-				double d1 = distance(k1);
-				double d2 = distance(k2);
-				if (d1 <= d2) {
-					time = time1;
-				} else {
-					time = time2;
-				}
-			}
+			long time = closestTime(startTime, endTime, s1, e1, s2, e2, closestK);
 
 			// Once k is determined, the locations of the closest approach are determined by
 			// linear interpolation.
 			double[] coords1 = VectorUtils.interpolate(s1, e1, closestK);
 			double[] coords2 = VectorUtils.interpolate(s2, e2, closestK);
-			closestApproach = new ClosestApproach(new WayPoint(time, coords1), new WayPoint(time, coords2));
+			return new ClosestApproach(new WayPoint(time, coords1), new WayPoint(time, coords2));
+		}
+	}
+
+	/**
+	 * Determine the discrete time reported for a closest approach: the floor or
+	 * ceiling of the fractional time, whichever gives the closer approach. Does not
+	 * allocate.
+	 * 
+	 * @param startTime The start time of both motions.
+	 * @param endTime   The end time of both motions (later than the start time).
+	 * @param s1        The starting location of object 1.
+	 * @param e1        The ending location of object 1.
+	 * @param s2        The starting location of object 2.
+	 * @param e2        The ending location of object 2.
+	 * @param closestK  The interpolation parameter for the closest approach (not
+	 *                  NaN).
+	 * @return The time of the closest approach.
+	 */
+	public static long closestTime(long startTime, long endTime, double[] s1, double[] e1, double[] s2,
+			double[] e2, double closestK) {
+		assert !Double.isNaN(closestK);
+		long deltaTime = endTime - startTime;
+		double closestTime = startTime + closestK * deltaTime;
+		long time1 = Math.max(startTime, (long) Math.floor(closestTime));
+		long time2 = Math.min(endTime, time1 + 1);
+		if (time1 == time2) {
+			return time1;
+		}
+		double k1 = ((double) (time1 - startTime)) / deltaTime;
+		double k2 = ((double) (time2 - startTime)) / deltaTime;
+		double d1 = distance(s1, e1, s2, e2, k1);
+		double d2 = distance(s1, e1, s2, e2, k2);
+		if (d1 <= d2) {
+			return time1;
+		} else {
+			return time2;
 		}
 	}
 
@@ -230,14 +282,50 @@ public class DetermineClosestApproachBetweenLinearSegments {
 		assert start1.length == start2.length;
 		double[] dS = VectorUtils.subtract(start1, start2);
 		double[] dE = VectorUtils.subtract(end1, end2);
-		double[] dSdE = VectorUtils.subtract(dS, dE);
-		double enumerator = VectorUtils.innerProduct(dS, dSdE);
-		double denominator = VectorUtils.length2(dSdE);
+		return computeClosestK(dS, dE);
+	}
+
+	/**
+	 * <p>
+	 * Compute the interpolation parameter for closest approach, given the
+	 * separation between the two objects at the start (dS = start1 - start2) and
+	 * at the end (dE = end1 - end2) - i.e., the motion of object 1 relative to
+	 * object 2. See
+	 * {@link #computeClosestK(double[], double[], double[], double[])}.
+	 * </p>
+	 * 
+	 * <p>
+	 * Does not allocate, so is suitable for callers that hold motions in their own
+	 * (e.g., packed) form and reuse scratch arrays for the separations.
+	 * </p>
+	 * 
+	 * @param dS The separation at the start.
+	 * @param dE The separation at the end.
+	 * @return The interpolation parameter corresponding to the objects' closest
+	 *         approach. Is NaN is the objects' motions are (effectively) parallel.
+	 */
+	public static double computeClosestK(double[] dS, double[] dE) {
+		assert dS.length == dE.length;
+		// The inner product of dS and (dS - dE), and the square of the length of (dS -
+		// dE).
+		double enumerator = 0;
+		double denominator = 0;
+		for (int i = 0; i < dS.length; i++) {
+			double dSdE = dS[i] - dE[i];
+			enumerator += dS[i] * dSdE;
+			denominator += dSdE * dSdE;
+		}
 		double k = enumerator / denominator;
 		if (Double.isInfinite(k) || Double.isNaN(k)) {
 			// Degenerate cases - (effectively) parallel or anti-parallel motion.
+			if (EngineMetrics.enabled) {
+				EngineMetrics.segmentKernelCall(true);
+			}
 			return Double.NaN;
 		} else {
+			if (EngineMetrics.enabled) {
+				EngineMetrics.segmentKernelCall(false);
+			}
 			// The true closest approach may occur outside the given motion - e.g., if the
 			// two objects were to continue in uniform motion. We are interested in the
 			// closest approach within the start/end segments we are given. So
@@ -255,12 +343,37 @@ public class DetermineClosestApproachBetweenLinearSegments {
 	 *         returns the distance between their starting positions.
 	 */
 	public double distance(double k) {
+		return distance(start1.getCoordinates(), end1.getCoordinates(), start2.getCoordinates(),
+				end2.getCoordinates(), k);
+	}
+
+	/**
+	 * The distance between two objects, moving uniformly from s1 to e1 and from s2
+	 * to e2, at interpolation parameter k.
+	 * 
+	 * @param s1 The starting location of object 1.
+	 * @param e1 The ending location of object 1.
+	 * @param s2 The starting location of object 2.
+	 * @param e2 The ending location of object 2.
+	 * @param k  The interpolation parameter.
+	 * @return The distance between the two objects at interpolation parameter k. If
+	 *         k is NaN, then the objects are moving effectively in parallel -
+	 *         returns the distance between their starting positions.
+	 */
+	public static double distance(double[] s1, double[] e1, double[] s2, double[] e2, double k) {
 		if (Double.isNaN(k)) {
-			return start1.distance(start2);
+			return VectorUtils.distance(s1, s2);
 		} else {
-			double[] c1 = VectorUtils.interpolate(start1.getCoordinates(), end1.getCoordinates(), k);
-			double[] c2 = VectorUtils.interpolate(start2.getCoordinates(), end2.getCoordinates(), k);
-			return VectorUtils.distance(c1, c2);
+			// As VectorUtils.distance of the interpolated locations, without allocating
+			// them.
+			double sumSqrDistance = 0;
+			for (int i = 0; i < s1.length; i++) {
+				double c1 = s1[i] + k * (e1[i] - s1[i]);
+				double c2 = s2[i] + k * (e2[i] - s2[i]);
+				double di = c1 - c2;
+				sumSqrDistance += di * di;
+			}
+			return Math.sqrt(sumSqrDistance);
 		}
 	}
 
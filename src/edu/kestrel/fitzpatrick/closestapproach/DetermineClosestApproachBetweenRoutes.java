@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 /**
  * 
@@ -36,6 +35,11 @@ import java.util.stream.Collectors;
  *
  */
 public class DetermineClosestApproachBetweenRoutes {
+	// The margin, relative to the magnitudes of the positions, by which a skipped
+	// segment's separation must exceed the least distance (so that rounding in the
+	// interpolated positions cannot change the results).
+	private static final double SKIP_MARGIN = 1e-9;
+
 	// The route for object 1.
 	private final List<WayPoint> route1;
 	// The route for object 2.
@@ -129,62 +133,587 @@ public class DetermineClosestApproachBetweenRoutes {
 	 *         2.
 	 */
 	public static List<ClosestApproach> computeClosestApproaches(List<WayPoint> route1, List<WayPoint> route2) {
-		// First, align the routes in time.
-		SortedSet<Long> times = alignTimes(route1, route2);
-		List<WayPoint> aligned1 = align(route1, times);
-		List<WayPoint> aligned2 = align(route2, times);
-		assert aligned1.size() == aligned2.size();
-		assert times(aligned1).equals(times(aligned2));
+		return computeClosestApproaches(route1, route2, 0);
+	}
+
+	/**
+	 * As {@link #computeClosestApproaches(List, List)}, but treating as tied any
+	 * closest approach whose distance is within a tolerance of the least distance
+	 * (so that approaches that differ only by rounding are not dropped). With a
+	 * tolerance of 0, only closest approaches with exactly the least distance are
+	 * included.
+	 * 
+	 * @param route1    The route for object 1.
+	 * @param route2    The route for object 2.
+	 * @param tolerance The tolerance for ties (non-negative).
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(List<WayPoint> route1, List<WayPoint> route2,
+			double tolerance) {
+		// The aligned segments are the same as those of the aligned routes (see
+		// alignTimes and align), without creating them.
+		return computeClosestApproaches(new ListRoute(route1), new ListRoute(route2), tolerance);
+	}
+
+	/**
+	 * <p>
+	 * As {@link #computeClosestApproaches(List, List)}, for routes given as
+	 * {@link Route} views (e.g., over a memory-mapped {@link RouteStore}). The
+	 * routes are aligned by an {@link AlignedSegments} cursor, so no way point is
+	 * created other than those of the closest approaches; the results are the same
+	 * as for the equivalent lists of way points.
+	 * </p>
+	 * 
+	 * @param route1 The route for object 1 (two or more way points, with
+	 *               increasing times).
+	 * @param route2 The route for object 2.
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(Route route1, Route route2) {
+		return computeClosestApproaches(route1, route2, 0);
+	}
+
+	/**
+	 * As {@link #computeClosestApproaches(Route, Route)}, with a tolerance for ties
+	 * as {@link #computeClosestApproaches(List, List, double)}. A segment's distance
+	 * is computed without allocating; a closest approach is created only for a
+	 * segment that is (so far) within the tolerance of the least distance.
+	 * 
+	 * @param route1    The route for object 1 (two or more way points, with
+	 *                  increasing times).
+	 * @param route2    The route for object 2.
+	 * @param tolerance The tolerance for ties (non-negative).
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(Route route1, Route route2, double tolerance) {
+		return computeClosestApproaches(new AlignedSegments(route1, route2), tolerance);
+	}
+
+	/**
+	 * <p>
+	 * Determine the closest approaches between object 1 and object 2 within a time
+	 * window - e.g., the next 20 minutes - without copying or trimming the routes.
+	 * The routes are clipped to the window virtually (see
+	 * {@link AlignedSegments#AlignedSegments(Route, Route, long, long)}), so the
+	 * cost is logarithmic in the lengths of the routes plus linear in the number of
+	 * segments in the window.
+	 * </p>
+	 * 
+	 * <p>
+	 * A window that covers the routes' common period gives exactly the results of
+	 * {@link #computeClosestApproaches(Route, Route)}.
+	 * </p>
+	 * 
+	 * @param route1      The route for object 1 (two or more way points, with
+	 *                    increasing times).
+	 * @param route2      The route for object 2.
+	 * @param windowStart The start of the window.
+	 * @param windowEnd   The end of the window (inclusive).
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2 within the window, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(Route route1, Route route2, long windowStart,
+			long windowEnd) {
+		return computeClosestApproaches(new AlignedSegments(route1, route2, windowStart, windowEnd), 0);
+	}
+
+	/**
+	 * As {@link #computeClosestApproaches(Route, Route, long, long)}, for routes
+	 * given as lists of way points (which are not copied).
+	 * 
+	 * @param route1      The route for object 1 (two or more way points, with
+	 *                    increasing times).
+	 * @param route2      The route for object 2.
+	 * @param windowStart The start of the window.
+	 * @param windowEnd   The end of the window (inclusive).
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2 within the window, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(List<WayPoint> route1, List<WayPoint> route2,
+			long windowStart, long windowEnd) {
+		return computeClosestApproaches(new ListRoute(route1), new ListRoute(route2), windowStart, windowEnd);
+	}
+
+	/**
+	 * <p>
+	 * As {@link #computeClosestApproaches(Route, Route, double)}, skipping ahead
+	 * over periods in which the objects are too far apart to come within the
+	 * tolerance of the least distance so far. If the objects are separated by S at
+	 * some time, and together can close at no more than V (the sum of their maximum
+	 * speeds, from the routes' speed profiles), then they cannot come within D of
+	 * each other for a period of (S - D) / V; the segments in that period are
+	 * skipped without being evaluated. For objects that are far apart, the cost is
+	 * then proportional to the number of skips rather than to the number of
+	 * segments.
+	 * </p>
+	 * 
+	 * <p>
+	 * A skipped segment could not have been included, so the results are the same
+	 * as without skipping. The speed profiles are computed once per route and
+	 * reused across pairs.
+	 * </p>
+	 * 
+	 * @param route1    The route for object 1 (two or more way points, with
+	 *                  increasing times).
+	 * @param speeds1   The speed profile of route 1.
+	 * @param route2    The route for object 2.
+	 * @param speeds2   The speed profile of route 2.
+	 * @param tolerance The tolerance for ties (non-negative).
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(Route route1, SpeedProfile speeds1, Route route2,
+			SpeedProfile speeds2, double tolerance) {
+		assert speeds1 != null && speeds2 != null;
+		return computeClosestApproaches(new AlignedSegments(route1, route2), speeds1, speeds2, tolerance);
+	}
+
+	/**
+	 * As {@link #computeClosestApproaches(Route, SpeedProfile, Route, SpeedProfile, double)},
+	 * with a tolerance of 0.
+	 * 
+	 * @param route1  The route for object 1 (two or more way points, with
+	 *                increasing times).
+	 * @param speeds1 The speed profile of route 1.
+	 * @param route2  The route for object 2.
+	 * @param speeds2 The speed profile of route 2.
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(Route route1, SpeedProfile speeds1, Route route2,
+			SpeedProfile speeds2) {
+		return computeClosestApproaches(route1, speeds1, route2, speeds2, 0);
+	}
+
+	/**
+	 * <p>
+	 * As {@link #computeClosestApproaches(Route, Route, double)}, by a
+	 * branch-and-bound search of the routes' hierarchies rather than a walk over
+	 * all of the aligned segments. Both hierarchies are descended together, and a
+	 * pair of nodes is pruned if a lower bound on the objects' separation over the
+	 * nodes' common period (from the nodes' bounding boxes and simplified chords)
+	 * exceeds the tolerance of the least distance so far. Only the pairs of
+	 * segments that are not pruned are evaluated, so for routes that come close
+	 * only briefly, if at all, the cost is usually logarithmic in the routes'
+	 * lengths.
+	 * </p>
+	 * 
+	 * <p>
+	 * Each pair of segments evaluated is exactly an aligned segment of the routes,
+	 * so the results are the same as for the walk. The hierarchies are computed
+	 * once per route and reused across pairs.
+	 * </p>
+	 * 
+	 * @param hierarchy1 The hierarchy of the route for object 1.
+	 * @param hierarchy2 The hierarchy of the route for object 2.
+	 * @param tolerance  The tolerance for ties (non-negative).
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(RouteHierarchy hierarchy1,
+			RouteHierarchy hierarchy2, double tolerance) {
+		assert tolerance >= 0;
+		Route route1 = hierarchy1.getRoute();
+		Route route2 = hierarchy2.getRoute();
+		long firstTime = Math.max(route1.getTime(0), route2.getTime(0));
+		long lastTime = Math.min(route1.getTime(route1.size() - 1), route2.getTime(route2.size() - 1));
+		if (firstTime >= lastTime) {
+			// No segments in common.
+			return computeClosestApproaches(new AlignedSegments(route1, route2), tolerance);
+		}
+		long startNanos = EngineMetrics.enabled || EngineEvents.enabled ? System.nanoTime() : 0;
+		RouteHierarchy.Search search = new RouteHierarchy.Search(hierarchy1, hierarchy2, tolerance, firstTime,
+				lastTime);
+		List<ClosestApproach> result = search.run();
+		finished(startNanos, route1.size(), route2.size(), search.getEvaluated());
+		return result;
+	}
+
+	/**
+	 * As {@link #computeClosestApproaches(RouteHierarchy, RouteHierarchy, double)},
+	 * with a tolerance of 0.
+	 * 
+	 * @param hierarchy1 The hierarchy of the route for object 1.
+	 * @param hierarchy2 The hierarchy of the route for object 2.
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(RouteHierarchy hierarchy1,
+			RouteHierarchy hierarchy2) {
+		return computeClosestApproaches(hierarchy1, hierarchy2, 0);
+	}
+
+	/**
+	 * <p>
+	 * As {@link #computeClosestApproaches(Route, Route, double)}, in two stages.
+	 * Each aligned segment is first screened on single-precision copies of the
+	 * routes (see {@link FloatRoute}): the least separation of the objects over the
+	 * segment is computed from the copies, and, as the copies are within their
+	 * errors of the routes at every instant, so is the least separation. Only a
+	 * segment whose screened separation, less the errors, is within the tolerance
+	 * of the least distance so far is evaluated on the routes themselves, exactly
+	 * as by the walk over the aligned segments.
+	 * </p>
+	 * 
+	 * <p>
+	 * A segment that is screened out could not have been included, so the results
+	 * are identical to those of {@link #computeClosestApproaches(Route, Route, double)}.
+	 * The single-precision copies are made once per route and reused across pairs.
+	 * </p>
+	 * 
+	 * @param route1    The route for object 1 (two or more way points, with
+	 *                  increasing times).
+	 * @param screen1   The single-precision copy of route 1.
+	 * @param route2    The route for object 2.
+	 * @param screen2   The single-precision copy of route 2.
+	 * @param tolerance The tolerance for ties (non-negative).
+	 * @return The (possibly empty) list of closest approaches between object 1 and
+	 *         2, in time order.
+	 */
+	public static List<ClosestApproach> computeClosestApproaches(Route route1, FloatRoute screen1, Route route2,
+			FloatRoute screen2, double tolerance) {
+		assert tolerance >= 0;
+		assert screen1.size() == route1.size() && screen2.size() == route2.size();
+		AlignedSegments screening = new AlignedSegments(screen1, screen2);
+		if (screening.isEmpty() || !screening.hasNext()) {
+			return computeClosestApproaches(route1, route2, tolerance);
+		}
+		long startNanos = EngineMetrics.enabled || EngineEvents.enabled ? System.nanoTime() : 0;
+		int dimensions = route1.dimensions();
+		double[] start1 = new double[dimensions];
+		double[] end1 = new double[dimensions];
+		double[] start2 = new double[dimensions];
+		double[] end2 = new double[dimensions];
+		double[] dS = new double[dimensions];
+		double[] dE = new double[dimensions];
+		double error = screen1.getError() + screen2.getError();
+		int evaluated = 0;
+
+		// As for the walk, exclude a closest approach at the end of a segment, other
+		// than the final segment.
+		Minima minima = new Minima(tolerance);
+		while (screening.next()) {
+			if (leastSeparation(screening.getStart1(), screening.getEnd1(), screening.getStart2(),
+					screening.getEnd2()) - error > minima.bound()) {
+				continue;
+			}
+			evaluated++;
+			long startTime = screening.getStartTime();
+			long endTime = screening.getEndTime();
+			AlignedSegments.interpolate(route1, startTime, start1);
+			AlignedSegments.interpolate(route1, endTime, end1);
+			AlignedSegments.interpolate(route2, startTime, start2);
+			AlignedSegments.interpolate(route2, endTime, end2);
+			for (int d = 0; d < dimensions; d++) {
+				dS[d] = start1[d] - start2[d];
+				dE[d] = end1[d] - end2[d];
+			}
+			double closestK = DetermineClosestApproachBetweenLinearSegments.computeClosestK(dS, dE);
+			if (!screening.hasNext() || closestK < 1) {
+				double distance = DetermineClosestApproachBetweenLinearSegments.distance(start1, end1, start2, end2,
+						closestK);
+				if (minima.accepts(distance)) {
+					minima.add(DetermineClosestApproachBetweenLinearSegments.closestApproach(startTime, endTime, start1,
+							end1, start2, end2, closestK));
+				}
+			}
+		}
+		finished(startNanos, route1.size(), route2.size(), evaluated);
+		return minima.getClosestApproaches();
+	}
+
+	/**
+	 * The least separation of two objects moving uniformly, for screening (without
+	 * counting as a segment kernel call).
+	 * 
+	 * @param s1 Object 1's start position.
+	 * @param e1 Object 1's end position.
+	 * @param s2 Object 2's start position.
+	 * @param e2 Object 2's end position.
+	 * @return The least distance between the objects.
+	 */
+	private static double leastSeparation(double[] s1, double[] e1, double[] s2, double[] e2) {
+		double enumerator = 0;
+		double denominator = 0;
+		for (int d = 0; d < s1.length; d++) {
+			double dS = s1[d] - s2[d];
+			double dSdE = dS - (e1[d] - e2[d]);
+			enumerator += dS * dSdE;
+			denominator += dSdE * dSdE;
+		}
+		double k = denominator > 0 ? Math.max(0, Math.min(1, enumerator / denominator)) : 0;
+		double sumSqrDistance = 0;
+		for (int d = 0; d < s1.length; d++) {
+			double c1 = s1[d] + k * (e1[d] - s1[d]);
+			double c2 = s2[d] + k * (e2[d] - s2[d]);
+			double di = c1 - c2;
+			sumSqrDistance += di * di;
+		}
+		return Math.sqrt(sumSqrDistance);
+	}
 
-		if (times.isEmpty()) {
+	/**
+	 * <p>
+	 * Determine the closest approach between object 1 and object 2 approximately,
+	 * for screening: the routes are simplified to within a distance epsilon at
+	 * every instant (see {@link RouteSimplifier}), which for densely sampled routes
+	 * removes most of their segments, and the closest approach is computed on the
+	 * simplified routes. The distance of the closest approach on the original
+	 * routes is guaranteed to be within 2 epsilon of that on the simplified routes.
+	 * </p>
+	 * 
+	 * <p>
+	 * To simplify each route once, rather than for every pair, use
+	 * {@link #computeApproximateClosestApproach(List, double, List, double)}.
+	 * </p>
+	 * 
+	 * @param route1  The route for object 1.
+	 * @param route2  The route for object 2.
+	 * @param epsilon The greatest error allowed in each simplified route
+	 *                (non-negative).
+	 * @return The approximate closest approach between object 1 and 2.
+	 */
+	public static ApproximateClosestApproach computeApproximateClosestApproach(List<WayPoint> route1,
+			List<WayPoint> route2, double epsilon) {
+		return computeApproximateClosestApproach(RouteSimplifier.simplify(route1, epsilon), epsilon,
+				RouteSimplifier.simplify(route2, epsilon), epsilon);
+	}
+
+	/**
+	 * As {@link #computeApproximateClosestApproach(List, List, double)}, for
+	 * routes that have already been simplified.
+	 * 
+	 * @param simplified1 The simplified route for object 1.
+	 * @param epsilon1    The greatest distance at any instant between the
+	 *                    simplified route and object 1's route.
+	 * @param simplified2 The simplified route for object 2.
+	 * @param epsilon2    The greatest distance at any instant between the
+	 *                    simplified route and object 2's route.
+	 * @return The approximate closest approach between object 1 and 2, with an
+	 *         error of epsilon1 + epsilon2.
+	 */
+	public static ApproximateClosestApproach computeApproximateClosestApproach(List<WayPoint> simplified1,
+			double epsilon1, List<WayPoint> simplified2, double epsilon2) {
+		assert epsilon1 >= 0 && epsilon2 >= 0;
+		List<ClosestApproach> closestApproaches = computeClosestApproaches(simplified1, simplified2);
+		if (closestApproaches.isEmpty()) {
+			return new ApproximateClosestApproach();
+		}
+		return new ApproximateClosestApproach(closestApproaches, epsilon1 + epsilon2);
+	}
+
+	/**
+	 * 
+	 * @param segments  A cursor at the first aligned time of two routes.
+	 * @param tolerance The tolerance for ties (non-negative).
+	 * @return The (possibly empty) list of closest approaches over the cursor's
+	 *         segments, in time order.
+	 */
+	private static List<ClosestApproach> computeClosestApproaches(AlignedSegments segments, double tolerance) {
+		return computeClosestApproaches(segments, null, null, tolerance);
+	}
+
+	/**
+	 * 
+	 * @param segments  A cursor at the first aligned time of two routes.
+	 * @param speeds1   The speed profile of route 1, or null not to skip ahead.
+	 * @param speeds2   The speed profile of route 2 (null if speeds1 is).
+	 * @param tolerance The tolerance for ties (non-negative).
+	 * @return The (possibly empty) list of closest approaches over the cursor's
+	 *         segments, in time order.
+	 */
+	private static List<ClosestApproach> computeClosestApproaches(AlignedSegments segments, SpeedProfile speeds1,
+			SpeedProfile speeds2, double tolerance) {
+		assert tolerance >= 0;
+		long startNanos = EngineMetrics.enabled || EngineEvents.enabled ? System.nanoTime() : 0;
+		if (segments.isEmpty()) {
 			// The two routes do not overlap in time.
+			finished(startNanos, segments.getRoute1().size(), segments.getRoute2().size(), 0);
 			return new ArrayList<>();
-		} else if (times.size() == 1) {
+		} else if (!segments.hasNext()) {
 			// The end time of one route is the start time of the other.
+			long time = segments.getEndTime();
 			List<ClosestApproach> result = new ArrayList<>();
-			result.add(new ClosestApproach(aligned1.get(0), aligned2.get(0)));
+			result.add(new ClosestApproach(new WayPoint(time, segments.getEnd1().clone()),
+					new WayPoint(time, segments.getEnd2().clone())));
+			finished(startNanos, segments.getRoute1().size(), segments.getRoute2().size(), 0);
 			return result;
 		}
 
-		// Each aligned route has at least two way points. Consider each segment
-		// (defined by a pair of consecutive, aligned times) in turn.
-		List<ClosestApproach> closestApproachesPerSegment = new ArrayList<>();
-		for (int i = 0; i < aligned1.size() - 1; i++) {
-			WayPoint start1 = aligned1.get(i);
-			WayPoint end1 = aligned1.get(i + 1);
-			WayPoint start2 = aligned2.get(i);
-			WayPoint end2 = aligned2.get(i + 1);
-			DetermineClosestApproachBetweenLinearSegments ca = new DetermineClosestApproachBetweenLinearSegments(start1,
-					end1, start2, end2);
-			// If the closest approach is exactly at the time of a way point, rather than
-			// between consecutive way points, then it could be counted twice, once for the
-			// segment that has the way point time at its end, and again for the segment
-			// that has the time at its start. Only include in the former case, unless it is
-			// the time of the final way point.
-			if (i == aligned1.size() - 2 || ca.closestK() < 1) {
-				closestApproachesPerSegment.add(ca.getClosestApproach());
+		// As for lists of way points, exclude a closest approach at the end of a
+		// segment, other than the final segment.
+		Minima minima = new Minima(tolerance);
+		while (segments.next()) {
+			double closestK = segments.closestK();
+			if (!segments.hasNext() || closestK < 1) {
+				double distance = DetermineClosestApproachBetweenLinearSegments.distance(segments.getStart1(),
+						segments.getEnd1(), segments.getStart2(), segments.getEnd2(), closestK);
+				if (minima.accepts(distance)) {
+					minima.add(segments.closestApproach(closestK));
+				}
+			}
+			if (speeds1 != null) {
+				skipAhead(segments, speeds1, speeds2, minima.bound());
 			}
 		}
-		// Extract those segment-wise closest approaches that have the smallest
-		// distance.
-		double minDistance = closestApproachesPerSegment.stream() //
-				.mapToDouble(ca -> ca.distance()) //
-				.min().getAsDouble();
-		List<ClosestApproach> closestApproaches = closestApproachesPerSegment.stream() //
-				.filter(ca -> ca.distance() == minDistance) //
-				.collect(Collectors.toList());
-		return closestApproaches;
+		finished(startNanos, segments.getRoute1().size(), segments.getRoute2().size(), segments.getIndex() + 1);
+		return minima.getClosestApproaches();
 	}
 
 	/**
+	 * Move a cursor forward over the segments in which the objects cannot come
+	 * within a distance of each other, judging from their separation at the current
+	 * aligned time and their maximum speeds in the current blocks of their speed
+	 * profiles. Repeats from each aligned time skipped to, until no further skip is
+	 * possible.
 	 * 
-	 * @param route A route.
-	 * @return The times of the route's way points, in order.
+	 * @param segments A cursor.
+	 * @param speeds1  The speed profile of route 1.
+	 * @param speeds2  The speed profile of route 2.
+	 * @param bound    The distance (possibly infinite) within which a segment's
+	 *                 closest approach would be included.
 	 */
-	private static List<Long> times(List<WayPoint> route) {
-		return route.stream() //
-				.map(WayPoint::getTime) //
-				.collect(Collectors.toList());
+	private static void skipAhead(AlignedSegments segments, SpeedProfile speeds1, SpeedProfile speeds2,
+			double bound) {
+		while (segments.hasNext()) {
+			double[] end1 = segments.getEnd1();
+			double[] end2 = segments.getEnd2();
+			double separation = VectorUtils.distance(end1, end2);
+			double margin = SKIP_MARGIN
+					* (1 + separation + VectorUtils.length(end1) + VectorUtils.length(end2));
+			double gap = separation - bound - margin;
+			if (!(gap > 0)) {
+				return;
+			}
+			long time = segments.getEndTime();
+			int block1 = speeds1.block(time);
+			int block2 = speeds2.block(time);
+			long blockEnd = Math.min(speeds1.getBlockEnd(block1), speeds2.getBlockEnd(block2));
+			// The period for which the separation stays above the bound, at the blocks'
+			// maximum speeds; the speeds may be different after the blocks' end.
+			double period = gap / (speeds1.getBlockSpeed(block1) + speeds2.getBlockSpeed(block2));
+			long target = period >= blockEnd - time ? blockEnd : time + (long) Math.ceil(period) - 1;
+			segments.skipTo(target);
+			if (segments.getEndTime() == time) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Record a closest-approach computation between two routes in the metrics and
+	 * events, if enabled.
+	 * 
+	 * @param startNanos The {@link System#nanoTime()} when the computation started.
+	 * @param size1      The number of way points in route 1.
+	 * @param size2      The number of way points in route 2.
+	 * @param segments   The number of aligned segments.
+	 */
+	private static void finished(long startNanos, int size1, int size2, int segments) {
+		if (EngineMetrics.enabled) {
+			EngineMetrics.pairComputation(startNanos, segments);
+		}
+		if (EngineEvents.enabled) {
+			EngineEvents.pairEvaluation(startNanos, size1, size2, segments);
+		}
+	}
+
+	/**
+	 * A one-pass reduction of a sequence of closest approaches to those with the
+	 * least distance (within a tolerance), keeping only the current candidates.
+	 */
+	private static class Minima {
+		private final double tolerance;
+		// The least distance so far.
+		private double minDistance = Double.POSITIVE_INFINITY;
+		// The closest approaches that were within the tolerance of the least distance
+		// when added, in the order added. Those no longer within it are removed only
+		// when the list has doubled since it was last compacted, so that a slowly
+		// falling least distance does not make the reduction quadratic.
+		private final List<ClosestApproach> closestApproaches = new ArrayList<>();
+		// The size of the list when it was last compacted.
+		private int compactedSize;
+
+		private Minima(double tolerance) {
+			super();
+			this.tolerance = tolerance;
+		}
+
+		/**
+		 * 
+		 * @param distance A distance.
+		 * @return Whether a closest approach with the distance would (so far) be
+		 *         included. If not, it can never be, since the least distance only
+		 *         decreases.
+		 */
+		private boolean accepts(double distance) {
+			return distance <= minDistance + tolerance;
+		}
+
+		/**
+		 * 
+		 * @return The distance (infinite before any closest approach is added)
+		 *         within which a closest approach would (so far) be included.
+		 */
+		private double bound() {
+			return minDistance + tolerance;
+		}
+
+		private void add(ClosestApproach ca) {
+			double distance = ca.distance();
+			if (!accepts(distance)) {
+				return;
+			}
+			minDistance = Math.min(minDistance, distance);
+			closestApproaches.add(ca);
+			if (closestApproaches.size() >= 2 * compactedSize + 16) {
+				compact();
+			}
+		}
+
+		private void compact() {
+			closestApproaches.removeIf(c -> !accepts(c.distance()));
+			compactedSize = closestApproaches.size();
+		}
+
+		private List<ClosestApproach> getClosestApproaches() {
+			compact();
+			return closestApproaches;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Determine the closest approach for each segment of two aligned routes, that
+	 * is, routes that have the same number of way points, with corresponding way
+	 * points having the same times (see {@link #align(List, SortedSet)}).
+	 * </p>
+	 * 
+	 * <p>
+	 * No segment is excluded, so a closest approach exactly at the time of an
+	 * interior way point may be reported by two consecutive segments.
+	 * </p>
+	 * 
+	 * @param aligned1 The aligned route for object 1.
+	 * @param aligned2 The aligned route for object 2.
+	 * @return The closest approach for each segment, in time order. Empty if the
+	 *         aligned routes have fewer than two way points.
+	 */
+	public static List<DetermineClosestApproachBetweenLinearSegments> computeSegmentApproaches(
+			List<WayPoint> aligned1, List<WayPoint> aligned2) {
+		assert aligned1.size() == aligned2.size();
+		List<DetermineClosestApproachBetweenLinearSegments> segments = new ArrayList<>();
+		for (int i = 0; i < aligned1.size() - 1; i++) {
+			WayPoint start1 = aligned1.get(i);
+			WayPoint end1 = aligned1.get(i + 1);
+			WayPoint start2 = aligned2.get(i);
+			WayPoint end2 = aligned2.get(i + 1);
+			segments.add(new DetermineClosestApproachBetweenLinearSegments(start1, end1, start2, end2));
+		}
+		return segments;
 	}
 
 	/**
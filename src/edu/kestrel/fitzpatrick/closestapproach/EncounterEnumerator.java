@@ -0,0 +1,164 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Enumerates the encounters between two objects following routes: the
+ *         local minima of their separation over time. Routes that cross twice
+ *         have two encounters, although
+ *         {@link DetermineClosestApproachBetweenRoutes} reports only the nearer.
+ *         </p>
+ * 
+ *         <p>
+ *         Over each aligned segment (see {@link AlignedSegments}), the squared
+ *         separation is a convex quadratic, minimal at the segment's closest
+ *         interpolation parameter k. A minimum strictly inside a segment (0
+ *         &lt; k &lt; 1) is an encounter. A minimum at a segment boundary is
+ *         merged across the boundary: it is an encounter if the separation
+ *         decreases into the boundary (k = 1 for the earlier segment, or the
+ *         start of the routes' common period) and increases out of it (k = 0
+ *         for the later segment, or the end of the common period). Segments of
+ *         parallel motion (k is NaN) have constant separation; a run of them
+ *         reached while decreasing and left while increasing (or at the end) is
+ *         a single encounter, reported at the start of the run.
+ *         </p>
+ * 
+ *         <p>
+ *         Encounters are passed to a listener, in time order, as they are
+ *         found, so memory does not grow with the length of the routes. A
+ *         closest approach is created only for an encounter nearer than the
+ *         threshold.
+ *         </p>
+ */
+public class EncounterEnumerator {
+
+	/**
+	 * Receives encounters.
+	 */
+	public static interface EncounterListener {
+		/**
+		 * 
+		 * @param approach The closest approach of an encounter (with a time and way
+		 *                 points, even for parallel motion).
+		 */
+		void encounter(ClosestApproach approach);
+	}
+
+	private EncounterEnumerator() {
+		super();
+	}
+
+	/**
+	 * As {@link #enumerate(Route, Route, double, EncounterListener)}, for routes
+	 * given as lists of way points.
+	 * 
+	 * @param route1    The route for object 1 (two or more way points, with
+	 *                  increasing times).
+	 * @param route2    The route for object 2.
+	 * @param threshold Only encounters nearer than this distance are reported
+	 *                  (positive infinity for all).
+	 * @param listener  Receives the encounters, in time order.
+	 */
+	public static void enumerate(List<WayPoint> route1, List<WayPoint> route2, double threshold,
+			EncounterListener listener) {
+		enumerate(new ListRoute(route1), new ListRoute(route2), threshold, listener);
+	}
+
+	/**
+	 * Report the encounters between two objects nearer than a threshold.
+	 * 
+	 * @param route1    The route for object 1 (two or more way points, with
+	 *                  increasing times).
+	 * @param route2    The route for object 2.
+	 * @param threshold Only encounters nearer than this distance are reported
+	 *                  (positive infinity for all).
+	 * @param listener  Receives the encounters, in time order.
+	 */
+	public static void enumerate(Route route1, Route route2, double threshold, EncounterListener listener) {
+		AlignedSegments segments = new AlignedSegments(route1, route2);
+		if (segments.isEmpty()) {
+			// The two routes do not overlap in time.
+			return;
+		} else if (!segments.hasNext()) {
+			// The end time of one route is the start time of the other.
+			if (VectorUtils.distance(segments.getEnd1(), segments.getEnd2()) < threshold) {
+				long time = segments.getEndTime();
+				listener.encounter(new ClosestApproach(new WayPoint(time, segments.getEnd1().clone()),
+						new WayPoint(time, segments.getEnd2().clone())));
+			}
+			return;
+		}
+
+		// Whether the separation is decreasing (or constant after decreasing) at the
+		// start of the current segment; the start of the common period counts as
+		// decreasing.
+		boolean descending = true;
+		// Whether the current segment continues a run of parallel motion reached while
+		// descending, and the encounter at the start of the run (null if not nearer
+		// than the threshold).
+		boolean inPlateau = false;
+		ClosestApproach plateau = null;
+		while (segments.next()) {
+			double closestK = segments.closestK();
+			boolean last = !segments.hasNext();
+			if (Double.isNaN(closestK)) {
+				if (descending && !inPlateau) {
+					inPlateau = true;
+					plateau = approach(segments, 0, threshold);
+				}
+				if (last && inPlateau) {
+					report(plateau, listener);
+				}
+			} else if (closestK == 0) {
+				// Increasing throughout the segment.
+				if (inPlateau) {
+					report(plateau, listener);
+				} else if (descending) {
+					report(approach(segments, 0, threshold), listener);
+				}
+				inPlateau = false;
+				plateau = null;
+				descending = false;
+			} else if (closestK < 1) {
+				// Decreasing, then increasing.
+				report(approach(segments, closestK, threshold), listener);
+				inPlateau = false;
+				plateau = null;
+				descending = false;
+			} else {
+				// Decreasing throughout the segment.
+				inPlateau = false;
+				plateau = null;
+				descending = true;
+				if (last) {
+					report(approach(segments, 1, threshold), listener);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return The closest approach in the current segment at an interpolation
+	 *         parameter, or null if not nearer than the threshold.
+	 */
+	private static ClosestApproach approach(AlignedSegments segments, double k, double threshold) {
+		double distance = DetermineClosestApproachBetweenLinearSegments.distance(segments.getStart1(),
+				segments.getEnd1(), segments.getStart2(), segments.getEnd2(), k);
+		if (distance < threshold) {
+			return segments.closestApproach(k);
+		} else {
+			return null;
+		}
+	}
+
+	private static void report(ClosestApproach approach, EncounterListener listener) {
+		if (approach != null) {
+			listener.encounter(approach);
+		}
+	}
+}
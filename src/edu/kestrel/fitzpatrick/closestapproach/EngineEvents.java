@@ -0,0 +1,272 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Timed events of the closest-approach engine, passed to a listener so
+ *         that latency spikes can be correlated with the inputs that caused
+ *         them: route-pair evaluations (by
+ *         {@link DetermineClosestApproachBetweenRoutes}), fleet batches (by
+ *         {@link RouteVariantScorer#score(java.util.List)}), index builds (of
+ *         {@link SpaceTimeIndex}) and ingest chunks (of
+ *         {@link RouteCsvLoader}). An {@link EventRecorder} keeps the most
+ *         recent events, like a flight recorder; a listener may equally forward
+ *         events to a platform event system (e.g., as JDK Flight Recorder
+ *         events, on JDKs that have it).
+ *         </p>
+ * 
+ *         <p>
+ *         Route-pair evaluations are too frequent to report each one, so they
+ *         are sampled: one is reported if it took at least a threshold duration
+ *         (so every slow evaluation is reported), or otherwise with a
+ *         probability of one in a sampling interval. The other events are
+ *         always reported.
+ *         </p>
+ * 
+ *         <p>
+ *         Events are disabled (there is no listener) by default; while
+ *         disabled, each instrumented site costs a read of a static field.
+ *         Listeners are called on the thread that did the work, so must be
+ *         thread safe.
+ *         </p>
+ */
+public class EngineEvents {
+
+	/**
+	 * The types of event.
+	 */
+	public static enum Type {
+		/**
+		 * A closest-approach computation between two routes: the sizes are the
+		 * routes' way point counts, and the segments are the aligned segments.
+		 */
+		PAIR_EVALUATION,
+		/**
+		 * A batch of variants scored against the traffic: the sizes are the numbers
+		 * of variants and of traffic routes, and the pairs evaluated and pruned are
+		 * counted.
+		 */
+		FLEET_BATCH,
+		/**
+		 * The building of a space-time index: the sizes are the numbers of routes and
+		 * of way points.
+		 */
+		INDEX_BUILD,
+		/**
+		 * The parsing of a chunk of a route file: the sizes are the chunk's bytes and
+		 * rows.
+		 */
+		INGEST_CHUNK
+	}
+
+	/**
+	 * An event. Fields that do not apply to the event's type are 0.
+	 */
+	public static class Event {
+		private final Type type;
+		private final long startNanos;
+		private final long durationNanos;
+		private final long size1;
+		private final long size2;
+		private final long segments;
+		private final long evaluated;
+		private final long pruned;
+
+		/**
+		 * 
+		 * @param type          The type of event.
+		 * @param startNanos    The {@link System#nanoTime()} at the start.
+		 * @param durationNanos The duration, in nanoseconds.
+		 * @param size1         The first size (see {@link Type}).
+		 * @param size2         The second size.
+		 * @param segments      The number of aligned segments.
+		 * @param evaluated     The number of route pairs evaluated.
+		 * @param pruned        The number of route pairs pruned.
+		 */
+		public Event(Type type, long startNanos, long durationNanos, long size1, long size2, long segments,
+				long evaluated, long pruned) {
+			super();
+			this.type = type;
+			this.startNanos = startNanos;
+			this.durationNanos = durationNanos;
+			this.size1 = size1;
+			this.size2 = size2;
+			this.segments = segments;
+			this.evaluated = evaluated;
+			this.pruned = pruned;
+		}
+
+		/**
+		 * 
+		 * @return The type of event.
+		 */
+		public Type getType() {
+			return type;
+		}
+
+		/**
+		 * 
+		 * @return The {@link System#nanoTime()} at the start.
+		 */
+		public long getStartNanos() {
+			return startNanos;
+		}
+
+		/**
+		 * 
+		 * @return The duration, in nanoseconds.
+		 */
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		/**
+		 * 
+		 * @return The first size (see {@link Type}).
+		 */
+		public long getSize1() {
+			return size1;
+		}
+
+		/**
+		 * 
+		 * @return The second size (see {@link Type}).
+		 */
+		public long getSize2() {
+			return size2;
+		}
+
+		/**
+		 * 
+		 * @return The number of aligned segments.
+		 */
+		public long getSegments() {
+			return segments;
+		}
+
+		/**
+		 * 
+		 * @return The number of route pairs evaluated.
+		 */
+		public long getEvaluated() {
+			return evaluated;
+		}
+
+		/**
+		 * 
+		 * @return The number of route pairs pruned.
+		 */
+		public long getPruned() {
+			return pruned;
+		}
+
+		/**
+		 * 
+		 * @return The fraction of route pairs pruned (0 if none were considered).
+		 */
+		public double getPruneRatio() {
+			long pairs = evaluated + pruned;
+			return pairs == 0 ? 0 : (double) pruned / pairs;
+		}
+	}
+
+	/**
+	 * Receives events.
+	 */
+	public static interface EngineEventListener {
+		/**
+		 * 
+		 * @param event An event.
+		 */
+		void event(Event event);
+	}
+
+	// Whether events are reported (i.e., there is a listener). Not volatile, so that
+	// disabled checks are as cheap as possible.
+	static boolean enabled;
+
+	// The listener and its reporting parameters (null if disabled), published
+	// together, so that a reader sees a consistent configuration.
+	private static volatile Configuration configuration;
+
+	private EngineEvents() {
+		super();
+	}
+
+	/**
+	 * Report events to a listener.
+	 * 
+	 * @param listener         The listener (null to disable events).
+	 * @param thresholdNanos   Route-pair evaluations that take at least this long
+	 *                         are always reported.
+	 * @param samplingInterval Other route-pair evaluations are reported with
+	 *                         probability 1 / samplingInterval (positive; 1 to
+	 *                         report all).
+	 */
+	public static synchronized void setListener(EngineEventListener listener, long thresholdNanos,
+			int samplingInterval) {
+		assert samplingInterval >= 1;
+		configuration = listener == null ? null : new Configuration(listener, thresholdNanos, samplingInterval);
+		enabled = listener != null;
+	}
+
+	/**
+	 * Report a route-pair evaluation, if sampled. Call only if enabled.
+	 * 
+	 * @param startNanos The {@link System#nanoTime()} at the start.
+	 * @param size1      The size of route 1.
+	 * @param size2      The size of route 2.
+	 * @param segments   The number of aligned segments.
+	 */
+	static void pairEvaluation(long startNanos, int size1, int size2, int segments) {
+		Configuration current = configuration;
+		if (current == null) {
+			return;
+		}
+		long duration = System.nanoTime() - startNanos;
+		if (duration >= current.thresholdNanos || current.samplingInterval == 1
+				|| ThreadLocalRandom.current().nextInt(current.samplingInterval) == 0) {
+			current.listener
+					.event(new Event(Type.PAIR_EVALUATION, startNanos, duration, size1, size2, segments, 0, 0));
+		}
+	}
+
+	/**
+	 * Report an event (other than a route-pair evaluation) that ends now. Call only
+	 * if enabled.
+	 * 
+	 * @param type       The type of event.
+	 * @param startNanos The {@link System#nanoTime()} at the start.
+	 * @param size1      The first size.
+	 * @param size2      The second size.
+	 * @param evaluated  The number of route pairs evaluated.
+	 * @param pruned     The number of route pairs pruned.
+	 */
+	static void event(Type type, long startNanos, long size1, long size2, long evaluated, long pruned) {
+		Configuration current = configuration;
+		if (current != null) {
+			current.listener.event(
+					new Event(type, startNanos, System.nanoTime() - startNanos, size1, size2, 0, evaluated, pruned));
+		}
+	}
+
+	/**
+	 * A listener and its reporting parameters. Immutable.
+	 */
+	private static class Configuration {
+		private final EngineEventListener listener;
+		private final long thresholdNanos;
+		private final int samplingInterval;
+
+		private Configuration(EngineEventListener listener, long thresholdNanos, int samplingInterval) {
+			super();
+			this.listener = listener;
+			this.thresholdNanos = thresholdNanos;
+			this.samplingInterval = samplingInterval;
+		}
+	}
+}
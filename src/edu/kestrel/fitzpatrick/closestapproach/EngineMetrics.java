@@ -0,0 +1,266 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Counters and histograms of the work done by the closest-approach
+ *         engine: calls of the segment kernel
+ *         ({@link DetermineClosestApproachBetweenLinearSegments#computeClosestK(double[], double[])}),
+ *         the number of those that were (effectively) parallel motion, calls of
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(Route, Route)}
+ *         (and its variants) with their latencies and aligned segment counts,
+ *         and the route pairs evaluated and pruned by the callers that prune
+ *         ({@link RouteVariantScorer}, {@link StreamingConflictDetector}).
+ *         </p>
+ * 
+ *         <p>
+ *         Metrics are disabled by default; while disabled, each instrumented
+ *         site costs a read of a static field. Counters are {@link LongAdder}s,
+ *         which keep contended updates in per-thread cells, so threads do not
+ *         contend on a shared counter. A histogram has a bucket for each power
+ *         of two.
+ *         </p>
+ * 
+ *         <p>
+ *         A snapshot of the metrics is available as a map, or as Prometheus
+ *         text, which {@link #serve(int)} publishes over HTTP.
+ *         </p>
+ */
+public class EngineMetrics {
+	// Whether metrics are recorded. Not volatile, so that disabled checks are as
+	// cheap as possible; a change is seen by other threads eventually.
+	static boolean enabled;
+
+	private static final LongAdder segmentKernelCalls = new LongAdder();
+	private static final LongAdder parallelMotion = new LongAdder();
+	private static final LongAdder pairComputations = new LongAdder();
+	private static final LongAdder alignedSegments = new LongAdder();
+	private static final LongAdder pairsEvaluated = new LongAdder();
+	private static final LongAdder pairsPruned = new LongAdder();
+	private static final Histogram pairLatency = new Histogram();
+	private static final Histogram alignedSegmentsPerPair = new Histogram();
+
+	private EngineMetrics() {
+		super();
+	}
+
+	/**
+	 * 
+	 * @param enabled Whether to record metrics.
+	 */
+	public static void setEnabled(boolean enabled) {
+		EngineMetrics.enabled = enabled;
+	}
+
+	/**
+	 * 
+	 * @return Whether metrics are recorded.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Reset all metrics to zero.
+	 */
+	public static void reset() {
+		segmentKernelCalls.reset();
+		parallelMotion.reset();
+		pairComputations.reset();
+		alignedSegments.reset();
+		pairsEvaluated.reset();
+		pairsPruned.reset();
+		pairLatency.reset();
+		alignedSegmentsPerPair.reset();
+	}
+
+	/**
+	 * Record a call of the segment kernel. Call only if enabled.
+	 * 
+	 * @param parallel Whether the motion was (effectively) parallel.
+	 */
+	static void segmentKernelCall(boolean parallel) {
+		segmentKernelCalls.increment();
+		if (parallel) {
+			parallelMotion.increment();
+		}
+	}
+
+	/**
+	 * Record a closest-approach computation between two routes. Call only if
+	 * enabled.
+	 * 
+	 * @param startNanos The {@link System#nanoTime()} when the computation
+	 *                   started.
+	 * @param segments   The number of aligned segments.
+	 */
+	static void pairComputation(long startNanos, int segments) {
+		pairLatency.record(System.nanoTime() - startNanos);
+		pairComputations.increment();
+		alignedSegments.add(segments);
+		alignedSegmentsPerPair.record(segments);
+	}
+
+	/**
+	 * Record route pairs evaluated and pruned by a caller. Call only if enabled.
+	 * 
+	 * @param evaluated The number of pairs evaluated.
+	 * @param pruned    The number of pairs pruned (not evaluated).
+	 */
+	static void pairs(long evaluated, long pruned) {
+		pairsEvaluated.add(evaluated);
+		pairsPruned.add(pruned);
+	}
+
+	/**
+	 * 
+	 * @return The counters (and the counts and sums of the histograms), by
+	 *         Prometheus name.
+	 */
+	public static Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<>();
+		snapshot.put("closestapproach_segment_kernel_calls_total", segmentKernelCalls.sum());
+		snapshot.put("closestapproach_parallel_motion_total", parallelMotion.sum());
+		snapshot.put("closestapproach_pair_computations_total", pairComputations.sum());
+		snapshot.put("closestapproach_aligned_segments_total", alignedSegments.sum());
+		snapshot.put("closestapproach_pairs_evaluated_total", pairsEvaluated.sum());
+		snapshot.put("closestapproach_pairs_pruned_total", pairsPruned.sum());
+		snapshot.put("closestapproach_pair_latency_nanoseconds_count", pairLatency.count());
+		snapshot.put("closestapproach_pair_latency_nanoseconds_sum", pairLatency.sum());
+		snapshot.put("closestapproach_aligned_segments_per_pair_count", alignedSegmentsPerPair.count());
+		snapshot.put("closestapproach_aligned_segments_per_pair_sum", alignedSegmentsPerPair.sum());
+		return snapshot;
+	}
+
+	/**
+	 * 
+	 * @return The metrics in the Prometheus text exposition format.
+	 */
+	public static String toPrometheus() {
+		StringBuilder text = new StringBuilder();
+		counter(text, "closestapproach_segment_kernel_calls_total", "Calls of the segment closest-approach kernel.",
+				segmentKernelCalls);
+		counter(text, "closestapproach_parallel_motion_total", "Segment kernel calls with parallel motion.",
+				parallelMotion);
+		counter(text, "closestapproach_pair_computations_total", "Closest-approach computations between routes.",
+				pairComputations);
+		counter(text, "closestapproach_aligned_segments_total", "Aligned segments of route pairs computed.",
+				alignedSegments);
+		counter(text, "closestapproach_pairs_evaluated_total", "Route pairs evaluated by pruning callers.",
+				pairsEvaluated);
+		counter(text, "closestapproach_pairs_pruned_total", "Route pairs pruned by pruning callers.", pairsPruned);
+		pairLatency.toPrometheus(text, "closestapproach_pair_latency_nanoseconds",
+				"Latency of closest-approach computations between routes.");
+		alignedSegmentsPerPair.toPrometheus(text, "closestapproach_aligned_segments_per_pair",
+				"Aligned segments per closest-approach computation.");
+		return text.toString();
+	}
+
+	private static void counter(StringBuilder text, String name, String help, LongAdder counter) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(" counter\n");
+		text.append(name).append(' ').append(counter.sum()).append('\n');
+	}
+
+	/**
+	 * Serve the metrics, in Prometheus text format, at /metrics on the loopback
+	 * address.
+	 * 
+	 * @param port The port (0 for any free port).
+	 * @return The server, already started; stop it when done.
+	 * @throws IOException If the server cannot be started.
+	 */
+	public static HttpServer serve(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", exchange -> {
+			byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	/**
+	 * A histogram of non-negative values, with a bucket for each power of two:
+	 * bucket b counts values v with 2^(b-1) &lt; v &le; 2^b (bucket 0 counts 0 and
+	 * 1; the last bucket also counts any larger values).
+	 */
+	static class Histogram {
+		private static final int N_BUCKETS = 63;
+
+		private final LongAdder[] buckets = new LongAdder[N_BUCKETS];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+
+		Histogram() {
+			super();
+			for (int b = 0; b < N_BUCKETS; b++) {
+				buckets[b] = new LongAdder();
+			}
+		}
+
+		void record(long value) {
+			long v = Math.max(0, value);
+			int bucket = v <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(v - 1);
+			buckets[Math.min(bucket, N_BUCKETS - 1)].increment();
+			count.increment();
+			sum.add(v);
+		}
+
+		long count() {
+			return count.sum();
+		}
+
+		long sum() {
+			return sum.sum();
+		}
+
+		void reset() {
+			for (LongAdder bucket : buckets) {
+				bucket.reset();
+			}
+			count.reset();
+			sum.reset();
+		}
+
+		void toPrometheus(StringBuilder text, String name, String help) {
+			text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+			text.append("# TYPE ").append(name).append(" histogram\n");
+			// Report buckets up to the last non-empty one.
+			long[] counts = new long[N_BUCKETS];
+			int last = 0;
+			for (int b = 0; b < N_BUCKETS; b++) {
+				counts[b] = buckets[b].sum();
+				if (counts[b] > 0) {
+					last = b;
+				}
+			}
+			long cumulative = 0;
+			for (int b = 0; b <= last; b++) {
+				cumulative += counts[b];
+				text.append(name).append("_bucket{le=\"").append(1L << b).append("\"} ").append(cumulative)
+						.append('\n');
+			}
+			text.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+			text.append(name).append("_sum ").append(sum()).append('\n');
+			text.append(name).append("_count ").append(cumulative).append('\n');
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.kestrel.fitzpatrick.closestapproach.EngineEvents.EngineEventListener;
+import edu.kestrel.fitzpatrick.closestapproach.EngineEvents.Event;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Keeps the most recent engine events (see {@link EngineEvents}) in a
+ *         ring buffer of fixed capacity, so that a recording can be dumped, as
+ *         CSV, after a latency spike. Thread safe.
+ *         </p>
+ */
+public class EventRecorder implements EngineEventListener {
+	private final Event[] events;
+	// The number of events recorded (the next is stored at count mod capacity).
+	private long count;
+
+	/**
+	 * 
+	 * @param capacity The number of events kept (positive).
+	 */
+	public EventRecorder(int capacity) {
+		super();
+		assert capacity > 0;
+		events = new Event[capacity];
+	}
+
+	@Override
+	public synchronized void event(Event event) {
+		events[(int) (count % events.length)] = event;
+		count++;
+	}
+
+	/**
+	 * 
+	 * @return The number of events recorded (including those no longer kept).
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * 
+	 * @return The events kept, oldest first.
+	 */
+	public synchronized List<Event> getEvents() {
+		List<Event> kept = new ArrayList<>();
+		for (long i = Math.max(0, count - events.length); i < count; i++) {
+			kept.add(events[(int) (i % events.length)]);
+		}
+		return kept;
+	}
+
+	/**
+	 * Discard all events.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < events.length; i++) {
+			events[i] = null;
+		}
+		count = 0;
+	}
+
+	/**
+	 * Write the events kept, oldest first, as CSV with a header line.
+	 * 
+	 * @param file The file to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeCsv(Path file) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("type,start_nanos,duration_nanos,size1,size2,segments,evaluated,pruned,prune_ratio\n");
+			for (Event event : getEvents()) {
+				out.write(event.getType() + "," + event.getStartNanos() + "," + event.getDurationNanos() + ","
+						+ event.getSize1() + "," + event.getSize2() + "," + event.getSegments() + ","
+						+ event.getEvaluated() + "," + event.getPruned() + "," + event.getPruneRatio() + "\n");
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A {@link Route} with single-precision coordinates, for screening: each
+ *         coordinate is held as a float relative to an origin for the route (the
+ *         centre of its bounding box), so that the precision is that of the
+ *         route's extent rather than of its distance from the coordinate
+ *         system's origin, in half the memory of double coordinates.
+ *         </p>
+ * 
+ *         <p>
+ *         The route records a rigorous bound on its error: at every instant, the
+ *         position interpolated along this route (as by {@link AlignedSegments})
+ *         is within {@link #getError()} of the position interpolated along the
+ *         original route. The positions interpolated along both are convex
+ *         combinations of way points, so the bound is the greatest error in any
+ *         way point, plus a margin, relative to the magnitudes of the
+ *         coordinates, for rounding in the interpolation.
+ *         </p>
+ * 
+ *         <p>
+ *         See
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(Route, FloatRoute, Route, FloatRoute, double)}.
+ *         </p>
+ */
+public class FloatRoute implements Route {
+	// The margin, relative to the magnitudes of the coordinates, for rounding in
+	// the interpolation of positions.
+	private static final double ROUNDING_MARGIN = 1e-9;
+
+	private final long[] times;
+	private final float[] offsets;
+	private final double[] origin;
+	private final int dimensions;
+	private final double error;
+
+	/**
+	 * Convert a route to single precision.
+	 * 
+	 * @param route A route (two or more way points, with increasing times).
+	 */
+	public FloatRoute(Route route) {
+		super();
+		assert route.size() >= 2;
+		int size = route.size();
+		dimensions = route.dimensions();
+		times = new long[size];
+		offsets = new float[size * dimensions];
+
+		// The origin is the centre of the bounding box.
+		double[] min = new double[dimensions];
+		double[] max = new double[dimensions];
+		for (int d = 0; d < dimensions; d++) {
+			min[d] = Double.POSITIVE_INFINITY;
+			max[d] = Double.NEGATIVE_INFINITY;
+		}
+		for (int i = 0; i < size; i++) {
+			for (int d = 0; d < dimensions; d++) {
+				double coordinate = route.getCoordinate(i, d);
+				min[d] = Math.min(min[d], coordinate);
+				max[d] = Math.max(max[d], coordinate);
+			}
+		}
+		origin = new double[dimensions];
+		double magnitude = 0;
+		for (int d = 0; d < dimensions; d++) {
+			origin[d] = min[d] + (max[d] - min[d]) / 2;
+			magnitude += Math.max(Math.abs(min[d]), Math.abs(max[d]));
+		}
+
+		double maxError = 0;
+		for (int i = 0; i < size; i++) {
+			times[i] = route.getTime(i);
+			double sumSqr = 0;
+			for (int d = 0; d < dimensions; d++) {
+				double coordinate = route.getCoordinate(i, d);
+				float offset = (float) (coordinate - origin[d]);
+				offsets[i * dimensions + d] = offset;
+				double di = (origin[d] + offset) - coordinate;
+				sumSqr += di * di;
+			}
+			maxError = Math.max(maxError, Math.sqrt(sumSqr));
+		}
+		error = maxError + ROUNDING_MARGIN * (1 + magnitude);
+	}
+
+	/**
+	 * 
+	 * @return The greatest distance, at any instant, between the positions
+	 *         interpolated along this route and along the original route.
+	 */
+	public double getError() {
+		return error;
+	}
+
+	@Override
+	public int size() {
+		return times.length;
+	}
+
+	@Override
+	public int dimensions() {
+		return dimensions;
+	}
+
+	@Override
+	public long getTime(int i) {
+		return times[i];
+	}
+
+	@Override
+	public double getCoordinate(int i, int dimension) {
+		return origin[dimension] + offsets[i * dimensions + dimension];
+	}
+}
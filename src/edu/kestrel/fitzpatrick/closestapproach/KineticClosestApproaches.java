@@ -0,0 +1,743 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Keeps track of the closest pair of objects, and of all pairs of
+ *         objects that are closer than a threshold distance, as time advances
+ *         through the objects' routes.
+ *         </p>
+ * 
+ *         <p>
+ *         Between way points, two objects move uniformly, so the square of their
+ *         separation is a quadratic function of time - the same quadratic whose
+ *         minimum is found by
+ *         {@link DetermineClosestApproachBetweenLinearSegments#computeClosestK(double[], double[], double[], double[])}.
+ *         Rather than recomputing every pair's separation at every tick, this
+ *         class is event driven (a "kinetic" data structure): it maintains a
+ *         set of certificates - facts that remain true until some computable
+ *         failure time - and a queue of events ordered by time. Advancing time
+ *         only processes the events that actually occur before the new time.
+ *         There are three kinds of event:
+ *         </p>
+ * 
+ *         <ul>
+ *         <li>Segment boundary: an object reaches a way point (or starts or
+ *         finishes its route). Only the pairs involving that object have their
+ *         quadratics recomputed.</li>
+ *         <li>Threshold crossing: a pair's separation becomes less than, or no
+ *         longer less than, the threshold distance.</li>
+ *         <li>Tournament: the pairs are the leaves of a binary tournament tree,
+ *         each internal node holding the closer of its two children's pairs. A
+ *         node's certificate fails when the other child's pair becomes the
+ *         closer one.</li>
+ *         </ul>
+ * 
+ *         <p>
+ *         The closest pair is the winner at the root of the tournament. The
+ *         structure has a leaf per pair of objects, so is intended for fleets of
+ *         up to a few thousand objects.
+ *         </p>
+ * 
+ *         <p>
+ *         Objects are identified by the index of their route in the list given
+ *         to the constructor. An object takes part from the time of its first
+ *         way point until the time of its last way point.
+ *         </p>
+ * 
+ *         <p>
+ *         Not thread safe.
+ *         </p>
+ */
+public class KineticClosestApproaches {
+
+	/**
+	 * Notified when a pair of objects comes within, or leaves, the threshold
+	 * distance.
+	 */
+	public static interface ProximityListener {
+		/**
+		 * 
+		 * @param route1 The index of the first object's route (the smaller index).
+		 * @param route2 The index of the second object's route.
+		 * @param time   The (possibly fractional) time of the change.
+		 * @param within Whether the objects are now closer than the threshold.
+		 */
+		void proximityChanged(int route1, int route2, double time, boolean within);
+	}
+
+	// The objects' routes.
+	private final List<List<WayPoint>> routes;
+	// The number of objects.
+	private final int n;
+	// The number of pairs of objects.
+	private final int nPairs;
+	// The square of the threshold distance.
+	private final double threshold2;
+
+	// The objects in each pair, by pair index (smaller route index first). Pairs
+	// are numbered row by row: (0,1), (0,2), ..., (0,n-1), (1,2), ...
+	private final int[] firsts;
+	private final int[] seconds;
+
+	// The current time.
+	private double now;
+
+	// For each object, the index of the way point that starts its current segment;
+	// -1 before the route starts, route size - 1 once it has finished.
+	private final int[] segments;
+
+	// For each pair, the square of the separation as a quadratic a.tau^2 + b.tau +
+	// c, where tau is the time since origins[pair]. NaN coefficients indicate that
+	// at least one of the pair is not moving along its route.
+	private final double[] a;
+	private final double[] b;
+	private final double[] c;
+	private final long[] origins;
+
+	// For each pair, whether the objects are closer than the threshold.
+	private final boolean[] within;
+	// The number of pairs closer than the threshold.
+	private int nWithin;
+
+	// The tournament tree, stored as an implicit binary tree: node 1 is the root,
+	// node k has children 2k and 2k + 1, and the leaves start at node nLeaves. Each
+	// node holds the winning pair (-1 if none).
+	private final int nLeaves;
+	private final int[] winners;
+
+	// The event queue. Each certificate has a fixed identifier: object boundaries
+	// are [0, n), threshold crossings are n + pair, tournament nodes are n + nPairs
+	// + node.
+	private final EventQueue events;
+
+	// Notified of threshold crossings (may be null).
+	private ProximityListener listener;
+
+	// The number of events processed.
+	private long nEvents;
+
+	/**
+	 * Create a kinetic structure for objects following the given routes, starting
+	 * at the given time.
+	 * 
+	 * @param routes    The routes (each with two or more way points, with
+	 *                  increasing times, all of the same dimensionality).
+	 * @param threshold The threshold distance: pairs closer than this are tracked.
+	 * @param startTime The initial time.
+	 */
+	public KineticClosestApproaches(List<List<WayPoint>> routes, double threshold, long startTime) {
+		super();
+		assert threshold >= 0;
+		this.routes = routes;
+		n = routes.size();
+		nPairs = n * (n - 1) / 2;
+		threshold2 = threshold * threshold;
+		now = startTime;
+
+		firsts = new int[nPairs];
+		seconds = new int[nPairs];
+		for (int i = 0, p = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++, p++) {
+				firsts[p] = i;
+				seconds[p] = j;
+			}
+		}
+
+		segments = new int[n];
+		a = new double[nPairs];
+		b = new double[nPairs];
+		c = new double[nPairs];
+		origins = new long[nPairs];
+		within = new boolean[nPairs];
+
+		int leaves = 1;
+		while (leaves < nPairs) {
+			leaves *= 2;
+		}
+		nLeaves = leaves;
+		winners = new int[2 * nLeaves];
+		Arrays.fill(winners, -1);
+		events = new EventQueue(n + nPairs + nLeaves);
+
+		// Place each object on its route.
+		for (int o = 0; o < n; o++) {
+			List<WayPoint> route = routes.get(o);
+			assert route.size() >= 2;
+			segments[o] = segmentAt(route, startTime);
+			scheduleBoundary(o);
+		}
+		// Initialize the pairs' separations, their threshold certificates and the
+		// tournament.
+		for (int p = 0; p < nPairs; p++) {
+			updateMotion(p, startTime);
+			winners[nLeaves + p] = p;
+			within[p] = isBelowThreshold(p);
+			if (within[p]) {
+				nWithin++;
+			}
+			scheduleThreshold(p);
+		}
+		for (int node = nLeaves - 1; node >= 1; node--) {
+			updateNode(node);
+		}
+	}
+
+	/**
+	 * 
+	 * @param listener Notified of threshold crossings from now on (may be null).
+	 */
+	public void setListener(ProximityListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 
+	 * @return The current time. (After processing an event, the time may be
+	 *         fractional.)
+	 */
+	public double getTime() {
+		return now;
+	}
+
+	/**
+	 * 
+	 * @return The number of events processed so far.
+	 */
+	public long getEventCount() {
+		return nEvents;
+	}
+
+	/**
+	 * Advance to the given time, processing all of the events that occur no later
+	 * than that time.
+	 * 
+	 * @param time The new time (no earlier than the current time).
+	 */
+	public void advance(double time) {
+		assert time >= now;
+		while (!events.isEmpty() && events.peekTime() <= time) {
+			double eventTime = events.peekTime();
+			int certificate = events.poll();
+			now = Math.max(now, eventTime);
+			nEvents++;
+			if (certificate < n) {
+				processBoundary(certificate);
+			} else if (certificate < n + nPairs) {
+				processThreshold(certificate - n);
+			} else {
+				processTournament(certificate - n - nPairs);
+			}
+		}
+		now = time;
+	}
+
+	/**
+	 * 
+	 * @return The route indices of the closest pair of objects at the current
+	 *         time, smaller index first; null if fewer than two objects are moving
+	 *         along their routes.
+	 */
+	public int[] closestPair() {
+		int p = winners[1];
+		if (p < 0 || Double.isNaN(a[p])) {
+			return null;
+		}
+		return pairObjects(p);
+	}
+
+	/**
+	 * 
+	 * @return The distance between the closest pair of objects at the current
+	 *         time; infinite if fewer than two objects are moving along their
+	 *         routes.
+	 */
+	public double closestDistance() {
+		int p = winners[1];
+		return p < 0 ? Double.POSITIVE_INFINITY : Math.sqrt(Math.max(0, distance2(p, now)));
+	}
+
+	/**
+	 * 
+	 * @return The route indices of each pair of objects that are closer than the
+	 *         threshold distance at the current time, smaller index first.
+	 */
+	public List<int[]> pairsWithin() {
+		List<int[]> pairs = new ArrayList<>(nWithin);
+		for (int p = 0; p < nPairs; p++) {
+			if (within[p]) {
+				pairs.add(pairObjects(p));
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * 
+	 * @param route1 The index of a route.
+	 * @param route2 The index of a different route.
+	 * @return Whether the two objects are closer than the threshold distance at
+	 *         the current time.
+	 */
+	public boolean isWithin(int route1, int route2) {
+		return within[pairIndex(route1, route2)];
+	}
+
+	/**
+	 * 
+	 * @param route1 The index of a route.
+	 * @param route2 The index of a different route.
+	 * @return The distance between the two objects at the current time; infinite
+	 *         if either is not moving along its route.
+	 */
+	public double distance(int route1, int route2) {
+		return Math.sqrt(Math.max(0, distance2(pairIndex(route1, route2), now)));
+	}
+
+	/**
+	 * An object reaches the end of its current segment.
+	 * 
+	 * @param o The object.
+	 */
+	private void processBoundary(int o) {
+		segments[o]++;
+		scheduleBoundary(o);
+		long time = routes.get(o).get(segments[o]).getTime();
+		// Only the pairs involving this object change their motion.
+		for (int other = 0; other < n; other++) {
+			if (other != o) {
+				int p = pairIndex(o, other);
+				updateMotion(p, time);
+				checkThreshold(p);
+				scheduleThreshold(p);
+				for (int node = (nLeaves + p) / 2; node >= 1; node /= 2) {
+					updateNode(node);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A pair crosses the threshold distance.
+	 * 
+	 * @param p The pair.
+	 */
+	private void processThreshold(int p) {
+		checkThreshold(p);
+		scheduleThreshold(p);
+	}
+
+	/**
+	 * The winner at a tournament node changes.
+	 * 
+	 * @param node The node.
+	 */
+	private void processTournament(int node) {
+		for (; node >= 1; node /= 2) {
+			updateNode(node);
+		}
+	}
+
+	/**
+	 * Bring a pair's threshold status up to date (notifying the listener of any
+	 * change).
+	 * 
+	 * @param p The pair.
+	 */
+	private void checkThreshold(int p) {
+		boolean below = isBelowThreshold(p);
+		if (below != within[p]) {
+			within[p] = below;
+			nWithin += below ? 1 : -1;
+			if (listener != null) {
+				listener.proximityChanged(firsts[p], seconds[p], now, below);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param p A pair.
+	 * @return Whether the pair are closer than the threshold now (or just after
+	 *         now, if they are exactly at the threshold).
+	 */
+	private boolean isBelowThreshold(int p) {
+		if (Double.isNaN(a[p])) {
+			return false;
+		}
+		double tau = now - origins[p];
+		return isNegativeJustAfter(a[p], 2 * a[p] * tau + b[p], distance2(p, now) - threshold2);
+	}
+
+	/**
+	 * Schedule the next threshold crossing for a pair, if any, before the pair's
+	 * motion next changes.
+	 * 
+	 * @param p The pair.
+	 */
+	private void scheduleThreshold(int p) {
+		double time = Double.POSITIVE_INFINITY;
+		if (!Double.isNaN(a[p])) {
+			double tau = now - origins[p];
+			double a0 = a[p];
+			double b0 = 2 * a[p] * tau + b[p];
+			double c0 = distance2(p, now) - threshold2;
+			// The crossing is when (d^2 - D^2) next changes sign.
+			double delta = within[p] ? nextPositive(a0, b0, c0) : nextPositive(-a0, -b0, -c0);
+			time = later(delta);
+		}
+		events.update(n + p, time);
+	}
+
+	/**
+	 * Recompute the winner at a tournament node, and the time at which the loser
+	 * will overtake the winner.
+	 * 
+	 * @param node An internal node.
+	 */
+	private void updateNode(int node) {
+		int left = winners[2 * node];
+		int right = winners[2 * node + 1];
+		double time = Double.POSITIVE_INFINITY;
+		int winner;
+		if (left < 0 || isNaN(left)) {
+			winner = (right < 0 || isNaN(right)) ? Math.max(left, right) : right;
+		} else if (right < 0 || isNaN(right)) {
+			winner = left;
+		} else {
+			// Compare the two pairs' quadratics, relative to now.
+			double aL = a[left];
+			double bL = 2 * a[left] * (now - origins[left]) + b[left];
+			double cL = distance2(left, now);
+			double aR = a[right];
+			double bR = 2 * a[right] * (now - origins[right]) + b[right];
+			double cR = distance2(right, now);
+			// The difference (left - right): left wins while it is not positive.
+			double dA = aL - aR;
+			double dB = bL - bR;
+			double dC = cL - cR;
+			if (!isPositiveJustAfter(dA, dB, dC)) {
+				winner = left;
+				time = later(nextPositive(dA, dB, dC));
+			} else {
+				winner = right;
+				time = later(nextPositive(-dA, -dB, -dC));
+			}
+		}
+		winners[node] = winner;
+		events.update(n + nPairs + node, time);
+	}
+
+	/**
+	 * 
+	 * @param delta A (non-negative) period.
+	 * @return The time the period after now. Always later than now: a certificate
+	 *         cannot fail at the time it is (re)computed, unless rounding has placed
+	 *         now just before a root - in which case it fails just after now.
+	 */
+	private double later(double delta) {
+		return Math.max(now + delta, Math.nextUp(now));
+	}
+
+	/**
+	 * 
+	 * @param p A pair (non-negative).
+	 * @return Whether at least one of the pair is not moving along its route.
+	 */
+	private boolean isNaN(int p) {
+		return Double.isNaN(a[p]);
+	}
+
+	/**
+	 * Schedule an object's next segment boundary.
+	 * 
+	 * @param o The object.
+	 */
+	private void scheduleBoundary(int o) {
+		List<WayPoint> route = routes.get(o);
+		int next = segments[o] + 1;
+		events.update(o, next < route.size() ? route.get(next).getTime() : Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Recompute the quadratic for the square of a pair's separation, as a function
+	 * of the time since the given time, valid until the next segment boundary of
+	 * either object.
+	 * 
+	 * @param p    The pair.
+	 * @param time The time from which the motion is valid (a segment boundary).
+	 */
+	private void updateMotion(int p, long time) {
+		List<WayPoint> route1 = routes.get(firsts[p]);
+		List<WayPoint> route2 = routes.get(seconds[p]);
+		int s1 = segments[firsts[p]];
+		int s2 = segments[seconds[p]];
+		origins[p] = time;
+		// If the other object's boundary at this time has not yet been processed,
+		// its segment ends now; the motion is recomputed when it is processed.
+		if (s1 < 0 || s1 >= route1.size() - 1 || s2 < 0 || s2 >= route2.size() - 1
+				|| route1.get(s1 + 1).getTime() <= time || route2.get(s2 + 1).getTime() <= time) {
+			a[p] = Double.NaN;
+			b[p] = Double.NaN;
+			c[p] = Double.NaN;
+			return;
+		}
+		long endTime = Math.min(route1.get(s1 + 1).getTime(), route2.get(s2 + 1).getTime());
+		double[] start1 = WayPoint.interpolate(route1.get(s1), route1.get(s1 + 1), time).getCoordinates();
+		double[] end1 = WayPoint.interpolate(route1.get(s1), route1.get(s1 + 1), endTime).getCoordinates();
+		double[] start2 = WayPoint.interpolate(route2.get(s2), route2.get(s2 + 1), time).getCoordinates();
+		double[] end2 = WayPoint.interpolate(route2.get(s2), route2.get(s2 + 1), endTime).getCoordinates();
+		// As in computeClosestK: with k the interpolation parameter over [time,
+		// endTime], the separation is dS - k.(dS - dE), so its square is |dS|^2 -
+		// 2k.dS.(dS - dE) + k^2.|dS - dE|^2.
+		double[] dS = VectorUtils.subtract(start1, start2);
+		double[] dE = VectorUtils.subtract(end1, end2);
+		double[] dSdE = VectorUtils.subtract(dS, dE);
+		double deltaTime = endTime - time;
+		a[p] = VectorUtils.length2(dSdE) / (deltaTime * deltaTime);
+		b[p] = -2 * VectorUtils.innerProduct(dS, dSdE) / deltaTime;
+		c[p] = VectorUtils.length2(dS);
+	}
+
+	/**
+	 * 
+	 * @param p    A pair.
+	 * @param time A time within the pair's current motion.
+	 * @return The square of the pair's separation at the given time; infinite if at
+	 *         least one of the pair is not moving along its route.
+	 */
+	private double distance2(int p, double time) {
+		if (Double.isNaN(a[p])) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double tau = time - origins[p];
+		return (a[p] * tau + b[p]) * tau + c[p];
+	}
+
+	/**
+	 * 
+	 * @param route A route.
+	 * @param time  A time.
+	 * @return The index of the way point starting the segment that contains the
+	 *         time (half-open); -1 if the time precedes the route; the index of the
+	 *         final way point if the time is at or after the route's end.
+	 */
+	private static int segmentAt(List<WayPoint> route, long time) {
+		if (time < route.get(0).getTime()) {
+			return -1;
+		}
+		int lo = 0;
+		int hi = route.size() - 1;
+		// Find the last way point with time <= the given time.
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (route.get(mid).getTime() <= time) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * 
+	 * @param p A pair.
+	 * @return The pair's route indices, smaller first.
+	 */
+	private int[] pairObjects(int p) {
+		return new int[] { firsts[p], seconds[p] };
+	}
+
+	/**
+	 * 
+	 * @param route1 The index of a route.
+	 * @param route2 The index of a different route.
+	 * @return The index of the pair.
+	 */
+	private int pairIndex(int route1, int route2) {
+		assert route1 != route2;
+		int i = Math.min(route1, route2);
+		int j = Math.max(route1, route2);
+		return i * (2 * n - i - 1) / 2 + (j - i - 1);
+	}
+
+	/**
+	 * 
+	 * @return Whether the quadratic A.tau^2 + B.tau + C is positive just after tau
+	 *         = 0.
+	 */
+	private static boolean isPositiveJustAfter(double A, double B, double C) {
+		if (C != 0) {
+			return C > 0;
+		} else if (B != 0) {
+			return B > 0;
+		} else {
+			return A > 0;
+		}
+	}
+
+	/**
+	 * 
+	 * @return Whether the quadratic A.tau^2 + B.tau + C is negative just after tau
+	 *         = 0.
+	 */
+	private static boolean isNegativeJustAfter(double A, double B, double C) {
+		return isPositiveJustAfter(-A, -B, -C);
+	}
+
+	/**
+	 * Given a quadratic f(tau) = A.tau^2 + B.tau + C that is not positive just
+	 * after tau = 0, find when it next becomes positive.
+	 * 
+	 * @return The smallest tau &ge; 0 after which f is positive; infinite if never.
+	 */
+	private static double nextPositive(double A, double B, double C) {
+		if (A == 0) {
+			return B > 0 ? Math.max(0, -C / B) : Double.POSITIVE_INFINITY;
+		}
+		double discriminant = B * B - 4 * A * C;
+		if (discriminant <= 0) {
+			// The quadratic does not change sign.
+			return Double.POSITIVE_INFINITY;
+		}
+		// Numerically stable roots.
+		double q = -0.5 * (B + Math.copySign(Math.sqrt(discriminant), B));
+		double r1 = q / A;
+		double r2 = C / q;
+		double lower = Math.min(r1, r2);
+		double upper = Math.max(r1, r2);
+		if (A > 0) {
+			// Positive outside [lower, upper]; not positive at 0, so 0 is inside.
+			return Math.max(0, upper);
+		} else {
+			// Positive inside (lower, upper); not positive at 0, so 0 is outside.
+			return lower >= 0 ? lower : Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * <p>
+	 * A priority queue of certificates, ordered by failure time (and then by
+	 * identifier, so that segment boundaries are processed before other events at
+	 * the same time). Each certificate has at most one entry, whose time can be
+	 * changed in place; certificates with an infinite time are not queued.
+	 * </p>
+	 * 
+	 * <p>
+	 * Implemented as a binary heap over primitive arrays, with each certificate's
+	 * position in the heap recorded so that it can be found without searching.
+	 * </p>
+	 */
+	private static class EventQueue {
+		// The heap of certificate identifiers.
+		private final int[] heap;
+		// The failure time of each certificate, by identifier.
+		private final double[] times;
+		// The position of each certificate in the heap, by identifier; -1 if absent.
+		private final int[] positions;
+		// The number of queued certificates.
+		private int size;
+
+		private EventQueue(int capacity) {
+			heap = new int[capacity];
+			times = new double[capacity];
+			positions = new int[capacity];
+			Arrays.fill(positions, -1);
+		}
+
+		private boolean isEmpty() {
+			return size == 0;
+		}
+
+		private double peekTime() {
+			return times[heap[0]];
+		}
+
+		private int poll() {
+			int id = heap[0];
+			remove(id);
+			return id;
+		}
+
+		/**
+		 * Set the failure time of a certificate, queuing it, moving it within the
+		 * queue or removing it (if the time is infinite).
+		 */
+		private void update(int id, double time) {
+			int position = positions[id];
+			if (time == Double.POSITIVE_INFINITY) {
+				if (position >= 0) {
+					remove(id);
+				}
+				return;
+			}
+			times[id] = time;
+			if (position < 0) {
+				position = size++;
+				heap[position] = id;
+				positions[id] = position;
+			}
+			siftDown(siftUp(position));
+		}
+
+		private void remove(int id) {
+			int position = positions[id];
+			positions[id] = -1;
+			size--;
+			if (position < size) {
+				int last = heap[size];
+				heap[position] = last;
+				positions[last] = position;
+				siftDown(siftUp(position));
+			}
+		}
+
+		private boolean less(int id1, int id2) {
+			return times[id1] < times[id2] || (times[id1] == times[id2] && id1 < id2);
+		}
+
+		private int siftUp(int position) {
+			int id = heap[position];
+			while (position > 0) {
+				int parent = (position - 1) / 2;
+				if (!less(id, heap[parent])) {
+					break;
+				}
+				heap[position] = heap[parent];
+				positions[heap[position]] = position;
+				position = parent;
+			}
+			heap[position] = id;
+			positions[id] = position;
+			return position;
+		}
+
+		private void siftDown(int position) {
+			int id = heap[position];
+			while (true) {
+				int child = 2 * position + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && less(heap[child + 1], heap[child])) {
+					child++;
+				}
+				if (!less(heap[child], id)) {
+					break;
+				}
+				heap[position] = heap[child];
+				positions[heap[position]] = position;
+				position = child;
+			}
+			heap[position] = id;
+			positions[id] = position;
+		}
+	}
+}
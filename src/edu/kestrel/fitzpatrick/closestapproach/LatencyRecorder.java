@@ -0,0 +1,284 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Records the latencies of route-pair computations in a batch job, by
+ *         route length, so that percentiles and throughput can be watched while
+ *         the job runs (e.g., to spot outliers among long routes). A pair's
+ *         route length is the number of way points in its longer route; lengths
+ *         are grouped in buckets of powers of two: bucket b holds lengths l with
+ *         2^(b-1) &lt; l &le; 2^b.
+ *         </p>
+ * 
+ *         <p>
+ *         Each length bucket has a log-linear histogram, in the manner of
+ *         HdrHistogram: latencies below 256ns are counted exactly, and each
+ *         higher power-of-two range is split into 128 equal sub-buckets, so a
+ *         reported percentile is within 1/128 (under 1%) of the recorded
+ *         value. Recording is lock-free: it increments an element of an
+ *         {@link AtomicLongArray}. A histogram is created on first use of its
+ *         length bucket.
+ *         </p>
+ * 
+ *         <p>
+ *         {@link #summary()} gives, as CSV, each length bucket's pair count,
+ *         pairs per second since the previous summary, p50, p99, p999 and
+ *         maximum latency; {@link #reportPeriodically} prints a summary at a
+ *         fixed rate.
+ *         </p>
+ */
+public class LatencyRecorder {
+	/**
+	 * The number of length buckets (enough for any int length).
+	 */
+	public static final int N_LENGTH_BUCKETS = 32;
+
+	// Latencies below 2 * SUB_BUCKETS are counted exactly; each higher power-of-two
+	// range has SUB_BUCKETS sub-buckets.
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int N_COUNTS = 2 * SUB_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	/**
+	 * The header line of a summary.
+	 */
+	public static final String SUMMARY_HEADER = "route_length,pairs,pairs_per_second,p50_nanos,p99_nanos,p999_nanos,max_nanos";
+
+	// The histogram for each length bucket, created on first use.
+	private final AtomicReferenceArray<Histogram> histograms = new AtomicReferenceArray<>(N_LENGTH_BUCKETS);
+
+	// The pair counts, by length bucket, and the time, at the previous summary.
+	private final long[] summaryCounts = new long[N_LENGTH_BUCKETS + 1];
+	private long summaryNanos = System.nanoTime();
+
+	/**
+	 * Create an empty recorder.
+	 */
+	public LatencyRecorder() {
+		super();
+	}
+
+	/**
+	 * 
+	 * @param routeLength A route length (number of way points).
+	 * @return The length bucket of the route length.
+	 */
+	public static int lengthBucket(int routeLength) {
+		return routeLength <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(routeLength - 1);
+	}
+
+	/**
+	 * Record the latency of a route-pair computation. Thread safe and lock-free.
+	 * 
+	 * @param routeLength The number of way points in the pair's longer route.
+	 * @param nanos       The latency, in nanoseconds (negative values are
+	 *                    recorded as 0).
+	 */
+	public void record(int routeLength, long nanos) {
+		int bucket = lengthBucket(routeLength);
+		Histogram histogram = histograms.get(bucket);
+		if (histogram == null) {
+			histograms.compareAndSet(bucket, null, new Histogram());
+			histogram = histograms.get(bucket);
+		}
+		histogram.record(Math.max(0, nanos));
+	}
+
+	/**
+	 * 
+	 * @param lengthBucket A length bucket (see {@link #lengthBucket(int)}).
+	 * @return The number of latencies recorded in the length bucket.
+	 */
+	public long getCount(int lengthBucket) {
+		Histogram histogram = histograms.get(lengthBucket);
+		return histogram == null ? 0 : histogram.count();
+	}
+
+	/**
+	 * 
+	 * @param lengthBucket A length bucket (see {@link #lengthBucket(int)}).
+	 * @param quantile     A quantile, in [0, 1] (e.g., 0.99 for p99).
+	 * @return The latency, in nanoseconds, at the quantile of those recorded in
+	 *         the length bucket: the highest value equivalent to (in the same
+	 *         sub-bucket as) that recorded, but no more than the maximum
+	 *         recorded; 0 if none are recorded.
+	 */
+	public long getValueAtQuantile(int lengthBucket, double quantile) {
+		Histogram histogram = histograms.get(lengthBucket);
+		return histogram == null ? 0 : histogram.valueAtQuantile(quantile);
+	}
+
+	/**
+	 * 
+	 * @param lengthBucket A length bucket (see {@link #lengthBucket(int)}).
+	 * @return The maximum latency, in nanoseconds, recorded in the length bucket;
+	 *         0 if none are recorded.
+	 */
+	public long getMax(int lengthBucket) {
+		Histogram histogram = histograms.get(lengthBucket);
+		return histogram == null ? 0 : histogram.max.get();
+	}
+
+	/**
+	 * <p>
+	 * Summarize the latencies recorded, as CSV: a header line
+	 * ({@link #SUMMARY_HEADER}), then a line for each length bucket with recorded
+	 * latencies, then a line for all lengths. A length bucket's route_length is
+	 * its largest length (e.g., "&lt;=64"); that for all lengths is "all".
+	 * </p>
+	 * 
+	 * <p>
+	 * Percentiles are over all latencies recorded; pairs per second are over the
+	 * period since the previous summary (or the recorder's creation).
+	 * </p>
+	 * 
+	 * @return The summary.
+	 */
+	public synchronized String summary() {
+		long now = System.nanoTime();
+		double seconds = Math.max(1, now - summaryNanos) / 1e9;
+		summaryNanos = now;
+		StringBuilder text = new StringBuilder(SUMMARY_HEADER).append('\n');
+		Histogram all = new Histogram();
+		for (int b = 0; b < N_LENGTH_BUCKETS; b++) {
+			Histogram histogram = histograms.get(b);
+			if (histogram == null) {
+				continue;
+			}
+			Histogram copy = histogram.copy();
+			all.add(copy);
+			long count = copy.count();
+			if (count > 0) {
+				summaryLine(text, "<=" + (1L << b), copy, (count - summaryCounts[b]) / seconds);
+			}
+			summaryCounts[b] = count;
+		}
+		long count = all.count();
+		summaryLine(text, "all", all, (count - summaryCounts[N_LENGTH_BUCKETS]) / seconds);
+		summaryCounts[N_LENGTH_BUCKETS] = count;
+		return text.toString();
+	}
+
+	private static void summaryLine(StringBuilder text, String label, Histogram histogram, double rate) {
+		text.append(label).append(',').append(histogram.count()).append(',')
+				.append(String.format(Locale.ROOT, "%.1f", rate)).append(',')
+				.append(histogram.valueAtQuantile(0.5)).append(',').append(histogram.valueAtQuantile(0.99))
+				.append(',').append(histogram.valueAtQuantile(0.999)).append(',').append(histogram.max.get())
+				.append('\n');
+	}
+
+	/**
+	 * Print a summary (see {@link #summary()}) at a fixed rate.
+	 * 
+	 * @param executor The executor that runs the reports.
+	 * @param period   The period between reports (positive).
+	 * @param unit     The unit of the period.
+	 * @param out      The stream to which summaries are printed.
+	 * @return The scheduled reports; cancel to stop them.
+	 */
+	public ScheduledFuture<?> reportPeriodically(ScheduledExecutorService executor, long period, TimeUnit unit,
+			PrintStream out) {
+		assert period > 0;
+		return executor.scheduleAtFixedRate(() -> out.print(summary()), period, period, unit);
+	}
+
+	/**
+	 * 
+	 * @param value A non-negative latency.
+	 * @return The index of the count for the latency.
+	 */
+	static int index(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * 
+	 * @param index The index of a count.
+	 * @return The highest latency counted at the index.
+	 */
+	static long highestEquivalentValue(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * A log-linear histogram of latencies.
+	 */
+	private static class Histogram {
+		private final AtomicLongArray counts = new AtomicLongArray(N_COUNTS);
+		private final AtomicLong max = new AtomicLong();
+
+		private void record(long value) {
+			// Update the maximum first, so that it covers every value counted.
+			long current = max.get();
+			while (value > current && !max.compareAndSet(current, value)) {
+				current = max.get();
+			}
+			counts.incrementAndGet(index(value));
+		}
+
+		private long count() {
+			long count = 0;
+			for (int i = 0; i < N_COUNTS; i++) {
+				count += counts.get(i);
+			}
+			return count;
+		}
+
+		/**
+		 * 
+		 * @return A copy, so that a summary is consistent while recording continues.
+		 */
+		private Histogram copy() {
+			Histogram copy = new Histogram();
+			copy.add(this);
+			return copy;
+		}
+
+		private void add(Histogram other) {
+			for (int i = 0; i < N_COUNTS; i++) {
+				long count = other.counts.get(i);
+				if (count > 0) {
+					counts.addAndGet(i, count);
+				}
+			}
+			max.set(Math.max(max.get(), other.max.get()));
+		}
+
+		private long valueAtQuantile(double quantile) {
+			long total = count();
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * total));
+			long cumulative = 0;
+			for (int i = 0; i < N_COUNTS; i++) {
+				cumulative += counts.get(i);
+				if (cumulative >= rank) {
+					return Math.min(highestEquivalentValue(i), max.get());
+				}
+			}
+			return max.get();
+		}
+	}
+}
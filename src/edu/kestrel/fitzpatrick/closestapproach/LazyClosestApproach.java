@@ -0,0 +1,62 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         The closest approach between two linear segments, holding only the
+ *         segments and the interpolation parameter: the objects' way points are
+ *         interpolated the first time they are asked for. Most callers read
+ *         only the time and distance, and most per-segment closest approaches
+ *         are discarded by
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(java.util.List, java.util.List)},
+ *         so are never given coordinates.
+ *         </p>
+ * 
+ *         <p>
+ *         The way points are those that
+ *         {@link DetermineClosestApproachBetweenLinearSegments#closestApproach(long, long, double[], double[], double[], double[], double)}
+ *         would give. Way points are immutable, so concurrent first reads at
+ *         worst create equal way points twice.
+ *         </p>
+ */
+class LazyClosestApproach extends ClosestApproach {
+	// The segments.
+	private final DetermineClosestApproachBetweenLinearSegments segments;
+
+	// The way points, once interpolated.
+	private WayPoint wayPoint1;
+	private WayPoint wayPoint2;
+
+	/**
+	 * 
+	 * @param segments The segments (whose closest interpolation parameter is not
+	 *                 NaN).
+	 * @param time     The time of the closest approach.
+	 * @param distance The distance between the objects at the closest approach.
+	 */
+	LazyClosestApproach(DetermineClosestApproachBetweenLinearSegments segments, long time, double distance) {
+		super(time, distance);
+		assert !Double.isNaN(segments.closestK());
+		this.segments = segments;
+	}
+
+	@Override
+	public WayPoint wayPoint1() {
+		if (wayPoint1 == null) {
+			wayPoint1 = new WayPoint(time(), VectorUtils.interpolate(segments.getStart1().getCoordinates(),
+					segments.getEnd1().getCoordinates(), segments.closestK()));
+		}
+		return wayPoint1;
+	}
+
+	@Override
+	public WayPoint wayPoint2() {
+		if (wayPoint2 == null) {
+			wayPoint2 = new WayPoint(time(), VectorUtils.interpolate(segments.getStart2().getCoordinates(),
+					segments.getEnd2().getCoordinates(), segments.closestK()));
+		}
+		return wayPoint2;
+	}
+}
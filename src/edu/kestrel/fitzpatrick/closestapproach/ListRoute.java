@@ -0,0 +1,62 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         A {@link Route} view of a list of way points. The list is not copied,
+ *         so should not be modified while the view is in use.
+ */
+public class ListRoute implements Route {
+
+	private final List<WayPoint> wayPoints;
+	private final int dimensions;
+
+	/**
+	 * 
+	 * @param wayPoints The way points (at least one, with increasing times).
+	 */
+	public ListRoute(List<WayPoint> wayPoints) {
+		super();
+		assert !wayPoints.isEmpty();
+		this.wayPoints = wayPoints;
+		dimensions = wayPoints.get(0).getCoordinates().length;
+	}
+
+	@Override
+	public int size() {
+		return wayPoints.size();
+	}
+
+	@Override
+	public int dimensions() {
+		return dimensions;
+	}
+
+	@Override
+	public long getTime(int i) {
+		return wayPoints.get(i).getTime();
+	}
+
+	@Override
+	public double getCoordinate(int i, int dimension) {
+		return wayPoints.get(i).getCoordinates()[dimension];
+	}
+
+	@Override
+	public void getCoordinates(int i, double[] coordinates) {
+		System.arraycopy(wayPoints.get(i).getCoordinates(), 0, coordinates, 0, dimensions);
+	}
+
+	@Override
+	public WayPoint getWayPoint(int i) {
+		return wayPoints.get(i);
+	}
+
+	@Override
+	public List<WayPoint> toWayPoints() {
+		return wayPoints;
+	}
+}
@@ -0,0 +1,729 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         An append-only log of closest-approach results, kept on disk so that
+ *         the results of a fleet run need not be held in memory. Each result is
+ *         a fixed-width, little-endian binary record: the two route ids (ints),
+ *         the time (long; {@link Long#MIN_VALUE} for parallel motion, which has
+ *         no time), the distance (double) and, if the log keeps coordinates, the
+ *         two objects' coordinates (doubles; NaN for parallel motion).
+ *         </p>
+ * 
+ *         <p>
+ *         The log is a directory of segment files, each holding up to a fixed
+ *         number of records. When a segment is full (or the log is closed) it is
+ *         sealed: an index file is written for it, giving the records of each
+ *         route id and of each time bucket (a period of fixed width, by floor
+ *         division of the time). Queries by route or by period then read only the
+ *         indexed records of each sealed segment (and scan the one unsealed
+ *         segment, whose size is bounded), rather than the whole log.
+ *         </p>
+ * 
+ *         <p>
+ *         An index file is little-endian: a header (the magic number
+ *         {@link #INDEX_MAGIC}, the {@link #VERSION}, the number of records, of
+ *         route ids and of buckets, and padding - six ints), then the sorted
+ *         route ids (ints), the start of each route's postings (ints, one more
+ *         than the number of route ids), the postings (record numbers, ints),
+ *         then likewise for the buckets (the bucket numbers are longs). Each
+ *         array is padded to a multiple of 8 bytes.
+ *         </p>
+ * 
+ *         <p>
+ *         Opening an existing log appends to it: any segment left unsealed (e.g.,
+ *         by a crash) is sealed, and new records go to a new segment. Not thread
+ *         safe.
+ *         </p>
+ */
+public class ResultLog implements Closeable {
+	/**
+	 * The magic number at the start of the log's description file.
+	 */
+	public static final int MAGIC = 0x524c4f47;
+	/**
+	 * The magic number at the start of a segment index file.
+	 */
+	public static final int INDEX_MAGIC = 0x52494458;
+	/**
+	 * The version of the file formats.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The time recorded for a result without a time (parallel motion).
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	// The default number of records per segment.
+	private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+	// The size of the write buffer.
+	private static final int WRITE_BUFFER_BYTES = 1 << 16;
+	// The size of an index header.
+	private static final int INDEX_HEADER_BYTES = 24;
+
+	private final Path directory;
+	private final int dimensions;
+	private final boolean withCoordinates;
+	private final long bucketWidth;
+	private final int segmentRecords;
+	private final int recordBytes;
+
+	// The sealed segments, in order.
+	private final List<Segment> sealed = new ArrayList<>();
+
+	// The unsealed segment: its number, file and the number of records in it.
+	private int currentNumber;
+	private FileChannel current;
+	private int currentRecords;
+	// The route ids and buckets of the records in the unsealed segment.
+	private int[] currentRoutes1 = new int[1024];
+	private int[] currentRoutes2 = new int[1024];
+	private long[] currentTimes = new long[1024];
+	private final ByteBuffer buffer;
+
+	/**
+	 * Open a log, creating it if necessary, with the default segment size.
+	 * 
+	 * @param directory       The directory of the log.
+	 * @param dimensions      The number of spatial dimensions.
+	 * @param withCoordinates Whether records include the objects' coordinates.
+	 * @param bucketWidth     The width of the time buckets (positive).
+	 * @return The log.
+	 * @throws IOException If the log cannot be opened, or exists with different
+	 *                     parameters.
+	 */
+	public static ResultLog open(Path directory, int dimensions, boolean withCoordinates, long bucketWidth)
+			throws IOException {
+		return open(directory, dimensions, withCoordinates, bucketWidth, DEFAULT_SEGMENT_RECORDS);
+	}
+
+	/**
+	 * Open a log, creating it if necessary.
+	 * 
+	 * @param directory       The directory of the log.
+	 * @param dimensions      The number of spatial dimensions.
+	 * @param withCoordinates Whether records include the objects' coordinates.
+	 * @param bucketWidth     The width of the time buckets (positive).
+	 * @param segmentRecords  The maximum number of records per segment
+	 *                        (positive).
+	 * @return The log.
+	 * @throws IOException If the log cannot be opened, or exists with different
+	 *                     parameters.
+	 */
+	public static ResultLog open(Path directory, int dimensions, boolean withCoordinates, long bucketWidth,
+			int segmentRecords) throws IOException {
+		return new ResultLog(directory, dimensions, withCoordinates, bucketWidth, segmentRecords);
+	}
+
+	private ResultLog(Path directory, int dimensions, boolean withCoordinates, long bucketWidth,
+			int segmentRecords) throws IOException {
+		super();
+		assert dimensions >= 1;
+		assert bucketWidth > 0;
+		assert segmentRecords > 0;
+		this.directory = directory;
+		this.dimensions = dimensions;
+		this.withCoordinates = withCoordinates;
+		this.bucketWidth = bucketWidth;
+		this.segmentRecords = segmentRecords;
+		recordBytes = 24 + (withCoordinates ? 16 * dimensions : 0);
+		assert (long) recordBytes * segmentRecords <= Integer.MAX_VALUE;
+		buffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_BYTES, recordBytes)).order(ByteOrder.LITTLE_ENDIAN);
+
+		Files.createDirectories(directory);
+		Path description = directory.resolve("log.meta");
+		ByteBuffer expected = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+		expected.putInt(MAGIC).putInt(VERSION).putInt(dimensions).putInt(withCoordinates ? 1 : 0)
+				.putLong(bucketWidth);
+		if (Files.exists(description)) {
+			if (!Arrays.equals(Files.readAllBytes(description), expected.array())) {
+				throw new IOException("Result log " + directory + " has a different format or parameters");
+			}
+		} else {
+			Files.write(description, expected.array());
+		}
+
+		// Seal any unsealed segments, and map the sealed segments.
+		int number = 0;
+		while (Files.exists(segmentFile(number))) {
+			if (!Files.exists(indexFile(number))) {
+				indexExisting(number);
+			}
+			sealed.add(new Segment(number));
+			number++;
+		}
+		currentNumber = number;
+	}
+
+	/**
+	 * Append a closest approach.
+	 * 
+	 * @param route1   The id of object 1's route.
+	 * @param route2   The id of object 2's route.
+	 * @param approach The closest approach between the objects.
+	 * @throws IOException If the log cannot be written.
+	 */
+	public void append(int route1, int route2, ClosestApproach approach) throws IOException {
+		if (approach.time() == null) {
+			append(route1, route2, NO_TIME, approach.distance(), null, null);
+		} else if (withCoordinates) {
+			append(route1, route2, approach.time(), approach.distance(), approach.wayPoint1().getCoordinates(),
+					approach.wayPoint2().getCoordinates());
+		} else {
+			// The coordinates are not kept, so are not fetched.
+			append(route1, route2, approach.time(), approach.distance(), null, null);
+		}
+	}
+
+	/**
+	 * Append a result.
+	 * 
+	 * @param route1       The id of object 1's route.
+	 * @param route2       The id of object 2's route.
+	 * @param time         The time of the closest approach ({@link #NO_TIME} if
+	 *                     none).
+	 * @param distance     The distance of the closest approach.
+	 * @param coordinates1 Object 1's coordinates (null if none, or not kept).
+	 * @param coordinates2 Object 2's coordinates (null if none, or not kept).
+	 * @throws IOException If the log cannot be written.
+	 */
+	public void append(int route1, int route2, long time, double distance, double[] coordinates1,
+			double[] coordinates2) throws IOException {
+		if (current == null) {
+			current = FileChannel.open(segmentFile(currentNumber), StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE, StandardOpenOption.READ);
+		}
+		if (buffer.remaining() < recordBytes) {
+			flush();
+		}
+		buffer.putInt(route1);
+		buffer.putInt(route2);
+		buffer.putLong(time);
+		buffer.putDouble(distance);
+		if (withCoordinates) {
+			for (double[] coordinates : new double[][] { coordinates1, coordinates2 }) {
+				assert coordinates == null || coordinates.length == dimensions;
+				for (int d = 0; d < dimensions; d++) {
+					buffer.putDouble(coordinates == null ? Double.NaN : coordinates[d]);
+				}
+			}
+		}
+		if (currentRecords == currentRoutes1.length) {
+			currentRoutes1 = Arrays.copyOf(currentRoutes1, 2 * currentRecords);
+			currentRoutes2 = Arrays.copyOf(currentRoutes2, 2 * currentRecords);
+			currentTimes = Arrays.copyOf(currentTimes, 2 * currentRecords);
+		}
+		currentRoutes1[currentRecords] = route1;
+		currentRoutes2[currentRecords] = route2;
+		currentTimes[currentRecords] = time;
+		currentRecords++;
+		if (currentRecords == segmentRecords) {
+			seal();
+		}
+	}
+
+	/**
+	 * Write any buffered records to the unsealed segment.
+	 * 
+	 * @throws IOException If the log cannot be written.
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			current.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Seal the unsealed segment (if any) and close the log.
+	 * 
+	 * @throws IOException If the log cannot be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (current != null) {
+			seal();
+		}
+	}
+
+	/**
+	 * 
+	 * @return The number of records in the log.
+	 */
+	public long size() {
+		long size = currentRecords;
+		for (Segment segment : sealed) {
+			size += segment.nRecords;
+		}
+		return size;
+	}
+
+	/**
+	 * 
+	 * @return The number of segments, including the unsealed segment (if any).
+	 */
+	public int getSegmentCount() {
+		return sealed.size() + (current == null ? 0 : 1);
+	}
+
+	/**
+	 * Visit every record, in the order appended.
+	 * 
+	 * @param consumer Receives each record (the record is reused, so is valid only
+	 *                 during the call).
+	 * @throws IOException If the log cannot be read.
+	 */
+	public void forEach(Consumer<Record> consumer) throws IOException {
+		Record record = new Record();
+		for (Segment segment : sealed) {
+			for (int r = 0; r < segment.nRecords; r++) {
+				consumer.accept(record.at(segment.records, r));
+			}
+		}
+		scanCurrent(record, r -> true, consumer);
+	}
+
+	/**
+	 * Visit the records of a route (as either object), using the segments' route
+	 * indexes.
+	 * 
+	 * @param route    A route id.
+	 * @param consumer Receives each record of the route, in the order appended
+	 *                 (the record is reused, so is valid only during the call).
+	 * @throws IOException If the log cannot be read.
+	 */
+	public void forEachByRoute(int route, Consumer<Record> consumer) throws IOException {
+		Record record = new Record();
+		for (Segment segment : sealed) {
+			int k = segment.findRoute(route);
+			if (k >= 0) {
+				for (int p = segment.routeStarts.get(k); p < segment.routeStarts.get(k + 1); p++) {
+					consumer.accept(record.at(segment.records, segment.routePostings.get(p)));
+				}
+			}
+		}
+		scanCurrent(record, r -> currentRoutes1[r] == route || currentRoutes2[r] == route, consumer);
+	}
+
+	/**
+	 * Visit the records whose times are in a period, using the segments' time
+	 * bucket indexes. Records without a time are not visited.
+	 * 
+	 * @param startTime The start of the period.
+	 * @param endTime   The end of the period (inclusive).
+	 * @param consumer  Receives each record in the period, segment by segment,
+	 *                  in order of bucket (the record is reused, so is valid only
+	 *                  during the call).
+	 * @throws IOException If the log cannot be read.
+	 */
+	public void forEachInPeriod(long startTime, long endTime, Consumer<Record> consumer) throws IOException {
+		assert startTime <= endTime && startTime != NO_TIME;
+		long firstBucket = Math.floorDiv(startTime, bucketWidth);
+		long lastBucket = Math.floorDiv(endTime, bucketWidth);
+		Record record = new Record();
+		for (Segment segment : sealed) {
+			for (int k = segment.firstBucketAtOrAfter(firstBucket); k < segment.bucketKeys.limit()
+					&& segment.bucketKeys.get(k) <= lastBucket; k++) {
+				for (int p = segment.bucketStarts.get(k); p < segment.bucketStarts.get(k + 1); p++) {
+					record.at(segment.records, segment.bucketPostings.get(p));
+					if (startTime <= record.time() && record.time() <= endTime) {
+						consumer.accept(record);
+					}
+				}
+			}
+		}
+		scanCurrent(record, r -> currentTimes[r] != NO_TIME && startTime <= currentTimes[r]
+				&& currentTimes[r] <= endTime, consumer);
+	}
+
+	/**
+	 * Visit the selected records of the unsealed segment.
+	 */
+	private void scanCurrent(Record record, IntPredicate selected, Consumer<Record> consumer)
+			throws IOException {
+		if (current == null) {
+			return;
+		}
+		flush();
+		ByteBuffer records = current.map(FileChannel.MapMode.READ_ONLY, 0, (long) currentRecords * recordBytes)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		for (int r = 0; r < currentRecords; r++) {
+			if (selected.test(r)) {
+				consumer.accept(record.at(records, r));
+			}
+		}
+	}
+
+	/**
+	 * Seal the unsealed segment: write its index and map it.
+	 */
+	private void seal() throws IOException {
+		flush();
+		current.close();
+		current = null;
+		writeIndex(currentNumber, currentRecords, currentRoutes1, currentRoutes2, currentTimes);
+		sealed.add(new Segment(currentNumber));
+		currentNumber++;
+		currentRecords = 0;
+	}
+
+	/**
+	 * Index a segment that was left unsealed.
+	 */
+	private void indexExisting(int number) throws IOException {
+		byte[] bytes = Files.readAllBytes(segmentFile(number));
+		int nRecords = bytes.length / recordBytes;
+		ByteBuffer records = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		int[] routes1 = new int[nRecords];
+		int[] routes2 = new int[nRecords];
+		long[] times = new long[nRecords];
+		for (int r = 0; r < nRecords; r++) {
+			routes1[r] = records.getInt(r * recordBytes);
+			routes2[r] = records.getInt(r * recordBytes + 4);
+			times[r] = records.getLong(r * recordBytes + 8);
+		}
+		if (bytes.length != nRecords * recordBytes) {
+			// Discard a partially written record.
+			try (FileChannel channel = FileChannel.open(segmentFile(number), StandardOpenOption.WRITE)) {
+				channel.truncate((long) nRecords * recordBytes);
+			}
+		}
+		writeIndex(number, nRecords, routes1, routes2, times);
+	}
+
+	/**
+	 * Write the index of a segment.
+	 */
+	private void writeIndex(int number, int nRecords, int[] routes1, int[] routes2, long[] times)
+			throws IOException {
+		// The route postings: each record is posted under both of its routes (once,
+		// if they are the same).
+		int[] routeKeys = new int[2 * nRecords];
+		int nRouteEntries = 0;
+		for (int r = 0; r < nRecords; r++) {
+			routeKeys[nRouteEntries++] = routes1[r];
+			if (routes2[r] != routes1[r]) {
+				routeKeys[nRouteEntries++] = routes2[r];
+			}
+		}
+		int[] sortedRoutes = Arrays.copyOf(routeKeys, nRouteEntries);
+		Arrays.sort(sortedRoutes);
+		int[] distinctRoutes = distinct(sortedRoutes);
+		int[] routeStarts = new int[distinctRoutes.length + 1];
+		for (int r = 0; r < nRecords; r++) {
+			routeStarts[Arrays.binarySearch(distinctRoutes, routes1[r]) + 1]++;
+			if (routes2[r] != routes1[r]) {
+				routeStarts[Arrays.binarySearch(distinctRoutes, routes2[r]) + 1]++;
+			}
+		}
+		for (int k = 0; k < distinctRoutes.length; k++) {
+			routeStarts[k + 1] += routeStarts[k];
+		}
+		int[] routePostings = new int[nRouteEntries];
+		int[] fill = Arrays.copyOf(routeStarts, distinctRoutes.length);
+		for (int r = 0; r < nRecords; r++) {
+			routePostings[fill[Arrays.binarySearch(distinctRoutes, routes1[r])]++] = r;
+			if (routes2[r] != routes1[r]) {
+				routePostings[fill[Arrays.binarySearch(distinctRoutes, routes2[r])]++] = r;
+			}
+		}
+
+		// The bucket postings, of records with times.
+		long[] buckets = new long[nRecords];
+		int nTimed = 0;
+		for (int r = 0; r < nRecords; r++) {
+			if (times[r] != NO_TIME) {
+				buckets[nTimed++] = Math.floorDiv(times[r], bucketWidth);
+			}
+		}
+		long[] sortedBuckets = Arrays.copyOf(buckets, nTimed);
+		Arrays.sort(sortedBuckets);
+		long[] distinctBuckets = distinct(sortedBuckets);
+		int[] bucketStarts = new int[distinctBuckets.length + 1];
+		for (int r = 0; r < nRecords; r++) {
+			if (times[r] != NO_TIME) {
+				bucketStarts[Arrays.binarySearch(distinctBuckets, Math.floorDiv(times[r], bucketWidth)) + 1]++;
+			}
+		}
+		for (int k = 0; k < distinctBuckets.length; k++) {
+			bucketStarts[k + 1] += bucketStarts[k];
+		}
+		int[] bucketPostings = new int[nTimed];
+		fill = Arrays.copyOf(bucketStarts, distinctBuckets.length);
+		for (int r = 0; r < nRecords; r++) {
+			if (times[r] != NO_TIME) {
+				bucketPostings[fill[Arrays.binarySearch(distinctBuckets, Math.floorDiv(times[r], bucketWidth))]++] = r;
+			}
+		}
+
+		long size = INDEX_HEADER_BYTES + padded(distinctRoutes.length) + padded(routeStarts.length)
+				+ padded(routePostings.length) + 8L * distinctBuckets.length + padded(bucketStarts.length)
+				+ padded(bucketPostings.length);
+		ByteBuffer index = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		index.putInt(INDEX_MAGIC).putInt(VERSION).putInt(nRecords).putInt(distinctRoutes.length)
+				.putInt(distinctBuckets.length).putInt(0);
+		putInts(index, distinctRoutes);
+		putInts(index, routeStarts);
+		putInts(index, routePostings);
+		for (long bucket : distinctBuckets) {
+			index.putLong(bucket);
+		}
+		putInts(index, bucketStarts);
+		putInts(index, bucketPostings);
+		// Write the index under a temporary name, so that it appears complete.
+		Path temporary = directory.resolve(indexFile(number).getFileName() + ".tmp");
+		Files.write(temporary, index.array());
+		Files.move(temporary, indexFile(number), StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static long padded(int nInts) {
+		return 8L * ((nInts + 1) / 2);
+	}
+
+	private static void putInts(ByteBuffer buffer, int[] values) {
+		for (int value : values) {
+			buffer.putInt(value);
+		}
+		if (values.length % 2 != 0) {
+			buffer.putInt(0);
+		}
+	}
+
+	private static int[] distinct(int[] sorted) {
+		int n = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[n++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, n);
+	}
+
+	private static long[] distinct(long[] sorted) {
+		int n = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[n++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, n);
+	}
+
+	private Path segmentFile(int number) {
+		return directory.resolve(String.format("segment-%08d.log", number));
+	}
+
+	private Path indexFile(int number) {
+		return directory.resolve(String.format("segment-%08d.idx", number));
+	}
+
+	/**
+	 * A sealed segment, with its records and index mapped into memory.
+	 */
+	private class Segment {
+		private final ByteBuffer records;
+		private final int nRecords;
+		private final IntBuffer routeKeys;
+		private final IntBuffer routeStarts;
+		private final IntBuffer routePostings;
+		private final LongBuffer bucketKeys;
+		private final IntBuffer bucketStarts;
+		private final IntBuffer bucketPostings;
+
+		private Segment(int number) throws IOException {
+			ByteBuffer index;
+			try (FileChannel channel = FileChannel.open(indexFile(number), StandardOpenOption.READ)) {
+				index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			}
+			if (index.limit() < INDEX_HEADER_BYTES || index.getInt(0) != INDEX_MAGIC) {
+				throw new IOException("Not a result log index: " + indexFile(number));
+			}
+			if (index.getInt(4) != VERSION) {
+				throw new IOException("Unsupported result log index version " + index.getInt(4));
+			}
+			nRecords = index.getInt(8);
+			int nRoutes = index.getInt(12);
+			int nBuckets = index.getInt(16);
+			try (FileChannel channel = FileChannel.open(segmentFile(number), StandardOpenOption.READ)) {
+				if (channel.size() != (long) nRecords * recordBytes) {
+					throw new IOException("Result log segment does not match its index: " + segmentFile(number));
+				}
+				records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+						.order(ByteOrder.LITTLE_ENDIAN);
+			}
+			int position = INDEX_HEADER_BYTES;
+			routeKeys = ints(index, position, nRoutes);
+			position += padded(nRoutes);
+			routeStarts = ints(index, position, nRoutes + 1);
+			position += padded(nRoutes + 1);
+			int nRoutePostings = routeStarts.get(nRoutes);
+			routePostings = ints(index, position, nRoutePostings);
+			position += padded(nRoutePostings);
+			index.position(position);
+			bucketKeys = index.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+			bucketKeys.limit(nBuckets);
+			position += 8 * nBuckets;
+			bucketStarts = ints(index, position, nBuckets + 1);
+			position += padded(nBuckets + 1);
+			bucketPostings = ints(index, position, bucketStarts.get(nBuckets));
+		}
+
+		private IntBuffer ints(ByteBuffer index, int position, int n) {
+			index.position(position);
+			IntBuffer ints = index.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			ints.limit(n);
+			return ints;
+		}
+
+		/**
+		 * 
+		 * @return The position of the route among the route keys; -1 if absent.
+		 */
+		private int findRoute(int route) {
+			int low = 0;
+			int high = routeKeys.limit() - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int key = routeKeys.get(mid);
+				if (key < route) {
+					low = mid + 1;
+				} else if (key > route) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * 
+		 * @return The position of the first bucket key no less than the bucket.
+		 */
+		private int firstBucketAtOrAfter(long bucket) {
+			int low = 0;
+			int high = bucketKeys.limit();
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (bucketKeys.get(mid) < bucket) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * A record of the log, read in place. A record object is reused for
+	 * successive records, so is valid only during the call that receives it.
+	 */
+	public class Record {
+		private ByteBuffer records;
+		private int offset;
+
+		private Record() {
+			super();
+		}
+
+		private Record at(ByteBuffer records, int record) {
+			this.records = records;
+			offset = record * recordBytes;
+			return this;
+		}
+
+		/**
+		 * 
+		 * @return The id of object 1's route.
+		 */
+		public int route1() {
+			return records.getInt(offset);
+		}
+
+		/**
+		 * 
+		 * @return The id of object 2's route.
+		 */
+		public int route2() {
+			return records.getInt(offset + 4);
+		}
+
+		/**
+		 * 
+		 * @return The time of the closest approach; {@link ResultLog#NO_TIME} if
+		 *         none.
+		 */
+		public long time() {
+			return records.getLong(offset + 8);
+		}
+
+		/**
+		 * 
+		 * @return The distance of the closest approach.
+		 */
+		public double distance() {
+			return records.getDouble(offset + 16);
+		}
+
+		/**
+		 * 
+		 * @return Whether the record has coordinates.
+		 */
+		public boolean hasCoordinates() {
+			return withCoordinates && time() != NO_TIME;
+		}
+
+		/**
+		 * 
+		 * @param object    1 or 2.
+		 * @param dimension A spatial dimension.
+		 * @return The object's coordinate in that dimension.
+		 */
+		public double coordinate(int object, int dimension) {
+			assert withCoordinates;
+			assert object == 1 || object == 2;
+			return records.getDouble(offset + 24 + 8 * ((object - 1) * dimensions + dimension));
+		}
+
+		/**
+		 * 
+		 * @return The record as a closest approach: with way points if the record
+		 *         has coordinates, otherwise with only the distance.
+		 */
+		public ClosestApproach toClosestApproach() {
+			if (!hasCoordinates()) {
+				return new ClosestApproach(distance());
+			}
+			double[] coordinates1 = new double[dimensions];
+			double[] coordinates2 = new double[dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				coordinates1[d] = coordinate(1, d);
+				coordinates2[d] = coordinate(2, d);
+			}
+			return new ClosestApproach(new WayPoint(time(), coordinates1), new WayPoint(time(), coordinates2));
+		}
+	}
+}
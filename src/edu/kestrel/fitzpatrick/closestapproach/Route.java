@@ -0,0 +1,88 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A read-only view of a route: a sequence of way points, with
+ *         increasing times, given as primitive times and coordinates rather than
+ *         as WayPoint objects. Implementations may hold the way points in any
+ *         form - e.g., a list of way points ({@link ListRoute}) or a
+ *         memory-mapped file ({@link RouteStore}) - and need create no object
+ *         per way point.
+ *         </p>
+ * 
+ *         <p>
+ *         See
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(Route, Route)}.
+ *         </p>
+ */
+public interface Route {
+
+	/**
+	 * 
+	 * @return The number of way points.
+	 */
+	int size();
+
+	/**
+	 * 
+	 * @return The number of spatial dimensions of each way point.
+	 */
+	int dimensions();
+
+	/**
+	 * 
+	 * @param i The index of a way point.
+	 * @return The time of the way point.
+	 */
+	long getTime(int i);
+
+	/**
+	 * 
+	 * @param i         The index of a way point.
+	 * @param dimension A spatial dimension.
+	 * @return The way point's coordinate in the given dimension.
+	 */
+	double getCoordinate(int i, int dimension);
+
+	/**
+	 * Copy a way point's coordinates into an array.
+	 * 
+	 * @param i           The index of a way point.
+	 * @param coordinates Receives the coordinates (at least
+	 *                    {@link #dimensions()} long).
+	 */
+	default void getCoordinates(int i, double[] coordinates) {
+		for (int d = 0; d < dimensions(); d++) {
+			coordinates[d] = getCoordinate(i, d);
+		}
+	}
+
+	/**
+	 * 
+	 * @param i The index of a way point.
+	 * @return The way point, as a new object.
+	 */
+	default WayPoint getWayPoint(int i) {
+		double[] coordinates = new double[dimensions()];
+		getCoordinates(i, coordinates);
+		return new WayPoint(getTime(i), coordinates);
+	}
+
+	/**
+	 * 
+	 * @return The way points, as new objects.
+	 */
+	default List<WayPoint> toWayPoints() {
+		List<WayPoint> wayPoints = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			wayPoints.add(getWayPoint(i));
+		}
+		return wayPoints;
+	}
+}
@@ -0,0 +1,561 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Loads routes from a delimited text file - comma or tab separated -
+ *         with one way point per line: route id, time, then the coordinates
+ *         (e.g., route_id, time, x, y[, z]). The rows of a route need not be
+ *         contiguous, but must be in increasing time order within the file; this
+ *         is verified, as required by
+ *         {@link DetermineClosestApproachBetweenRoutes}. An optional header line
+ *         is recognized by its time field not being a number. Fields may be
+ *         surrounded by spaces, lines may end with CR LF, and blank lines are
+ *         ignored; quoted fields are not supported.
+ *         </p>
+ * 
+ *         <p>
+ *         The file is split into chunks of roughly equal size, on line
+ *         boundaries, and the chunks are parsed in parallel into primitive arrays.
+ *         Numbers are parsed directly from the bytes, creating no strings: times
+ *         as longs, and coordinates by the exact fast path for decimals with at
+ *         most 15 significant digits and small exponents, otherwise by
+ *         {@link Double#parseDouble(String)} - so the coordinates are those that
+ *         {@link Double#parseDouble(String)} would give. A string is created for
+ *         a route id only where the id differs from that of the previous line.
+ *         The rows are then gathered, in file order, into an {@link ArrayRoute}
+ *         per route id.
+ *         </p>
+ */
+public class RouteCsvLoader {
+	/**
+	 * The default chunk size, in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+	// Powers of 10 that are exactly representable as doubles.
+	private static final double[] POWERS_OF_10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// The number of bytes read to find the end of a line at a chunk boundary.
+	private static final int PROBE_SIZE = 4096;
+
+	private final int chunkSize;
+
+	/**
+	 * Create a loader that uses the default chunk size.
+	 */
+	public RouteCsvLoader() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Create a loader.
+	 * 
+	 * @param chunkSize The nominal size, in bytes, of the chunks parsed in
+	 *                  parallel (positive).
+	 */
+	public RouteCsvLoader(int chunkSize) {
+		super();
+		assert chunkSize > 0;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Load the routes in a file. The delimiter is a tab if the first line contains
+	 * a tab, otherwise a comma; the number of dimensions is given by the first
+	 * line of data.
+	 * 
+	 * @param file A file.
+	 * @return The routes, by route id, in order of their first appearance in the
+	 *         file.
+	 * @throws IOException If the file cannot be read, is malformed, or has a
+	 *                     route whose times are not increasing.
+	 */
+	public Map<String, ArrayRoute> load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			byte delimiter = (byte) (firstLine(channel).indexOf('\t') >= 0 ? '\t' : ',');
+
+			// Chunk boundaries, each just after a line end.
+			List<Long> boundaries = new ArrayList<>();
+			boundaries.add(0L);
+			for (long nominal = chunkSize; nominal < size; nominal += chunkSize) {
+				long boundary = lineEnd(channel, Math.max(nominal, boundaries.get(boundaries.size() - 1)));
+				if (boundary >= size) {
+					break;
+				}
+				if (boundary > boundaries.get(boundaries.size() - 1)) {
+					boundaries.add(boundary);
+				}
+			}
+			boundaries.add(size);
+
+			List<Chunk> chunks;
+			try {
+				chunks = IntStream.range(0, boundaries.size() - 1) //
+						.parallel() //
+						.mapToObj(c -> parse(channel, c, boundaries.get(c), boundaries.get(c + 1), delimiter)) //
+						.collect(Collectors.toList());
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			return assemble(chunks);
+		}
+	}
+
+	/**
+	 * 
+	 * @return The first line of the file (up to PROBE_SIZE bytes).
+	 */
+	private static String firstLine(FileChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(PROBE_SIZE, channel.size()));
+		channel.read(buffer, 0);
+		String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+		int end = text.indexOf('\n');
+		return end < 0 ? text : text.substring(0, end);
+	}
+
+	/**
+	 * 
+	 * @return The position just after the first line end at or after the given
+	 *         position; the file size if there is none.
+	 */
+	private static long lineEnd(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+		while (true) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			if (n <= 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += n;
+		}
+	}
+
+	/**
+	 * Read and parse a chunk.
+	 */
+	private static Chunk parse(FileChannel channel, int index, long start, long end, byte delimiter) {
+		try {
+			long startNanos = EngineEvents.enabled ? System.nanoTime() : 0;
+			byte[] bytes = new byte[(int) (end - start)];
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, start + buffer.position()) < 0) {
+					throw new IOException("File truncated while reading");
+				}
+			}
+			Chunk chunk = new Chunk(bytes, start, delimiter);
+			chunk.parse(index == 0);
+			if (EngineEvents.enabled) {
+				EngineEvents.event(EngineEvents.Type.INGEST_CHUNK, startNanos, end - start, chunk.nRows, 0, 0);
+			}
+			return chunk;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Gather the rows of the chunks into routes, checking that each route's times
+	 * increase.
+	 */
+	private static Map<String, ArrayRoute> assemble(List<Chunk> chunks) throws IOException {
+		int dimensions = -1;
+		for (Chunk chunk : chunks) {
+			if (chunk.nRows > 0) {
+				if (dimensions >= 0 && chunk.dimensions != dimensions) {
+					throw new IOException("Inconsistent number of coordinates at byte " + chunk.start);
+				}
+				dimensions = chunk.dimensions;
+			}
+		}
+
+		// Number the routes globally, and count their rows.
+		Map<String, Integer> routeIndices = new LinkedHashMap<>();
+		List<int[]> toGlobal = new ArrayList<>();
+		int[] counts = new int[0];
+		for (Chunk chunk : chunks) {
+			int[] global = new int[chunk.ids.size()];
+			for (int l = 0; l < global.length; l++) {
+				Integer index = routeIndices.get(chunk.ids.get(l));
+				if (index == null) {
+					index = routeIndices.size();
+					routeIndices.put(chunk.ids.get(l), index);
+				}
+				global[l] = index;
+			}
+			toGlobal.add(global);
+			if (counts.length < routeIndices.size()) {
+				counts = Arrays.copyOf(counts, Math.max(routeIndices.size(), 2 * counts.length));
+			}
+			for (int r = 0; r < chunk.nRows; r++) {
+				counts[global[chunk.routes[r]]]++;
+			}
+		}
+
+		int nRoutes = routeIndices.size();
+		long[][] times = new long[nRoutes][];
+		double[][] coordinates = new double[nRoutes][];
+		for (int r = 0; r < nRoutes; r++) {
+			times[r] = new long[counts[r]];
+			coordinates[r] = new double[counts[r] * dimensions];
+		}
+		int[] filled = new int[nRoutes];
+		String[] ids = routeIndices.keySet().toArray(new String[nRoutes]);
+		for (int c = 0; c < chunks.size(); c++) {
+			Chunk chunk = chunks.get(c);
+			int[] global = toGlobal.get(c);
+			for (int row = 0; row < chunk.nRows; row++) {
+				int route = global[chunk.routes[row]];
+				int i = filled[route]++;
+				long time = chunk.times[row];
+				if (i > 0 && time <= times[route][i - 1]) {
+					throw new IOException("Times of route " + ids[route] + " are not increasing: " + time
+							+ " follows " + times[route][i - 1]);
+				}
+				times[route][i] = time;
+				System.arraycopy(chunk.coordinates, row * dimensions, coordinates[route], i * dimensions, dimensions);
+			}
+		}
+
+		Map<String, ArrayRoute> routes = new LinkedHashMap<>();
+		for (int r = 0; r < nRoutes; r++) {
+			routes.put(ids[r], new ArrayRoute(times[r], coordinates[r], dimensions));
+		}
+		return routes;
+	}
+
+	/**
+	 * The rows parsed from a chunk of the file.
+	 */
+	private static class Chunk {
+		// The chunk's bytes, and the indices of its route ids; released once the
+		// chunk is parsed, so that only the columns and ids are held until the
+		// routes are assembled.
+		private byte[] bytes;
+		private Map<String, Integer> idIndices = new HashMap<>();
+		// The position of the chunk in the file.
+		private final long start;
+		private final byte delimiter;
+		// The position of the parser within the chunk.
+		private int position;
+
+		// The route ids that appear in the chunk, in order of first appearance.
+		private final List<String> ids = new ArrayList<>();
+		// The columns: the index (in ids) of each row's route, its time and its
+		// coordinates.
+		private int nRows;
+		private int dimensions = -1;
+		private int[] routes = new int[1024];
+		private long[] times = new long[1024];
+		private double[] coordinates = new double[0];
+
+		private Chunk(byte[] bytes, long start, byte delimiter) {
+			this.bytes = bytes;
+			this.start = start;
+			this.delimiter = delimiter;
+		}
+
+		private void parse(boolean mayHaveHeader) throws IOException {
+			// The route id of the previous row, as a range of bytes.
+			int previousStart = -1;
+			int previousEnd = -1;
+			int previousRoute = -1;
+			boolean firstLine = mayHaveHeader;
+			while (position < bytes.length) {
+				int lineStart = position;
+				int lineEnd = lineStart;
+				while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+					lineEnd++;
+				}
+				int contentEnd = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+				boolean header = firstLine && isHeader(lineStart, contentEnd);
+				firstLine = false;
+				if (!header && !isBlank(lineStart, contentEnd)) {
+					// The route id.
+					int idStart = skipSpaces(lineStart, contentEnd);
+					int idEnd = fieldEnd(idStart, contentEnd);
+					int route;
+					if (previousRoute >= 0 && sameBytes(previousStart, previousEnd, idStart, trimEnd(idStart, idEnd))) {
+						route = previousRoute;
+					} else {
+						previousStart = idStart;
+						previousEnd = trimEnd(idStart, idEnd);
+						String id = new String(bytes, previousStart, previousEnd - previousStart, StandardCharsets.UTF_8);
+						Integer index = idIndices.get(id);
+						if (index == null) {
+							index = ids.size();
+							ids.add(id);
+							idIndices.put(id, index);
+						}
+						route = index;
+						previousRoute = route;
+					}
+					if (idEnd >= contentEnd) {
+						throw error("Missing time", lineStart);
+					}
+
+					// The time and coordinates.
+					ensureCapacity();
+					routes[nRows] = route;
+					position = idEnd + 1;
+					int timeEnd = fieldEnd(position, contentEnd);
+					times[nRows] = parseLong(timeEnd, lineStart);
+					int d = 0;
+					while (timeEnd < contentEnd) {
+						position = timeEnd + 1;
+						timeEnd = fieldEnd(position, contentEnd);
+						if (dimensions >= 0 && d >= dimensions) {
+							throw error("Too many coordinates", lineStart);
+						}
+						ensureCoordinateCapacity(d);
+						coordinates[nRows * Math.max(dimensions, d + 1) + d] = parseDouble(timeEnd, lineStart);
+						d++;
+					}
+					if (dimensions < 0) {
+						if (d == 0) {
+							throw error("No coordinates", lineStart);
+						}
+						dimensions = d;
+					} else if (d != dimensions) {
+						throw error("Expected " + dimensions + " coordinates", lineStart);
+					}
+					nRows++;
+				}
+				position = lineEnd + 1;
+			}
+			bytes = null;
+			idIndices = null;
+		}
+
+		private void ensureCapacity() {
+			if (nRows == routes.length) {
+				routes = Arrays.copyOf(routes, 2 * nRows);
+				times = Arrays.copyOf(times, 2 * nRows);
+			}
+		}
+
+		private void ensureCoordinateCapacity(int d) {
+			int needed = (nRows + 1) * Math.max(dimensions, d + 1);
+			if (coordinates.length < needed) {
+				coordinates = Arrays.copyOf(coordinates, Math.max(needed, 2 * coordinates.length));
+			}
+		}
+
+		/**
+		 * 
+		 * @return Whether the line's time field (if any) does not start like a number.
+		 */
+		private boolean isHeader(int lineStart, int lineEnd) {
+			int timeStart = fieldEnd(lineStart, lineEnd) + 1;
+			if (timeStart >= lineEnd) {
+				return false;
+			}
+			int i = skipSpaces(timeStart, lineEnd);
+			if (i < lineEnd && (bytes[i] == '-' || bytes[i] == '+')) {
+				i++;
+			}
+			return i >= lineEnd || bytes[i] < '0' || bytes[i] > '9';
+		}
+
+		private boolean isBlank(int from, int to) {
+			return skipSpaces(from, to) >= to;
+		}
+
+		private int skipSpaces(int from, int to) {
+			while (from < to && bytes[from] == ' ') {
+				from++;
+			}
+			return from;
+		}
+
+		private int trimEnd(int from, int to) {
+			while (to > from && bytes[to - 1] == ' ') {
+				to--;
+			}
+			return to;
+		}
+
+		/**
+		 * 
+		 * @return The position of the delimiter ending the field starting at from, or
+		 *         the end of the line.
+		 */
+		private int fieldEnd(int from, int lineEnd) {
+			while (from < lineEnd && bytes[from] != delimiter) {
+				from++;
+			}
+			return from;
+		}
+
+		private boolean sameBytes(int start1, int end1, int start2, int end2) {
+			if (end1 - start1 != end2 - start2) {
+				return false;
+			}
+			for (int i = 0; i < end1 - start1; i++) {
+				if (bytes[start1 + i] != bytes[start2 + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Parse a long from the current position to the end of the field.
+		 */
+		private long parseLong(int end, int lineStart) throws IOException {
+			int i = skipSpaces(position, end);
+			int to = trimEnd(i, end);
+			boolean negative = false;
+			if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+				negative = bytes[i] == '-';
+				i++;
+			}
+			if (i >= to) {
+				throw error("Malformed time", lineStart);
+			}
+			long value = 0;
+			for (; i < to; i++) {
+				int digit = bytes[i] - '0';
+				if (digit < 0 || digit > 9) {
+					throw error("Malformed time", lineStart);
+				}
+				// Accumulate negatively, so that Long.MIN_VALUE can be parsed.
+				if (value < (Long.MIN_VALUE + digit) / 10) {
+					throw error("Time out of range", lineStart);
+				}
+				value = value * 10 - digit;
+			}
+			if (!negative) {
+				if (value == Long.MIN_VALUE) {
+					throw error("Time out of range", lineStart);
+				}
+				value = -value;
+			}
+			return value;
+		}
+
+		/**
+		 * Parse a double from the current position to the end of the field.
+		 */
+		private double parseDouble(int end, int lineStart) throws IOException {
+			int from = skipSpaces(position, end);
+			int to = trimEnd(from, end);
+			int i = from;
+			boolean negative = false;
+			if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+				negative = bytes[i] == '-';
+				i++;
+			}
+			long mantissa = 0;
+			int significantDigits = 0;
+			int exponent = 0;
+			boolean anyDigits = false;
+			for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+				anyDigits = true;
+				if (significantDigits < 18) {
+					mantissa = mantissa * 10 + (bytes[i] - '0');
+					if (mantissa != 0) {
+						significantDigits++;
+					}
+				} else {
+					exponent++;
+					significantDigits++;
+				}
+			}
+			if (i < to && bytes[i] == '.') {
+				i++;
+				for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+					anyDigits = true;
+					if (significantDigits < 18) {
+						mantissa = mantissa * 10 + (bytes[i] - '0');
+						exponent--;
+						if (mantissa != 0) {
+							significantDigits++;
+						}
+					} else {
+						significantDigits++;
+					}
+				}
+			}
+			if (anyDigits && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+				i++;
+				boolean negativeExponent = false;
+				if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+					negativeExponent = bytes[i] == '-';
+					i++;
+				}
+				int explicit = 0;
+				boolean anyExponentDigits = false;
+				for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+					anyExponentDigits = true;
+					explicit = Math.min(100_000, explicit * 10 + (bytes[i] - '0'));
+				}
+				if (!anyExponentDigits) {
+					throw error("Malformed coordinate", lineStart);
+				}
+				exponent += negativeExponent ? -explicit : explicit;
+			}
+			if (i < to) {
+				// Not a plain decimal (e.g., NaN or Infinity): leave it to the library.
+				return slowParseDouble(from, to, lineStart);
+			}
+			if (!anyDigits) {
+				throw error("Malformed coordinate", lineStart);
+			}
+			double value;
+			if (mantissa == 0) {
+				value = 0;
+			} else if (significantDigits <= 15 && -22 <= exponent && exponent <= 22) {
+				// Both the mantissa and the power of 10 are exact, so a single
+				// correctly-rounded operation gives the correctly-rounded result.
+				value = exponent < 0 ? mantissa / POWERS_OF_10[-exponent] : mantissa * POWERS_OF_10[exponent];
+			} else {
+				return slowParseDouble(from, to, lineStart);
+			}
+			return negative ? -value : value;
+		}
+
+		private double slowParseDouble(int from, int to, int lineStart) throws IOException {
+			try {
+				return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+			} catch (NumberFormatException e) {
+				throw error("Malformed coordinate", lineStart);
+			}
+		}
+
+		private IOException error(String message, int lineStart) {
+			int lineEnd = lineStart;
+			while (lineEnd < bytes.length && bytes[lineEnd] != '\n' && lineEnd - lineStart < 200) {
+				lineEnd++;
+			}
+			return new IOException(message + " at byte " + (start + lineStart) + ": "
+					+ new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).trim());
+		}
+	}
+}
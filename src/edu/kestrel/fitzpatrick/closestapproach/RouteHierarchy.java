@@ -0,0 +1,422 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A multi-resolution view of a route: a binary tree over the route's
+ *         segments, in which each node covers a run of consecutive segments and
+ *         records their time span, the bounding box of their way points, and a
+ *         simplification of them to a single segment (the chord from the run's
+ *         first way point to its last) with the greatest distance at any instant
+ *         between the object and the chord. The leaves are the route's own
+ *         segments.
+ *         </p>
+ * 
+ *         <p>
+ *         Computed once per route and reused for every pair that the route is
+ *         compared with (see
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(RouteHierarchy, RouteHierarchy, double)}).
+ *         The closest approaches between two routes are found by descending both
+ *         trees together, pruning pairs of nodes that cannot come within the
+ *         least distance found so far; only the pairs of segments that could are
+ *         evaluated.
+ *         </p>
+ */
+public class RouteHierarchy {
+	// The margin, relative to the magnitudes of the positions, by which a pruned
+	// pair's lower bound must exceed the least distance (so that rounding in the
+	// bounds cannot change the results).
+	private static final double PRUNE_MARGIN = 1e-9;
+
+	private final Route route;
+	private final int dimensions;
+
+	// For each node, the first and last way points covered (way points lo..hi, so
+	// segments lo..hi-1), and the children (-1 for a leaf). The root is node 0.
+	private final int[] lo;
+	private final int[] hi;
+	private final int[] left;
+	private final int[] right;
+	// For each node, the bounding box of its way points (dimensions values per
+	// node).
+	private final double[] boxMin;
+	private final double[] boxMax;
+	// For each node, the greatest distance at any instant between the object and
+	// the node's chord.
+	private final double[] error;
+	// The number of nodes built so far.
+	private int nNodes;
+
+	/**
+	 * Build the hierarchy of a route.
+	 * 
+	 * @param route A route (two or more way points, with increasing times).
+	 */
+	public RouteHierarchy(Route route) {
+		super();
+		assert route.size() >= 2;
+		this.route = route;
+		this.dimensions = route.dimensions();
+		int size = 2 * (route.size() - 1) - 1;
+		lo = new int[size];
+		hi = new int[size];
+		left = new int[size];
+		right = new int[size];
+		boxMin = new double[size * dimensions];
+		boxMax = new double[size * dimensions];
+		error = new double[size];
+		build(0, route.size() - 1);
+		assert nNodes == size;
+	}
+
+	/**
+	 * Build the subtree over way points from..to.
+	 * 
+	 * @return The subtree's root node.
+	 */
+	private int build(int from, int to) {
+		int node = nNodes++;
+		lo[node] = from;
+		hi[node] = to;
+		if (to - from == 1) {
+			left[node] = -1;
+			right[node] = -1;
+			for (int d = 0; d < dimensions; d++) {
+				double start = route.getCoordinate(from, d);
+				double end = route.getCoordinate(to, d);
+				boxMin[node * dimensions + d] = Math.min(start, end);
+				boxMax[node * dimensions + d] = Math.max(start, end);
+			}
+			// A segment is its own chord.
+			error[node] = 0;
+		} else {
+			int mid = (from + to) >>> 1;
+			int leftNode = build(from, mid);
+			int rightNode = build(mid, to);
+			left[node] = leftNode;
+			right[node] = rightNode;
+			for (int d = 0; d < dimensions; d++) {
+				boxMin[node * dimensions + d] = Math.min(boxMin[leftNode * dimensions + d],
+						boxMin[rightNode * dimensions + d]);
+				boxMax[node * dimensions + d] = Math.max(boxMax[leftNode * dimensions + d],
+						boxMax[rightNode * dimensions + d]);
+			}
+			// Both the route and the chord are linear between way points, so the
+			// greatest distance between them is at a way point.
+			long startTime = route.getTime(from);
+			double duration = route.getTime(to) - startTime;
+			double max = 0;
+			for (int i = from + 1; i < to; i++) {
+				double k = (route.getTime(i) - startTime) / duration;
+				double sumSqr = 0;
+				for (int d = 0; d < dimensions; d++) {
+					double start = route.getCoordinate(from, d);
+					double chord = start + k * (route.getCoordinate(to, d) - start);
+					double di = route.getCoordinate(i, d) - chord;
+					sumSqr += di * di;
+				}
+				max = Math.max(max, Math.sqrt(sumSqr));
+			}
+			error[node] = max;
+		}
+		return node;
+	}
+
+	/**
+	 * 
+	 * @return The route.
+	 */
+	public Route getRoute() {
+		return route;
+	}
+
+	/**
+	 * 
+	 * @return The number of levels in the tree (1 for a single segment).
+	 */
+	public int getDepth() {
+		return depth(0);
+	}
+
+	private int depth(int node) {
+		return left[node] < 0 ? 1 : 1 + Math.max(depth(left[node]), depth(right[node]));
+	}
+
+	/**
+	 * 
+	 * @return The greatest distance at any instant between the object and the
+	 *         chord from its first way point to its last.
+	 */
+	public double getError() {
+		return error[0];
+	}
+
+	/**
+	 * The search for the closest approaches between two routes, descending their
+	 * hierarchies together.
+	 */
+	static class Search {
+		private final RouteHierarchy hierarchy1;
+		private final RouteHierarchy hierarchy2;
+		private final double tolerance;
+		// The routes' common period.
+		private final long firstTime;
+		private final long lastTime;
+		// The margin for the lower bounds.
+		private final double margin;
+
+		// The least distance so far.
+		private double minDistance = Double.POSITIVE_INFINITY;
+		// The closest approaches within the tolerance of the least distance so far,
+		// with the start times of their aligned segments.
+		private final List<Found> found = new ArrayList<>();
+		// The number of pairs of segments evaluated.
+		private int evaluated;
+
+		// Scratch arrays.
+		private final double[] start1;
+		private final double[] end1;
+		private final double[] start2;
+		private final double[] end2;
+		private final double[] dS;
+		private final double[] dE;
+
+		/**
+		 * 
+		 * @param hierarchy1 The hierarchy of route 1.
+		 * @param hierarchy2 The hierarchy of route 2 (with the same dimensions).
+		 * @param tolerance  The tolerance for ties (non-negative).
+		 * @param firstTime  The start of the routes' common period.
+		 * @param lastTime   The end of the routes' common period (after the start).
+		 */
+		Search(RouteHierarchy hierarchy1, RouteHierarchy hierarchy2, double tolerance, long firstTime,
+				long lastTime) {
+			super();
+			assert hierarchy1.dimensions == hierarchy2.dimensions;
+			assert firstTime < lastTime;
+			this.hierarchy1 = hierarchy1;
+			this.hierarchy2 = hierarchy2;
+			this.tolerance = tolerance;
+			this.firstTime = firstTime;
+			this.lastTime = lastTime;
+			int dimensions = hierarchy1.dimensions;
+			double magnitude = 0;
+			for (int d = 0; d < dimensions; d++) {
+				magnitude += Math.max(Math.max(Math.abs(hierarchy1.boxMin[d]), Math.abs(hierarchy1.boxMax[d])),
+						Math.max(Math.abs(hierarchy2.boxMin[d]), Math.abs(hierarchy2.boxMax[d])));
+			}
+			margin = PRUNE_MARGIN * (1 + magnitude);
+			start1 = new double[dimensions];
+			end1 = new double[dimensions];
+			start2 = new double[dimensions];
+			end2 = new double[dimensions];
+			dS = new double[dimensions];
+			dE = new double[dimensions];
+		}
+
+		/**
+		 * 
+		 * @return The closest approaches, in time order: the same as for the
+		 *         aligned segments of the routes.
+		 */
+		List<ClosestApproach> run() {
+			descend(0, 0);
+			// Those found before the least distance was reached may not be within the
+			// tolerance of it. The rest are put in the order of their aligned segments,
+			// which is that of the walk; the approaches' own times may tie, or be null
+			// for parallel motion.
+			List<ClosestApproach> closestApproaches = new ArrayList<>();
+			found.stream() //
+					.filter(f -> f.approach.distance() <= minDistance + tolerance) //
+					.sorted(Comparator.comparingLong((Found f) -> f.startTime)) //
+					.forEach(f -> closestApproaches.add(f.approach));
+			return closestApproaches;
+		}
+
+		/**
+		 * 
+		 * @return The number of pairs of segments evaluated.
+		 */
+		int getEvaluated() {
+			return evaluated;
+		}
+
+		private void descend(int node1, int node2) {
+			if (hierarchy1.left[node1] < 0 && hierarchy2.left[node2] < 0) {
+				evaluate(hierarchy1.lo[node1], hierarchy2.lo[node2]);
+				return;
+			}
+			// Split the node with the longer time span, visiting the nearer child
+			// first so that the least distance falls quickly.
+			int a1 = node1;
+			int a2 = node2;
+			int b1 = node1;
+			int b2 = node2;
+			if (hierarchy2.left[node2] < 0
+					|| (hierarchy1.left[node1] >= 0 && span(hierarchy1, node1) >= span(hierarchy2, node2))) {
+				a1 = hierarchy1.left[node1];
+				b1 = hierarchy1.right[node1];
+			} else {
+				a2 = hierarchy2.left[node2];
+				b2 = hierarchy2.right[node2];
+			}
+			double boundA = lowerBound(a1, a2);
+			double boundB = lowerBound(b1, b2);
+			if (boundB < boundA) {
+				visit(b1, b2, boundB);
+				visit(a1, a2, boundA);
+			} else {
+				visit(a1, a2, boundA);
+				visit(b1, b2, boundB);
+			}
+		}
+
+		private void visit(int node1, int node2, double lowerBound) {
+			// The least distance may have fallen since the bound was computed.
+			if (lowerBound <= minDistance + tolerance) {
+				descend(node1, node2);
+			}
+		}
+
+		private static long span(RouteHierarchy hierarchy, int node) {
+			return hierarchy.route.getTime(hierarchy.hi[node]) - hierarchy.route.getTime(hierarchy.lo[node]);
+		}
+
+		/**
+		 * 
+		 * @return A lower bound on the distance between the objects over the
+		 *         nodes' common period within the routes' common period (infinite if
+		 *         the period is empty or a single time, which no aligned segment
+		 *         covers).
+		 */
+		private double lowerBound(int node1, int node2) {
+			Route route1 = hierarchy1.route;
+			Route route2 = hierarchy2.route;
+			long startTime1 = route1.getTime(hierarchy1.lo[node1]);
+			long endTime1 = route1.getTime(hierarchy1.hi[node1]);
+			long startTime2 = route2.getTime(hierarchy2.lo[node2]);
+			long endTime2 = route2.getTime(hierarchy2.hi[node2]);
+			long start = Math.max(firstTime, Math.max(startTime1, startTime2));
+			long end = Math.min(lastTime, Math.min(endTime1, endTime2));
+			if (start >= end) {
+				return Double.POSITIVE_INFINITY;
+			}
+
+			// The separation of the bounding boxes.
+			int dimensions = dS.length;
+			double boxSqr = 0;
+			for (int d = 0; d < dimensions; d++) {
+				double gap = Math.max(hierarchy2.boxMin[node2 * dimensions + d] - hierarchy1.boxMax[node1 * dimensions + d],
+						hierarchy1.boxMin[node1 * dimensions + d] - hierarchy2.boxMax[node2 * dimensions + d]);
+				if (gap > 0) {
+					boxSqr += gap * gap;
+				}
+			}
+
+			// The closest approach of the chords over the common period, less the
+			// chords' errors.
+			chord(hierarchy1, node1, start, dS);
+			chord(hierarchy1, node1, end, dE);
+			chord(hierarchy2, node2, start, start2);
+			chord(hierarchy2, node2, end, end2);
+			double enumerator = 0;
+			double denominator = 0;
+			for (int d = 0; d < dimensions; d++) {
+				dS[d] -= start2[d];
+				dE[d] -= end2[d];
+				double dSdE = dS[d] - dE[d];
+				enumerator += dS[d] * dSdE;
+				denominator += dSdE * dSdE;
+			}
+			double k = denominator > 0 ? Math.max(0, Math.min(1, enumerator / denominator)) : 0;
+			double chordSqr = 0;
+			for (int d = 0; d < dimensions; d++) {
+				double di = dS[d] + k * (dE[d] - dS[d]);
+				chordSqr += di * di;
+			}
+			double chordBound = Math.sqrt(chordSqr) - hierarchy1.error[node1] - hierarchy2.error[node2];
+
+			return Math.max(Math.sqrt(boxSqr), chordBound) - margin;
+		}
+
+		/**
+		 * Interpolate a node's chord at a time within the node's span.
+		 */
+		private static void chord(RouteHierarchy hierarchy, int node, long time, double[] coordinates) {
+			Route route = hierarchy.route;
+			int from = hierarchy.lo[node];
+			int to = hierarchy.hi[node];
+			long startTime = route.getTime(from);
+			double k = ((double) time - startTime) / (route.getTime(to) - startTime);
+			for (int d = 0; d < coordinates.length; d++) {
+				double start = route.getCoordinate(from, d);
+				coordinates[d] = start + k * (route.getCoordinate(to, d) - start);
+			}
+		}
+
+		/**
+		 * Evaluate the aligned segment (if any) in the common period of a segment of
+		 * each route, exactly as {@link AlignedSegments} does.
+		 * 
+		 * @param segment1 The index of the way point starting route 1's segment.
+		 * @param segment2 The index of the way point starting route 2's segment.
+		 */
+		private void evaluate(int segment1, int segment2) {
+			Route route1 = hierarchy1.route;
+			Route route2 = hierarchy2.route;
+			// No way point of either route falls strictly within the common period of
+			// the segments, so it is a single aligned segment.
+			long start = Math.max(firstTime, Math.max(route1.getTime(segment1), route2.getTime(segment2)));
+			long end = Math.min(lastTime, Math.min(route1.getTime(segment1 + 1), route2.getTime(segment2 + 1)));
+			if (start >= end) {
+				return;
+			}
+			evaluated++;
+			AlignedSegments.interpolate(route1, start, start1);
+			AlignedSegments.interpolate(route1, end, end1);
+			AlignedSegments.interpolate(route2, start, start2);
+			AlignedSegments.interpolate(route2, end, end2);
+			for (int d = 0; d < dS.length; d++) {
+				dS[d] = start1[d] - start2[d];
+				dE[d] = end1[d] - end2[d];
+			}
+			double closestK = DetermineClosestApproachBetweenLinearSegments.computeClosestK(dS, dE);
+			// As for the aligned segments, exclude a closest approach at the end of a
+			// segment, other than the final segment.
+			if (end == lastTime || closestK < 1) {
+				double distance = DetermineClosestApproachBetweenLinearSegments.distance(start1, end1, start2, end2,
+						closestK);
+				if (distance <= minDistance + tolerance) {
+					// As DetermineClosestApproachBetweenRoutes.Minima.
+					ClosestApproach ca = DetermineClosestApproachBetweenLinearSegments.closestApproach(start, end,
+							start1, end1, start2, end2, closestK);
+					if (ca.distance() <= minDistance + tolerance) {
+						minDistance = Math.min(minDistance, ca.distance());
+						found.add(new Found(start, ca));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A closest approach found by a {@link Search}, with the start time of its
+	 * aligned segment (which is unique to the segment).
+	 */
+	private static class Found {
+		private final long startTime;
+		private final ClosestApproach approach;
+
+		private Found(long startTime, ClosestApproach approach) {
+			super();
+			this.startTime = startTime;
+			this.approach = approach;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Simplifies a route by dropping way points, in the style of
+ *         Douglas-Peucker, but measuring the error in space-time: a way point
+ *         may be dropped only if the object's position at the way point's time
+ *         is within a distance epsilon of the position interpolated at that
+ *         time along the simplified route (rather than of the simplified path,
+ *         regardless of time).
+ *         </p>
+ * 
+ *         <p>
+ *         Both routes move uniformly between the way points of the original
+ *         route, so the distance between them is greatest at one of those way
+ *         points: the bound holds at every instant, not just at the way points.
+ *         The simplified route keeps the first and last way points, so it covers
+ *         the same period.
+ *         </p>
+ */
+public class RouteSimplifier {
+
+	private RouteSimplifier() {
+		super();
+	}
+
+	/**
+	 * Simplify a route, such that the simplified route is within a distance of the
+	 * route at every instant.
+	 * 
+	 * @param route   A route (two or more way points, with increasing times).
+	 * @param epsilon The greatest distance allowed (non-negative).
+	 * @return The simplified route: a subsequence of the route's way points (not
+	 *         copied), including the first and last.
+	 */
+	public static List<WayPoint> simplify(List<WayPoint> route, double epsilon) {
+		assert route.size() >= 2;
+		assert epsilon >= 0;
+		int n = route.size();
+		boolean[] keep = new boolean[n];
+		keep[0] = true;
+		keep[n - 1] = true;
+		// The runs of way points still to be simplified, as (first, last) pairs. A
+		// stack rather than recursion, so that long routes do not overflow the call
+		// stack.
+		Deque<int[]> runs = new ArrayDeque<>();
+		runs.push(new int[] { 0, n - 1 });
+		while (!runs.isEmpty()) {
+			int[] run = runs.pop();
+			int first = run[0];
+			int last = run[1];
+			double maxError = -1;
+			int worst = -1;
+			for (int i = first + 1; i < last; i++) {
+				double error = error(route.get(first), route.get(last), route.get(i));
+				if (error > maxError) {
+					maxError = error;
+					worst = i;
+				}
+			}
+			if (maxError > epsilon) {
+				keep[worst] = true;
+				runs.push(new int[] { first, worst });
+				runs.push(new int[] { worst, last });
+			}
+		}
+
+		List<WayPoint> simplified = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			if (keep[i]) {
+				simplified.add(route.get(i));
+			}
+		}
+		return simplified;
+	}
+
+	/**
+	 * 
+	 * @param route      A route (two or more way points, with increasing times).
+	 * @param simplified A simplification of the route (as by
+	 *                   {@link #simplify(List, double)}).
+	 * @return The greatest distance, at any instant, between the route and the
+	 *         simplified route.
+	 */
+	public static double maxError(List<WayPoint> route, List<WayPoint> simplified) {
+		assert simplified.size() >= 2;
+		assert simplified.get(0).getTime() == route.get(0).getTime();
+		assert simplified.get(simplified.size() - 1).getTime() == route.get(route.size() - 1).getTime();
+		double maxError = 0;
+		int segment = 0;
+		for (WayPoint wp : route) {
+			while (wp.getTime() > simplified.get(segment + 1).getTime()) {
+				segment++;
+			}
+			maxError = Math.max(maxError, error(simplified.get(segment), simplified.get(segment + 1), wp));
+		}
+		return maxError;
+	}
+
+	/**
+	 * 
+	 * @param start The start of a segment.
+	 * @param end   The end of the segment.
+	 * @param wp    A way point with a time within the segment's period.
+	 * @return The distance between the way point and the segment's position at the
+	 *         way point's time.
+	 */
+	private static double error(WayPoint start, WayPoint end, WayPoint wp) {
+		double k = ((double) wp.getTime() - start.getTime()) / (end.getTime() - start.getTime());
+		double[] s = start.getCoordinates();
+		double[] e = end.getCoordinates();
+		double[] p = wp.getCoordinates();
+		double sumSqrDistance = 0;
+		for (int d = 0; d < p.length; d++) {
+			double di = p[d] - (s[d] + k * (e[d] - s[d]));
+			sumSqrDistance += di * di;
+		}
+		return Math.sqrt(sumSqrDistance);
+	}
+}
@@ -0,0 +1,390 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A compact binary file of routes, read by memory-mapping the file and
+ *         presenting each route as a read-only {@link Route} view directly over
+ *         the mapped buffers - no object is created per way point, and the
+ *         operating system pages the data in as it is used. The closest-approach
+ *         engine runs directly on the views (see
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(Route, Route)}).
+ *         </p>
+ * 
+ *         <p>
+ *         The file is little-endian and consists of:
+ *         </p>
+ *         <ul>
+ *         <li>a header: the magic number {@link #MAGIC} (int), the format
+ *         {@link #VERSION} (int), the number of spatial dimensions (int), the
+ *         number of routes (int) and the total number of way points (long);</li>
+ *         <li>an offset table: for each route, the index (long) of its first way
+ *         point, followed by the total number of way points - so route r has the
+ *         way points [offset[r], offset[r + 1]);</li>
+ *         <li>the times block: the time (long) of each way point, route after
+ *         route;</li>
+ *         <li>the coordinates block: the coordinates (doubles) of each way
+ *         point, one way point after another.</li>
+ *         </ul>
+ * 
+ *         <p>
+ *         Every field is 8-byte aligned within the blocks. A block larger than a
+ *         single mapping (2GB) is mapped in several chunks.
+ *         </p>
+ * 
+ *         <p>
+ *         An open store may be read concurrently. Its views must not be used
+ *         after it is closed.
+ *         </p>
+ */
+public class RouteStore implements Closeable {
+	/**
+	 * The magic number at the start of a route file.
+	 */
+	public static final int MAGIC = 0x52545331;
+	/**
+	 * The version of the file format.
+	 */
+	public static final int VERSION = 1;
+
+	// The size of the header, in bytes.
+	private static final int HEADER_BYTES = 24;
+	// The number of 8-byte elements in each mapped chunk (1GB).
+	private static final int CHUNK_SHIFT = 27;
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+	// The size of the buffer used when writing.
+	private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+	private final FileChannel channel;
+	private final int dimensions;
+	private final int nRoutes;
+	private final long nPoints;
+	private final LongBuffer[] offsets;
+	private final LongBuffer[] times;
+	private final DoubleBuffer[] coordinates;
+
+	/**
+	 * Map the routes in a file.
+	 * 
+	 * @param channel  The file.
+	 * @param position The position of the routes in the file.
+	 * @param whole    Whether the routes must extend to the end of the file.
+	 */
+	private RouteStore(FileChannel channel, long position, boolean whole) throws IOException {
+		super();
+		this.channel = channel;
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining()) {
+			if (channel.read(header, position + header.position()) < 0) {
+				throw new IOException("Truncated route file header");
+			}
+		}
+		header.flip();
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a route file");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported route file version " + version);
+		}
+		dimensions = header.getInt();
+		nRoutes = header.getInt();
+		nPoints = header.getLong();
+		if (dimensions < 0 || nRoutes < 0 || nPoints < 0) {
+			throw new IOException("Corrupt route file header");
+		}
+		long offsetsPosition = position + HEADER_BYTES;
+		long timesPosition = offsetsPosition + 8L * (nRoutes + 1);
+		long coordinatesPosition = timesPosition + 8L * nPoints;
+		long fileSize = coordinatesPosition + 8L * nPoints * dimensions;
+		if (whole ? channel.size() != fileSize : channel.size() < fileSize) {
+			throw new IOException("Route file size is " + channel.size() + ", expected " + fileSize);
+		}
+		offsets = map(channel, offsetsPosition, nRoutes + 1L).stream() //
+				.map(ByteBuffer::asLongBuffer) //
+				.toArray(LongBuffer[]::new);
+		times = map(channel, timesPosition, nPoints).stream() //
+				.map(ByteBuffer::asLongBuffer) //
+				.toArray(LongBuffer[]::new);
+		coordinates = map(channel, coordinatesPosition, nPoints * dimensions).stream() //
+				.map(ByteBuffer::asDoubleBuffer) //
+				.toArray(DoubleBuffer[]::new);
+		checkOffsets();
+	}
+
+	/**
+	 * Check, once, that the offset table starts at 0, ends at the number of way
+	 * points and is non-decreasing, with no route too large to view; so that
+	 * {@link #route(int)} need not check the offsets it reads.
+	 * 
+	 * @throws IOException If the offset table is not valid.
+	 */
+	private void checkOffsets() throws IOException {
+		if (offset(0) != 0 || offset(nRoutes) != nPoints) {
+			throw new IOException("Corrupt route file offset table");
+		}
+		long previous = 0;
+		for (int r = 1; r <= nRoutes; r++) {
+			long offset = offset(r);
+			if (offset < previous || offset - previous > Integer.MAX_VALUE) {
+				throw new IOException("Corrupt route file offset table at route " + (r - 1));
+			}
+			previous = offset;
+		}
+	}
+
+	/**
+	 * Open a route file, mapping it into memory.
+	 * 
+	 * @param file The file.
+	 * @return The store.
+	 * @throws IOException If the file cannot be read or is not a valid route file.
+	 */
+	public static RouteStore open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new RouteStore(channel, 0, true);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Map routes embedded in a larger file (e.g., a snapshot of a
+	 * {@link SpaceTimeIndex}), written by {@link #write(FileChannel, List)}.
+	 * 
+	 * @param channel  The file. Closing the store closes the file; but the mapping
+	 *                 remains valid when the file is closed, so the caller may
+	 *                 close the file itself and continue to use the views.
+	 * @param position The position of the routes in the file.
+	 * @return The store.
+	 * @throws IOException If the routes cannot be read or are not valid.
+	 */
+	static RouteStore open(FileChannel channel, long position) throws IOException {
+		return new RouteStore(channel, position, false);
+	}
+
+	/**
+	 * Write routes to a file, replacing any existing file.
+	 * 
+	 * @param file   The file.
+	 * @param routes The routes (each with increasing times, all with the same
+	 *               dimensions).
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(Path file, List<? extends Route> routes) throws IOException {
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(out, routes);
+		}
+	}
+
+	/**
+	 * Write routes at the current position of a file (e.g., within a snapshot of a
+	 * {@link SpaceTimeIndex}); see {@link #open(FileChannel, long)}.
+	 * 
+	 * @param out    The file, positioned at a multiple of 8 bytes.
+	 * @param routes The routes (each with increasing times, all with the same
+	 *               dimensions).
+	 * @throws IOException If the file cannot be written.
+	 */
+	static void write(FileChannel out, List<? extends Route> routes) throws IOException {
+		int dimensions = routes.isEmpty() ? 0 : routes.get(0).dimensions();
+		long nPoints = 0;
+		for (Route route : routes) {
+			assert route.dimensions() == dimensions;
+			nPoints += route.size();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(dimensions);
+		buffer.putInt(routes.size());
+		buffer.putLong(nPoints);
+		long offset = 0;
+		for (Route route : routes) {
+			putLong(out, buffer, offset);
+			offset += route.size();
+		}
+		putLong(out, buffer, offset);
+		for (Route route : routes) {
+			for (int i = 0; i < route.size(); i++) {
+				putLong(out, buffer, route.getTime(i));
+			}
+		}
+		for (Route route : routes) {
+			for (int i = 0; i < route.size(); i++) {
+				for (int d = 0; d < dimensions; d++) {
+					if (!buffer.hasRemaining()) {
+						flush(out, buffer);
+					}
+					buffer.putDouble(route.getCoordinate(i, d));
+				}
+			}
+		}
+		flush(out, buffer);
+	}
+
+	/**
+	 * Write routes, given as lists of way points, to a file, replacing any existing
+	 * file.
+	 * 
+	 * @param file   The file.
+	 * @param routes The routes (each with increasing times, all with the same
+	 *               dimensions).
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void writeWayPoints(Path file, List<List<WayPoint>> routes) throws IOException {
+		write(file, routes.stream() //
+				.map(ListRoute::new) //
+				.collect(Collectors.toList()));
+	}
+
+	/**
+	 * 
+	 * @return The number of routes.
+	 */
+	public int size() {
+		return nRoutes;
+	}
+
+	/**
+	 * 
+	 * @return The number of spatial dimensions of the way points.
+	 */
+	public int dimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * 
+	 * @return The total number of way points.
+	 */
+	public long getPointCount() {
+		return nPoints;
+	}
+
+	/**
+	 * 
+	 * @param r The index of a route.
+	 * @return A view of the route.
+	 */
+	public Route route(int r) {
+		assert 0 <= r && r < nRoutes;
+		long first = offset(r);
+		return new MappedRoute(first, (int) (offset(r + 1) - first));
+	}
+
+	/**
+	 * 
+	 * @return A list of views of the routes; each view is created when it is got.
+	 */
+	public List<Route> routes() {
+		return new AbstractList<Route>() {
+			@Override
+			public Route get(int r) {
+				return route(r);
+			}
+
+			@Override
+			public int size() {
+				return nRoutes;
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private long offset(int r) {
+		return offsets[r >>> CHUNK_SHIFT].get((int) (r & CHUNK_MASK));
+	}
+
+	/**
+	 * Map a block of 8-byte elements, in chunks of at most 2^CHUNK_SHIFT elements.
+	 * 
+	 * @return The little-endian chunks.
+	 */
+	private static List<ByteBuffer> map(FileChannel channel, long position, long count) throws IOException {
+		List<ByteBuffer> chunks = new ArrayList<>();
+		for (long start = 0; start < count || start == 0; start += 1L << CHUNK_SHIFT) {
+			long size = Math.min(count - start, 1L << CHUNK_SHIFT);
+			chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, position + 8 * start, 8 * size)
+					.order(ByteOrder.LITTLE_ENDIAN));
+		}
+		return chunks;
+	}
+
+	private static void putLong(FileChannel out, ByteBuffer buffer, long value) throws IOException {
+		if (!buffer.hasRemaining()) {
+			flush(out, buffer);
+		}
+		buffer.putLong(value);
+	}
+
+	private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * A view of a route, reading directly from the mapped blocks.
+	 */
+	private class MappedRoute implements Route {
+		// The index of the route's first way point.
+		private final long first;
+		private final int size;
+
+		private MappedRoute(long first, int size) {
+			this.first = first;
+			this.size = size;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int dimensions() {
+			return dimensions;
+		}
+
+		@Override
+		public long getTime(int i) {
+			assert 0 <= i && i < size;
+			long index = first + i;
+			return times[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+		}
+
+		@Override
+		public double getCoordinate(int i, int dimension) {
+			assert 0 <= i && i < size;
+			assert 0 <= dimension && dimension < dimensions;
+			long index = (first + i) * dimensions + dimension;
+			return coordinates[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+		}
+	}
+}
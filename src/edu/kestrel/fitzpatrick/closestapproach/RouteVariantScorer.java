@@ -0,0 +1,416 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Scores many variants of a base route (e.g., with altitude changes,
+ *         speed changes or detours) against the same surrounding traffic. The
+ *         score of a variant is its closest approach to any traffic route (see
+ *         {@link VariantScore}).
+ *         </p>
+ * 
+ *         <p>
+ *         The traffic is indexed once, by time period and bounding box (see
+ *         {@link SpaceTimeIndex}). For each variant, only those traffic routes
+ *         that overlap the variant in time are considered, nearest bounding box
+ *         first; a traffic route is skipped if its bounding box is further from
+ *         the variant's bounding box than the closest approach found so far.
+ *         </p>
+ * 
+ *         <p>
+ *         A variant usually shares a prefix with the base route - the way
+ *         points before the first change. Over the period of the shared prefix,
+ *         the variant's closest approaches to a traffic route are those of the
+ *         base route, so the per-segment closest approaches between the base
+ *         route and each traffic route are computed once (on first use) and
+ *         reused for every variant. Only the remainder of the variant is
+ *         compared afresh. The results are the same as computing the closest
+ *         approaches between the whole variant and the traffic route.
+ *         </p>
+ * 
+ *         <p>
+ *         Variants are scored in parallel. A scorer may be used concurrently.
+ *         The latency of each pair evaluated may be recorded by a
+ *         {@link LatencyRecorder}.
+ *         </p>
+ */
+public class RouteVariantScorer {
+	// The route of which the variants are variations.
+	private final List<WayPoint> baseRoute;
+	// A view of the base route.
+	private final Route baseView;
+
+	// The traffic against which variants are scored.
+	private final SpaceTimeIndex traffic;
+
+	// The per-segment closest approaches between the base route and each traffic
+	// route, by traffic index. Computed on first use.
+	private final AtomicReferenceArray<SegmentMinima> baseMinima;
+
+	// Records the latency of each variant-traffic pair evaluated (if not null).
+	private volatile LatencyRecorder latencyRecorder;
+
+	/**
+	 * Create a scorer for variants of the base route, indexing the given traffic.
+	 * 
+	 * @param baseRoute The base route (two or more way points, with increasing
+	 *                  times).
+	 * @param traffic   The traffic routes (each with two or more way points, with
+	 *                  increasing times).
+	 */
+	public RouteVariantScorer(List<WayPoint> baseRoute, List<List<WayPoint>> traffic) {
+		this(baseRoute, new SpaceTimeIndex(traffic));
+	}
+
+	/**
+	 * Create a scorer for variants of the base route, using an existing traffic
+	 * index.
+	 * 
+	 * @param baseRoute The base route (two or more way points, with increasing
+	 *                  times).
+	 * @param traffic   The indexed traffic.
+	 */
+	public RouteVariantScorer(List<WayPoint> baseRoute, SpaceTimeIndex traffic) {
+		super();
+		assert baseRoute.size() >= 2;
+		this.baseRoute = baseRoute;
+		baseView = new ListRoute(baseRoute);
+		this.traffic = traffic;
+		baseMinima = new AtomicReferenceArray<>(traffic.size());
+	}
+
+	/**
+	 * 
+	 * @return The base route.
+	 */
+	public List<WayPoint> getBaseRoute() {
+		return baseRoute;
+	}
+
+	/**
+	 * 
+	 * @return The indexed traffic.
+	 */
+	public SpaceTimeIndex getTraffic() {
+		return traffic;
+	}
+
+	/**
+	 * 
+	 * @param latencyRecorder Records the latency of each variant-traffic pair
+	 *                        evaluated, by the longer route's length (null for
+	 *                        none).
+	 */
+	public void setLatencyRecorder(LatencyRecorder latencyRecorder) {
+		this.latencyRecorder = latencyRecorder;
+	}
+
+	/**
+	 * Score each of the variants against the traffic, in parallel.
+	 * 
+	 * @param variants The variants (each with two or more way points, with
+	 *                 increasing times).
+	 * @return The score of each variant, in the same order as the variants.
+	 */
+	public List<VariantScore> score(List<List<WayPoint>> variants) {
+		if (!EngineEvents.enabled) {
+			return IntStream.range(0, variants.size()) //
+					.parallel() //
+					.mapToObj(v -> score(v, variants.get(v))) //
+					.collect(Collectors.toList());
+		}
+		long startNanos = System.nanoTime();
+		LongAdder evaluated = new LongAdder();
+		List<VariantScore> scores = IntStream.range(0, variants.size()) //
+				.parallel() //
+				.mapToObj(v -> score(v, variants.get(v), evaluated)) //
+				.collect(Collectors.toList());
+		long pairs = (long) variants.size() * traffic.size();
+		EngineEvents.event(EngineEvents.Type.FLEET_BATCH, startNanos, variants.size(), traffic.size(),
+				evaluated.sum(), pairs - evaluated.sum());
+		return scores;
+	}
+
+	/**
+	 * Score one variant against the traffic.
+	 * 
+	 * @param index   The index to be recorded in the variant's score.
+	 * @param variant The variant (two or more way points, with increasing times).
+	 * @return The variant's score. If more than one traffic route comes equally
+	 *         close, the one with the smallest index is reported.
+	 */
+	public VariantScore score(int index, List<WayPoint> variant) {
+		return score(index, variant, null);
+	}
+
+	/**
+	 * As {@link #score(int, List)}, counting the traffic routes evaluated.
+	 * 
+	 * @param index          The index to be recorded in the variant's score.
+	 * @param variant        The variant (two or more way points, with increasing
+	 *                       times).
+	 * @param evaluatedCount Incremented by the number of traffic routes evaluated
+	 *                       (if not null).
+	 * @return The variant's score.
+	 */
+	private VariantScore score(int index, List<WayPoint> variant, LongAdder evaluatedCount) {
+		assert variant.size() >= 2;
+		int dimensions = traffic.dimensions();
+		double[] min = new double[dimensions];
+		double[] max = new double[dimensions];
+		SpaceTimeIndex.bounds(variant, min, max);
+
+		// The traffic routes that overlap the variant in time, nearest first.
+		IntStream.Builder overlapping = IntStream.builder();
+		traffic.forEachOverlapping(variant.get(0).getTime(), variant.get(variant.size() - 1).getTime(),
+				overlapping);
+		List<Candidate> candidates = overlapping.build() //
+				.mapToObj(t -> new Candidate(t, traffic.boxDistance(t, min, max))) //
+				.sorted(Comparator.comparingDouble((Candidate c) -> c.lowerBound).thenComparingInt(c -> c.traffic)) //
+				.collect(Collectors.toList());
+
+		VariantScore best = new VariantScore(index);
+		LatencyRecorder recorder = latencyRecorder;
+		int evaluated = 0;
+		for (Candidate candidate : candidates) {
+			if (candidate.lowerBound > best.distance()) {
+				// Neither this nor any remaining traffic route can come closer.
+				break;
+			}
+			evaluated++;
+			long startNanos = recorder != null ? System.nanoTime() : 0;
+			List<ClosestApproach> closestApproaches = computeClosestApproaches(variant, candidate.traffic);
+			if (recorder != null) {
+				recorder.record(Math.max(variant.size(), traffic.getRouteSize(candidate.traffic)),
+						System.nanoTime() - startNanos);
+			}
+			if (closestApproaches.isEmpty()) {
+				continue;
+			}
+			double distance = closestApproaches.get(0).distance();
+			if (distance < best.distance()
+					|| (distance == best.distance() && candidate.traffic < best.traffic())) {
+				best = new VariantScore(index, candidate.traffic, distance, closestApproaches);
+			}
+		}
+		if (EngineMetrics.enabled) {
+			// Traffic routes not overlapping the variant in time are pruned by the index.
+			EngineMetrics.pairs(evaluated, traffic.size() - evaluated);
+		}
+		if (evaluatedCount != null) {
+			evaluatedCount.add(evaluated);
+		}
+		return best;
+	}
+
+	/**
+	 * Determine the closest approaches between a variant and a traffic route,
+	 * reusing the base route's closest approaches over any prefix that the variant
+	 * shares with the base route.
+	 * 
+	 * @param variant A variant (two or more way points, with increasing times).
+	 * @param traffic The index of a traffic route.
+	 * @return The (possibly empty) list of closest approaches, in time order; the
+	 *         same as
+	 *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(List, List)}.
+	 */
+	public List<ClosestApproach> computeClosestApproaches(List<WayPoint> variant, int traffic) {
+		// The traffic route is read through its view, so that a route in a restored
+		// index is not copied into way points.
+		Route route = this.traffic.getRouteView(traffic);
+		int shared = sharedPrefix(baseRoute, variant);
+		long startTime = Math.max(variant.get(0).getTime(), this.traffic.getStartTime(traffic));
+		long endTime = Math.min(variant.get(variant.size() - 1).getTime(), this.traffic.getEndTime(traffic));
+		if (shared < 2 || startTime >= endTime) {
+			// Nothing worth reusing.
+			return DetermineClosestApproachBetweenRoutes.computeClosestApproaches(new ListRoute(variant), route);
+		}
+
+		// The time of the last way point shared with the base route.
+		long cutTime = variant.get(shared - 1).getTime();
+		SegmentMinima minima = getBaseMinima(traffic);
+		if (endTime <= cutTime) {
+			// The variant's overlap with the traffic route lies within the shared prefix.
+			return minima.closestApproaches(endTime, true);
+		}
+
+		// Combine the closest approaches up to the cut time, from the base route, with
+		// those from the cut time onwards, from the remainder of the variant.
+		List<ClosestApproach> prefix = minima.closestApproaches(cutTime, false);
+		List<ClosestApproach> suffix = DetermineClosestApproachBetweenRoutes
+				.computeClosestApproaches(new ListRoute(variant.subList(shared - 1, variant.size())), route);
+		if (prefix.isEmpty()) {
+			return suffix;
+		} else if (suffix.isEmpty()) {
+			return prefix;
+		}
+		double prefixDistance = prefix.get(0).distance();
+		double suffixDistance = suffix.get(0).distance();
+		if (prefixDistance < suffixDistance) {
+			return prefix;
+		} else if (suffixDistance < prefixDistance) {
+			return suffix;
+		} else {
+			List<ClosestApproach> both = new ArrayList<>(prefix);
+			both.addAll(suffix);
+			return both;
+		}
+	}
+
+	/**
+	 * 
+	 * @param route1 A route.
+	 * @param route2 A route.
+	 * @return The number of leading way points that are the same in both routes.
+	 */
+	public static int sharedPrefix(List<WayPoint> route1, List<WayPoint> route2) {
+		int n = Math.min(route1.size(), route2.size());
+		int shared = 0;
+		while (shared < n && route1.get(shared).equals(route2.get(shared))) {
+			shared++;
+		}
+		return shared;
+	}
+
+	/**
+	 * 
+	 * @param traffic The index of a traffic route.
+	 * @return The per-segment closest approaches between the base route and the
+	 *         traffic route, computing them if this is the first use.
+	 */
+	private SegmentMinima getBaseMinima(int traffic) {
+		SegmentMinima minima = baseMinima.get(traffic);
+		if (minima == null) {
+			// Concurrent callers may each compute the minima; they are identical, so it
+			// does not matter which is kept.
+			minima = new SegmentMinima(baseView, this.traffic.getRouteView(traffic));
+			baseMinima.compareAndSet(traffic, null, minima);
+		}
+		return minima;
+	}
+
+	/**
+	 * A traffic route that is a candidate for a variant's closest approach, with a
+	 * lower bound on its distance from the variant.
+	 */
+	private static class Candidate {
+		private final int traffic;
+		private final double lowerBound;
+
+		private Candidate(int traffic, double lowerBound) {
+			this.traffic = traffic;
+			this.lowerBound = lowerBound;
+		}
+	}
+
+	/**
+	 * <p>
+	 * The closest approach for each aligned segment of two routes, with the
+	 * running minimum of the distances, so that the closest approaches over any
+	 * leading part of the routes' common period can be extracted without
+	 * recomputation.
+	 * </p>
+	 * 
+	 * <p>
+	 * As in
+	 * {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(List, List)},
+	 * a segment's closest approach exactly at its end time is only counted if the
+	 * segment is the last one considered.
+	 * </p>
+	 */
+	private static class SegmentMinima {
+		// The end time of each segment.
+		private final long[] endTimes;
+		// The interpolation parameter of each segment's closest approach.
+		private final double[] closestKs;
+		// The closest approach for each segment.
+		private final ClosestApproach[] approaches;
+		// The minimum distance over segments 0..i, excluding closest approaches at
+		// segments' end times.
+		private final double[] prefixMinDistances;
+
+		private SegmentMinima(Route route1, Route route2) {
+			// There are fewer segments than way points in both routes together.
+			int capacity = route1.size() + route2.size();
+			long[] endTimes = new long[capacity];
+			double[] closestKs = new double[capacity];
+			ClosestApproach[] approaches = new ClosestApproach[capacity];
+			double[] prefixMinDistances = new double[capacity];
+			double minDistance = Double.POSITIVE_INFINITY;
+			int n = 0;
+			for (AlignedSegments segments = new AlignedSegments(route1, route2); segments.next(); n++) {
+				endTimes[n] = segments.getEndTime();
+				closestKs[n] = segments.closestK();
+				approaches[n] = segments.closestApproach(closestKs[n]);
+				if (closestKs[n] < 1) {
+					minDistance = Math.min(minDistance, approaches[n].distance());
+				}
+				prefixMinDistances[n] = minDistance;
+			}
+			this.endTimes = Arrays.copyOf(endTimes, n);
+			this.closestKs = Arrays.copyOf(closestKs, n);
+			this.approaches = Arrays.copyOf(approaches, n);
+			this.prefixMinDistances = Arrays.copyOf(prefixMinDistances, n);
+		}
+
+		/**
+		 * The closest approaches over those segments that end no later than the given
+		 * time.
+		 * 
+		 * @param time    The cut-off time.
+		 * @param isFinal Whether the last such segment is the last segment of the
+		 *                period of interest (so that a closest approach at its end
+		 *                time is counted).
+		 * @return The (possibly empty) list of closest approaches, in time order.
+		 */
+		private List<ClosestApproach> closestApproaches(long time, boolean isFinal) {
+			List<ClosestApproach> result = new ArrayList<>();
+			int last = lastEndingAtOrBefore(time);
+			if (last < 0) {
+				return result;
+			}
+			double minDistance = prefixMinDistances[last];
+			if (isFinal) {
+				minDistance = Math.min(minDistance, approaches[last].distance());
+			}
+			for (int i = 0; i <= last; i++) {
+				boolean counted = closestKs[i] < 1 || (isFinal && i == last);
+				if (counted && approaches[i].distance() == minDistance) {
+					result.add(approaches[i]);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * 
+		 * @param time A time.
+		 * @return The index of the last segment that ends no later than the given
+		 *         time; -1 if there is none.
+		 */
+		private int lastEndingAtOrBefore(long time) {
+			int lo = 0;
+			int hi = endTimes.length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (endTimes[mid] <= time) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo - 1;
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Generates traffic scenarios for performance and regression testing:
+ *         routes with the structure of real traffic and its worst cases, rather
+ *         than independent random drifts. The kinds of route are:
+ *         </p>
+ *         <ul>
+ *         <li>hub: from one hub to another (so routes converge on the hubs),
+ *         climbing to and descending from a cruise level;</li>
+ *         <li>corridor: along one of two corridors that cross in the middle of
+ *         the area, in either direction;</li>
+ *         <li>holding: laps of a circle above a hub, stacked by level;</li>
+ *         <li>parallel: groups of routes with identical motion, at constant
+ *         separations, so that every aligned segment is parallel motion (the
+ *         degenerate case of
+ *         {@link DetermineClosestApproachBetweenLinearSegments#computeClosestK(double[], double[])});</li>
+ *         <li>stationary: objects that do not move;</li>
+ *         <li>long: random walks with many way points, spanning the whole
+ *         period.</li>
+ *         </ul>
+ * 
+ *         <p>
+ *         Scenarios are reproducible: the routes depend only on the generator's
+ *         parameters and seed (not on the machine, JVM or the order in which
+ *         kinds are generated). Each kind draws from its own {@link Random},
+ *         seeded from the seed and the kind, and trigonometry uses
+ *         {@link StrictMath}. Times are in milliseconds; positions have two
+ *         horizontal dimensions and, in 3D, an altitude.
+ *         </p>
+ */
+public class ScenarioGenerator {
+	/**
+	 * The kinds of route.
+	 */
+	public static enum Kind {
+		HUB, CORRIDOR, HOLDING, PARALLEL, STATIONARY, LONG
+	}
+
+	/**
+	 * The number of way points in a long route generated by
+	 * {@link #generate(int)}.
+	 */
+	public static final int LONG_ROUTE_WAY_POINTS = 10_000;
+
+	// The number of hubs.
+	private static final int N_HUBS = 5;
+	// The cruising speed, in distance units per millisecond.
+	private static final double SPEED = 0.25;
+	// The time between way points (other than those of stationary and long
+	// routes).
+	private static final long STEP = 30_000;
+	// The altitude levels are multiples of LEVEL, up to N_LEVELS * LEVEL.
+	private static final double LEVEL = 300;
+	private static final int N_LEVELS = 40;
+	// The rate of climb and descent.
+	private static final double CLIMB_RATE = 0.01;
+
+	private final long seed;
+	private final int dimensions;
+	private final double extent;
+	private final long period;
+	// The horizontal positions of the hubs.
+	private final double[][] hubPositions;
+
+	/**
+	 * 
+	 * @param seed       The seed.
+	 * @param dimensions The number of dimensions (2, or 3 for altitude).
+	 * @param extent     The length of each side of the (square) area.
+	 * @param period     The period within which routes start (positive).
+	 */
+	public ScenarioGenerator(long seed, int dimensions, double extent, long period) {
+		super();
+		assert dimensions == 2 || dimensions == 3;
+		assert period > 0;
+		this.seed = seed;
+		this.dimensions = dimensions;
+		this.extent = extent;
+		this.period = period;
+		Random random = new Random(seed);
+		hubPositions = new double[N_HUBS][];
+		for (int h = 0; h < N_HUBS; h++) {
+			hubPositions[h] = new double[] { (0.1 + 0.8 * random.nextDouble()) * extent,
+					(0.1 + 0.8 * random.nextDouble()) * extent };
+		}
+	}
+
+	/**
+	 * Generate a mix of routes: 1% long (with {@link #LONG_ROUTE_WAY_POINTS} way
+	 * points), 10% stationary, 15% parallel, 10% holding, 25% corridor, and the
+	 * rest hub.
+	 * 
+	 * @param nRoutes The number of routes.
+	 * @return The routes, grouped by kind in the order of {@link Kind}.
+	 */
+	public List<ArrayRoute> generate(int nRoutes) {
+		int nLong = nRoutes / 100;
+		int nStationary = nRoutes / 10;
+		int nParallel = nRoutes * 15 / 100;
+		int nHolding = nRoutes / 10;
+		int nCorridor = nRoutes / 4;
+		int nHub = nRoutes - nLong - nStationary - nParallel - nHolding - nCorridor;
+		List<ArrayRoute> routes = new ArrayList<>(nRoutes);
+		routes.addAll(hubs(nHub));
+		routes.addAll(corridors(nCorridor));
+		routes.addAll(holdingPatterns(nHolding));
+		routes.addAll(parallelTracks(nParallel));
+		routes.addAll(stationary(nStationary));
+		routes.addAll(longRoutes(nLong, LONG_ROUTE_WAY_POINTS));
+		return routes;
+	}
+
+	/**
+	 * Generate a mix of routes (see {@link #generate(int)}) and write them to a
+	 * route file (see {@link RouteStore}).
+	 * 
+	 * @param file    The file.
+	 * @param nRoutes The number of routes.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void write(Path file, int nRoutes) throws IOException {
+		RouteStore.write(file, generate(nRoutes));
+	}
+
+	/**
+	 * 
+	 * @param nRoutes The number of routes.
+	 * @return Routes from one hub to another, each starting at a random time.
+	 */
+	public List<ArrayRoute> hubs(int nRoutes) {
+		Random random = random(Kind.HUB);
+		List<ArrayRoute> routes = new ArrayList<>(nRoutes);
+		for (int r = 0; r < nRoutes; r++) {
+			int from = random.nextInt(N_HUBS);
+			int to = (from + 1 + random.nextInt(N_HUBS - 1)) % N_HUBS;
+			long startTime = (long) (random.nextDouble() * period);
+			double cruise = level(random, N_LEVELS / 2, N_LEVELS);
+			routes.add(straight(startTime, hubPositions[from], hubPositions[to], SPEED, cruise, true));
+		}
+		return routes;
+	}
+
+	/**
+	 * 
+	 * @param nRoutes The number of routes.
+	 * @return Routes across the area, along one of two corridors that cross at its
+	 *         centre, each starting at a random time.
+	 */
+	public List<ArrayRoute> corridors(int nRoutes) {
+		Random random = random(Kind.CORRIDOR);
+		double width = extent / 100;
+		List<ArrayRoute> routes = new ArrayList<>(nRoutes);
+		for (int r = 0; r < nRoutes; r++) {
+			double offset = extent / 2 + (random.nextDouble() - 0.5) * width;
+			double[] from;
+			double[] to;
+			if (random.nextBoolean()) {
+				from = new double[] { 0, offset };
+				to = new double[] { extent, offset };
+			} else {
+				from = new double[] { offset, 0 };
+				to = new double[] { offset, extent };
+			}
+			if (random.nextBoolean()) {
+				double[] swap = from;
+				from = to;
+				to = swap;
+			}
+			long startTime = (long) (random.nextDouble() * period);
+			double speed = SPEED * (0.8 + 0.4 * random.nextDouble());
+			double level = level(random, N_LEVELS / 2, N_LEVELS / 2 + 3);
+			routes.add(straight(startTime, from, to, speed, level, false));
+		}
+		return routes;
+	}
+
+	/**
+	 * 
+	 * @param nRoutes The number of routes.
+	 * @return Routes that fly 2 to 5 laps of a circle above a hub, at a level of
+	 *         the hub's stack, each starting at a random time. Each lap has 16 way
+	 *         points.
+	 */
+	public List<ArrayRoute> holdingPatterns(int nRoutes) {
+		Random random = random(Kind.HOLDING);
+		double radius = extent / 50;
+		long lapTime = (long) (2 * Math.PI * radius / SPEED);
+		long step = Math.max(1, lapTime / 16);
+		List<ArrayRoute> routes = new ArrayList<>(nRoutes);
+		for (int r = 0; r < nRoutes; r++) {
+			double[] hub = hubPositions[random.nextInt(N_HUBS)];
+			double level = level(random, 5, 10);
+			long startTime = (long) (random.nextDouble() * period);
+			double startAngle = 2 * Math.PI * random.nextDouble();
+			int n = 16 * (2 + random.nextInt(4)) + 1;
+			long[] times = new long[n];
+			double[] coordinates = new double[n * dimensions];
+			for (int i = 0; i < n; i++) {
+				times[i] = startTime + i * step;
+				double angle = startAngle + 2 * Math.PI * i / 16;
+				set(coordinates, i, hub[0] + radius * StrictMath.cos(angle), hub[1] + radius * StrictMath.sin(angle),
+						level);
+			}
+			routes.add(new ArrayRoute(times, coordinates, dimensions));
+		}
+		return routes;
+	}
+
+	/**
+	 * Generate groups of 2 to 4 routes with identical motion - straight, at the
+	 * same level, with the same way point times - at constant horizontal
+	 * separations. Positions are whole numbers, so that the separations are
+	 * exactly constant and every pair in a group is exactly parallel motion.
+	 * 
+	 * @param nRoutes The number of routes.
+	 * @return The routes, group after group.
+	 */
+	public List<ArrayRoute> parallelTracks(int nRoutes) {
+		Random random = random(Kind.PARALLEL);
+		double separation = Math.max(1, Math.rint(extent / 200));
+		List<ArrayRoute> routes = new ArrayList<>(nRoutes);
+		while (routes.size() < nRoutes) {
+			int groupSize = Math.min(nRoutes - routes.size(), 2 + random.nextInt(3));
+			double[] from = { Math.rint(random.nextDouble() * extent), Math.rint(random.nextDouble() * extent) };
+			double[] to = { Math.rint(random.nextDouble() * extent), Math.rint(random.nextDouble() * extent) };
+			long startTime = (long) (random.nextDouble() * period);
+			ArrayRoute lead = straight(startTime, from, to, SPEED, level(random, 1, N_LEVELS), false);
+			// The separation is perpendicular to the track, along whichever axis the track
+			// is more nearly perpendicular to.
+			int across = Math.abs(to[0] - from[0]) < Math.abs(to[1] - from[1]) ? 0 : 1;
+			for (int g = 0; g < groupSize; g++) {
+				long[] times = new long[lead.size()];
+				double[] coordinates = new double[lead.size() * dimensions];
+				for (int i = 0; i < lead.size(); i++) {
+					times[i] = lead.getTime(i);
+					for (int d = 0; d < dimensions; d++) {
+						coordinates[i * dimensions + d] = Math.rint(lead.getCoordinate(i, d));
+					}
+					coordinates[i * dimensions + across] += g * separation;
+				}
+				routes.add(new ArrayRoute(times, coordinates, dimensions));
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * 
+	 * @param nRoutes The number of routes.
+	 * @return Routes that stay at a random position on the ground, with 2 to 5 way
+	 *         points over a random part of the period.
+	 */
+	public List<ArrayRoute> stationary(int nRoutes) {
+		Random random = random(Kind.STATIONARY);
+		List<ArrayRoute> routes = new ArrayList<>(nRoutes);
+		for (int r = 0; r < nRoutes; r++) {
+			double x = random.nextDouble() * extent;
+			double y = random.nextDouble() * extent;
+			int n = 2 + random.nextInt(4);
+			long[] times = new long[n];
+			double[] coordinates = new double[n * dimensions];
+			long time = (long) (random.nextDouble() * period);
+			for (int i = 0; i < n; i++) {
+				times[i] = time;
+				time += 1 + (long) (random.nextDouble() * period / n);
+				set(coordinates, i, x, y, 0);
+			}
+			routes.add(new ArrayRoute(times, coordinates, dimensions));
+		}
+		return routes;
+	}
+
+	/**
+	 * 
+	 * @param nRoutes    The number of routes.
+	 * @param nWayPoints The number of way points in each route (at least 2).
+	 * @return Random walks, each spanning the whole period, turning by up to 30
+	 *         degrees and changing level by up to one level at each way point, and
+	 *         reflected at the edges of the area.
+	 */
+	public List<ArrayRoute> longRoutes(int nRoutes, int nWayPoints) {
+		assert nWayPoints >= 2;
+		Random random = random(Kind.LONG);
+		long step = Math.max(1, period / (nWayPoints - 1));
+		List<ArrayRoute> routes = new ArrayList<>(nRoutes);
+		for (int r = 0; r < nRoutes; r++) {
+			double x = random.nextDouble() * extent;
+			double y = random.nextDouble() * extent;
+			int level = 1 + random.nextInt(N_LEVELS);
+			double heading = 2 * Math.PI * random.nextDouble();
+			long[] times = new long[nWayPoints];
+			double[] coordinates = new double[nWayPoints * dimensions];
+			for (int i = 0; i < nWayPoints; i++) {
+				times[i] = i * step;
+				set(coordinates, i, x, y, level * LEVEL);
+				heading += (random.nextDouble() - 0.5) * Math.PI / 3;
+				x = reflect(x + SPEED * step * StrictMath.cos(heading));
+				y = reflect(y + SPEED * step * StrictMath.sin(heading));
+				level = Math.max(1, Math.min(N_LEVELS, level + random.nextInt(3) - 1));
+			}
+			routes.add(new ArrayRoute(times, coordinates, dimensions));
+		}
+		return routes;
+	}
+
+	/**
+	 * 
+	 * @param kind A kind of route.
+	 * @return A random number generator for the kind, seeded from the seed and the
+	 *         kind.
+	 */
+	private Random random(Kind kind) {
+		return new Random(seed ^ (0x9E3779B97F4A7C15L * (kind.ordinal() + 1)));
+	}
+
+	/**
+	 * 
+	 * @return A random altitude level, from min * LEVEL to (max - 1) * LEVEL.
+	 */
+	private static double level(Random random, int min, int max) {
+		return (min + random.nextInt(max - min)) * LEVEL;
+	}
+
+	/**
+	 * 
+	 * @return The coordinate, reflected at the edges of the area.
+	 */
+	private double reflect(double coordinate) {
+		if (coordinate < 0) {
+			return Math.min(extent, -coordinate);
+		} else if (coordinate > extent) {
+			return Math.max(0, 2 * extent - coordinate);
+		} else {
+			return coordinate;
+		}
+	}
+
+	/**
+	 * Set the coordinates of way point i (ignoring the altitude in 2D).
+	 */
+	private void set(double[] coordinates, int i, double x, double y, double altitude) {
+		coordinates[i * dimensions] = x;
+		coordinates[i * dimensions + 1] = y;
+		if (dimensions == 3) {
+			coordinates[i * dimensions + 2] = altitude;
+		}
+	}
+
+	/**
+	 * A straight route between two horizontal positions at a constant speed, with
+	 * a way point every STEP (and at the end).
+	 * 
+	 * @param climb Whether the route starts and ends on the ground, climbing to
+	 *              and descending from the level; otherwise it stays at the level.
+	 */
+	private ArrayRoute straight(long startTime, double[] from, double[] to, double speed, double level,
+			boolean climb) {
+		double length = StrictMath.hypot(to[0] - from[0], to[1] - from[1]);
+		long duration = Math.max(1, (long) (length / speed));
+		int n = (int) ((duration + STEP - 1) / STEP) + 1;
+		long[] times = new long[n];
+		double[] coordinates = new double[n * dimensions];
+		for (int i = 0; i < n; i++) {
+			long t = Math.min(duration, i * STEP);
+			double k = (double) t / duration;
+			double altitude = climb ? Math.min(level, CLIMB_RATE * Math.min(t, duration - t)) : level;
+			times[i] = startTime + t;
+			set(coordinates, i, from[0] + k * (to[0] - from[0]), from[1] + k * (to[1] - from[1]), altitude);
+		}
+		return new ArrayRoute(times, coordinates, dimensions);
+	}
+}
@@ -0,0 +1,227 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Steps a fleet of objects forward in time, one segment boundary at a
+ *         time: whenever an object reaches a way point of its route, a "segment
+ *         changed" event is delivered, in time order across the whole fleet.
+ *         Downstream computations (e.g., pairwise closest approaches) then need
+ *         only update the object whose motion changed.
+ *         </p>
+ * 
+ *         <p>
+ *         The way point times are copied into primitive arrays and the objects
+ *         are kept in a binary heap of route indices, keyed by the time of each
+ *         object's next way point. Delivering an event replaces the heap's top
+ *         with the object's following way point time and sifts it down - there
+ *         is no allocation per event, and no boxing of times.
+ *         </p>
+ * 
+ *         <p>
+ *         For route r, an event for way point w (at that way point's time) means
+ *         that the object starts the segment from way point w to way point w+1;
+ *         w = 0 is the start of the route and w = (number of way points - 1) is
+ *         its end (there is no following segment). Events with the same time are
+ *         delivered in order of route index.
+ *         </p>
+ * 
+ *         <p>
+ *         Not thread safe.
+ *         </p>
+ */
+public class SegmentBoundaryScheduler {
+
+	/**
+	 * Receives segment-changed events.
+	 */
+	public static interface SegmentListener {
+		/**
+		 * 
+		 * @param route    The index of the route.
+		 * @param wayPoint The index of the way point that the object has reached.
+		 * @param time     The time of the way point.
+		 */
+		void segmentChanged(int route, int wayPoint, long time);
+	}
+
+	// The way point times of each route.
+	private final long[][] times;
+
+	// The index of the next way point of each route, by route index.
+	private final int[] next;
+
+	// The heap of routes with way points still to come, ordered by the time of
+	// their next way point. heapTimes[i] is the next way point time of route
+	// heap[i].
+	private final int[] heap;
+	private final long[] heapTimes;
+	private int size;
+
+	// The time advanced to (by advance, or by next to the time of its event), or
+	// the start time.
+	private long now;
+
+	/**
+	 * Create a scheduler for the given routes, starting from the earliest way
+	 * point of any route.
+	 * 
+	 * @param routes The routes (each with increasing way point times).
+	 */
+	public SegmentBoundaryScheduler(List<List<WayPoint>> routes) {
+		this(routes, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Create a scheduler for the given routes, starting from the given time:
+	 * events for way points at or before the start time are not delivered.
+	 * 
+	 * @param routes    The routes (each with increasing way point times).
+	 * @param startTime The start time.
+	 */
+	public SegmentBoundaryScheduler(List<List<WayPoint>> routes, long startTime) {
+		super();
+		int n = routes.size();
+		times = new long[n][];
+		next = new int[n];
+		heap = new int[n];
+		heapTimes = new long[n];
+		now = startTime;
+		for (int r = 0; r < n; r++) {
+			List<WayPoint> route = routes.get(r);
+			long[] routeTimes = new long[route.size()];
+			for (int w = 0; w < routeTimes.length; w++) {
+				routeTimes[w] = route.get(w).getTime();
+			}
+			times[r] = routeTimes;
+			// Skip the way points that have already been reached.
+			int w = 0;
+			while (w < routeTimes.length && routeTimes[w] <= startTime) {
+				w++;
+			}
+			next[r] = w;
+			if (w < routeTimes.length) {
+				heap[size] = r;
+				heapTimes[size] = routeTimes[w];
+				size++;
+			}
+		}
+		for (int i = size / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * 
+	 * @return Whether any events remain.
+	 */
+	public boolean hasNext() {
+		return size > 0;
+	}
+
+	/**
+	 * 
+	 * @return The time of the next event; Long.MAX_VALUE if there are none.
+	 */
+	public long nextTime() {
+		return size > 0 ? heapTimes[0] : Long.MAX_VALUE;
+	}
+
+	/**
+	 * 
+	 * @return The time advanced to, by {@link #advance(long, SegmentListener)} or
+	 *         by {@link #next(SegmentListener)} to the time of the event it
+	 *         delivered (initially, the start time).
+	 */
+	public long getTime() {
+		return now;
+	}
+
+	/**
+	 * 
+	 * @param route A route index.
+	 * @return The index of the way point that starts the route's current segment;
+	 *         -1 if the route has not started; the index of the final way point
+	 *         if it has finished.
+	 */
+	public int currentWayPoint(int route) {
+		return next[route] - 1;
+	}
+
+	/**
+	 * Deliver the next event.
+	 * 
+	 * @param listener Receives the event.
+	 */
+	public void next(SegmentListener listener) {
+		assert size > 0;
+		int route = heap[0];
+		long time = heapTimes[0];
+		int wayPoint = next[route]++;
+		long[] routeTimes = times[route];
+		if (wayPoint + 1 < routeTimes.length) {
+			heapTimes[0] = routeTimes[wayPoint + 1];
+		} else {
+			// The route is finished.
+			size--;
+			heap[0] = heap[size];
+			heapTimes[0] = heapTimes[size];
+		}
+		if (size > 0) {
+			siftDown(0);
+		}
+		now = time;
+		listener.segmentChanged(route, wayPoint, time);
+	}
+
+	/**
+	 * Deliver, in time order, all of the events up to and including the given
+	 * time.
+	 * 
+	 * @param time     The time to which to advance (no earlier than the current
+	 *                 time).
+	 * @param listener Receives the events.
+	 * @return The number of events delivered.
+	 */
+	public int advance(long time, SegmentListener listener) {
+		assert time >= now;
+		int count = 0;
+		while (size > 0 && heapTimes[0] <= time) {
+			next(listener);
+			count++;
+		}
+		now = time;
+		return count;
+	}
+
+	/**
+	 * Restore the heap order below the given position.
+	 * 
+	 * @param position A position in the heap.
+	 */
+	private void siftDown(int position) {
+		int route = heap[position];
+		long time = heapTimes[position];
+		int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			int right = child + 1;
+			if (right < size && (heapTimes[right] < heapTimes[child]
+					|| (heapTimes[right] == heapTimes[child] && heap[right] < heap[child]))) {
+				child = right;
+			}
+			if (time < heapTimes[child] || (time == heapTimes[child] && route < heap[child])) {
+				break;
+			}
+			heap[position] = heap[child];
+			heapTimes[position] = heapTimes[child];
+			position = child;
+		}
+		heap[position] = route;
+		heapTimes[position] = time;
+	}
+}
@@ -0,0 +1,469 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         An index over a fixed collection of routes (e.g., the surrounding
+ *         traffic), built once and then queried many times for those routes
+ *         that might come close to some other route.
+ *         </p>
+ * 
+ *         <p>
+ *         Each route is summarized by its time period (the times of its first
+ *         and last way points) and by its spatial bounding box. The routes are
+ *         sorted by start time, so that the routes whose periods overlap a
+ *         given period can be found by binary search: a route overlaps [t0, t1]
+ *         if it starts no later than t1 and ends no earlier than t0; since no
+ *         route lasts longer than the longest route, only those routes starting
+ *         in [t0 - longest duration, t1] need be examined.
+ *         </p>
+ * 
+ *         <p>
+ *         The distance between two bounding boxes is a lower bound on the
+ *         distance between two objects following the corresponding routes, at
+ *         any time, so can be used to discard routes that cannot be closer than
+ *         some given distance.
+ *         </p>
+ * 
+ *         <p>
+ *         Routes are identified by their index in the list given to the
+ *         constructor. An index is immutable, so may be queried concurrently.
+ *         </p>
+ * 
+ *         <p>
+ *         A built index, with its routes, can be saved as a snapshot
+ *         ({@link #save(Path)}) and restored by mapping the snapshot into memory
+ *         ({@link #restore(Path)}), rather than rebuilding it. The snapshot is
+ *         little-endian and consists of a header - the magic number
+ *         {@link #SNAPSHOT_MAGIC} (int), the {@link #SNAPSHOT_VERSION} (int), the
+ *         number of dimensions (int), the number of routes (int) and the longest
+ *         duration (long) - followed by the index's arrays (start times, end
+ *         times and sorted start times as longs; minimum and maximum coordinates
+ *         as doubles; the start-time order as ints, padded to a multiple of 8
+ *         bytes) and then the routes, in the format of a {@link RouteStore}.
+ *         </p>
+ */
+public class SpaceTimeIndex {
+	/**
+	 * The magic number at the start of a snapshot.
+	 */
+	public static final int SNAPSHOT_MAGIC = 0x53544931;
+	/**
+	 * The version of the snapshot format.
+	 */
+	public static final int SNAPSHOT_VERSION = 1;
+
+	// The size of a snapshot header, in bytes.
+	private static final int SNAPSHOT_HEADER_BYTES = 24;
+	// The size of the buffer used when writing a snapshot.
+	private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+	// The indexed routes.
+	private final List<List<WayPoint>> routes;
+	// Views of the indexed routes, without creating way points.
+	private final List<Route> views;
+
+	// The number of spatial dimensions of the routes' way points.
+	private final int dimensions;
+
+	// The start and end time of each route, by route index.
+	private final long[] startTimes;
+	private final long[] endTimes;
+
+	// The bounding box of each route, by route index: the minimum coordinate in
+	// dimension d is at [route * dimensions + d]; likewise the maximum.
+	private final double[] minCoordinates;
+	private final double[] maxCoordinates;
+
+	// The route indices, sorted by start time.
+	private final int[] byStartTime;
+	// The start times, in the same order as byStartTime (for binary search).
+	private final long[] sortedStartTimes;
+
+	// The longest duration of any route.
+	private final long maxDuration;
+
+	/**
+	 * <p>
+	 * Index the given routes.
+	 * </p>
+	 * 
+	 * <p>
+	 * Each route must have two or more way points, with increasing times. All
+	 * routes must have the same dimensionality. The list of routes is not copied,
+	 * but should not be changed after the index is created.
+	 * </p>
+	 * 
+	 * @param routes The routes to index (must not be empty).
+	 */
+	public SpaceTimeIndex(List<List<WayPoint>> routes) {
+		super();
+		assert !routes.isEmpty();
+		long startNanos = EngineEvents.enabled ? System.nanoTime() : 0;
+		int n = routes.size();
+		this.routes = routes;
+		views = routes.stream().map(ListRoute::new).collect(Collectors.toList());
+		dimensions = routes.get(0).get(0).getCoordinates().length;
+		startTimes = new long[n];
+		endTimes = new long[n];
+		minCoordinates = new double[n * dimensions];
+		maxCoordinates = new double[n * dimensions];
+		long longest = 0;
+		long wayPoints = 0;
+		for (int r = 0; r < n; r++) {
+			List<WayPoint> route = routes.get(r);
+			assert route.size() >= 2;
+			wayPoints += route.size();
+			startTimes[r] = route.get(0).getTime();
+			endTimes[r] = route.get(route.size() - 1).getTime();
+			longest = Math.max(longest, endTimes[r] - startTimes[r]);
+			double[] min = new double[dimensions];
+			double[] max = new double[dimensions];
+			bounds(route, min, max);
+			System.arraycopy(min, 0, minCoordinates, r * dimensions, dimensions);
+			System.arraycopy(max, 0, maxCoordinates, r * dimensions, dimensions);
+		}
+		maxDuration = longest;
+
+		// Sort the route indices by start time.
+		byStartTime = new int[n];
+		sortedStartTimes = new long[n];
+		Integer[] order = new Integer[n];
+		for (int r = 0; r < n; r++) {
+			order[r] = r;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(startTimes[a], startTimes[b]));
+		for (int i = 0; i < n; i++) {
+			byStartTime[i] = order[i];
+			sortedStartTimes[i] = startTimes[order[i]];
+		}
+		if (EngineEvents.enabled) {
+			EngineEvents.event(EngineEvents.Type.INDEX_BUILD, startNanos, n, wayPoints, 0, 0);
+		}
+	}
+
+	private SpaceTimeIndex(List<List<WayPoint>> routes, List<Route> views, int dimensions, long[] startTimes,
+			long[] endTimes, double[] minCoordinates, double[] maxCoordinates, int[] byStartTime,
+			long[] sortedStartTimes, long maxDuration) {
+		super();
+		this.routes = routes;
+		this.views = views;
+		this.dimensions = dimensions;
+		this.startTimes = startTimes;
+		this.endTimes = endTimes;
+		this.minCoordinates = minCoordinates;
+		this.maxCoordinates = maxCoordinates;
+		this.byStartTime = byStartTime;
+		this.sortedStartTimes = sortedStartTimes;
+		this.maxDuration = maxDuration;
+	}
+
+	/**
+	 * Save the index, with its routes, as a snapshot, replacing any existing file.
+	 * 
+	 * @param file The file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save(Path file) throws IOException {
+		int n = routes.size();
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(SNAPSHOT_MAGIC);
+			buffer.putInt(SNAPSHOT_VERSION);
+			buffer.putInt(dimensions);
+			buffer.putInt(n);
+			buffer.putLong(maxDuration);
+			for (long[] array : new long[][] { startTimes, endTimes, sortedStartTimes }) {
+				for (long value : array) {
+					if (!buffer.hasRemaining()) {
+						flush(out, buffer);
+					}
+					buffer.putLong(value);
+				}
+			}
+			for (double[] array : new double[][] { minCoordinates, maxCoordinates }) {
+				for (double value : array) {
+					if (!buffer.hasRemaining()) {
+						flush(out, buffer);
+					}
+					buffer.putDouble(value);
+				}
+			}
+			for (int i = 0; i < (n + 1) / 2 * 2; i++) {
+				if (!buffer.hasRemaining()) {
+					flush(out, buffer);
+				}
+				buffer.putInt(i < n ? byStartTime[i] : 0);
+			}
+			flush(out, buffer);
+			// The views of a restored index read the mapped snapshot, without creating
+			// way points.
+			RouteStore.write(out, views);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Restore an index from a snapshot written by {@link #save(Path)}. The index's
+	 * arrays are copied from the mapped snapshot, and its routes remain in the
+	 * mapped snapshot: {@link #getRouteView(int)} reads a route from the mapping
+	 * without creating way points, while each call to {@link #getRoute(int)}
+	 * creates the route's way points from the mapping. Nothing is recomputed.
+	 * </p>
+	 * 
+	 * @param file The snapshot.
+	 * @return The index.
+	 * @throws IOException If the snapshot cannot be read, is not a snapshot, or
+	 *                     has a different version.
+	 */
+	public static SpaceTimeIndex restore(Path file) throws IOException {
+		// The mappings remain valid after the file is closed.
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < SNAPSHOT_HEADER_BYTES) {
+				throw new IOException("Not a space-time index snapshot");
+			}
+			ByteBuffer header = map(channel, 0, SNAPSHOT_HEADER_BYTES);
+			if (header.getInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not a space-time index snapshot");
+			}
+			int version = header.getInt();
+			if (version != SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported space-time index snapshot version " + version);
+			}
+			int dimensions = header.getInt();
+			int n = header.getInt();
+			long maxDuration = header.getLong();
+			if (dimensions < 1 || n < 1) {
+				throw new IOException("Corrupt space-time index snapshot");
+			}
+			long position = SNAPSHOT_HEADER_BYTES;
+			long[][] times = new long[3][n];
+			for (long[] array : times) {
+				map(channel, position, 8L * n).asLongBuffer().get(array);
+				position += 8L * n;
+			}
+			double[][] coordinates = new double[2][n * dimensions];
+			for (double[] array : coordinates) {
+				map(channel, position, 8L * array.length).asDoubleBuffer().get(array);
+				position += 8L * array.length;
+			}
+			int[] byStartTime = new int[n];
+			map(channel, position, 4L * n).asIntBuffer().get(byStartTime);
+			position += 8L * ((n + 1) / 2);
+
+			RouteStore store = RouteStore.open(channel, position);
+			if (store.size() != n || store.dimensions() != dimensions) {
+				throw new IOException("Corrupt space-time index snapshot");
+			}
+			List<List<WayPoint>> routes = new AbstractList<List<WayPoint>>() {
+				@Override
+				public List<WayPoint> get(int r) {
+					return store.route(r).toWayPoints();
+				}
+
+				@Override
+				public int size() {
+					return n;
+				}
+			};
+			return new SpaceTimeIndex(routes, store.routes(), dimensions, times[0], times[1], coordinates[0],
+					coordinates[1], byStartTime, times[2], maxDuration);
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (position + size > channel.size()) {
+			throw new IOException("Truncated space-time index snapshot");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Compute the spatial bounding box of a route.
+	 * 
+	 * @param route A route (must not be empty).
+	 * @param min   Receives the minimum coordinate in each dimension.
+	 * @param max   Receives the maximum coordinate in each dimension.
+	 */
+	public static void bounds(List<WayPoint> route, double[] min, double[] max) {
+		assert min.length == max.length;
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		for (WayPoint wp : route) {
+			double[] c = wp.getCoordinates();
+			assert c.length == min.length;
+			for (int d = 0; d < c.length; d++) {
+				min[d] = Math.min(min[d], c[d]);
+				max[d] = Math.max(max[d], c[d]);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return The number of indexed routes.
+	 */
+	public int size() {
+		return routes.size();
+	}
+
+	/**
+	 * 
+	 * @return The number of spatial dimensions of the indexed routes.
+	 */
+	public int dimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * 
+	 * @param route A route index.
+	 * @return The indexed route. For a restored index, the way points are created
+	 *         from the snapshot on each call; see {@link #getRouteView(int)}.
+	 */
+	public List<WayPoint> getRoute(int route) {
+		return routes.get(route);
+	}
+
+	/**
+	 * 
+	 * @param route A route index.
+	 * @return A view of the indexed route. For a restored index, the view reads
+	 *         the snapshot directly, so no way points are created.
+	 */
+	public Route getRouteView(int route) {
+		return views.get(route);
+	}
+
+	/**
+	 * 
+	 * @param route A route index.
+	 * @return The number of way points in the indexed route, without creating
+	 *         them.
+	 */
+	public int getRouteSize(int route) {
+		return views.get(route).size();
+	}
+
+	/**
+	 * 
+	 * @return The indexed routes, in index order.
+	 */
+	public List<List<WayPoint>> getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * 
+	 * @param route A route index.
+	 * @return The time of the route's first way point.
+	 */
+	public long getStartTime(int route) {
+		return startTimes[route];
+	}
+
+	/**
+	 * 
+	 * @param route A route index.
+	 * @return The time of the route's last way point.
+	 */
+	public long getEndTime(int route) {
+		return endTimes[route];
+	}
+
+	/**
+	 * Call the consumer with the index of each route whose time period overlaps
+	 * [startTime, endTime] (inclusive - routes that merely touch at an end point
+	 * are included). The routes are visited in order of increasing start time.
+	 * 
+	 * @param startTime The start of the query period.
+	 * @param endTime   The end of the query period (no earlier than startTime).
+	 * @param consumer  Receives the overlapping routes' indices.
+	 */
+	public void forEachOverlapping(long startTime, long endTime, IntConsumer consumer) {
+		assert startTime <= endTime;
+		// No route starting before this can last until startTime.
+		long earliest = startTime - maxDuration;
+		if (earliest > startTime) {
+			// Underflow.
+			earliest = Long.MIN_VALUE;
+		}
+		for (int i = firstStartingAtOrAfter(earliest); i < byStartTime.length; i++) {
+			if (sortedStartTimes[i] > endTime) {
+				break;
+			}
+			int r = byStartTime[i];
+			if (endTimes[r] >= startTime) {
+				consumer.accept(r);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param time A time.
+	 * @return The position, in start-time order, of the first route whose start
+	 *         time is no earlier than the given time.
+	 */
+	private int firstStartingAtOrAfter(long time) {
+		int lo = 0;
+		int hi = sortedStartTimes.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sortedStartTimes[mid] < time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * The distance between an indexed route's bounding box and the given bounding
+	 * box. This is a lower bound on the distance between objects following the
+	 * two routes.
+	 * 
+	 * @param route A route index.
+	 * @param min   The minimum coordinate, in each dimension, of the other box.
+	 * @param max   The maximum coordinate, in each dimension, of the other box.
+	 * @return The separation of the boxes; zero if they intersect.
+	 */
+	public double boxDistance(int route, double[] min, double[] max) {
+		assert min.length == dimensions;
+		assert max.length == dimensions;
+		double sumSqrDistance = 0;
+		int offset = route * dimensions;
+		for (int d = 0; d < dimensions; d++) {
+			double gap = Math.max(minCoordinates[offset + d] - max[d], min[d] - maxCoordinates[offset + d]);
+			if (gap > 0) {
+				sumSqrDistance += gap * gap;
+			}
+		}
+		return Math.sqrt(sumSqrDistance);
+	}
+
+}
@@ -0,0 +1,138 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         The maximum speed of an object along its route, for each block of
+ *         consecutive segments of the route, so that the distance the object
+ *         can move in a period can be bounded without looking at its way
+ *         points. Computed once per route and reused for every pair that the
+ *         route is compared with (see
+ *         {@link DetermineClosestApproachBetweenRoutes#computeClosestApproaches(Route, SpeedProfile, Route, SpeedProfile, double)}).
+ *         </p>
+ * 
+ *         <p>
+ *         Block b covers the segments [b * blockSize, (b + 1) * blockSize), so
+ *         the period from the time of way point b * blockSize to the time of
+ *         way point min((b + 1) * blockSize, size - 1). The speeds are rounded
+ *         up slightly, so that they are upper bounds despite rounding.
+ *         </p>
+ */
+public class SpeedProfile {
+	/**
+	 * The default number of segments per block.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 16;
+
+	// The relative amount by which speeds are rounded up.
+	private static final double ROUND_UP = 1e-9;
+
+	// The start time of each block, and the end time of the last block.
+	private final long[] blockTimes;
+	// The maximum speed in each block.
+	private final double[] blockSpeeds;
+	// The maximum speed over the whole route.
+	private final double maxSpeed;
+
+	/**
+	 * Compute the speed profile of a route, with the default block size.
+	 * 
+	 * @param route A route (two or more way points, with increasing times).
+	 */
+	public SpeedProfile(Route route) {
+		this(route, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Compute the speed profile of a route.
+	 * 
+	 * @param route     A route (two or more way points, with increasing times).
+	 * @param blockSize The number of segments per block (positive).
+	 */
+	public SpeedProfile(Route route, int blockSize) {
+		super();
+		assert route.size() >= 2;
+		assert blockSize > 0;
+		int nSegments = route.size() - 1;
+		int nBlocks = (nSegments + blockSize - 1) / blockSize;
+		blockTimes = new long[nBlocks + 1];
+		blockSpeeds = new double[nBlocks];
+		double[] start = new double[route.dimensions()];
+		double[] end = new double[route.dimensions()];
+		route.getCoordinates(0, end);
+		double max = 0;
+		for (int i = 0; i < nSegments; i++) {
+			double[] swap = start;
+			start = end;
+			end = swap;
+			route.getCoordinates(i + 1, end);
+			double speed = VectorUtils.distance(start, end) / (route.getTime(i + 1) - route.getTime(i))
+					* (1 + ROUND_UP);
+			int b = i / blockSize;
+			blockSpeeds[b] = Math.max(blockSpeeds[b], speed);
+			max = Math.max(max, speed);
+		}
+		for (int b = 0; b < nBlocks; b++) {
+			blockTimes[b] = route.getTime(b * blockSize);
+		}
+		blockTimes[nBlocks] = route.getTime(nSegments);
+		maxSpeed = max;
+	}
+
+	/**
+	 * 
+	 * @return The maximum speed over the whole route.
+	 */
+	public double getMaxSpeed() {
+		return maxSpeed;
+	}
+
+	/**
+	 * 
+	 * @return The number of blocks.
+	 */
+	public int getBlockCount() {
+		return blockSpeeds.length;
+	}
+
+	/**
+	 * 
+	 * @param time A time within the route's period.
+	 * @return The block that covers the motion just after the time (for the end
+	 *         time of the route, the last block).
+	 */
+	public int block(long time) {
+		// The last block that starts at or before the time.
+		int low = 0;
+		int high = blockSpeeds.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (blockTimes[mid] <= time) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 
+	 * @param block A block.
+	 * @return The maximum speed within the block.
+	 */
+	public double getBlockSpeed(int block) {
+		return blockSpeeds[block];
+	}
+
+	/**
+	 * 
+	 * @param block A block.
+	 * @return The end time of the block.
+	 */
+	public long getBlockEnd(int block) {
+		return blockTimes[block + 1];
+	}
+}
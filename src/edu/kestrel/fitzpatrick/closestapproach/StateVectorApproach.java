@@ -0,0 +1,70 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         The predicted closest approach of two tracks, each moving with
+ *         constant velocity from its last known state: the time of closest
+ *         approach (TCPA) and the distance at closest approach (DCPA).
+ * 
+ *         The time is not rounded to a discrete value. If the tracks have the
+ *         same velocity, their separation is constant, and the time is the
+ *         start of the prediction period.
+ * 
+ */
+public class StateVectorApproach {
+
+	private final int track1;
+	private final int track2;
+	private final double time;
+	private final double distance;
+
+	/**
+	 * 
+	 * @param track1   The index of the first track.
+	 * @param track2   The index of the second track.
+	 * @param time     The time of closest approach.
+	 * @param distance The distance at closest approach.
+	 */
+	public StateVectorApproach(int track1, int track2, double time, double distance) {
+		super();
+		assert distance >= 0;
+		this.track1 = track1;
+		this.track2 = track2;
+		this.time = time;
+		this.distance = distance;
+	}
+
+	/**
+	 * 
+	 * @return The index of the first track (the smaller index).
+	 */
+	public int track1() {
+		return track1;
+	}
+
+	/**
+	 * 
+	 * @return The index of the second track.
+	 */
+	public int track2() {
+		return track2;
+	}
+
+	/**
+	 * 
+	 * @return The time of closest approach.
+	 */
+	public double time() {
+		return time;
+	}
+
+	/**
+	 * 
+	 * @return The distance at closest approach.
+	 */
+	public double distance() {
+		return distance;
+	}
+}
@@ -0,0 +1,306 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Predicts closest approaches between tracks for which only the
+ *         current state is known - position, velocity and the time of the
+ *         state - by dead reckoning: each track is projected forward with
+ *         constant velocity over a fixed horizon, and the time (TCPA) and
+ *         distance (DCPA) of closest approach are reported for each pair of
+ *         tracks that come closer than a threshold within the horizon.
+ *         </p>
+ * 
+ *         <p>
+ *         The states are given as a packed array, one track after another, each
+ *         occupying {@link #stride(int)} doubles: the position (one double per
+ *         dimension), then the velocity (one double per dimension, in distance
+ *         per unit time), then the time of the state.
+ *         </p>
+ * 
+ *         <p>
+ *         Each track is projected to the start and end of the prediction period
+ *         [time, time + horizon], so that each pair is a pair of linear segments
+ *         with common start and end times, and
+ *         {@link DetermineClosestApproachBetweenLinearSegments#computeClosestK(double[], double[])}
+ *         gives their closest approach - no way points are created.
+ *         </p>
+ * 
+ *         <p>
+ *         To avoid considering all pairs, each track's swept path over the
+ *         period is bounded by a box, enlarged by half the threshold, and the
+ *         boxes are entered in a uniform grid over the first two dimensions. Only
+ *         tracks sharing a grid cell, with intersecting boxes, are compared; each
+ *         pair is compared only in the first cell that both occupy. The cells
+ *         are processed in parallel.
+ *         </p>
+ * 
+ *         <p>
+ *         A predictor holds no state between calls, so may be used
+ *         concurrently.
+ *         </p>
+ */
+public class StateVectorPredictor {
+	// The maximum number of grid cells; the cell size is increased if necessary.
+	private static final int MAX_CELLS = 1 << 22;
+
+	// The number of spatial dimensions.
+	private final int dimensions;
+	// The prediction horizon.
+	private final double horizon;
+	// Pairs closer than this are reported.
+	private final double threshold;
+	// The grid cell size; NaN to choose automatically.
+	private final double cellSize;
+
+	/**
+	 * Create a predictor that chooses the grid cell size automatically (the
+	 * larger of the threshold and the average extent of the tracks' swept paths).
+	 * 
+	 * @param dimensions The number of spatial dimensions.
+	 * @param horizon    The prediction horizon (positive).
+	 * @param threshold  Pairs whose closest approach is nearer than this are
+	 *                   reported (positive and finite).
+	 */
+	public StateVectorPredictor(int dimensions, double horizon, double threshold) {
+		this(dimensions, horizon, threshold, Double.NaN);
+	}
+
+	/**
+	 * Create a predictor.
+	 * 
+	 * @param dimensions The number of spatial dimensions.
+	 * @param horizon    The prediction horizon (positive).
+	 * @param threshold  Pairs whose closest approach is nearer than this are
+	 *                   reported (positive and finite).
+	 * @param cellSize   The grid cell size (positive), or NaN to choose
+	 *                   automatically.
+	 */
+	public StateVectorPredictor(int dimensions, double horizon, double threshold, double cellSize) {
+		super();
+		assert dimensions >= 1;
+		assert horizon > 0;
+		assert threshold > 0 && !Double.isInfinite(threshold);
+		assert Double.isNaN(cellSize) || cellSize > 0;
+		this.dimensions = dimensions;
+		this.horizon = horizon;
+		this.threshold = threshold;
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * 
+	 * @param dimensions The number of spatial dimensions.
+	 * @return The number of doubles per track in a packed array of states.
+	 */
+	public static int stride(int dimensions) {
+		return 2 * dimensions + 1;
+	}
+
+	/**
+	 * Predict the closest approaches between the given tracks over the period
+	 * [time, time + horizon].
+	 * 
+	 * @param states The packed states of the tracks (see the class description).
+	 * @param time   The start of the prediction period.
+	 * @return The closest approach of each pair of tracks that come closer than
+	 *         the threshold during the period, smaller track index first.
+	 */
+	public List<StateVectorApproach> predict(double[] states, double time) {
+		int stride = stride(dimensions);
+		assert states.length % stride == 0;
+		int n = states.length / stride;
+		if (n < 2) {
+			return new ArrayList<>();
+		}
+
+		// Project each track to the start and end of the period.
+		double[] starts = new double[n * dimensions];
+		double[] ends = new double[n * dimensions];
+		IntStream.range(0, n).parallel().forEach(t -> {
+			int offset = t * stride;
+			double stateTime = states[offset + 2 * dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				double position = states[offset + d];
+				double velocity = states[offset + dimensions + d];
+				starts[t * dimensions + d] = position + velocity * (time - stateTime);
+				ends[t * dimensions + d] = position + velocity * (time + horizon - stateTime);
+			}
+		});
+
+		Grid grid = new Grid(starts, ends, n);
+		return IntStream.range(0, grid.nCells) //
+				.parallel() //
+				.mapToObj(cell -> compareWithinCell(grid, cell, starts, ends, time)) //
+				.flatMap(List::stream) //
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Compare each pair of tracks whose first common cell is the given cell.
+	 * 
+	 * @return The closest approaches nearer than the threshold.
+	 */
+	private List<StateVectorApproach> compareWithinCell(Grid grid, int cell, double[] starts, double[] ends,
+			double time) {
+		List<StateVectorApproach> approaches = new ArrayList<>();
+		int cx = cell % grid.nx;
+		int cy = cell / grid.nx;
+		double[] dS = new double[dimensions];
+		double[] dE = new double[dimensions];
+		for (int i = grid.cellStarts[cell]; i < grid.cellStarts[cell + 1]; i++) {
+			int t1 = grid.cellTracks[i];
+			for (int j = i + 1; j < grid.cellStarts[cell + 1]; j++) {
+				int t2 = grid.cellTracks[j];
+				// Only compare in the first cell that both tracks occupy.
+				if (Math.max(grid.x0[t1], grid.x0[t2]) != cx || Math.max(grid.y0[t1], grid.y0[t2]) != cy
+						|| !grid.boxesIntersect(t1, t2)) {
+					continue;
+				}
+				for (int d = 0; d < dimensions; d++) {
+					dS[d] = starts[t1 * dimensions + d] - starts[t2 * dimensions + d];
+					dE[d] = ends[t1 * dimensions + d] - ends[t2 * dimensions + d];
+				}
+				double k = DetermineClosestApproachBetweenLinearSegments.computeClosestK(dS, dE);
+				double distance;
+				double approachTime;
+				if (Double.isNaN(k)) {
+					// Same velocity - constant separation.
+					distance = VectorUtils.length(dS);
+					approachTime = time;
+				} else {
+					double sumSqrDistance = 0;
+					for (int d = 0; d < dimensions; d++) {
+						double separation = dS[d] + k * (dE[d] - dS[d]);
+						sumSqrDistance += separation * separation;
+					}
+					distance = Math.sqrt(sumSqrDistance);
+					approachTime = time + k * horizon;
+				}
+				if (distance < threshold) {
+					// Tracks are in increasing order within a cell, so t1 < t2.
+					approaches.add(new StateVectorApproach(t1, t2, approachTime, distance));
+				}
+			}
+		}
+		return approaches;
+	}
+
+	/**
+	 * A uniform grid over the first two dimensions (or the only dimension), with
+	 * each track entered in every cell overlapped by its enlarged swept box. Cells
+	 * are numbered x + nx * y; the tracks in cell c are cellTracks[cellStarts[c]]
+	 * .. cellTracks[cellStarts[c + 1] - 1], in increasing order.
+	 */
+	private class Grid {
+		// The enlarged swept box of each track: [track * dimensions + d].
+		private final double[] min;
+		private final double[] max;
+		// The range of cells overlapped by each track's box.
+		private final int[] x0;
+		private final int[] x1;
+		private final int[] y0;
+		private final int[] y1;
+		private final int nx;
+		private final int nCells;
+		private final int[] cellStarts;
+		private final int[] cellTracks;
+
+		private Grid(double[] starts, double[] ends, int n) {
+			double margin = threshold / 2;
+			min = new double[n * dimensions];
+			max = new double[n * dimensions];
+			for (int i = 0; i < n * dimensions; i++) {
+				min[i] = Math.min(starts[i], ends[i]) - margin;
+				max[i] = Math.max(starts[i], ends[i]) + margin;
+			}
+
+			// The extent of all boxes, and their average extent, in the grid dimensions.
+			int gridDimensions = Math.min(2, dimensions);
+			double[] lower = { 0, 0 };
+			double[] upper = { 0, 0 };
+			double averageExtent = 0;
+			for (int d = 0; d < gridDimensions; d++) {
+				lower[d] = Double.POSITIVE_INFINITY;
+				upper[d] = Double.NEGATIVE_INFINITY;
+				for (int t = 0; t < n; t++) {
+					lower[d] = Math.min(lower[d], min[t * dimensions + d]);
+					upper[d] = Math.max(upper[d], max[t * dimensions + d]);
+					averageExtent += max[t * dimensions + d] - min[t * dimensions + d];
+				}
+			}
+			averageExtent /= Math.max(1, n * gridDimensions);
+			double size = Double.isNaN(cellSize) ? Math.max(threshold, averageExtent) : cellSize;
+			int[] counts = new int[2];
+			while (true) {
+				for (int d = 0; d < 2; d++) {
+					counts[d] = d < gridDimensions //
+							? (int) Math.min(MAX_CELLS, Math.floor((upper[d] - lower[d]) / size) + 1)
+							: 1;
+				}
+				if ((long) counts[0] * counts[1] <= MAX_CELLS) {
+					break;
+				}
+				size *= 2;
+			}
+			nx = counts[0];
+			nCells = counts[0] * counts[1];
+
+			// Determine the cells overlapped by each box, and count the entries per
+			// cell.
+			x0 = new int[n];
+			x1 = new int[n];
+			y0 = new int[n];
+			y1 = new int[n];
+			cellStarts = new int[nCells + 1];
+			for (int t = 0; t < n; t++) {
+				x0[t] = cellIndex(min[t * dimensions], lower[0], size, counts[0]);
+				x1[t] = cellIndex(max[t * dimensions], lower[0], size, counts[0]);
+				if (gridDimensions > 1) {
+					y0[t] = cellIndex(min[t * dimensions + 1], lower[1], size, counts[1]);
+					y1[t] = cellIndex(max[t * dimensions + 1], lower[1], size, counts[1]);
+				}
+				for (int y = y0[t]; y <= y1[t]; y++) {
+					for (int x = x0[t]; x <= x1[t]; x++) {
+						cellStarts[x + nx * y + 1]++;
+					}
+				}
+			}
+			for (int c = 0; c < nCells; c++) {
+				cellStarts[c + 1] += cellStarts[c];
+			}
+			// Enter the tracks, in increasing order, in their cells.
+			cellTracks = new int[cellStarts[nCells]];
+			int[] fill = new int[nCells];
+			for (int t = 0; t < n; t++) {
+				for (int y = y0[t]; y <= y1[t]; y++) {
+					for (int x = x0[t]; x <= x1[t]; x++) {
+						int c = x + nx * y;
+						cellTracks[cellStarts[c] + fill[c]++] = t;
+					}
+				}
+			}
+		}
+
+		private int cellIndex(double coordinate, double lower, double size, int count) {
+			return Math.max(0, Math.min(count - 1, (int) ((coordinate - lower) / size)));
+		}
+
+		private boolean boxesIntersect(int t1, int t2) {
+			for (int d = 0; d < dimensions; d++) {
+				if (min[t1 * dimensions + d] > max[t2 * dimensions + d]
+						|| min[t2 * dimensions + d] > max[t1 * dimensions + d]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,469 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Detects conflicts - closest approaches nearer than a threshold
+ *         distance - in an unbounded stream of position reports and predicted
+ *         motions, looking ahead no more than a fixed horizon from the current
+ *         time.
+ *         </p>
+ * 
+ *         <p>
+ *         Each object's motion is a set of linear segments: from one position
+ *         report to the next, and along any predicted route. Segments that have
+ *         already ended are ignored, and only the part of a segment up to now +
+ *         horizon is kept. The kept segments are indexed in a ring of time
+ *         buckets covering the window [now, now + horizon]; a segment is entered
+ *         in each bucket that its time period overlaps within the window. When a
+ *         segment is added, it is compared, using
+ *         {@link DetermineClosestApproachBetweenLinearSegments}, with the other
+ *         objects' segments in the same buckets that overlap it in time, over
+ *         their common period from the current time on.
+ *         </p>
+ * 
+ *         <p>
+ *         As time advances, buckets that fall before the window are cleared, so
+ *         segments whose end time has passed are forgotten, as are objects that
+ *         have not reported within the horizon. Memory is therefore bounded by
+ *         the number of objects active within a horizon and their segments in
+ *         the window, not by the length of the stream.
+ *         </p>
+ * 
+ *         <p>
+ *         Parts of predictions beyond the horizon are discarded, so predictions
+ *         should be refreshed as new reports arrive. Not thread safe.
+ *         </p>
+ */
+public class StreamingConflictDetector {
+
+	/**
+	 * Receives conflicts.
+	 */
+	public static interface ConflictListener {
+		/**
+		 * Two objects have segments whose closest approach is nearer than the
+		 * threshold.
+		 * 
+		 * @param object1  The object whose segment was being added.
+		 * @param object2  The other object.
+		 * @param approach The closest approach between the two segments (for
+		 *                 parallel motion, only the distance is defined).
+		 */
+		void conflict(int object1, int object2, ClosestApproach approach);
+	}
+
+	// The conflict threshold distance.
+	private final double threshold;
+	// The look-ahead horizon.
+	private final long horizon;
+	// The period covered by each bucket.
+	private final long bucketWidth;
+
+	// The ring of buckets. The bucket for slot s (times [s * bucketWidth, (s + 1) *
+	// bucketWidth)) is at index s mod the number of buckets, and holds slot s only if
+	// slots[index] == s.
+	private final List<List<Segment>> buckets;
+	private final long[] slots;
+
+	// The state of each object that has reported within the horizon.
+	private final Map<Integer, ObjectState> objects = new HashMap<>();
+
+	// Receives conflicts.
+	private final ConflictListener listener;
+
+	// The current time.
+	private long now;
+
+	// The number of segments in the index.
+	private int nSegments;
+
+	// Incremented for each query, to avoid comparing a segment twice when it is in
+	// more than one bucket.
+	private int queryStamp;
+
+	/**
+	 * Create a detector, using buckets 1/16th of the horizon.
+	 * 
+	 * @param threshold The conflict threshold distance.
+	 * @param horizon   The look-ahead horizon (positive).
+	 * @param startTime The initial time.
+	 * @param listener  Receives conflicts.
+	 */
+	public StreamingConflictDetector(double threshold, long horizon, long startTime, ConflictListener listener) {
+		this(threshold, horizon, Math.max(1, horizon / 16), startTime, listener);
+	}
+
+	/**
+	 * Create a detector.
+	 * 
+	 * @param threshold   The conflict threshold distance.
+	 * @param horizon     The look-ahead horizon (positive).
+	 * @param bucketWidth The period covered by each index bucket (positive).
+	 * @param startTime   The initial time.
+	 * @param listener    Receives conflicts.
+	 */
+	public StreamingConflictDetector(double threshold, long horizon, long bucketWidth, long startTime,
+			ConflictListener listener) {
+		super();
+		assert horizon > 0;
+		assert bucketWidth > 0;
+		this.threshold = threshold;
+		this.horizon = horizon;
+		this.bucketWidth = bucketWidth;
+		this.listener = listener;
+		now = startTime;
+		// Enough buckets to cover the window, whatever its alignment with the slots.
+		int nBuckets = (int) (horizon / bucketWidth) + 2;
+		buckets = new ArrayList<>(nBuckets);
+		slots = new long[nBuckets];
+		for (int i = 0; i < nBuckets; i++) {
+			buckets.add(new ArrayList<>());
+			slots[i] = Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * 
+	 * @return The current time.
+	 */
+	public long getTime() {
+		return now;
+	}
+
+	/**
+	 * 
+	 * @return The number of segments in the index.
+	 */
+	public int getSegmentCount() {
+		return nSegments;
+	}
+
+	/**
+	 * 
+	 * @return The number of entries in the index's buckets (a segment is entered in
+	 *         each bucket that it overlaps).
+	 */
+	public int getEntryCount() {
+		int nEntries = 0;
+		for (List<Segment> bucket : buckets) {
+			nEntries += bucket.size();
+		}
+		return nEntries;
+	}
+
+	/**
+	 * 
+	 * @return The number of objects that have reported within the horizon.
+	 */
+	public int getObjectCount() {
+		return objects.size();
+	}
+
+	/**
+	 * Advance the current time, forgetting segments that have ended and objects
+	 * that have not reported within the horizon.
+	 * 
+	 * @param time The new time (no earlier than the current time).
+	 */
+	public void advance(long time) {
+		assert time >= now;
+		now = time;
+		long currentSlot = Math.floorDiv(now, bucketWidth);
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] != Long.MIN_VALUE && slots[i] < currentSlot) {
+				clear(i);
+			}
+		}
+		Iterator<ObjectState> it = objects.values().iterator();
+		while (it.hasNext()) {
+			ObjectState state = it.next();
+			if (state.lastActivity < now - horizon) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Report an object's position. The motion from the object's previous report
+	 * (if any) to this one is added as a segment.
+	 * 
+	 * @param object   The object.
+	 * @param position The object's position (with a time later than its previous
+	 *                 report).
+	 */
+	public void report(int object, WayPoint position) {
+		ObjectState state = state(object);
+		WayPoint previous = state.lastReport;
+		state.lastReport = position;
+		if (previous != null) {
+			assert position.getTime() > previous.getTime();
+			add(object, previous, position);
+		}
+	}
+
+	/**
+	 * Replace an object's predicted motion. Any previous prediction is withdrawn,
+	 * and each segment of the new prediction is added.
+	 * 
+	 * @param object     The object.
+	 * @param prediction The predicted route (way points with increasing times); may
+	 *                   be empty to withdraw the prediction.
+	 */
+	public void predict(int object, List<WayPoint> prediction) {
+		ObjectState state = state(object);
+		for (Segment segment : state.predicted) {
+			withdraw(segment);
+		}
+		state.predicted.clear();
+		for (int i = 0; i < prediction.size() - 1; i++) {
+			Segment segment = add(object, prediction.get(i), prediction.get(i + 1));
+			if (segment != null) {
+				state.predicted.add(segment);
+			}
+		}
+	}
+
+	/**
+	 * Remove a segment from the buckets that still hold it, so that withdrawn
+	 * segments neither occupy memory nor are scanned until their slots expire.
+	 * Each removal takes constant time: the bucket's last segment is moved into
+	 * the removed segment's place.
+	 * 
+	 * @param segment An indexed segment.
+	 */
+	private void withdraw(Segment segment) {
+		for (long slot = segment.firstSlot; slot <= segment.lastSlot; slot++) {
+			int index = (int) Math.floorMod(slot, (long) slots.length);
+			if (slots[index] == slot) {
+				List<Segment> bucket = buckets.get(index);
+				int position = segment.position(slot);
+				Segment last = bucket.remove(bucket.size() - 1);
+				if (last != segment) {
+					bucket.set(position, last);
+					last.setPosition(slot, position);
+				}
+			}
+		}
+		if (segment.counted) {
+			segment.counted = false;
+			nSegments--;
+		}
+	}
+
+	/**
+	 * 
+	 * @param object An object.
+	 * @return The object's state, created if the object is new (or has been
+	 *         forgotten); recorded as active now.
+	 */
+	private ObjectState state(int object) {
+		ObjectState state = objects.get(object);
+		if (state == null) {
+			state = new ObjectState();
+			objects.put(object, state);
+		}
+		state.lastActivity = now;
+		return state;
+	}
+
+	/**
+	 * Add a segment of an object's motion: clip it to the window, compare it with
+	 * overlapping segments of other objects and index it.
+	 * 
+	 * @param object The object.
+	 * @param start  The start of the segment.
+	 * @param end    The end of the segment (later than the start).
+	 * @return The indexed segment; null if it has ended or starts beyond the
+	 *         window.
+	 */
+	private Segment add(int object, WayPoint start, WayPoint end) {
+		assert start.getTime() < end.getTime();
+		long endTime = Math.min(end.getTime(), now + horizon);
+		if (endTime < now || start.getTime() >= endTime) {
+			return null;
+		}
+		long firstSlot = Math.max(Math.floorDiv(start.getTime(), bucketWidth), Math.floorDiv(now, bucketWidth));
+		long lastSlot = Math.floorDiv(endTime, bucketWidth);
+		Segment segment = new Segment(object, start, clip(start, end, endTime), firstSlot, lastSlot);
+
+		// Compare with the other objects' segments in the buckets that this segment
+		// overlaps, then enter it in those buckets.
+		queryStamp++;
+		for (long slot = firstSlot; slot <= lastSlot; slot++) {
+			List<Segment> bucket = bucket(slot);
+			for (Segment other : bucket) {
+				if (other.stamp != queryStamp && other.object != object) {
+					other.stamp = queryStamp;
+					compare(segment, other);
+				}
+			}
+		}
+		for (long slot = firstSlot; slot <= lastSlot; slot++) {
+			List<Segment> bucket = bucket(slot);
+			segment.setPosition(slot, bucket.size());
+			bucket.add(segment);
+		}
+		nSegments++;
+		return segment;
+	}
+
+	/**
+	 * Compare two segments, reporting a conflict if their closest approach is
+	 * nearer than the threshold.
+	 * 
+	 * @param segment The segment being added.
+	 * @param other   An indexed segment of another object.
+	 */
+	private void compare(Segment segment, Segment other) {
+		// Only the parts of the segments from now on are compared: a conflict before
+		// now has already happened.
+		long startTime = Math.max(now, Math.max(segment.start.getTime(), other.start.getTime()));
+		long endTime = Math.min(segment.end.getTime(), other.end.getTime());
+		if (startTime > endTime || segment.boxDistance(other) >= threshold) {
+			if (EngineMetrics.enabled) {
+				EngineMetrics.pairs(0, 1);
+			}
+			return;
+		}
+		if (EngineMetrics.enabled) {
+			EngineMetrics.pairs(1, 0);
+		}
+		ClosestApproach approach;
+		if (startTime == endTime) {
+			approach = new ClosestApproach(segment.at(startTime), other.at(startTime));
+		} else {
+			approach = new DetermineClosestApproachBetweenLinearSegments(segment.at(startTime), segment.at(endTime),
+					other.at(startTime), other.at(endTime)).getClosestApproach();
+		}
+		if (approach.distance() < threshold) {
+			listener.conflict(segment.object, other.object, approach);
+		}
+	}
+
+	/**
+	 * 
+	 * @param slot A time slot within (or just before) the window.
+	 * @return The bucket for the slot, cleared if it previously held another slot.
+	 */
+	private List<Segment> bucket(long slot) {
+		int index = (int) Math.floorMod(slot, (long) slots.length);
+		if (slots[index] != slot) {
+			clear(index);
+			slots[index] = slot;
+		}
+		return buckets.get(index);
+	}
+
+	/**
+	 * Clear a bucket, forgetting the segments that end within it.
+	 * 
+	 * @param index The index of the bucket.
+	 */
+	private void clear(int index) {
+		long slot = slots[index];
+		for (Segment segment : buckets.get(index)) {
+			// A segment is counted out by the bucket that holds its end time.
+			if (segment.counted && Math.floorDiv(segment.end.getTime(), bucketWidth) == slot) {
+				segment.counted = false;
+				nSegments--;
+			}
+		}
+		buckets.get(index).clear();
+		slots[index] = Long.MIN_VALUE;
+	}
+
+	/**
+	 * 
+	 * @return The way point at the given time on the segment from start to end.
+	 */
+	private static WayPoint clip(WayPoint start, WayPoint end, long time) {
+		if (time == start.getTime()) {
+			return start;
+		} else if (time == end.getTime()) {
+			return end;
+		} else {
+			return WayPoint.interpolate(start, end, time);
+		}
+	}
+
+	/**
+	 * The state of an object.
+	 */
+	private static class ObjectState {
+		// The object's most recent report (null if none).
+		private WayPoint lastReport;
+		// The time of the object's most recent report or prediction.
+		private long lastActivity;
+		// The object's currently predicted segments.
+		private final List<Segment> predicted = new ArrayList<>();
+	}
+
+	/**
+	 * A segment of an object's motion, with its bounding box.
+	 */
+	private static class Segment {
+		private final int object;
+		private final WayPoint start;
+		private final WayPoint end;
+		private final double[] min;
+		private final double[] max;
+		// The slots of the buckets in which the segment is entered, and its position
+		// in each of those buckets.
+		private final long firstSlot;
+		private final long lastSlot;
+		private final int[] positions;
+		// Whether the segment is counted in the number of indexed segments.
+		private boolean counted = true;
+		// The most recent query that has considered this segment.
+		private int stamp;
+
+		private Segment(int object, WayPoint start, WayPoint end, long firstSlot, long lastSlot) {
+			this.object = object;
+			this.start = start;
+			this.end = end;
+			this.firstSlot = firstSlot;
+			this.lastSlot = lastSlot;
+			positions = new int[(int) (lastSlot - firstSlot) + 1];
+			double[] s = start.getCoordinates();
+			double[] e = end.getCoordinates();
+			min = new double[s.length];
+			max = new double[s.length];
+			for (int d = 0; d < s.length; d++) {
+				min[d] = Math.min(s[d], e[d]);
+				max[d] = Math.max(s[d], e[d]);
+			}
+		}
+
+		private int position(long slot) {
+			return positions[(int) (slot - firstSlot)];
+		}
+
+		private void setPosition(long slot, int position) {
+			positions[(int) (slot - firstSlot)] = position;
+		}
+
+		private WayPoint at(long time) {
+			return clip(start, end, time);
+		}
+
+		private double boxDistance(Segment other) {
+			double sumSqrDistance = 0;
+			for (int d = 0; d < min.length; d++) {
+				double gap = Math.max(min[d] - other.max[d], other.min[d] - max[d]);
+				if (gap > 0) {
+					sumSqrDistance += gap * gap;
+				}
+			}
+			return Math.sqrt(sumSqrDistance);
+		}
+	}
+}
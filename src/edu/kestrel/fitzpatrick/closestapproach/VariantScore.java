@@ -0,0 +1,87 @@
+package edu.kestrel.fitzpatrick.closestapproach;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         The score of one variant of a route against the surrounding traffic:
+ *         the traffic route that comes closest to the variant, and the closest
+ *         approaches between the two.
+ * 
+ *         If no traffic route overlaps the variant in time, then there is no
+ *         closest approach: the distance is infinite, the traffic index is -1
+ *         and the list of closest approaches is empty.
+ * 
+ */
+public class VariantScore {
+
+	private final int variant;
+	private final int traffic;
+	private final double distance;
+	private final List<ClosestApproach> closestApproaches;
+
+	/**
+	 * Create a score for a variant that does not overlap any traffic.
+	 * 
+	 * @param variant The index of the variant.
+	 */
+	public VariantScore(int variant) {
+		this(variant, -1, Double.POSITIVE_INFINITY, new ArrayList<>());
+	}
+
+	/**
+	 * Create a score for a variant.
+	 * 
+	 * @param variant           The index of the variant.
+	 * @param traffic           The index of the closest traffic route.
+	 * @param distance          The distance of the closest approach.
+	 * @param closestApproaches The closest approaches between the variant and the
+	 *                          traffic route, in time order.
+	 */
+	public VariantScore(int variant, int traffic, double distance, List<ClosestApproach> closestApproaches) {
+		super();
+		assert closestApproaches != null;
+		this.variant = variant;
+		this.traffic = traffic;
+		this.distance = distance;
+		this.closestApproaches = closestApproaches;
+	}
+
+	/**
+	 * 
+	 * @return The index of the variant.
+	 */
+	public int variant() {
+		return variant;
+	}
+
+	/**
+	 * 
+	 * @return The index of the traffic route that comes closest to the variant;
+	 *         -1 if no traffic route overlaps the variant in time.
+	 */
+	public int traffic() {
+		return traffic;
+	}
+
+	/**
+	 * 
+	 * @return The distance of the closest approach between the variant and any
+	 *         traffic route; infinite if no traffic route overlaps the variant.
+	 */
+	public double distance() {
+		return distance;
+	}
+
+	/**
+	 * 
+	 * @return The closest approaches between the variant and the closest traffic
+	 *         route, in time order. May be empty, but not null.
+	 */
+	public List<ClosestApproach> closestApproaches() {
+		return closestApproaches;
+	}
+}
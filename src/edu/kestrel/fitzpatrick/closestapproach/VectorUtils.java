@@ -144,4 +144,20 @@ public class VectorUtils {
 		return interpolation;
 	}
 
+	/**
+	 * As {@link #interpolate(double[], double[], double)}, into a given array.
+	 * 
+	 * @param start         The start vector.
+	 * @param end           The end vector.
+	 * @param k             The interpolation fraction.
+	 * @param interpolation Receives the interpolated vector.
+	 */
+	public static void interpolate(double[] start, double[] end, double k, double[] interpolation) {
+		assert start.length == end.length;
+		int n = start.length;
+		for (int i = 0; i < n; i++) {
+			interpolation[i] = start[i] + k * (end[i] - start[i]);
+		}
+	}
+
 }
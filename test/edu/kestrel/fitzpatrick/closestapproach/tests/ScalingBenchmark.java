@@ -0,0 +1,240 @@
+package edu.kestrel.fitzpatrick.closestapproach.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.EngineMetrics;
+import edu.kestrel.fitzpatrick.closestapproach.RouteVariantScorer;
+import edu.kestrel.fitzpatrick.closestapproach.SpaceTimeIndex;
+import edu.kestrel.fitzpatrick.closestapproach.StreamingConflictDetector;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+import edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils;
+import edu.kestrel.fitzpatrick.texttable.TextTable;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         A macro benchmark of how the engines scale with fleet size and thread
+ *         count. For each fleet size, a seeded, synthetic fleet is generated
+ *         (see {@link UnitTestUtils#randomFleet}), and each engine is timed at
+ *         each thread count:
+ *         </p>
+ *         <ul>
+ *         <li>pairwise: closest approaches between random pairs of routes
+ *         ({@link DetermineClosestApproachBetweenRoutes});</li>
+ *         <li>fleet: variants of a route scored against the whole fleet
+ *         ({@link RouteVariantScorer}), with the fraction of pairs pruned by the
+ *         broad phase;</li>
+ *         <li>streaming: the fleet's way points fed, in time order, to a
+ *         {@link StreamingConflictDetector}. The detector is not thread safe,
+ *         so is timed with one thread only.</li>
+ *         </ul>
+ * 
+ *         <p>
+ *         Each time is the best of several repetitions. The report gives the
+ *         throughput, and the speedup and efficiency relative to one thread, so
+ *         that the thread count at which speedup stops being linear can be seen.
+ *         </p>
+ * 
+ *         <p>
+ *         Arguments are name=value pairs (lists are comma-separated): routes
+ *         (fleet sizes; default 1000,10000,100000), threads (default powers of
+ *         two up to the number of processors), seed (default 1), dimensions
+ *         (default 3), spacing (mean distance between routes' start positions,
+ *         which sets the density; default 5000), period (of start times; default
+ *         3600000), wayPoints (per route; default 20), pairs (default 100000),
+ *         variants (default 64) and repeats (default 3).
+ *         </p>
+ */
+public class ScalingBenchmark {
+	// Maximum rate of change of each coordinate.
+	private static final double SPEED = 0.25;
+
+	private final long seed;
+	private final int dimensions;
+	private final double spacing;
+	private final long period;
+	private final int nWayPoints;
+	private final int nPairs;
+	private final int nVariants;
+	private final int nRepeats;
+
+	private final TextTable table = new TextTable();
+
+	private ScalingBenchmark(Map<String, String> args) {
+		seed = Long.parseLong(args.getOrDefault("seed", "1"));
+		dimensions = Integer.parseInt(args.getOrDefault("dimensions", "3"));
+		spacing = Double.parseDouble(args.getOrDefault("spacing", "5000"));
+		period = Long.parseLong(args.getOrDefault("period", "3600000"));
+		nWayPoints = Integer.parseInt(args.getOrDefault("wayPoints", "20"));
+		nPairs = Integer.parseInt(args.getOrDefault("pairs", "100000"));
+		nVariants = Integer.parseInt(args.getOrDefault("variants", "64"));
+		nRepeats = Integer.parseInt(args.getOrDefault("repeats", "3"));
+		table.setHeaders("engine", "routes", "threads", "seconds", "pairs/s", "speedup", "efficiency", "notes");
+	}
+
+	public static void main(String[] argv) throws InterruptedException, ExecutionException {
+		Map<String, String> args = new HashMap<>();
+		for (String arg : argv) {
+			int equals = arg.indexOf('=');
+			args.put(arg.substring(0, equals), arg.substring(equals + 1));
+		}
+		int[] fleetSizes = parseInts(args.getOrDefault("routes", "1000,10000,100000"));
+		int[] threadCounts;
+		if (args.containsKey("threads")) {
+			threadCounts = parseInts(args.get("threads"));
+		} else {
+			int processors = Runtime.getRuntime().availableProcessors();
+			threadCounts = IntStream.iterate(1, t -> 2 * t).limit(32 - Integer.numberOfLeadingZeros(processors))
+					.toArray();
+		}
+
+		ScalingBenchmark benchmark = new ScalingBenchmark(args);
+		for (int nRoutes : fleetSizes) {
+			benchmark.run(nRoutes, threadCounts);
+		}
+		System.out.println(benchmark.table);
+	}
+
+	private static int[] parseInts(String list) {
+		return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+	}
+
+	/**
+	 * Benchmark each engine against a fleet of the given size.
+	 */
+	private void run(int nRoutes, int[] threadCounts) throws InterruptedException, ExecutionException {
+		double extent = spacing * Math.pow(nRoutes, 1.0 / dimensions);
+		List<List<WayPoint>> fleet = UnitTestUtils.randomFleet(seed, nRoutes, dimensions, extent, period, nWayPoints,
+				SPEED);
+		System.err.printf("Generated %,d routes%n", nRoutes);
+
+		// Pairwise.
+		Random random = new Random(seed);
+		int[] first = new int[nPairs];
+		int[] second = new int[nPairs];
+		for (int p = 0; p < nPairs; p++) {
+			first[p] = random.nextInt(nRoutes);
+			second[p] = random.nextInt(nRoutes);
+		}
+		double baseline = 0;
+		for (int threads : threadCounts) {
+			double seconds = time(threads, () -> IntStream.range(0, nPairs) //
+					.parallel() //
+					.forEach(p -> DetermineClosestApproachBetweenRoutes.computeClosestApproaches(fleet.get(first[p]),
+							fleet.get(second[p]))));
+			baseline = threads == threadCounts[0] ? seconds * threads : baseline;
+			row("pairwise", nRoutes, threads, seconds, nPairs, baseline, "");
+		}
+
+		// Fleet: variants of a route through the middle of the fleet, in the middle of
+		// the period, that climb (or descend) part way along.
+		double[] middle = new double[dimensions];
+		Arrays.fill(middle, extent / 2);
+		List<WayPoint> base = UnitTestUtils.randomRoute(random, period / 2, middle, nWayPoints, SPEED);
+		List<List<WayPoint>> variants = new ArrayList<>();
+		for (int v = 0; v < nVariants; v++) {
+			List<WayPoint> variant = new ArrayList<>(base);
+			double climb = (random.nextDouble() - 0.5) * spacing;
+			for (int i = 1 + random.nextInt(nWayPoints - 1); i < nWayPoints; i++) {
+				double[] coordinates = base.get(i).getCoordinates().clone();
+				coordinates[dimensions - 1] += climb;
+				variant.set(i, new WayPoint(base.get(i).getTime(), coordinates));
+			}
+			variants.add(variant);
+		}
+		long start = System.nanoTime();
+		SpaceTimeIndex index = new SpaceTimeIndex(fleet);
+		double indexSeconds = (System.nanoTime() - start) / 1e9;
+		EngineMetrics.reset();
+		EngineMetrics.setEnabled(true);
+		new RouteVariantScorer(base, index).score(variants);
+		EngineMetrics.setEnabled(false);
+		Map<String, Long> metrics = EngineMetrics.snapshot();
+		long evaluated = metrics.get("closestapproach_pairs_evaluated_total");
+		long pruned = metrics.get("closestapproach_pairs_pruned_total");
+		String notes = String.format("index %.3fs, %.2f%% pruned", indexSeconds,
+				100.0 * pruned / Math.max(1, evaluated + pruned));
+		long nFleetPairs = (long) nVariants * nRoutes;
+		for (int threads : threadCounts) {
+			// A new scorer each time, so that the base route's closest approaches are
+			// not reused between repetitions.
+			double seconds = time(threads, () -> new RouteVariantScorer(base, index).score(variants));
+			baseline = threads == threadCounts[0] ? seconds * threads : baseline;
+			row("fleet", nRoutes, threads, seconds, nFleetPairs, baseline, notes);
+		}
+
+		// Streaming, with a 1 minute horizon and conflicts nearer than a tenth of the
+		// spacing.
+		List<int[]> reports = new ArrayList<>();
+		for (int r = 0; r < nRoutes; r++) {
+			for (int i = 0; i < nWayPoints; i++) {
+				reports.add(new int[] { r, i });
+			}
+		}
+		reports.sort(Comparator.comparingLong(report -> fleet.get(report[0]).get(report[1]).getTime()));
+		LongAdder conflicts = new LongAdder();
+		double seconds = time(1, () -> {
+			StreamingConflictDetector detector = new StreamingConflictDetector(spacing / 10, 60_000,
+					fleet.get(reports.get(0)[0]).get(0).getTime(), (o1, o2, approach) -> conflicts.increment());
+			for (int[] report : reports) {
+				WayPoint position = fleet.get(report[0]).get(report[1]);
+				if (position.getTime() > detector.getTime()) {
+					detector.advance(position.getTime());
+				}
+				detector.report(report[0], position);
+			}
+		});
+		row("streaming", nRoutes, 1, seconds, reports.size(), seconds,
+				String.format("%,d reports, %,d conflicts", reports.size(), conflicts.sum() / nRepeats));
+		table.addLine();
+	}
+
+	/**
+	 * 
+	 * @return The best time, in seconds, of the repetitions of the task, run in a
+	 *         pool of the given number of threads (so that parallel streams within
+	 *         the task use that many threads).
+	 */
+	private double time(int threads, Runnable task) throws InterruptedException, ExecutionException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			double best = Double.POSITIVE_INFINITY;
+			for (int r = 0; r < nRepeats; r++) {
+				long start = System.nanoTime();
+				pool.submit(task).get();
+				best = Math.min(best, (System.nanoTime() - start) / 1e9);
+			}
+			return best;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Add a row to the report.
+	 * 
+	 * @param baseline The time that one thread would take, in seconds, estimated
+	 *                 from the smallest thread count.
+	 */
+	private void row(String engine, int nRoutes, int threads, double seconds, long pairs, double baseline,
+			String notes) {
+		double speedup = baseline / seconds;
+		table.row(engine, String.format("%,d", nRoutes), threads, String.format("%.3f", seconds),
+				String.format("%,.0f", pairs / seconds), String.format("%.2f", speedup),
+				String.format("%.0f%%", 100 * speedup / threads), notes);
+		System.err.printf("%s %,d routes, %d threads: %.3fs%n", engine, nRoutes, threads, seconds);
+	}
+}
@@ -0,0 +1,111 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproachBuffer;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for ClosestApproachBuffer.
+ */
+class ClosestApproachBufferTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 1000;
+
+	/*
+	 * Filling a buffer from pairs of routes gives exactly the closest approaches
+	 * computed by DetermineClosestApproachBetweenRoutes.
+	 */
+	@Test
+	void testRandom() {
+		ClosestApproachBuffer buffer = new ClosestApproachBuffer(2, true, 0);
+		List<ClosestApproach> expected = new ArrayList<>();
+		List<Integer> expectedPairIds = new ArrayList<>();
+		for (int pairId = 0; pairId < N_RANDOM_TESTS; pairId++) {
+			List<WayPoint> route1 = UnitTestUtils.randomRoute();
+			List<WayPoint> route2 = UnitTestUtils.random.nextInt(10) == 0 ? route1 : UnitTestUtils.randomRoute();
+			List<ClosestApproach> approaches = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					route2);
+			int n = buffer.addClosestApproaches(pairId, new ListRoute(route1), new ListRoute(route2));
+			assertEquals(approaches.size(), n);
+			for (ClosestApproach approach : approaches) {
+				expected.add(approach);
+				expectedPairIds.add(pairId);
+			}
+		}
+
+		assertEquals(expected.size(), buffer.size());
+		ClosestApproachBuffer.Entry entry = buffer.entry();
+		for (int i = 0; i < buffer.size(); i++) {
+			ClosestApproach approach = expected.get(i);
+			entry.moveTo(i);
+			assertEquals(expectedPairIds.get(i).intValue(), entry.pairId());
+			assertEquals(approach.time(), entry.time());
+			assertEquals(approach.distance(), entry.distance());
+			assertEquals(approach.wayPoint1(), entry.wayPoint1());
+			assertEquals(approach.wayPoint2(), entry.wayPoint2());
+			assertEquals(approach.distance(), entry.toClosestApproach().distance());
+		}
+	}
+
+	/*
+	 * Results added one by one are read back, with or without coordinates.
+	 */
+	@Test
+	void testAdd() {
+		ClosestApproachBuffer withCoordinates = new ClosestApproachBuffer(3, true, 1);
+		ClosestApproachBuffer withoutCoordinates = new ClosestApproachBuffer(3, false, 1);
+		List<ClosestApproach> expected = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			ClosestApproach approach;
+			if (i % 7 == 0) {
+				approach = new ClosestApproach(UnitTestUtils.randomDouble(0, 100));
+			} else {
+				long time = UnitTestUtils.randomInt(0, 1000);
+				approach = new ClosestApproach(new WayPoint(time, new double[] { i, 2 * i, 3 * i }),
+						new WayPoint(time, new double[] { -i, 0, i }));
+			}
+			expected.add(approach);
+			withCoordinates.add(i, approach);
+			withoutCoordinates.add(i, approach);
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			ClosestApproach approach = expected.get(i);
+			ClosestApproachBuffer.Entry entry = withCoordinates.entry().moveTo(i);
+			assertEquals(approach.time(), entry.time());
+			assertEquals(approach.wayPoint1(), entry.wayPoint1());
+			assertEquals(approach.wayPoint2(), entry.wayPoint2());
+			assertEquals(approach.time() != null, withoutCoordinates.hasTime(i));
+			assertEquals(approach.distance(), withoutCoordinates.getDistance(i));
+			assertEquals(i, withoutCoordinates.getPairId(i));
+			if (approach.time() == null) {
+				assertNull(entry.wayPoint1());
+				assertEquals(ClosestApproachBuffer.NO_TIME, withoutCoordinates.getTime(i));
+			} else {
+				assertEquals(approach.time().longValue(), withoutCoordinates.getTime(i));
+			}
+		}
+
+		withCoordinates.clear();
+		assertEquals(0, withCoordinates.size());
+		assertFalse(withoutCoordinates.hasCoordinates());
+
+		// Without coordinates, an approach's way points are not fetched.
+		withoutCoordinates.add(100, UnitTestUtils.approachWithoutWayPoints(500, 2));
+		assertEquals(500, withoutCoordinates.getTime(100));
+		assertEquals(2.0, withoutCoordinates.getDistance(100));
+	}
+}
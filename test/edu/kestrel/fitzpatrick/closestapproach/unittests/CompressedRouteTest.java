@@ -0,0 +1,200 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.assertSameApproaches;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.CompressedRoute;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for CompressedRoute.
+ */
+class CompressedRouteTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 1_000;
+
+	/**
+	 * A random route with irregular times and coordinates of assorted magnitudes
+	 * and signs.
+	 */
+	private static List<WayPoint> randomRoute() {
+		int n = UnitTestUtils.randomInt(1, 300);
+		long time = UnitTestUtils.randomInt(-1_000_000, 1_000_000);
+		List<WayPoint> route = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			time += UnitTestUtils.randomInt(1, 100_000);
+			double scale = Math.pow(10, UnitTestUtils.randomInt(-3, 8));
+			route.add(new WayPoint(time, new double[] { UnitTestUtils.randomDouble(-scale, scale),
+					UnitTestUtils.randomDouble(-scale, scale), i % 7 == 0 ? 0.0 : -0.0 }));
+		}
+		return route;
+	}
+
+	/*
+	 * Lossless encoding decodes to the original route, whatever the block size.
+	 */
+	@Test
+	void testLossless() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<WayPoint> route = randomRoute();
+			int blockSize = UnitTestUtils.randomInt(1, 100);
+			CompressedRoute compressed = CompressedRoute.encode(new ListRoute(route), 0, blockSize);
+			assertEquals(route.size(), compressed.size());
+			assertEquals(route, compressed.cursor().toWayPoints());
+			// Including the signs of zeros.
+			CompressedRoute.Cursor cursor = compressed.cursor();
+			for (int i = 0; i < route.size(); i++) {
+				assertEquals(Double.doubleToRawLongBits(route.get(i).getCoordinates()[2]),
+						Double.doubleToRawLongBits(cursor.getCoordinate(i, 2)));
+			}
+			// And after serialization.
+			assertEquals(route, CompressedRoute.fromBytes(compressed.toBytes()).cursor().toWayPoints());
+		}
+	}
+
+	/*
+	 * Quantized coordinates are within half a quantum of the originals.
+	 */
+	@Test
+	void testQuantized() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<WayPoint> route = randomRoute();
+			double quantum = Math.pow(10, UnitTestUtils.randomInt(-3, 2));
+			CompressedRoute compressed = CompressedRoute.encode(new ListRoute(route), quantum,
+					UnitTestUtils.randomInt(1, 100));
+			CompressedRoute.Cursor cursor = compressed.cursor();
+			for (int i = 0; i < route.size(); i++) {
+				assertTrue(cursor.next());
+				assertEquals(i, cursor.getIndex());
+				assertEquals(route.get(i).getTime(), cursor.getTime());
+				for (int d = 0; d < 3; d++) {
+					double expected = route.get(i).getCoordinates()[d];
+					assertEquals(expected, cursor.getCoordinate(d), quantum / 2 + Math.ulp(expected) * 4);
+				}
+			}
+			assertFalse(cursor.next());
+		}
+	}
+
+	/*
+	 * Way points can be read in any order.
+	 */
+	@Test
+	void testRandomAccess() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<WayPoint> route = randomRoute();
+			CompressedRoute.Cursor cursor = CompressedRoute
+					.encode(new ListRoute(route), 0, UnitTestUtils.randomInt(1, 20)).cursor();
+			for (int k = 0; k < 20; k++) {
+				int i = UnitTestUtils.randomInt(0, route.size());
+				cursor.seek(i);
+				assertEquals(route.get(i).getTime(), cursor.getTime());
+				assertEquals(route.get(i), cursor.getWayPoint(i));
+			}
+		}
+	}
+
+	/*
+	 * Way points can be read alternately from two blocks, as at a block boundary,
+	 * and from a third block after them.
+	 */
+	@Test
+	void testAlternatingBlocks() {
+		List<WayPoint> route = randomRoute();
+		while (route.size() < 30) {
+			route = randomRoute();
+		}
+		CompressedRoute.Cursor cursor = CompressedRoute.encode(new ListRoute(route), 0, 8).cursor();
+		for (int k = 0; k < 10; k++) {
+			for (int i : new int[] { 7, 8, 3, 15, 0, 20, 9, 29 }) {
+				assertEquals(route.get(i), cursor.getWayPoint(i));
+			}
+		}
+	}
+
+	/*
+	 * Bytes that are not the serialized form of a route are rejected with an
+	 * IllegalArgumentException.
+	 */
+	@Test
+	void testCorruptBytes() {
+		List<WayPoint> route = randomRoute();
+		byte[] bytes = CompressedRoute.encode(new ListRoute(route), 0, 4).toBytes();
+		assertEquals(route.size(), CompressedRoute.fromBytes(bytes).size());
+		assertThrows(IllegalArgumentException.class, () -> CompressedRoute.fromBytes(Arrays.copyOf(bytes, 10)));
+		assertThrows(IllegalArgumentException.class,
+				() -> CompressedRoute.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+		// The size, dimensions and block size are ints at offsets 4, 8 and 12.
+		int[][] corruptions = { { 4, -1 }, { 4, Integer.MAX_VALUE }, { 8, 0 }, { 12, 0 }, { 12, -4 } };
+		for (int[] corruption : corruptions) {
+			byte[] corrupt = bytes.clone();
+			ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(corruption[0], corruption[1]);
+			assertThrows(IllegalArgumentException.class, () -> CompressedRoute.fromBytes(corrupt));
+		}
+
+		// A block or way point larger than the route, which would allocate huge
+		// buffers for a cursor.
+		List<WayPoint> single = route.subList(0, 1);
+		byte[] singleBytes = CompressedRoute.encode(new ListRoute(single), 0).toBytes();
+		assertEquals(single.get(0), CompressedRoute.fromBytes(singleBytes).cursor().getWayPoint(0));
+		int[][] oversized = { { 12, 2 }, { 12, Integer.MAX_VALUE }, { 8, 1 << 20 }, { 8, Integer.MAX_VALUE } };
+		for (int[] corruption : oversized) {
+			byte[] corrupt = singleBytes.clone();
+			ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(corruption[0], corruption[1]);
+			assertThrows(IllegalArgumentException.class, () -> CompressedRoute.fromBytes(corrupt));
+		}
+	}
+
+	/*
+	 * The engine gives the same closest approaches on cursors over losslessly
+	 * encoded routes as on the original routes.
+	 */
+	@Test
+	void testEngineOnCursors() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<WayPoint> route1 = UnitTestUtils.randomRoute();
+			List<WayPoint> route2 = UnitTestUtils.randomRoute();
+			List<ClosestApproach> expected = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					route2);
+			List<ClosestApproach> actual = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(
+					CompressedRoute.encode(new ListRoute(route1), 0, 3).cursor(),
+					CompressedRoute.encode(new ListRoute(route2), 0, 3).cursor());
+			assertSameApproaches(expected, actual);
+		}
+	}
+
+	/*
+	 * A regularly sampled, smooth route compresses well.
+	 */
+	@Test
+	void testCompression() {
+		List<WayPoint> route = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			double angle = i / 1000.0;
+			route.add(new WayPoint(1_600_000_000_000L + 1000L * i,
+					new double[] { 50_000 * Math.cos(angle), 50_000 * Math.sin(angle), 10_000 }));
+		}
+		int rawSize = route.size() * (8 + 3 * 8);
+		CompressedRoute quantized = CompressedRoute.encode(new ListRoute(route), 0.01);
+		assertTrue(quantized.getEncodedSize() * 4 < rawSize);
+		CompressedRoute lossless = CompressedRoute.encode(new ListRoute(route), 0);
+		assertTrue(lossless.getEncodedSize() < rawSize);
+	}
+}
@@ -209,4 +209,30 @@ class DetermineClosestApproachBetweenLinearSegmentsTest {
 			assertEquals(smallestSampleK, closestK, sampleInterval);
 		}
 	}
+
+	/*
+	 * The closest approach, whose way points are created on demand, is exactly as
+	 * computed eagerly from the segments' coordinates.
+	 */
+	@Test
+	void testLazyClosestApproach() {
+		for (int t = 0; t < N_RANDOM_TESTS / 100; t++) {
+			long startTime = UnitTestUtils.randomInt(0, 1000);
+			long endTime = startTime + UnitTestUtils.randomInt(1, 1000);
+			WayPoint s1 = new WayPoint(startTime, new double[] { UnitTestUtils.randomDouble(-10, 10), UnitTestUtils.randomDouble(-10, 10) });
+			WayPoint e1 = new WayPoint(endTime, new double[] { UnitTestUtils.randomDouble(-10, 10), UnitTestUtils.randomDouble(-10, 10) });
+			WayPoint s2 = new WayPoint(startTime, new double[] { UnitTestUtils.randomDouble(-10, 10), UnitTestUtils.randomDouble(-10, 10) });
+			WayPoint e2 = t % 10 == 0 ? new WayPoint(endTime, VectorUtils.add(s2.getCoordinates(),
+					VectorUtils.subtract(e1.getCoordinates(), s1.getCoordinates()))) : new WayPoint(endTime, new double[] { UnitTestUtils.randomDouble(-10, 10), UnitTestUtils.randomDouble(-10, 10) });
+			DetermineClosestApproachBetweenLinearSegments dca = new DetermineClosestApproachBetweenLinearSegments(s1, e1, s2, e2);
+			ClosestApproach lazy = dca.getClosestApproach();
+			ClosestApproach eager = DetermineClosestApproachBetweenLinearSegments.closestApproach(startTime, endTime,
+					s1.getCoordinates(), e1.getCoordinates(), s2.getCoordinates(), e2.getCoordinates(), dca.closestK());
+			assertEquals(eager.time(), lazy.time());
+			assertEquals(eager.distance(), lazy.distance());
+			assertEquals(eager.wayPoint1(), lazy.wayPoint1());
+			assertEquals(eager.wayPoint2(), lazy.wayPoint2());
+			assertTrue(lazy.wayPoint1() == lazy.wayPoint1());
+		}
+	}
 }
@@ -5,13 +5,17 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.SortedSet;
 
 import org.junit.jupiter.api.Test;
 
 import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenLinearSegments;
 import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
 import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
 
 /**
@@ -103,4 +107,117 @@ class DetermineClosestApproachBetweenRoutesTest {
 		}
 	}
 
+
+	/*
+	 * With a tolerance, the closest approaches are those segment-wise closest
+	 * approaches within the tolerance of the least distance, for lists of way
+	 * points and for route views alike.
+	 */
+	@Test
+	void testTolerance() {
+		for (int r = 0; r < 10_000; r++) {
+			List<WayPoint> route1 = UnitTestUtils.randomRoute();
+			List<WayPoint> route2 = UnitTestUtils.randomRoute();
+			double tolerance = r % 2 == 0 ? 0 : UnitTestUtils.randomDouble(0, 1000);
+
+			SortedSet<Long> times = DetermineClosestApproachBetweenRoutes.alignTimes(route1, route2);
+			List<WayPoint> aligned1 = DetermineClosestApproachBetweenRoutes.align(route1, times);
+			List<WayPoint> aligned2 = DetermineClosestApproachBetweenRoutes.align(route2, times);
+			List<ClosestApproach> perSegment = new ArrayList<>();
+			List<DetermineClosestApproachBetweenLinearSegments> segments = DetermineClosestApproachBetweenRoutes
+					.computeSegmentApproaches(aligned1, aligned2);
+			for (int i = 0; i < segments.size(); i++) {
+				if (i == segments.size() - 1 || segments.get(i).closestK() < 1) {
+					perSegment.add(segments.get(i).getClosestApproach());
+				}
+			}
+			if (times.size() < 2) {
+				continue;
+			}
+			double minDistance = perSegment.stream().mapToDouble(ClosestApproach::distance).min().getAsDouble();
+			List<Long> expected = new ArrayList<>();
+			for (ClosestApproach ca : perSegment) {
+				if (ca.distance() <= minDistance + tolerance) {
+					expected.add(ca.time());
+				}
+			}
+
+			List<Long> actual = new ArrayList<>();
+			for (ClosestApproach ca : DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2,
+					tolerance)) {
+				actual.add(ca.time());
+			}
+			assertEquals(expected, actual);
+			actual.clear();
+			for (ClosestApproach ca : DetermineClosestApproachBetweenRoutes
+					.computeClosestApproaches(new ListRoute(route1), new ListRoute(route2), tolerance)) {
+				actual.add(ca.time());
+			}
+			assertEquals(expected, actual);
+		}
+	}
+
+	/**
+	 * A route trimmed to a period, with its ends interpolated; null if the route
+	 * does not cover more than an instant of the period.
+	 */
+	private static List<WayPoint> trim(List<WayPoint> route, long startTime, long endTime) {
+		long start = Math.max(startTime, route.get(0).getTime());
+		long end = Math.min(endTime, route.get(route.size() - 1).getTime());
+		if (start >= end) {
+			return null;
+		}
+		List<WayPoint> trimmed = new ArrayList<>();
+		trimmed.add(UnitTestUtils.interpolate(route, start));
+		for (WayPoint wp : route) {
+			if (start < wp.getTime() && wp.getTime() < end) {
+				trimmed.add(wp);
+			}
+		}
+		trimmed.add(UnitTestUtils.interpolate(route, end));
+		return trimmed;
+	}
+
+	/*
+	 * The closest approaches within a window are those of the routes trimmed to the
+	 * window (up to rounding, since the trimmed routes' ends are interpolated), and
+	 * a window covering the routes gives exactly the unwindowed results.
+	 */
+	@Test
+	void testWindow() {
+		for (int r = 0; r < 10_000; r++) {
+			List<WayPoint> route1 = UnitTestUtils.randomRoute();
+			List<WayPoint> route2 = UnitTestUtils.randomRoute();
+
+			List<ClosestApproach> all = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2);
+			List<ClosestApproach> covering = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					route2, Long.MIN_VALUE, Long.MAX_VALUE);
+			assertEquals(all.size(), covering.size());
+			for (int i = 0; i < all.size(); i++) {
+				assertEquals(all.get(i).time(), covering.get(i).time());
+				assertEquals(all.get(i).distance(), covering.get(i).distance());
+				assertEquals(all.get(i).wayPoint1(), covering.get(i).wayPoint1());
+			}
+
+			long startTime = UnitTestUtils.randomInt(0, 40_000);
+			long endTime = startTime + UnitTestUtils.randomInt(1, 20_000);
+			List<ClosestApproach> windowed = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					route2, startTime, endTime);
+			for (ClosestApproach ca : windowed) {
+				assertTrue(startTime <= ca.time() && ca.time() <= endTime);
+			}
+			List<WayPoint> trimmed1 = trim(route1, startTime, endTime);
+			List<WayPoint> trimmed2 = trim(route2, startTime, endTime);
+			if (trimmed1 == null || trimmed2 == null) {
+				continue;
+			}
+			List<ClosestApproach> expected = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(trimmed1,
+					trimmed2);
+			assertEquals(expected.isEmpty(), windowed.isEmpty());
+			if (!expected.isEmpty()) {
+				double distance = expected.get(0).distance();
+				assertEquals(distance, windowed.get(0).distance(), 1e-9 * Math.max(1, distance));
+			}
+		}
+	}
 }
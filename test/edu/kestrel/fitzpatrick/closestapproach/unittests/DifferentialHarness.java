@@ -0,0 +1,445 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenLinearSegments;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         <p>
+ *         Differential testing of closest-approach engines: random cases (pairs
+ *         of routes) are run through a candidate engine and a reference engine,
+ *         and the results compared by a check. Cases are run in parallel, each
+ *         from its own seed (derived from the harness's seed and the case's
+ *         index), so a run is reproducible whatever the number of cores, and a
+ *         failing case can be re-run alone.
+ *         </p>
+ * 
+ *         <p>
+ *         Failing cases are minimized - way points are removed, and coordinates
+ *         and times simplified, while the case still fails - and reported with
+ *         their routes.
+ *         </p>
+ * 
+ *         <p>
+ *         The oracle {@link #sampleClosestApproach(List, List)} samples every
+ *         integer time, as {@link UnitTestUtils#findClosestApproach(List, List)}
+ *         does, but walks a cursor along each route rather than searching for
+ *         each time's segment, and allocates nothing per sample.
+ *         </p>
+ */
+public class DifferentialHarness {
+
+	/**
+	 * A closest-approach engine.
+	 */
+	public static interface Engine {
+		/**
+		 * 
+		 * @param route1 A route.
+		 * @param route2 A route.
+		 * @return The closest approaches between the routes.
+		 */
+		List<ClosestApproach> closestApproaches(List<WayPoint> route1, List<WayPoint> route2);
+	}
+
+	/**
+	 * Compares a candidate engine's results with a reference engine's.
+	 */
+	public static interface Check {
+		/**
+		 * 
+		 * @param route1    A route.
+		 * @param route2    A route.
+		 * @param reference The reference engine's closest approaches.
+		 * @param candidate The candidate engine's closest approaches.
+		 * @return A description of the discrepancy; null if there is none.
+		 */
+		String check(List<WayPoint> route1, List<WayPoint> route2, List<ClosestApproach> reference,
+				List<ClosestApproach> candidate);
+	}
+
+	/**
+	 * The reference engine: the routes are aligned as lists of way points
+	 * ({@link DetermineClosestApproachBetweenRoutes#alignTimes(List, List)} and
+	 * {@link DetermineClosestApproachBetweenRoutes#align(List, java.util.SortedSet)}),
+	 * each aligned segment's closest approach is computed
+	 * ({@link DetermineClosestApproachBetweenRoutes#computeSegmentApproaches(List, List)}),
+	 * and those at the least distance are kept. This is independent of the
+	 * {@link edu.kestrel.fitzpatrick.closestapproach.AlignedSegments} cursor, on
+	 * which the engines under test are built.
+	 */
+	public static final Engine REFERENCE = DifferentialHarness::referenceClosestApproaches;
+
+	private static List<ClosestApproach> referenceClosestApproaches(List<WayPoint> route1, List<WayPoint> route2) {
+		SortedSet<Long> times = DetermineClosestApproachBetweenRoutes.alignTimes(route1, route2);
+		List<WayPoint> aligned1 = DetermineClosestApproachBetweenRoutes.align(route1, times);
+		List<WayPoint> aligned2 = DetermineClosestApproachBetweenRoutes.align(route2, times);
+		List<ClosestApproach> result = new ArrayList<>();
+		if (times.isEmpty()) {
+			// The routes do not overlap in time.
+			return result;
+		} else if (times.size() == 1) {
+			// The end time of one route is the start time of the other.
+			result.add(new ClosestApproach(aligned1.get(0), aligned2.get(0)));
+			return result;
+		}
+		List<DetermineClosestApproachBetweenLinearSegments> segments = DetermineClosestApproachBetweenRoutes
+				.computeSegmentApproaches(aligned1, aligned2);
+		// A closest approach exactly at a segment's end time is counted by the next
+		// segment, unless the segment is the last.
+		List<ClosestApproach> perSegment = new ArrayList<>();
+		for (int i = 0; i < segments.size(); i++) {
+			if (i == segments.size() - 1 || segments.get(i).closestK() < 1) {
+				perSegment.add(segments.get(i).getClosestApproach());
+			}
+		}
+		double minDistance = perSegment.stream().mapToDouble(ClosestApproach::distance).min().getAsDouble();
+		for (ClosestApproach ca : perSegment) {
+			if (ca.distance() == minDistance) {
+				result.add(ca);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The results must be identical: the same closest approaches, with the same
+	 * times and bit-identical distances.
+	 */
+	public static final Check IDENTICAL = (route1, route2, reference, candidate) -> {
+		if (reference.size() != candidate.size()) {
+			return "expected " + reference.size() + " closest approaches, got " + candidate.size();
+		}
+		for (int i = 0; i < reference.size(); i++) {
+			ClosestApproach expected = reference.get(i);
+			ClosestApproach actual = candidate.get(i);
+			if (!Objects.equals(expected.time(), actual.time()) || Double.doubleToLongBits(expected.distance()) != Double
+					.doubleToLongBits(actual.distance())) {
+				return "closest approach " + i + ": expected time=" + expected.time() + " distance="
+						+ expected.distance() + ", got time=" + actual.time() + " distance=" + actual.distance();
+			}
+		}
+		return null;
+	};
+
+	/**
+	 * The candidate's closest approaches must be no further apart than the closest
+	 * approach found by sampling (plus 1e-5), and there must be some exactly when
+	 * sampling finds one. The reference is ignored.
+	 */
+	public static final Check AGAINST_SAMPLING = (route1, route2, reference, candidate) -> {
+		WayPoint[] sampled = sampleClosestApproach(route1, route2);
+		if (sampled == null) {
+			return candidate.isEmpty() ? null : "expected no closest approach, got " + candidate.size();
+		} else if (candidate.isEmpty()) {
+			return "expected a closest approach (sampled at time " + sampled[0].getTime() + "), got none";
+		}
+		double sampledDistance = sampled[0].distance(sampled[1]);
+		for (ClosestApproach approach : candidate) {
+			if (approach.distance() > sampledDistance + 1e-5) {
+				return "closest approach at time " + approach.time() + ", distance " + approach.distance()
+						+ ", is further than sampled at time " + sampled[0].getTime() + ", distance "
+						+ sampledDistance;
+			}
+		}
+		return null;
+	};
+
+	/**
+	 * 
+	 * @param tolerance A tolerance.
+	 * @return A check that the least distances (if any) are within the tolerance
+	 *         of each other.
+	 */
+	public static Check withinTolerance(double tolerance) {
+		return (route1, route2, reference, candidate) -> {
+			if (reference.isEmpty() != candidate.isEmpty()) {
+				return "expected " + reference.size() + " closest approaches, got " + candidate.size();
+			} else if (reference.isEmpty()) {
+				return null;
+			}
+			double expected = reference.get(0).distance();
+			double actual = candidate.get(0).distance();
+			return Math.abs(expected - actual) <= tolerance ? null
+					: "expected distance " + expected + ", got " + actual;
+		};
+	}
+
+	/**
+	 * A failing case.
+	 */
+	public static class Failure {
+		private final int caseIndex;
+		private final List<WayPoint> route1;
+		private final List<WayPoint> route2;
+		private final String message;
+
+		private Failure(int caseIndex, List<WayPoint> route1, List<WayPoint> route2, String message) {
+			super();
+			this.caseIndex = caseIndex;
+			this.route1 = route1;
+			this.route2 = route2;
+			this.message = message;
+		}
+
+		/**
+		 * 
+		 * @return The index of the case.
+		 */
+		public int getCaseIndex() {
+			return caseIndex;
+		}
+
+		/**
+		 * 
+		 * @return The first route (minimized, if the case was minimized).
+		 */
+		public List<WayPoint> getRoute1() {
+			return route1;
+		}
+
+		/**
+		 * 
+		 * @return The second route (minimized, if the case was minimized).
+		 */
+		public List<WayPoint> getRoute2() {
+			return route2;
+		}
+
+		/**
+		 * 
+		 * @return The description of the discrepancy (or of the exception thrown).
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return "case " + caseIndex + ": " + message + "\n  route 1: " + toString(route1) + "\n  route 2: "
+					+ toString(route2);
+		}
+
+		private static String toString(List<WayPoint> route) {
+			return route.stream() //
+					.map(wp -> "(" + wp.getTime() + ", " + Arrays.toString(wp.getCoordinates()) + ")") //
+					.collect(Collectors.joining(", "));
+		}
+	}
+
+	// The number of failing cases that are minimized and reported.
+	private static final int MAX_REPORTED = 10;
+
+	private final long seed;
+	private final Function<Random, List<WayPoint>> generator;
+
+	/**
+	 * Create a harness whose cases are pairs of routes from
+	 * {@link UnitTestUtils#randomRoute(Random)}.
+	 * 
+	 * @param seed The seed from which each case's seed is derived.
+	 */
+	public DifferentialHarness(long seed) {
+		this(seed, UnitTestUtils::randomRoute);
+	}
+
+	/**
+	 * 
+	 * @param seed      The seed from which each case's seed is derived.
+	 * @param generator Generates a route (two or more way points, with increasing
+	 *                  times) from a random number generator.
+	 */
+	public DifferentialHarness(long seed, Function<Random, List<WayPoint>> generator) {
+		super();
+		this.seed = seed;
+		this.generator = generator;
+	}
+
+	/**
+	 * 
+	 * @param caseIndex The index of a case.
+	 * @return The case's routes.
+	 */
+	public List<List<WayPoint>> generate(int caseIndex) {
+		Random random = new Random(seed + 0x9E3779B97F4A7C15L * caseIndex);
+		List<List<WayPoint>> routes = new ArrayList<>();
+		routes.add(generator.apply(random));
+		routes.add(generator.apply(random));
+		return routes;
+	}
+
+	/**
+	 * Run cases through a candidate engine, checking its results against the
+	 * reference engine's.
+	 * 
+	 * @param nCases    The number of cases.
+	 * @param candidate The candidate engine.
+	 * @param check     The check.
+	 * @return The failing cases (the first few minimized), in case order.
+	 */
+	public List<Failure> run(int nCases, Engine candidate, Check check) {
+		return run(nCases, REFERENCE, candidate, check);
+	}
+
+	/**
+	 * Run cases, in parallel, through a candidate engine, checking its results
+	 * against a reference engine's.
+	 * 
+	 * @param nCases    The number of cases.
+	 * @param reference The reference engine.
+	 * @param candidate The candidate engine.
+	 * @param check     The check.
+	 * @return The failing cases (the first few minimized), in case order.
+	 */
+	public List<Failure> run(int nCases, Engine reference, Engine candidate, Check check) {
+		List<Failure> failures = IntStream.range(0, nCases) //
+				.parallel() //
+				.mapToObj(c -> {
+					List<List<WayPoint>> routes = generate(c);
+					String message = test(routes.get(0), routes.get(1), reference, candidate, check);
+					return message == null ? null : new Failure(c, routes.get(0), routes.get(1), message);
+				}) //
+				.filter(Objects::nonNull) //
+				.collect(Collectors.toList());
+		for (int f = 0; f < Math.min(MAX_REPORTED, failures.size()); f++) {
+			failures.set(f, minimize(failures.get(f), reference, candidate, check));
+		}
+		return failures;
+	}
+
+	/**
+	 * 
+	 * @return The description of the case's failure; null if it passes.
+	 */
+	private static String test(List<WayPoint> route1, List<WayPoint> route2, Engine reference, Engine candidate,
+			Check check) {
+		try {
+			return check.check(route1, route2, reference.closestApproaches(route1, route2),
+					candidate.closestApproaches(route1, route2));
+		} catch (RuntimeException | AssertionError e) {
+			return e.toString();
+		}
+	}
+
+	/**
+	 * Minimize a failing case: repeatedly remove any way point whose removal
+	 * leaves the case failing; then round coordinates to whole numbers, and shift
+	 * the times to start at 0, if the case still fails.
+	 */
+	private static Failure minimize(Failure failure, Engine reference, Engine candidate, Check check) {
+		List<List<WayPoint>> routes = new ArrayList<>();
+		routes.add(new ArrayList<>(failure.route1));
+		routes.add(new ArrayList<>(failure.route2));
+		String message = failure.message;
+		boolean removed = true;
+		while (removed) {
+			removed = false;
+			for (List<WayPoint> route : routes) {
+				for (int i = 0; i < route.size() && route.size() > 2; i++) {
+					WayPoint wayPoint = route.remove(i);
+					String result = test(routes.get(0), routes.get(1), reference, candidate, check);
+					if (result != null) {
+						message = result;
+						removed = true;
+						i--;
+					} else {
+						route.add(i, wayPoint);
+					}
+				}
+			}
+		}
+
+		long startTime = Math.min(routes.get(0).get(0).getTime(), routes.get(1).get(0).getTime());
+		List<Function<WayPoint, WayPoint>> simplifications = new ArrayList<>();
+		simplifications.add(wp -> {
+			double[] coordinates = wp.getCoordinates().clone();
+			for (int d = 0; d < coordinates.length; d++) {
+				coordinates[d] = Math.rint(coordinates[d]);
+			}
+			return new WayPoint(wp.getTime(), coordinates);
+		});
+		simplifications.add(wp -> new WayPoint(wp.getTime() - startTime, wp.getCoordinates()));
+		for (Function<WayPoint, WayPoint> simplification : simplifications) {
+			List<WayPoint> simplified1 = routes.get(0).stream().map(simplification).collect(Collectors.toList());
+			List<WayPoint> simplified2 = routes.get(1).stream().map(simplification).collect(Collectors.toList());
+			String result = test(simplified1, simplified2, reference, candidate, check);
+			if (result != null) {
+				message = result;
+				routes.set(0, simplified1);
+				routes.set(1, simplified2);
+			}
+		}
+		return new Failure(failure.caseIndex, routes.get(0), routes.get(1), message);
+	}
+
+	/**
+	 * Find the earliest of the closest approaches between two routes by sampling
+	 * every integer time in their common period (as
+	 * {@link UnitTestUtils#findClosestApproach(List, List)}).
+	 * 
+	 * @param route1 A route (way points with increasing times).
+	 * @param route2 A route (way points with increasing times).
+	 * @return The positions at the earliest, closest approach; null if the routes
+	 *         have no time in common.
+	 */
+	public static WayPoint[] sampleClosestApproach(List<WayPoint> route1, List<WayPoint> route2) {
+		long startTime = Math.max(route1.get(0).getTime(), route2.get(0).getTime());
+		long endTime = Math.min(route1.get(route1.size() - 1).getTime(), route2.get(route2.size() - 1).getTime());
+		if (startTime > endTime) {
+			return null;
+		}
+		int dimensions = route1.get(0).getCoordinates().length;
+		int i1 = 0;
+		int i2 = 0;
+		double closestSquared = Double.POSITIVE_INFINITY;
+		long closestTime = startTime;
+		for (long time = startTime; time <= endTime; time++) {
+			// Advance each cursor to the segment containing the time (the last segment
+			// contains its end time).
+			while (i1 < route1.size() - 2 && route1.get(i1 + 1).getTime() <= time) {
+				i1++;
+			}
+			while (i2 < route2.size() - 2 && route2.get(i2 + 1).getTime() <= time) {
+				i2++;
+			}
+			double squared = 0;
+			for (int d = 0; d < dimensions; d++) {
+				double difference = coordinate(route1, i1, time, d) - coordinate(route2, i2, time, d);
+				squared += difference * difference;
+			}
+			if (squared < closestSquared) {
+				closestSquared = squared;
+				closestTime = time;
+			}
+		}
+		return new WayPoint[] { UnitTestUtils.interpolate(route1, closestTime),
+				UnitTestUtils.interpolate(route2, closestTime) };
+	}
+
+	/**
+	 * 
+	 * @return Coordinate d of the position, at the time, along segment i of the
+	 *         route.
+	 */
+	private static double coordinate(List<WayPoint> route, int i, long time, int d) {
+		WayPoint start = route.get(i);
+		WayPoint end = route.get(i + 1);
+		double k = (double) (time - start.getTime()) / (end.getTime() - start.getTime());
+		double s = start.getCoordinates()[d];
+		return s + k * (end.getCoordinates()[d] - s);
+	}
+}
@@ -0,0 +1,102 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+import edu.kestrel.fitzpatrick.closestapproach.unittests.DifferentialHarness.Failure;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for DifferentialHarness.
+ */
+class DifferentialHarnessTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 20_000;
+
+	/*
+	 * The cursor-based oracle agrees with the linear-scan oracle.
+	 */
+	@Test
+	void testOracle() {
+		Random random = new Random(1);
+		for (int r = 0; r < 200; r++) {
+			List<WayPoint> route1 = UnitTestUtils.randomRoute(random);
+			List<WayPoint> route2 = UnitTestUtils.randomRoute(random);
+			WayPoint[] expected = UnitTestUtils.findClosestApproach(route1, route2);
+			WayPoint[] actual = DifferentialHarness.sampleClosestApproach(route1, route2);
+			if (expected == null) {
+				assertNull(actual);
+			} else {
+				assertEquals(expected[0].getTime(), actual[0].getTime());
+				assertEquals(expected[0].distance(expected[1]), actual[0].distance(actual[1]), 1e-9);
+			}
+		}
+	}
+
+	/*
+	 * The reference engine passes against sampling, and the engine's list and
+	 * route-view paths are identical to the reference.
+	 */
+	@Test
+	void testReference() {
+		DifferentialHarness harness = new DifferentialHarness(2);
+		List<Failure> failures = harness.run(N_RANDOM_TESTS, DifferentialHarness.REFERENCE,
+				DifferentialHarness.AGAINST_SAMPLING);
+		assertTrue(failures.isEmpty(), () -> failures.get(0).toString());
+
+		List<Failure> listFailures = harness.run(N_RANDOM_TESTS,
+				DetermineClosestApproachBetweenRoutes::computeClosestApproaches, DifferentialHarness.IDENTICAL);
+		assertTrue(listFailures.isEmpty(), () -> listFailures.get(0).toString());
+
+		List<Failure> viewFailures = harness.run(N_RANDOM_TESTS,
+				(route1, route2) -> DetermineClosestApproachBetweenRoutes
+						.computeClosestApproaches(new ListRoute(route1), new ListRoute(route2)),
+				DifferentialHarness.IDENTICAL);
+		assertTrue(viewFailures.isEmpty(), () -> viewFailures.get(0).toString());
+	}
+
+	/*
+	 * A faulty engine is caught, the same cases fail on every run, and the first
+	 * failures are minimized.
+	 */
+	@Test
+	void testFaulty() {
+		// Ignores the last segment of the first route.
+		DifferentialHarness.Engine faulty = (route1, route2) -> {
+			List<ClosestApproach> result = DetermineClosestApproachBetweenRoutes
+					.computeClosestApproaches(route1.subList(0, Math.max(2, route1.size() - 1)), route2);
+			return result;
+		};
+		DifferentialHarness harness = new DifferentialHarness(3);
+		List<Failure> failures = harness.run(2_000, faulty, DifferentialHarness.withinTolerance(1e-9));
+		assertTrue(!failures.isEmpty());
+		List<Integer> indices = failures.stream().map(Failure::getCaseIndex).collect(Collectors.toList());
+		assertEquals(indices, new DifferentialHarness(3).run(2_000, faulty, DifferentialHarness.withinTolerance(1e-9))
+				.stream().map(Failure::getCaseIndex).collect(Collectors.toList()));
+
+		Failure first = failures.get(0);
+		List<List<WayPoint>> original = harness.generate(first.getCaseIndex());
+		assertTrue(first.getRoute1().size() <= original.get(0).size());
+		assertTrue(first.getRoute2().size() <= original.get(1).size());
+		// The fault needs three way points in the first route, and no more.
+		assertEquals(3, first.getRoute1().size());
+		assertEquals(2, first.getRoute2().size());
+		assertTrue(first.toString().startsWith("case " + first.getCaseIndex() + ": "));
+		// Every coordinate is reported, whatever the number of dimensions.
+		assertTrue(first.toString().contains(Arrays.toString(first.getRoute1().get(0).getCoordinates())));
+	}
+}
@@ -0,0 +1,104 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.EncounterEnumerator;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for EncounterEnumerator.
+ */
+class EncounterEnumeratorTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 10_000;
+
+	private static List<ClosestApproach> encounters(List<WayPoint> route1, List<WayPoint> route2,
+			double threshold) {
+		List<ClosestApproach> encounters = new ArrayList<>();
+		EncounterEnumerator.enumerate(route1, route2, threshold, encounters::add);
+		return encounters;
+	}
+
+	/*
+	 * Routes that approach twice have two encounters.
+	 */
+	@Test
+	void testTwoEncounters() {
+		List<WayPoint> route1 = Arrays.asList(wp(0, 0, 0), wp(100, 100, 0));
+		List<WayPoint> route2 = Arrays.asList(wp(0, 0, 10), wp(25, 25, 1), wp(50, 50, 10), wp(75, 75, 2),
+				wp(100, 100, 10));
+		List<ClosestApproach> encounters = encounters(route1, route2, Double.POSITIVE_INFINITY);
+		assertEquals(2, encounters.size());
+		assertEquals(25L, encounters.get(0).time());
+		assertEquals(1.0, encounters.get(0).distance());
+		assertEquals(75L, encounters.get(1).time());
+		assertEquals(2.0, encounters.get(1).distance());
+
+		encounters = encounters(route1, route2, 1.5);
+		assertEquals(1, encounters.size());
+		assertEquals(25L, encounters.get(0).time());
+	}
+
+	/*
+	 * A period of constant separation, entered while approaching and left while
+	 * separating, is a single encounter, at its start.
+	 */
+	@Test
+	void testPlateau() {
+		List<WayPoint> route1 = Arrays.asList(wp(0, 0, 0), wp(100, 100, 0));
+		List<WayPoint> route2 = Arrays.asList(wp(0, 0, 10), wp(20, 20, 5), wp(40, 40, 5), wp(60, 60, 5),
+				wp(100, 100, 10));
+		List<ClosestApproach> encounters = encounters(route1, route2, Double.POSITIVE_INFINITY);
+		assertEquals(1, encounters.size());
+		assertEquals(20L, encounters.get(0).time());
+		assertEquals(5.0, encounters.get(0).distance());
+
+		// Routes that separate from the start have an encounter at the start.
+		route2 = Arrays.asList(wp(0, 0, 1), wp(100, 100, 10));
+		encounters = encounters(route1, route2, Double.POSITIVE_INFINITY);
+		assertEquals(1, encounters.size());
+		assertEquals(0L, encounters.get(0).time());
+	}
+
+	/*
+	 * The encounters are in time order, nearer than the threshold, and include one
+	 * at the closest approach.
+	 */
+	@Test
+	void testRandom() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<WayPoint> route1 = UnitTestUtils.randomRoute();
+			List<WayPoint> route2 = UnitTestUtils.randomRoute();
+			List<ClosestApproach> closest = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					route2);
+			List<ClosestApproach> encounters = encounters(route1, route2, Double.POSITIVE_INFINITY);
+			assertEquals(closest.isEmpty(), encounters.isEmpty());
+			if (closest.isEmpty()) {
+				continue;
+			}
+			double minDistance = encounters.stream().mapToDouble(ClosestApproach::distance).min().getAsDouble();
+			assertEquals(closest.get(0).distance(), minDistance);
+			for (int i = 1; i < encounters.size(); i++) {
+				assertTrue(encounters.get(i - 1).time() <= encounters.get(i).time());
+			}
+
+			double threshold = UnitTestUtils.randomDouble(0, 10_000);
+			List<ClosestApproach> near = encounters(route1, route2, threshold);
+			long expected = encounters.stream().filter(ca -> ca.distance() < threshold).count();
+			assertEquals(expected, near.size());
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.EngineMetrics;
+import edu.kestrel.fitzpatrick.closestapproach.RouteVariantScorer;
+import edu.kestrel.fitzpatrick.closestapproach.SpaceTimeIndex;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for EngineMetrics.
+ */
+class EngineMetricsTest {
+
+	@AfterEach
+	void disable() {
+		EngineMetrics.setEnabled(false);
+		EngineMetrics.reset();
+	}
+
+	/*
+	 * Computations are counted only while enabled; parallel motion is counted.
+	 */
+	@Test
+	void testCounters() {
+		// Three aligned segments, the middle one with parallel motion.
+		List<WayPoint> route1 = Arrays.asList(wp(0, 0, 0), wp(10, 10, 0), wp(20, 20, 0), wp(30, 30, 0));
+		List<WayPoint> route2 = Arrays.asList(wp(0, 0, 5), wp(10, 10, 4), wp(20, 20, 4), wp(30, 30, 6));
+
+		EngineMetrics.reset();
+		DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2);
+		assertEquals(0L, EngineMetrics.snapshot().get("closestapproach_pair_computations_total"));
+
+		EngineMetrics.setEnabled(true);
+		DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2);
+		Map<String, Long> snapshot = EngineMetrics.snapshot();
+		assertEquals(1L, snapshot.get("closestapproach_pair_computations_total"));
+		assertEquals(3L, snapshot.get("closestapproach_aligned_segments_total"));
+		assertEquals(3L, snapshot.get("closestapproach_segment_kernel_calls_total"));
+		assertEquals(1L, snapshot.get("closestapproach_parallel_motion_total"));
+		assertEquals(1L, snapshot.get("closestapproach_pair_latency_nanoseconds_count"));
+		assertEquals(3L, snapshot.get("closestapproach_aligned_segments_per_pair_sum"));
+	}
+
+	/*
+	 * Pairs scored by a RouteVariantScorer are counted as evaluated or pruned.
+	 */
+	@Test
+	void testPruning() {
+		List<List<WayPoint>> traffic = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			traffic.add(UnitTestUtils.randomRoute());
+		}
+		List<WayPoint> base = UnitTestUtils.randomRoute();
+		RouteVariantScorer scorer = new RouteVariantScorer(base, new SpaceTimeIndex(traffic));
+		EngineMetrics.setEnabled(true);
+		EngineMetrics.reset();
+		scorer.score(Arrays.asList(base));
+		Map<String, Long> snapshot = EngineMetrics.snapshot();
+		assertEquals(20L, snapshot.get("closestapproach_pairs_evaluated_total")
+				+ snapshot.get("closestapproach_pairs_pruned_total"));
+	}
+
+	/*
+	 * The metrics are served in Prometheus text format.
+	 */
+	@Test
+	void testServe() throws IOException {
+		EngineMetrics.setEnabled(true);
+		EngineMetrics.reset();
+		DetermineClosestApproachBetweenRoutes.computeClosestApproaches(UnitTestUtils.randomRoute(),
+				UnitTestUtils.randomRoute());
+		HttpServer server = EngineMetrics.serve(0);
+		try {
+			URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/metrics");
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			assertEquals(200, connection.getResponseCode());
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (InputStream in = connection.getInputStream()) {
+				byte[] buffer = new byte[4096];
+				for (int n; (n = in.read(buffer)) > 0;) {
+					body.write(buffer, 0, n);
+				}
+			}
+			String text = new String(body.toByteArray(), StandardCharsets.UTF_8);
+			assertTrue(text.contains("# TYPE closestapproach_pair_computations_total counter\n"));
+			assertTrue(text.contains("closestapproach_pair_computations_total 1\n"));
+			assertTrue(text.contains("closestapproach_pair_latency_nanoseconds_bucket{le=\"+Inf\"} 1\n"));
+			assertTrue(text.contains("closestapproach_pair_latency_nanoseconds_count 1\n"));
+		} finally {
+			server.stop(0);
+		}
+	}
+}
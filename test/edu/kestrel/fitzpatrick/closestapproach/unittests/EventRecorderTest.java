@@ -0,0 +1,154 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.EngineEvents;
+import edu.kestrel.fitzpatrick.closestapproach.EngineEvents.Event;
+import edu.kestrel.fitzpatrick.closestapproach.EventRecorder;
+import edu.kestrel.fitzpatrick.closestapproach.RouteCsvLoader;
+import edu.kestrel.fitzpatrick.closestapproach.RouteVariantScorer;
+import edu.kestrel.fitzpatrick.closestapproach.SpaceTimeIndex;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for EventRecorder (and EngineEvents).
+ */
+class EventRecorderTest {
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	void disable() {
+		EngineEvents.setListener(null, 0, 1);
+	}
+
+	private static Event event(long start) {
+		return new Event(EngineEvents.Type.FLEET_BATCH, start, 1, 2, 3, 0, 3, 1);
+	}
+
+	/*
+	 * The recorder keeps the most recent events, oldest first.
+	 */
+	@Test
+	void testRing() {
+		EventRecorder recorder = new EventRecorder(3);
+		assertTrue(recorder.getEvents().isEmpty());
+		for (int i = 0; i < 5; i++) {
+			recorder.event(event(i));
+		}
+		assertEquals(5, recorder.getCount());
+		List<Event> events = recorder.getEvents();
+		assertEquals(3, events.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i + 2, events.get(i).getStartNanos());
+		}
+		assertEquals(0.25, events.get(0).getPruneRatio());
+		recorder.clear();
+		assertEquals(0, recorder.getCount());
+		assertTrue(recorder.getEvents().isEmpty());
+	}
+
+	/*
+	 * Route-pair evaluations are reported with their sizes; none are reported
+	 * after the listener is removed.
+	 */
+	@Test
+	void testPairEvaluation() {
+		List<WayPoint> route1 = Arrays.asList(wp(0, 0, 0), wp(10, 10, 0), wp(20, 20, 0));
+		List<WayPoint> route2 = Arrays.asList(wp(5, 0, 5), wp(15, 10, 4), wp(25, 20, 4), wp(35, 30, 6));
+		EventRecorder recorder = new EventRecorder(10);
+		EngineEvents.setListener(recorder, Long.MAX_VALUE, 1);
+		DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2);
+		List<Event> events = recorder.getEvents();
+		assertEquals(1, events.size());
+		Event event = events.get(0);
+		assertEquals(EngineEvents.Type.PAIR_EVALUATION, event.getType());
+		assertEquals(3, event.getSize1());
+		assertEquals(4, event.getSize2());
+		assertEquals(3, event.getSegments());
+		assertTrue(event.getDurationNanos() >= 0);
+
+		// Every evaluation reaches the threshold of 0, whatever the sampling.
+		EngineEvents.setListener(recorder, 0, Integer.MAX_VALUE);
+		DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2);
+		assertEquals(2, recorder.getCount());
+
+		EngineEvents.setListener(null, 0, 1);
+		DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2);
+		assertEquals(2, recorder.getCount());
+	}
+
+	/*
+	 * Index builds, fleet batches and ingest chunks are reported, and written as
+	 * CSV.
+	 */
+	@Test
+	void testOtherEvents() throws IOException {
+		List<List<WayPoint>> traffic = new ArrayList<>();
+		long wayPoints = 0;
+		for (int i = 0; i < 20; i++) {
+			traffic.add(UnitTestUtils.randomRoute());
+			wayPoints += traffic.get(i).size();
+		}
+		List<WayPoint> base = UnitTestUtils.randomRoute();
+		EventRecorder recorder = new EventRecorder(100);
+		EngineEvents.setListener(recorder, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+		RouteVariantScorer scorer = new RouteVariantScorer(base, new SpaceTimeIndex(traffic));
+		Event index = recorder.getEvents().get(0);
+		assertEquals(EngineEvents.Type.INDEX_BUILD, index.getType());
+		assertEquals(20, index.getSize1());
+		assertEquals(wayPoints, index.getSize2());
+
+		recorder.clear();
+		scorer.score(Arrays.asList(base, base));
+		Event batch = recorder.getEvents().stream() //
+				.filter(e -> e.getType() == EngineEvents.Type.FLEET_BATCH) //
+				.findFirst().get();
+		assertEquals(2, batch.getSize1());
+		assertEquals(20, batch.getSize2());
+		assertEquals(40, batch.getEvaluated() + batch.getPruned());
+
+		recorder.clear();
+		Path file = directory.resolve("routes.csv");
+		Files.write(file, "route,time,x,y\na,0,0,0\na,10,1,1\nb,0,2,2\nb,10,3,3\n".getBytes(StandardCharsets.UTF_8));
+		new RouteCsvLoader(16).load(file);
+		List<Event> chunks = recorder.getEvents();
+		assertTrue(chunks.size() > 1);
+		long bytes = 0;
+		long rows = 0;
+		for (Event chunk : chunks) {
+			assertEquals(EngineEvents.Type.INGEST_CHUNK, chunk.getType());
+			bytes += chunk.getSize1();
+			rows += chunk.getSize2();
+		}
+		assertEquals(Files.size(file), bytes);
+		assertEquals(4, rows);
+
+		Path csv = directory.resolve("events.csv");
+		recorder.writeCsv(csv);
+		List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+		assertEquals(chunks.size() + 1, lines.size());
+		assertTrue(lines.get(0).startsWith("type,start_nanos,duration_nanos,"));
+		assertTrue(lines.get(1).startsWith("INGEST_CHUNK,"));
+	}
+}
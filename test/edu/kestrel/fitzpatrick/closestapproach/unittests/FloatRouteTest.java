@@ -0,0 +1,111 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.assertSameApproaches;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.EngineMetrics;
+import edu.kestrel.fitzpatrick.closestapproach.FloatRoute;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
+import edu.kestrel.fitzpatrick.closestapproach.Route;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+import edu.kestrel.fitzpatrick.closestapproach.unittests.DifferentialHarness.Failure;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for FloatRoute, and for screening with single-precision
+ *         routes.
+ */
+class FloatRouteTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 20_000;
+
+	// Screens the routes in single precision.
+	private static final DifferentialHarness.Engine SCREENED = (route1, route2) -> {
+		Route view1 = new ListRoute(route1);
+		Route view2 = new ListRoute(route2);
+		return DetermineClosestApproachBetweenRoutes.computeClosestApproaches(view1, new FloatRoute(view1), view2,
+				new FloatRoute(view2), 0);
+	};
+
+	@AfterEach
+	void disable() {
+		EngineMetrics.setEnabled(false);
+		EngineMetrics.reset();
+	}
+
+	/*
+	 * Every way point is within the error of the original, which is small relative
+	 * to the route's extent, even far from the coordinate system's origin.
+	 */
+	@Test
+	void testError() {
+		Random random = new Random(13);
+		for (int r = 0; r < 200; r++) {
+			List<WayPoint> list = UnitTestUtils.randomRoute(random, 0, new double[] { 1e7, -1e7, 5e6 }, 100, 1);
+			Route route = new ListRoute(list);
+			FloatRoute screen = new FloatRoute(route);
+			assertEquals(route.size(), screen.size());
+			assertEquals(route.dimensions(), screen.dimensions());
+			for (int i = 0; i < route.size(); i++) {
+				assertEquals(route.getTime(i), screen.getTime(i));
+				assertTrue(route.getWayPoint(i).distance(screen.getWayPoint(i)) <= screen.getError());
+			}
+			// The extent is at most about 1e6, so float offsets are good to about 0.1.
+			assertTrue(screen.getError() < 0.5, () -> "error " + screen.getError());
+		}
+	}
+
+	/*
+	 * Screening gives exactly the results without screening, for random routes and
+	 * for routes far from the coordinate system's origin.
+	 */
+	@Test
+	void testIdentical() {
+		List<Failure> failures = new DifferentialHarness(14).run(N_RANDOM_TESTS, SCREENED,
+				DifferentialHarness.IDENTICAL);
+		assertTrue(failures.isEmpty(), () -> failures.get(0).toString());
+
+		DifferentialHarness distant = new DifferentialHarness(15,
+				random -> UnitTestUtils.randomRoute(random, random.nextInt(1_000),
+						new double[] { 1e7 + random.nextDouble() * 1_000, 1e7 + random.nextDouble() * 1_000 }, 50,
+						0.05));
+		List<Failure> distantFailures = distant.run(2_000, SCREENED, DifferentialHarness.IDENTICAL);
+		assertTrue(distantFailures.isEmpty(), () -> distantFailures.get(0).toString());
+	}
+
+	/*
+	 * Most segments of objects that come close only briefly are screened out, and
+	 * a tolerance gives the same results as without screening.
+	 */
+	@Test
+	void testScreening() {
+		Random random = new Random(16);
+		List<WayPoint> list1 = UnitTestUtils.randomRoute(random, 0, new double[] { 0, 0 }, 5_000, 0.01);
+		List<WayPoint> list2 = UnitTestUtils.randomRoute(random, 0, new double[] { 5_000, 0 }, 5_000, 0.01);
+		Route route1 = new ListRoute(list1);
+		Route route2 = new ListRoute(list2);
+		for (double tolerance : new double[] { 0, 100 }) {
+			List<ClosestApproach> expected = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					route2, tolerance);
+			EngineMetrics.setEnabled(true);
+			EngineMetrics.reset();
+			List<ClosestApproach> actual = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					new FloatRoute(route1), route2, new FloatRoute(route2), tolerance);
+			long segments = EngineMetrics.snapshot().get("closestapproach_aligned_segments_total");
+			EngineMetrics.setEnabled(false);
+			assertTrue(segments < 1_000, () -> segments + " segments");
+			assertSameApproaches(expected, actual);
+		}
+	}
+}
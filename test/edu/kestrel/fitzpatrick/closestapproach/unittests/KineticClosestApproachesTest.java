@@ -0,0 +1,120 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.KineticClosestApproaches;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for KineticClosestApproaches.
+ */
+class KineticClosestApproachesTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 200;
+
+	/**
+	 * A random route wandering within a 1000 x 1000 square.
+	 * 
+	 * @return A random route
+	 */
+	private static List<WayPoint> wanderingRoute() {
+		long time = UnitTestUtils.randomInt(0, 500);
+		int n = UnitTestUtils.randomInt(2, 10);
+		List<WayPoint> route = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			route.add(wp(time, UnitTestUtils.randomDouble(0, 1000), UnitTestUtils.randomDouble(0, 1000)));
+			time += UnitTestUtils.randomInt(1, 200);
+		}
+		return route;
+	}
+
+	/**
+	 * Position of an object, or null if it is not moving along its route (the
+	 * route has not started or has finished, inclusive of its end time).
+	 */
+	private static double[] position(List<WayPoint> route, long time) {
+		if (time >= route.get(route.size() - 1).getTime()) {
+			return null;
+		}
+		WayPoint wp = UnitTestUtils.interpolate(route, time);
+		return wp == null ? null : wp.getCoordinates();
+	}
+
+	/*
+	 * Two objects crossing: closest pair and threshold crossing.
+	 */
+	@Test
+	void testCrossing() {
+		List<List<WayPoint>> routes = Arrays.asList( //
+				Arrays.asList(wp(0, -10, 0), wp(20, 10, 0)), //
+				Arrays.asList(wp(0, 0, -10), wp(20, 0, 10)), //
+				Arrays.asList(wp(0, 100, 100), wp(20, 100, 120)));
+		KineticClosestApproaches kinetic = new KineticClosestApproaches(routes, 5, 0);
+		assertArrayEquals(new int[] { 0, 1 }, kinetic.closestPair());
+		assertEquals(Math.sqrt(200), kinetic.closestDistance(), 1e-9);
+		assertTrue(kinetic.pairsWithin().isEmpty());
+		kinetic.advance(10);
+		assertEquals(0, kinetic.closestDistance(), 1e-9);
+		assertTrue(kinetic.isWithin(0, 1));
+		assertEquals(1, kinetic.pairsWithin().size());
+		kinetic.advance(19);
+		assertTrue(kinetic.pairsWithin().isEmpty());
+		kinetic.advance(20);
+		assertNull(kinetic.closestPair());
+	}
+
+	/*
+	 * Compare against brute force at each integer time.
+	 */
+	@Test
+	void testRandomAgainstBruteForce() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			int n = UnitTestUtils.randomInt(2, 12);
+			List<List<WayPoint>> routes = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				routes.add(wanderingRoute());
+			}
+			double threshold = UnitTestUtils.randomDouble(10, 300);
+			KineticClosestApproaches kinetic = new KineticClosestApproaches(routes, threshold, 0);
+			for (long time = 0; time < 2500; time++) {
+				kinetic.advance(time);
+				double closest = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < n; i++) {
+					double[] p1 = position(routes.get(i), time);
+					for (int j = i + 1; j < n; j++) {
+						double[] p2 = position(routes.get(j), time);
+						if (p1 == null || p2 == null) {
+							assertTrue(!kinetic.isWithin(i, j));
+							continue;
+						}
+						double distance = Math.sqrt(
+								(p1[0] - p2[0]) * (p1[0] - p2[0]) + (p1[1] - p2[1]) * (p1[1] - p2[1]));
+						closest = Math.min(closest, distance);
+						assertEquals(distance, kinetic.distance(i, j), 1e-6);
+						if (Math.abs(distance - threshold) > 1e-6) {
+							assertEquals(distance < threshold, kinetic.isWithin(i, j));
+						}
+					}
+				}
+				if (closest == Double.POSITIVE_INFINITY) {
+					assertNull(kinetic.closestPair());
+				} else {
+					assertEquals(closest, kinetic.closestDistance(), 1e-6);
+				}
+			}
+		}
+	}
+}
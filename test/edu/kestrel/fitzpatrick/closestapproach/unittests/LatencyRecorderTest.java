@@ -0,0 +1,135 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.LatencyRecorder;
+import edu.kestrel.fitzpatrick.closestapproach.RouteVariantScorer;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for LatencyRecorder.
+ */
+class LatencyRecorderTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 100;
+
+	/*
+	 * Route lengths are bucketed by powers of two.
+	 */
+	@Test
+	void testLengthBucket() {
+		assertEquals(0, LatencyRecorder.lengthBucket(1));
+		assertEquals(1, LatencyRecorder.lengthBucket(2));
+		assertEquals(2, LatencyRecorder.lengthBucket(3));
+		assertEquals(2, LatencyRecorder.lengthBucket(4));
+		assertEquals(3, LatencyRecorder.lengthBucket(5));
+		assertEquals(10, LatencyRecorder.lengthBucket(1024));
+		assertEquals(31, LatencyRecorder.lengthBucket(Integer.MAX_VALUE));
+	}
+
+	/*
+	 * Quantiles are within the histogram's precision of the exact values.
+	 */
+	@Test
+	void testQuantiles() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			LatencyRecorder recorder = new LatencyRecorder();
+			int n = UnitTestUtils.randomInt(1, 2_000);
+			long[] values = new long[n];
+			for (int i = 0; i < n; i++) {
+				// Log-uniform latencies, from 1ns to about 10s.
+				values[i] = (long) Math.pow(10, UnitTestUtils.randomDouble(0, 10));
+				recorder.record(100, values[i]);
+			}
+			Arrays.sort(values);
+			int bucket = LatencyRecorder.lengthBucket(100);
+			assertEquals(n, recorder.getCount(bucket));
+			assertEquals(0, recorder.getCount(bucket + 1));
+			assertEquals(values[n - 1], recorder.getMax(bucket));
+			for (double quantile : new double[] { 0, 0.5, 0.99, 0.999, 1 }) {
+				long exact = values[Math.max(0, (int) Math.ceil(quantile * n) - 1)];
+				long value = recorder.getValueAtQuantile(bucket, quantile);
+				assertTrue(value >= exact);
+				assertTrue(value <= exact + exact / 128.0);
+			}
+		}
+	}
+
+	/*
+	 * Concurrent recording loses no counts.
+	 */
+	@Test
+	void testConcurrent() {
+		LatencyRecorder recorder = new LatencyRecorder();
+		IntStream.range(0, 100_000).parallel().forEach(i -> recorder.record(1 + i % 1000, i));
+		long total = 0;
+		for (int b = 0; b < LatencyRecorder.N_LENGTH_BUCKETS; b++) {
+			total += recorder.getCount(b);
+		}
+		assertEquals(100_000, total);
+		assertEquals(99_999, recorder.getMax(LatencyRecorder.lengthBucket(1000)));
+	}
+
+	/*
+	 * The summary has a line for each length bucket used, and one for all.
+	 */
+	@Test
+	void testSummary() {
+		LatencyRecorder recorder = new LatencyRecorder();
+		String[] lines = recorder.summary().split("\n");
+		assertEquals(2, lines.length);
+		assertEquals(LatencyRecorder.SUMMARY_HEADER, lines[0]);
+		assertEquals("all,0,0.0,0,0,0,0", lines[1]);
+
+		recorder.record(10, 100);
+		recorder.record(10, 300);
+		recorder.record(1000, 5000);
+		lines = recorder.summary().split("\n");
+		assertEquals(4, lines.length);
+		assertTrue(lines[1].startsWith("<=16,2,"));
+		assertTrue(lines[1].endsWith(",100,300,300,300"));
+		assertTrue(lines[2].startsWith("<=1024,1,"));
+		assertTrue(lines[3].startsWith("all,3,"));
+		// The median, 300, is reported as the highest value in its sub-bucket.
+		assertTrue(lines[3].endsWith(",301,5000,5000,5000"));
+
+		// Throughput is since the previous summary.
+		lines = recorder.summary().split("\n");
+		assertTrue(lines[3].startsWith("all,3,0.0,"));
+	}
+
+	/*
+	 * A scorer records each pair it evaluates.
+	 */
+	@Test
+	void testScorer() {
+		List<List<WayPoint>> traffic = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			traffic.add(UnitTestUtils.randomRoute());
+		}
+		List<WayPoint> base = UnitTestUtils.randomRoute();
+		// At least one traffic route overlaps the variants in time.
+		traffic.add(base);
+		RouteVariantScorer scorer = new RouteVariantScorer(base, traffic);
+		LatencyRecorder recorder = new LatencyRecorder();
+		scorer.setLatencyRecorder(recorder);
+		scorer.score(Arrays.asList(base, base));
+		long total = 0;
+		for (int b = 0; b < LatencyRecorder.N_LENGTH_BUCKETS; b++) {
+			total += recorder.getCount(b);
+		}
+		assertTrue(total >= 2);
+		assertTrue(total <= 2 * traffic.size());
+	}
+}
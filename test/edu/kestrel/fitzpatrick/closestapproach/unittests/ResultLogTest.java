@@ -0,0 +1,209 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.ResultLog;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for ResultLog.
+ */
+class ResultLogTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 50;
+
+	// Number of routes per random test.
+	private static final int N_ROUTES = 20;
+
+	// Width of the time buckets.
+	private static final long BUCKET_WIDTH = 1000;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * A result as appended, for comparison with the records read back.
+	 */
+	private static class Result {
+		private final int route1;
+		private final int route2;
+		private final ClosestApproach approach;
+
+		private Result(int route1, int route2, ClosestApproach approach) {
+			super();
+			this.route1 = route1;
+			this.route2 = route2;
+			this.approach = approach;
+		}
+
+		@Override
+		public String toString() {
+			return route1 + "-" + route2 + ": " + approach.time() + " " + approach.distance() + " "
+					+ approach.wayPoint1() + " " + approach.wayPoint2();
+		}
+	}
+
+	private static Result randomResult() {
+		int route1 = UnitTestUtils.randomInt(0, N_ROUTES);
+		int route2 = UnitTestUtils.randomInt(0, N_ROUTES);
+		if (UnitTestUtils.randomInt(0, 10) == 0) {
+			return new Result(route1, route2, new ClosestApproach(UnitTestUtils.randomDouble(0, 1000)));
+		}
+		long time = UnitTestUtils.randomInt(-5000, 50_000);
+		double[] coordinates1 = { UnitTestUtils.randomDouble(-1000, 1000), UnitTestUtils.randomDouble(-1000, 1000) };
+		double[] coordinates2 = { UnitTestUtils.randomDouble(-1000, 1000), UnitTestUtils.randomDouble(-1000, 1000) };
+		return new Result(route1, route2,
+				new ClosestApproach(new WayPoint(time, coordinates1), new WayPoint(time, coordinates2)));
+	}
+
+	private static List<String> read(ResultLog log) throws IOException {
+		List<String> records = new ArrayList<>();
+		log.forEach(r -> records.add(new Result(r.route1(), r.route2(), r.toClosestApproach()).toString()));
+		return records;
+	}
+
+	/*
+	 * Records are read back as appended, across segments, and queries by route and
+	 * by period find the same records as a full scan, whether or not the log has
+	 * been closed and reopened.
+	 */
+	@Test
+	void testRandom() throws IOException {
+		for (int t = 0; t < N_RANDOM_TESTS; t++) {
+			Path logDirectory = directory.resolve("log-" + t);
+			int segmentRecords = UnitTestUtils.randomInt(1, 100);
+			List<Result> expected = new ArrayList<>();
+			ResultLog log = ResultLog.open(logDirectory, 2, true, BUCKET_WIDTH, segmentRecords);
+			int nResults = UnitTestUtils.randomInt(0, 500);
+			for (int i = 0; i < nResults; i++) {
+				Result result = randomResult();
+				expected.add(result);
+				log.append(result.route1, result.route2, result.approach);
+				if (UnitTestUtils.randomInt(0, 100) == 0) {
+					log.close();
+					log = ResultLog.open(logDirectory, 2, true, BUCKET_WIDTH, segmentRecords);
+				}
+			}
+			assertEquals(nResults, log.size());
+
+			List<String> all = new ArrayList<>();
+			for (Result result : expected) {
+				all.add(result.toString());
+			}
+			assertEquals(all, read(log));
+
+			for (int route = 0; route < N_ROUTES; route++) {
+				List<String> expectedByRoute = new ArrayList<>();
+				for (Result result : expected) {
+					if (result.route1 == route || result.route2 == route) {
+						expectedByRoute.add(result.toString());
+					}
+				}
+				List<String> actualByRoute = new ArrayList<>();
+				log.forEachByRoute(route,
+						r -> actualByRoute.add(new Result(r.route1(), r.route2(), r.toClosestApproach()).toString()));
+				assertEquals(expectedByRoute, actualByRoute);
+			}
+
+			for (int q = 0; q < 20; q++) {
+				long startTime = UnitTestUtils.randomInt(-6000, 50_000);
+				long endTime = startTime + UnitTestUtils.randomInt(0, 5000);
+				long expectedInPeriod = expected.stream() //
+						.filter(r -> r.approach.time() != null && startTime <= r.approach.time()
+								&& r.approach.time() <= endTime) //
+						.count();
+				long[] actualInPeriod = { 0 };
+				log.forEachInPeriod(startTime, endTime, r -> {
+					assertEquals(true, startTime <= r.time() && r.time() <= endTime);
+					actualInPeriod[0]++;
+				});
+				assertEquals(expectedInPeriod, actualInPeriod[0]);
+			}
+
+			log.close();
+			ResultLog reopened = ResultLog.open(logDirectory, 2, true, BUCKET_WIDTH, segmentRecords);
+			assertEquals(all, read(reopened));
+			reopened.close();
+		}
+	}
+
+	/*
+	 * Without coordinates, records hold only the time and distance.
+	 */
+	@Test
+	void testWithoutCoordinates() throws IOException {
+		try (ResultLog log = ResultLog.open(directory, 2, false, BUCKET_WIDTH)) {
+			log.append(1, 2, new ClosestApproach(new WayPoint(1500, new double[] { 0, 0 }),
+					new WayPoint(1500, new double[] { 3, 4 })));
+			// An approach's way points are not fetched.
+			log.append(1, 2, UnitTestUtils.approachWithoutWayPoints(1600, 2));
+			List<Double> distances = new ArrayList<>();
+			List<Long> times = new ArrayList<>();
+			log.forEachInPeriod(1000, 1999, r -> {
+				distances.add(r.distance());
+				times.add(r.time());
+				assertEquals(false, r.hasCoordinates());
+			});
+			assertEquals(5.0, distances.get(0));
+			assertEquals(1500L, times.get(0));
+			assertEquals(2.0, distances.get(1));
+			assertEquals(1600L, times.get(1));
+		}
+	}
+
+	/*
+	 * A segment left unsealed, with a partly written record, is sealed when the
+	 * log is reopened.
+	 */
+	@Test
+	void testRecovery() throws IOException {
+		ResultLog log = ResultLog.open(directory, 2, true, BUCKET_WIDTH);
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Result result = randomResult();
+			log.append(result.route1, result.route2, result.approach);
+			expected.add(result.toString());
+		}
+		// Simulate a crash: the records are written, but the segment is not sealed.
+		log.flush();
+		Path segment = directory.resolve("segment-00000000.log");
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.allocate(7));
+		}
+
+		ResultLog recovered = ResultLog.open(directory, 2, true, BUCKET_WIDTH);
+		assertEquals(10, recovered.size());
+		assertEquals(expected, read(recovered));
+		recovered.close();
+	}
+
+	/*
+	 * A log cannot be reopened with different parameters.
+	 */
+	@Test
+	void testParameters() throws IOException {
+		ResultLog.open(directory, 2, true, BUCKET_WIDTH).close();
+		assertThrows(IOException.class, () -> ResultLog.open(directory, 3, true, BUCKET_WIDTH));
+		assertThrows(IOException.class, () -> ResultLog.open(directory, 2, false, BUCKET_WIDTH));
+		assertThrows(IOException.class, () -> ResultLog.open(directory, 2, true, 2 * BUCKET_WIDTH));
+		Files.write(directory.resolve("log.meta"), new byte[10]);
+		assertThrows(IOException.class, () -> ResultLog.open(directory, 2, true, BUCKET_WIDTH));
+	}
+}
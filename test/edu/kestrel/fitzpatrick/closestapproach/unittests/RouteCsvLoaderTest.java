@@ -0,0 +1,149 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.kestrel.fitzpatrick.closestapproach.ArrayRoute;
+import edu.kestrel.fitzpatrick.closestapproach.RouteCsvLoader;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for RouteCsvLoader.
+ */
+class RouteCsvLoaderTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 100;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * A coordinate in one of several textual forms.
+	 */
+	private static String format(double x) {
+		switch (UnitTestUtils.randomInt(0, 4)) {
+		case 0:
+			return Double.toString(x);
+		case 1:
+			return String.format("%.3f", x);
+		case 2:
+			return String.format("%.6e", x);
+		default:
+			return Long.toString(Math.round(x));
+		}
+	}
+
+	private Path write(String text) throws IOException {
+		Path file = directory.resolve("routes.csv");
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/*
+	 * Random routes, with interleaved rows, are loaded exactly, whatever the chunk
+	 * size.
+	 */
+	@Test
+	void testRandom() throws IOException {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			int dimensions = UnitTestUtils.randomInt(2, 4);
+			String delimiter = UnitTestUtils.random.nextBoolean() ? "," : "\t";
+			String lineEnd = UnitTestUtils.random.nextBoolean() ? "\n" : "\r\n";
+			int nRoutes = UnitTestUtils.randomInt(1, 20);
+			Map<String, List<WayPoint>> expected = new LinkedHashMap<>();
+			for (int i = 0; i < nRoutes; i++) {
+				expected.put("route-" + i, new ArrayList<>());
+			}
+			long[] times = new long[nRoutes];
+			StringBuilder text = new StringBuilder();
+			if (UnitTestUtils.random.nextBoolean()) {
+				text.append("route_id").append(delimiter).append("time").append(delimiter).append("x")
+						.append(lineEnd);
+			}
+			int nRows = UnitTestUtils.randomInt(1, 500);
+			for (int row = 0; row < nRows; row++) {
+				// Routes first appear in order; afterwards rows are interleaved.
+				int i = row < nRoutes ? row : UnitTestUtils.randomInt(0, nRoutes);
+				times[i] += UnitTestUtils.randomInt(1, 1000);
+				text.append("route-").append(i).append(delimiter).append(times[i]);
+				double[] coordinates = new double[dimensions];
+				for (int d = 0; d < dimensions; d++) {
+					String field = format(UnitTestUtils.randomDouble(-1e6, 1e6));
+					coordinates[d] = Double.parseDouble(field);
+					text.append(delimiter).append(field);
+				}
+				text.append(lineEnd);
+				if (UnitTestUtils.randomInt(0, 20) == 0) {
+					text.append(lineEnd);
+				}
+				expected.get("route-" + i).add(new WayPoint(times[i], coordinates));
+			}
+			expected.values().removeIf(List::isEmpty);
+
+			Map<String, ArrayRoute> actual = new RouteCsvLoader(UnitTestUtils.randomInt(1, 2000))
+					.load(write(text.toString()));
+			assertEquals(expected.keySet().size(), actual.size());
+			for (Map.Entry<String, List<WayPoint>> entry : expected.entrySet()) {
+				assertEquals(entry.getValue(), actual.get(entry.getKey()).toWayPoints());
+			}
+		}
+	}
+
+	/*
+	 * Numbers in assorted forms parse as Double.parseDouble does.
+	 */
+	@Test
+	void testNumberForms() throws IOException {
+		String[] forms = { "0", "-0", "-0.0", "+1", "1.", ".5", "-.5", "1e3", "1E-3", "1.5e+300", "4.9e-324",
+				"123456789012345678901234567890", "0.1", "0.30000000000000004", "9007199254740993", "NaN",
+				"-Infinity", " 12.5 " };
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < forms.length; i++) {
+			text.append("a,").append(i).append(',').append(forms[i]).append(",0\n");
+		}
+		ArrayRoute route = new RouteCsvLoader().load(write(text.toString())).get("a");
+		for (int i = 0; i < forms.length; i++) {
+			assertEquals(Double.doubleToRawLongBits(Double.parseDouble(forms[i].trim())),
+					Double.doubleToRawLongBits(route.getCoordinate(i, 0)), forms[i]);
+		}
+	}
+
+	/*
+	 * Decreasing times are rejected, as are malformed lines.
+	 */
+	@Test
+	void testInvalid() throws IOException {
+		IOException e = assertThrows(IOException.class,
+				() -> new RouteCsvLoader().load(write("a,10,0,0\nb,5,0,0\na,10,1,1\n")));
+		assertTrue(e.getMessage().contains("route a"));
+		assertThrows(IOException.class, () -> new RouteCsvLoader().load(write("a,10,0,0\na,x1,0,0\n")));
+		assertThrows(IOException.class, () -> new RouteCsvLoader().load(write("a,10,0,0\na,11,0\n")));
+		assertThrows(IOException.class, () -> new RouteCsvLoader().load(write("a,10,0,0\na,11,0,zero\n")));
+		assertThrows(IOException.class, () -> new RouteCsvLoader().load(write("a,10,0,0\na\n")));
+	}
+
+	/*
+	 * An empty file has no routes.
+	 */
+	@Test
+	void testEmpty() throws IOException {
+		assertTrue(new RouteCsvLoader().load(write("")).isEmpty());
+		assertTrue(new RouteCsvLoader().load(write("route_id,time,x,y\n")).isEmpty());
+	}
+}
@@ -0,0 +1,166 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.assertSameApproaches;
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ArrayRoute;
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.EngineMetrics;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
+import edu.kestrel.fitzpatrick.closestapproach.Route;
+import edu.kestrel.fitzpatrick.closestapproach.RouteHierarchy;
+import edu.kestrel.fitzpatrick.closestapproach.ScenarioGenerator;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+import edu.kestrel.fitzpatrick.closestapproach.unittests.DifferentialHarness.Failure;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for RouteHierarchy.
+ */
+class RouteHierarchyTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 20_000;
+
+	// Searches the hierarchies of the routes.
+	private static final DifferentialHarness.Engine HIERARCHICAL = (route1, route2) -> DetermineClosestApproachBetweenRoutes
+			.computeClosestApproaches(new RouteHierarchy(new ListRoute(route1)),
+					new RouteHierarchy(new ListRoute(route2)));
+
+	@AfterEach
+	void disable() {
+		EngineMetrics.setEnabled(false);
+		EngineMetrics.reset();
+	}
+
+	/*
+	 * The root's error is the greatest distance from the chord.
+	 */
+	@Test
+	void testHierarchy() {
+		Route route = new ListRoute(
+				Arrays.asList(wp(0, 0, 0), wp(10, 10, 3), wp(20, 20, -4), wp(30, 30, 0), wp(40, 40, 0)));
+		RouteHierarchy hierarchy = new RouteHierarchy(route);
+		assertEquals(3, hierarchy.getDepth());
+		assertEquals(4, hierarchy.getError(), 1e-12);
+		assertEquals(1, new RouteHierarchy(new ListRoute(Arrays.asList(wp(0, 0, 0), wp(10, 1, 1)))).getDepth());
+	}
+
+	/*
+	 * Ties with parallel motion (whose closest approach has no time), and ties
+	 * between approaches at the same time, are ordered as by the walk. Routes on
+	 * a small integer grid reach these cases; real-valued random routes do not.
+	 */
+	@Test
+	void testTies() {
+		Route route1 = new ListRoute(Arrays.asList(wp(0, 0, 0), wp(10, 10, 0), wp(20, 20, 0), wp(30, 30, 0)));
+		Route route2 = new ListRoute(Arrays.asList(wp(0, 0, 5), wp(10, 10, 10), wp(20, 20, 5), wp(30, 30, 5)));
+		List<ClosestApproach> walk = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2);
+		assertEquals(2, walk.size());
+		assertSameApproaches(walk, DetermineClosestApproachBetweenRoutes
+				.computeClosestApproaches(new RouteHierarchy(route1), new RouteHierarchy(route2)));
+
+		Random random = new Random(9);
+		for (int r = 0; r < 20_000; r++) {
+			Route grid1 = new ListRoute(gridRoute(random));
+			Route grid2 = new ListRoute(gridRoute(random));
+			double tolerance = random.nextInt(3);
+			assertSameApproaches(
+					DetermineClosestApproachBetweenRoutes.computeClosestApproaches(grid1, grid2, tolerance),
+					DetermineClosestApproachBetweenRoutes.computeClosestApproaches(new RouteHierarchy(grid1),
+							new RouteHierarchy(grid2), tolerance));
+		}
+	}
+
+	/**
+	 * A random route with way points on a small integer grid, every 10 time units.
+	 */
+	private static List<WayPoint> gridRoute(Random random) {
+		List<WayPoint> route = new ArrayList<>();
+		int n = 2 + random.nextInt(6);
+		for (int i = 0; i < n; i++) {
+			route.add(wp(10 * i, random.nextInt(4), random.nextInt(4)));
+		}
+		return route;
+	}
+
+	/*
+	 * The search gives exactly the results of the walk, for random routes, for long
+	 * routes that are mostly far apart, and with a tolerance.
+	 */
+	@Test
+	void testIdentical() {
+		List<Failure> failures = new DifferentialHarness(6).run(N_RANDOM_TESTS, HIERARCHICAL,
+				DifferentialHarness.IDENTICAL);
+		assertTrue(failures.isEmpty(), () -> failures.get(0).toString());
+
+		DifferentialHarness farApart = new DifferentialHarness(7,
+				random -> UnitTestUtils.randomRoute(random, random.nextInt(1_000),
+						new double[] { random.nextDouble() * 100_000, random.nextDouble() * 100_000 }, 300, 0.5));
+		List<Failure> farFailures = farApart.run(2_000, HIERARCHICAL, DifferentialHarness.IDENTICAL);
+		assertTrue(farFailures.isEmpty(), () -> farFailures.get(0).toString());
+
+		Random random = new Random(8);
+		for (int r = 0; r < 200; r++) {
+			Route route1 = new ListRoute(UnitTestUtils.randomRoute(random));
+			Route route2 = new ListRoute(UnitTestUtils.randomRoute(random));
+			assertSameApproaches(DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2, 10),
+					DetermineClosestApproachBetweenRoutes.computeClosestApproaches(new RouteHierarchy(route1),
+							new RouteHierarchy(route2), 10));
+		}
+	}
+
+	/*
+	 * Generated scenarios, including parallel tracks and holding patterns, give the
+	 * same results as the walk.
+	 */
+	@Test
+	void testScenarios() {
+		List<ArrayRoute> routes = new ScenarioGenerator(9, 2, 20_000, 600_000).generate(60);
+		for (int i = 0; i < routes.size(); i++) {
+			RouteHierarchy hierarchy1 = new RouteHierarchy(routes.get(i));
+			for (int j = i + 1; j < routes.size(); j++) {
+				assertSameApproaches(
+						DetermineClosestApproachBetweenRoutes.computeClosestApproaches(routes.get(i), routes.get(j)),
+						DetermineClosestApproachBetweenRoutes.computeClosestApproaches(hierarchy1,
+								new RouteHierarchy(routes.get(j))));
+			}
+		}
+	}
+
+	/*
+	 * Objects that come close only briefly are evaluated in far fewer segments than
+	 * there are.
+	 */
+	@Test
+	void testPruning() {
+		Random random = new Random(10);
+		List<WayPoint> list1 = UnitTestUtils.randomRoute(random, 0, new double[] { 0, 0 }, 10_000, 0.01);
+		List<WayPoint> list2 = UnitTestUtils.randomRoute(random, 0, new double[] { 5_000, 0 }, 10_000, 0.01);
+		Route route1 = new ListRoute(list1);
+		Route route2 = new ListRoute(list2);
+		List<ClosestApproach> expected = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+				route2);
+		RouteHierarchy hierarchy1 = new RouteHierarchy(route1);
+		RouteHierarchy hierarchy2 = new RouteHierarchy(route2);
+		EngineMetrics.setEnabled(true);
+		EngineMetrics.reset();
+		List<ClosestApproach> actual = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(hierarchy1,
+				hierarchy2);
+		long segments = EngineMetrics.snapshot().get("closestapproach_aligned_segments_total");
+		assertTrue(segments < 2_000, () -> segments + " segments");
+		assertSameApproaches(expected, actual);
+	}
+}
@@ -0,0 +1,109 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ApproximateClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.RouteSimplifier;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for RouteSimplifier and approximate closest approaches.
+ */
+class RouteSimplifierTest {
+
+	/*
+	 * Uniform motion simplifies to its end points; a change of speed along a
+	 * straight line is kept, since the error is measured in time as well as space.
+	 */
+	@Test
+	void testSimplify() {
+		List<WayPoint> uniform = Arrays.asList(wp(0, 0, 0), wp(10, 10, 5), wp(20, 20, 10), wp(40, 40, 20));
+		assertEquals(Arrays.asList(uniform.get(0), uniform.get(3)), RouteSimplifier.simplify(uniform, 0));
+
+		List<WayPoint> slowFast = Arrays.asList(wp(0, 0, 0), wp(10, 1, 0), wp(20, 20, 0));
+		assertEquals(slowFast, RouteSimplifier.simplify(slowFast, 1));
+		assertEquals(9, RouteSimplifier.maxError(slowFast, Arrays.asList(slowFast.get(0), slowFast.get(2))), 1e-12);
+		assertEquals(2, RouteSimplifier.simplify(slowFast, 9).size());
+	}
+
+	/*
+	 * The simplified route is within epsilon of the route at every instant.
+	 */
+	@Test
+	void testBound() {
+		Random random = new Random(11);
+		for (int r = 0; r < 200; r++) {
+			List<WayPoint> route = UnitTestUtils.randomRoute(random);
+			double epsilon = random.nextDouble() * 100;
+			List<WayPoint> simplified = RouteSimplifier.simplify(route, epsilon);
+			assertEquals(route.get(0), simplified.get(0));
+			assertEquals(route.get(route.size() - 1), simplified.get(simplified.size() - 1));
+			assertTrue(RouteSimplifier.maxError(route, simplified) <= epsilon);
+			long start = route.get(0).getTime();
+			long end = route.get(route.size() - 1).getTime();
+			for (int i = 0; i < 100; i++) {
+				long time = start + (long) (random.nextDouble() * (end - start));
+				WayPoint original = UnitTestUtils.interpolate(route, time);
+				WayPoint approximate = UnitTestUtils.interpolate(simplified, time);
+				assertTrue(original.distance(approximate) <= epsilon + 1e-9);
+			}
+		}
+	}
+
+	/*
+	 * A densely sampled, smooth track simplifies to a small fraction of its way
+	 * points.
+	 */
+	@Test
+	void testReduction() {
+		List<WayPoint> track = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			double angle = i * 1e-3;
+			track.add(wp(i * 1_000L, 10_000 * Math.cos(angle), 10_000 * Math.sin(angle)));
+		}
+		List<WayPoint> simplified = RouteSimplifier.simplify(track, 1);
+		assertTrue(simplified.size() * 10 < track.size(), () -> simplified.size() + " way points");
+		assertTrue(RouteSimplifier.maxError(track, simplified) <= 1);
+	}
+
+	/*
+	 * The exact distance of the closest approach is within the approximate
+	 * closest approach's bounds.
+	 */
+	@Test
+	void testApproximate() {
+		Random random = new Random(12);
+		for (int r = 0; r < 2_000; r++) {
+			List<WayPoint> route1 = UnitTestUtils.randomRoute(random);
+			List<WayPoint> route2 = UnitTestUtils.randomRoute(random);
+			double epsilon = random.nextDouble() * 50;
+			ApproximateClosestApproach approximate = DetermineClosestApproachBetweenRoutes
+					.computeApproximateClosestApproach(route1, route2, epsilon);
+			List<ClosestApproach> exact = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+					route2);
+			if (exact.isEmpty()) {
+				assertTrue(approximate.closestApproaches().isEmpty());
+				assertEquals(Double.POSITIVE_INFINITY, approximate.distance());
+			} else {
+				double distance = exact.get(0).distance();
+				assertEquals(2 * epsilon, approximate.error());
+				assertTrue(approximate.lowerBound() <= distance + 1e-9);
+				assertTrue(distance <= approximate.upperBound() + 1e-9);
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.assertSameApproaches;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
+import edu.kestrel.fitzpatrick.closestapproach.Route;
+import edu.kestrel.fitzpatrick.closestapproach.RouteStore;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for RouteStore and the closest-approach engine on Route
+ *         views.
+ */
+class RouteStoreTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 100;
+
+	// Number of routes per random test.
+	private static final int N_ROUTES = 20;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * A random route whose way point times are multiples of 100, so that routes
+	 * often share way point times and have closest approaches at way points.
+	 */
+	private static List<WayPoint> randomCoarseRoute() {
+		long time = 100 * UnitTestUtils.randomInt(0, 5);
+		List<WayPoint> route = new ArrayList<>();
+		int n = UnitTestUtils.randomInt(2, 8);
+		for (int i = 0; i < n; i++) {
+			time += 100 * UnitTestUtils.randomInt(1, 3);
+			route.add(new WayPoint(time, new double[] { UnitTestUtils.randomInt(-5, 5) * 100.0,
+					UnitTestUtils.randomInt(-5, 5) * 100.0 }));
+		}
+		return route;
+	}
+
+	private static List<List<WayPoint>> randomRoutes() {
+		List<List<WayPoint>> routes = new ArrayList<>();
+		for (int i = 0; i < N_ROUTES; i++) {
+			routes.add(i % 2 == 0 ? UnitTestUtils.randomRoute() : randomCoarseRoute());
+		}
+		return routes;
+	}
+
+	/*
+	 * Routes read back from a file are the routes written.
+	 */
+	@Test
+	void testRoundTrip() throws IOException {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<List<WayPoint>> routes = randomRoutes();
+			Path file = directory.resolve("routes.bin");
+			RouteStore.writeWayPoints(file, routes);
+			try (RouteStore store = RouteStore.open(file)) {
+				assertEquals(routes.size(), store.size());
+				assertEquals(2, store.dimensions());
+				assertEquals(routes.stream().mapToLong(List::size).sum(), store.getPointCount());
+				for (int i = 0; i < routes.size(); i++) {
+					assertEquals(routes.get(i), store.route(i).toWayPoints());
+				}
+			}
+		}
+	}
+
+	/*
+	 * The engine gives the same closest approaches on Route views as on lists of
+	 * way points.
+	 */
+	@Test
+	void testEngineOnViews() throws IOException {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<List<WayPoint>> routes = randomRoutes();
+			Path file = directory.resolve("routes.bin");
+			RouteStore.writeWayPoints(file, routes);
+			try (RouteStore store = RouteStore.open(file)) {
+				for (int i = 0; i < routes.size(); i++) {
+					for (int j = 0; j < routes.size(); j++) {
+						List<ClosestApproach> expected = DetermineClosestApproachBetweenRoutes
+								.computeClosestApproaches(routes.get(i), routes.get(j));
+						Route route1 = store.route(i);
+						Route route2 = store.route(j);
+						assertSameApproaches(expected,
+								DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1, route2));
+						assertSameApproaches(expected, DetermineClosestApproachBetweenRoutes
+								.computeClosestApproaches(new ListRoute(routes.get(i)), new ListRoute(routes.get(j))));
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * An empty store can be written and read.
+	 */
+	@Test
+	void testEmpty() throws IOException {
+		Path file = directory.resolve("empty.bin");
+		RouteStore.write(file, new ArrayList<Route>());
+		try (RouteStore store = RouteStore.open(file)) {
+			assertEquals(0, store.size());
+			assertEquals(0, store.getPointCount());
+		}
+	}
+
+	/*
+	 * A file that is not a route file is rejected.
+	 */
+	@Test
+	void testInvalidFile() throws IOException {
+		Path file = directory.resolve("invalid.bin");
+		Files.write(file, new byte[100]);
+		assertThrows(IOException.class, () -> RouteStore.open(file));
+		RouteStore.writeWayPoints(file, randomRoutes());
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+		assertThrows(IOException.class, () -> RouteStore.open(file));
+	}
+
+	/*
+	 * A file whose offset table is out of order, or out of bounds, is rejected when
+	 * it is opened.
+	 */
+	@Test
+	void testCorruptOffsets() throws IOException {
+		Path file = directory.resolve("offsets.bin");
+		RouteStore.writeWayPoints(file, randomRoutes());
+		byte[] bytes = Files.readAllBytes(file);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		long nPoints = buffer.getLong(16);
+		for (long corrupt : new long[] { -1, 0, nPoints + 1, Long.MIN_VALUE, Long.MAX_VALUE }) {
+			for (int r = 1; r < N_ROUTES; r++) {
+				ByteBuffer corrupted = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+				int position = 24 + 8 * r;
+				if (corrupted.getLong(position) == corrupt) {
+					continue;
+				}
+				corrupted.putLong(position, corrupt);
+				Files.write(file, corrupted.array());
+				if (corrupt == 0 && r == 1) {
+					// The first route is empty: valid.
+					try (RouteStore store = RouteStore.open(file)) {
+						assertEquals(0, store.route(0).size());
+					}
+				} else {
+					assertThrows(IOException.class, () -> RouteStore.open(file));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.assertSameApproaches;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.RouteVariantScorer;
+import edu.kestrel.fitzpatrick.closestapproach.VariantScore;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for RouteVariantScorer.
+ */
+class RouteVariantScorerTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 1_000;
+
+	// Number of traffic routes and variants per random test.
+	private static final int N_TRAFFIC = 20;
+	private static final int N_VARIANTS = 20;
+
+	/**
+	 * A variant of a route: the route's first way points, followed by a random
+	 * continuation.
+	 * 
+	 * @param base A route.
+	 * @return A route sharing a (possibly empty) prefix with the base route.
+	 */
+	private static List<WayPoint> variant(List<WayPoint> base) {
+		int shared = UnitTestUtils.randomInt(0, base.size() + 1);
+		List<WayPoint> variant = new ArrayList<>(base.subList(0, shared));
+		if (shared == 0) {
+			return UnitTestUtils.randomRoute();
+		}
+		WayPoint last = variant.get(shared - 1);
+		int n = Math.max(2 - shared, UnitTestUtils.randomInt(0, 5));
+		variant.addAll(UnitTestUtils.randomRoute(last.getTime(), last.getCoordinates()[0],
+				last.getCoordinates()[1], n));
+		return variant;
+	}
+
+	/*
+	 * Check that reusing the base route's closest approaches gives the same
+	 * results as computing them directly.
+	 */
+	@Test
+	void testRandomAgainstDirect() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<WayPoint> base = UnitTestUtils.randomRoute();
+			List<List<WayPoint>> traffic = new ArrayList<>();
+			for (int t = 0; t < N_TRAFFIC; t++) {
+				traffic.add(UnitTestUtils.randomRoute());
+			}
+			List<List<WayPoint>> variants = new ArrayList<>();
+			for (int v = 0; v < N_VARIANTS; v++) {
+				variants.add(variant(base));
+			}
+
+			RouteVariantScorer scorer = new RouteVariantScorer(base, traffic);
+			List<VariantScore> scores = scorer.score(variants);
+			assertEquals(variants.size(), scores.size());
+			for (int v = 0; v < variants.size(); v++) {
+				List<WayPoint> variant = variants.get(v);
+				double expectedDistance = Double.POSITIVE_INFINITY;
+				for (int t = 0; t < traffic.size(); t++) {
+					List<ClosestApproach> expected = DetermineClosestApproachBetweenRoutes
+							.computeClosestApproaches(variant, traffic.get(t));
+					List<ClosestApproach> actual = scorer.computeClosestApproaches(variant, t);
+					assertSameApproaches(expected, actual);
+					if (!expected.isEmpty()) {
+						expectedDistance = Math.min(expectedDistance, expected.get(0).distance());
+					}
+				}
+				VariantScore score = scores.get(v);
+				assertEquals(v, score.variant());
+				assertEquals(expectedDistance, score.distance());
+				assertTrue(score.traffic() >= 0 || score.closestApproaches().isEmpty());
+			}
+		}
+	}
+
+	/*
+	 * A variant that does not overlap any traffic has no closest approach.
+	 */
+	@Test
+	void testNoOverlap() {
+		List<WayPoint> base = UnitTestUtils.randomRoute(0, 0, 0, 5);
+		long later = base.get(base.size() - 1).getTime() + 1;
+		List<List<WayPoint>> traffic = new ArrayList<>();
+		traffic.add(UnitTestUtils.randomRoute(later, 0, 0, 5));
+		RouteVariantScorer scorer = new RouteVariantScorer(base, traffic);
+		VariantScore score = scorer.score(0, base);
+		assertEquals(-1, score.traffic());
+		assertEquals(Double.POSITIVE_INFINITY, score.distance());
+		assertTrue(score.closestApproaches().isEmpty());
+	}
+}
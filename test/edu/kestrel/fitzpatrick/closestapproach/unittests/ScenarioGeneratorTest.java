@@ -0,0 +1,143 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.kestrel.fitzpatrick.closestapproach.ArrayRoute;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenLinearSegments;
+import edu.kestrel.fitzpatrick.closestapproach.Route;
+import edu.kestrel.fitzpatrick.closestapproach.RouteStore;
+import edu.kestrel.fitzpatrick.closestapproach.ScenarioGenerator;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for ScenarioGenerator.
+ */
+class ScenarioGeneratorTest {
+
+	@TempDir
+	Path directory;
+
+	private static boolean same(Route route1, Route route2) {
+		if (route1.size() != route2.size() || route1.dimensions() != route2.dimensions()) {
+			return false;
+		}
+		for (int i = 0; i < route1.size(); i++) {
+			if (route1.getTime(i) != route2.getTime(i)) {
+				return false;
+			}
+			for (int d = 0; d < route1.dimensions(); d++) {
+				if (Double.doubleToLongBits(route1.getCoordinate(i, d)) != Double
+						.doubleToLongBits(route2.getCoordinate(i, d))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static double[] coordinates(Route route, int i) {
+		double[] coordinates = new double[route.dimensions()];
+		route.getCoordinates(i, coordinates);
+		return coordinates;
+	}
+
+	/*
+	 * The same seed gives the same routes; a different seed, different routes.
+	 * Every route has two or more way points with increasing times.
+	 */
+	@Test
+	void testReproducible() {
+		for (int dimensions = 2; dimensions <= 3; dimensions++) {
+			List<ArrayRoute> routes = new ScenarioGenerator(42, dimensions, 100_000, 3_600_000).generate(500);
+			List<ArrayRoute> again = new ScenarioGenerator(42, dimensions, 100_000, 3_600_000).generate(500);
+			List<ArrayRoute> other = new ScenarioGenerator(43, dimensions, 100_000, 3_600_000).generate(500);
+			assertEquals(500, routes.size());
+			boolean allSame = true;
+			for (int r = 0; r < routes.size(); r++) {
+				Route route = routes.get(r);
+				assertEquals(dimensions, route.dimensions());
+				assertTrue(route.size() >= 2);
+				for (int i = 1; i < route.size(); i++) {
+					assertTrue(route.getTime(i - 1) < route.getTime(i));
+				}
+				assertTrue(same(route, again.get(r)));
+				allSame &= same(route, other.get(r));
+			}
+			assertFalse(allSame);
+		}
+
+		// Each kind is independent of the others.
+		ScenarioGenerator generator = new ScenarioGenerator(42, 3, 100_000, 3_600_000);
+		List<ArrayRoute> mixed = generator.generate(500);
+		List<ArrayRoute> hubs = generator.hubs(500 - 5 - 50 - 75 - 50 - 125);
+		for (int r = 0; r < hubs.size(); r++) {
+			assertTrue(same(hubs.get(r), mixed.get(r)));
+		}
+	}
+
+	/*
+	 * Every aligned segment of routes in a group of parallel tracks is exactly
+	 * parallel motion.
+	 */
+	@Test
+	void testParallelTracks() {
+		List<ArrayRoute> routes = new ScenarioGenerator(7, 3, 100_000, 3_600_000).parallelTracks(2);
+		Route route1 = routes.get(0);
+		Route route2 = routes.get(1);
+		assertEquals(route1.size(), route2.size());
+		for (int i = 0; i < route1.size() - 1; i++) {
+			assertEquals(route1.getTime(i), route2.getTime(i));
+			double k = DetermineClosestApproachBetweenLinearSegments.computeClosestK(coordinates(route1, i),
+					coordinates(route1, i + 1), coordinates(route2, i), coordinates(route2, i + 1));
+			assertTrue(Double.isNaN(k));
+		}
+	}
+
+	/*
+	 * Stationary routes do not move; long routes have the requested way points.
+	 */
+	@Test
+	void testStationaryAndLong() {
+		ScenarioGenerator generator = new ScenarioGenerator(7, 2, 100_000, 3_600_000);
+		for (Route route : generator.stationary(20)) {
+			for (int i = 1; i < route.size(); i++) {
+				assertEquals(route.getCoordinate(0, 0), route.getCoordinate(i, 0));
+				assertEquals(route.getCoordinate(0, 1), route.getCoordinate(i, 1));
+			}
+		}
+		for (Route route : generator.longRoutes(3, 5_000)) {
+			assertEquals(5_000, route.size());
+			for (int i = 0; i < route.size(); i++) {
+				assertTrue(route.getCoordinate(i, 0) >= 0 && route.getCoordinate(i, 0) <= 100_000);
+			}
+		}
+	}
+
+	/*
+	 * A written scenario reads back exactly.
+	 */
+	@Test
+	void testWrite() throws IOException {
+		ScenarioGenerator generator = new ScenarioGenerator(11, 3, 50_000, 600_000);
+		Path file = directory.resolve("scenario.bin");
+		generator.write(file, 300);
+		List<ArrayRoute> routes = generator.generate(300);
+		try (RouteStore store = RouteStore.open(file)) {
+			assertEquals(routes.size(), store.size());
+			for (int r = 0; r < routes.size(); r++) {
+				assertTrue(same(routes.get(r), store.route(r)));
+			}
+		}
+	}
+}
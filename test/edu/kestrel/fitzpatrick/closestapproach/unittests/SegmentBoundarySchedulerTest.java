@@ -0,0 +1,73 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.SegmentBoundaryScheduler;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for SegmentBoundaryScheduler.
+ */
+class SegmentBoundarySchedulerTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 1_000;
+
+	/*
+	 * Check that the events are those of all of the way points, in time order
+	 * (then route order).
+	 */
+	@Test
+	void testRandom() {
+		for (int t = 0; t < N_RANDOM_TESTS; t++) {
+			int n = UnitTestUtils.randomInt(1, 50);
+			List<List<WayPoint>> routes = new ArrayList<>();
+			for (int r = 0; r < n; r++) {
+				routes.add(UnitTestUtils.randomRoute());
+			}
+			long startTime = UnitTestUtils.randomInt(0, 5_000);
+
+			List<long[]> expected = new ArrayList<>();
+			for (int r = 0; r < n; r++) {
+				List<WayPoint> route = routes.get(r);
+				for (int w = 0; w < route.size(); w++) {
+					if (route.get(w).getTime() > startTime) {
+						expected.add(new long[] { route.get(w).getTime(), r, w });
+					}
+				}
+			}
+			expected.sort(Comparator.comparingLong((long[] e) -> e[0]).thenComparingLong(e -> e[1]));
+
+			List<long[]> actual = new ArrayList<>();
+			SegmentBoundaryScheduler scheduler = new SegmentBoundaryScheduler(routes, startTime);
+			long time = startTime;
+			while (scheduler.hasNext()) {
+				time += UnitTestUtils.randomInt(1, 5_000);
+				scheduler.advance(time, (route, wayPoint, wpTime) -> actual.add(new long[] { wpTime, route, wayPoint }));
+				for (int r = 0; r < n; r++) {
+					int current = scheduler.currentWayPoint(r);
+					List<WayPoint> route = routes.get(r);
+					assertTrue(current < 0 || route.get(current).getTime() <= time);
+					assertTrue(current + 1 >= route.size() || route.get(current + 1).getTime() > time);
+				}
+			}
+			assertFalse(scheduler.hasNext());
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertArrayEquals(expected.get(i), actual.get(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.kestrel.fitzpatrick.closestapproach.RouteVariantScorer;
+import edu.kestrel.fitzpatrick.closestapproach.SpaceTimeIndex;
+import edu.kestrel.fitzpatrick.closestapproach.VariantScore;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for SpaceTimeIndex snapshots.
+ */
+class SpaceTimeIndexTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 100;
+
+	// Number of routes per random test.
+	private static final int N_ROUTES = 50;
+
+	@TempDir
+	Path directory;
+
+	private static List<Integer> overlapping(SpaceTimeIndex index, long startTime, long endTime) {
+		List<Integer> routes = new ArrayList<>();
+		index.forEachOverlapping(startTime, endTime, routes::add);
+		return routes;
+	}
+
+	/*
+	 * A restored index answers queries as the original does.
+	 */
+	@Test
+	void testSnapshot() throws IOException {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			List<List<WayPoint>> routes = new ArrayList<>();
+			for (int i = 0; i < N_ROUTES; i++) {
+				routes.add(UnitTestUtils.randomRoute());
+			}
+			SpaceTimeIndex index = new SpaceTimeIndex(routes);
+			Path file = directory.resolve("index.snapshot");
+			index.save(file);
+			SpaceTimeIndex restored = SpaceTimeIndex.restore(file);
+
+			// Saving the restored index writes the same snapshot.
+			Path copy = directory.resolve("copy.snapshot");
+			restored.save(copy);
+			assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(copy));
+
+			assertEquals(index.size(), restored.size());
+			assertEquals(index.dimensions(), restored.dimensions());
+			for (int i = 0; i < routes.size(); i++) {
+				assertEquals(routes.get(i), restored.getRoute(i));
+				assertEquals(routes.get(i), restored.getRouteView(i).toWayPoints());
+				assertEquals(routes.get(i), index.getRouteView(i).toWayPoints());
+				assertEquals(routes.get(i).size(), restored.getRouteSize(i));
+				assertEquals(routes.get(i).size(), index.getRouteSize(i));
+				assertEquals(index.getStartTime(i), restored.getStartTime(i));
+				assertEquals(index.getEndTime(i), restored.getEndTime(i));
+			}
+			for (int q = 0; q < 20; q++) {
+				long startTime = UnitTestUtils.randomInt(0, 50_000);
+				long endTime = startTime + UnitTestUtils.randomInt(0, 20_000);
+				assertEquals(overlapping(index, startTime, endTime), overlapping(restored, startTime, endTime));
+				double[] min = { UnitTestUtils.randomDouble(-1000, 50_000), UnitTestUtils.randomDouble(-1000, 50_000) };
+				double[] max = { min[0] + UnitTestUtils.randomDouble(0, 1000), min[1] + UnitTestUtils.randomDouble(0, 1000) };
+				for (int i = 0; i < routes.size(); i++) {
+					assertEquals(index.boxDistance(i, min, max), restored.boxDistance(i, min, max));
+				}
+			}
+
+			// A scorer on the restored index gives the same scores.
+			List<WayPoint> base = UnitTestUtils.randomRoute();
+			List<List<WayPoint>> variants = new ArrayList<>();
+			variants.add(base);
+			variants.add(UnitTestUtils.randomRoute());
+			List<VariantScore> expected = new RouteVariantScorer(base, index).score(variants);
+			List<VariantScore> actual = new RouteVariantScorer(base, restored).score(variants);
+			for (int v = 0; v < variants.size(); v++) {
+				assertEquals(expected.get(v).distance(), actual.get(v).distance());
+			}
+		}
+	}
+
+	/*
+	 * Files that are not snapshots, or are snapshots of another version, are
+	 * rejected.
+	 */
+	@Test
+	void testInvalidSnapshot() throws IOException {
+		Path file = directory.resolve("index.snapshot");
+		Files.write(file, new byte[10]);
+		assertThrows(IOException.class, () -> SpaceTimeIndex.restore(file));
+
+		List<List<WayPoint>> routes = new ArrayList<>();
+		routes.add(UnitTestUtils.randomRoute());
+		new SpaceTimeIndex(routes).save(file);
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[4]++;
+		Files.write(file, bytes);
+		assertThrows(IOException.class, () -> SpaceTimeIndex.restore(file));
+	}
+}
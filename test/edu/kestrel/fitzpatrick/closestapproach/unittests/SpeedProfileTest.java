@@ -0,0 +1,164 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.assertSameApproaches;
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.AlignedSegments;
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenRoutes;
+import edu.kestrel.fitzpatrick.closestapproach.EngineMetrics;
+import edu.kestrel.fitzpatrick.closestapproach.ListRoute;
+import edu.kestrel.fitzpatrick.closestapproach.Route;
+import edu.kestrel.fitzpatrick.closestapproach.SpeedProfile;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+import edu.kestrel.fitzpatrick.closestapproach.unittests.DifferentialHarness.Failure;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for SpeedProfile, and for skipping ahead with speed
+ *         profiles.
+ */
+class SpeedProfileTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 20_000;
+
+	@AfterEach
+	void disable() {
+		EngineMetrics.setEnabled(false);
+		EngineMetrics.reset();
+	}
+
+	/*
+	 * Each block's speed is the greatest of its segments' speeds.
+	 */
+	@Test
+	void testProfile() {
+		Route route = new ListRoute(Arrays.asList(wp(0, 0, 0), wp(10, 30, 40), wp(20, 30, 40), wp(30, 30, 50),
+				wp(40, 30, 60), wp(60, 30, 60)));
+		SpeedProfile profile = new SpeedProfile(route, 2);
+		assertEquals(3, profile.getBlockCount());
+		assertEquals(5, profile.getBlockSpeed(0), 1e-6);
+		assertEquals(1, profile.getBlockSpeed(1), 1e-6);
+		assertEquals(0, profile.getBlockSpeed(2), 1e-6);
+		assertTrue(profile.getBlockSpeed(0) >= 5);
+		assertEquals(5, profile.getMaxSpeed(), 1e-6);
+
+		assertEquals(0, profile.block(0));
+		assertEquals(0, profile.block(19));
+		assertEquals(1, profile.block(20));
+		assertEquals(2, profile.block(59));
+		assertEquals(2, profile.block(60));
+		assertEquals(20, profile.getBlockEnd(0));
+		assertEquals(40, profile.getBlockEnd(1));
+		assertEquals(60, profile.getBlockEnd(2));
+
+		assertEquals(1, new SpeedProfile(route).getBlockCount());
+	}
+
+	/*
+	 * Skipping to a time gives the same positions, and then the same segments, as
+	 * walking there.
+	 */
+	@Test
+	void testSkipTo() {
+		Random random = new Random(5);
+		for (int r = 0; r < 1_000; r++) {
+			Route route1 = new ListRoute(UnitTestUtils.randomRoute(random));
+			Route route2 = new ListRoute(UnitTestUtils.randomRoute(random));
+			AlignedSegments walk = new AlignedSegments(route1, route2);
+			if (walk.isEmpty()) {
+				continue;
+			}
+			List<Long> times = new ArrayList<>();
+			List<double[]> ends1 = new ArrayList<>();
+			List<double[]> ends2 = new ArrayList<>();
+			times.add(walk.getEndTime());
+			ends1.add(walk.getEnd1().clone());
+			ends2.add(walk.getEnd2().clone());
+			while (walk.next()) {
+				times.add(walk.getEndTime());
+				ends1.add(walk.getEnd1().clone());
+				ends2.add(walk.getEnd2().clone());
+			}
+
+			AlignedSegments skip = new AlignedSegments(route1, route2);
+			int i = 0;
+			while (skip.hasNext()) {
+				long last = times.get(times.size() - 1);
+				long target = skip.getEndTime() + random.nextInt((int) Math.min(50_000, last - skip.getEndTime()) + 1);
+				skip.skipTo(target);
+				// The latest aligned time at or before the target.
+				while (i + 1 < times.size() && times.get(i + 1) <= target) {
+					i++;
+				}
+				assertEquals((long) times.get(i), skip.getEndTime());
+				assertArrayEquals(ends1.get(i), skip.getEnd1());
+				assertArrayEquals(ends2.get(i), skip.getEnd2());
+				if (skip.next()) {
+					i++;
+					assertEquals((long) times.get(i), skip.getEndTime());
+					assertArrayEquals(ends1.get(i - 1), skip.getStart1());
+					assertArrayEquals(ends2.get(i), skip.getEnd2());
+				}
+			}
+			assertEquals(times.size() - 1, i);
+		}
+	}
+
+	/*
+	 * Skipping ahead gives exactly the results without skipping, for random routes
+	 * and for long routes that are mostly far apart.
+	 */
+	@Test
+	void testIdentical() {
+		DifferentialHarness.Engine skipping = (route1, route2) -> {
+			Route view1 = new ListRoute(route1);
+			Route view2 = new ListRoute(route2);
+			return DetermineClosestApproachBetweenRoutes.computeClosestApproaches(view1, new SpeedProfile(view1, 4),
+					view2, new SpeedProfile(view2, 4));
+		};
+		List<Failure> failures = new DifferentialHarness(4).run(N_RANDOM_TESTS, skipping,
+				DifferentialHarness.IDENTICAL);
+		assertTrue(failures.isEmpty(), () -> failures.get(0).toString());
+
+		DifferentialHarness farApart = new DifferentialHarness(5,
+				random -> UnitTestUtils.randomRoute(random, random.nextInt(1_000),
+						new double[] { random.nextDouble() * 100_000, random.nextDouble() * 100_000 }, 200, 0.5));
+		List<Failure> farFailures = farApart.run(2_000, skipping, DifferentialHarness.IDENTICAL);
+		assertTrue(farFailures.isEmpty(), () -> farFailures.get(0).toString());
+	}
+
+	/*
+	 * Objects that stay far apart are evaluated in far fewer segments than there
+	 * are.
+	 */
+	@Test
+	void testSkipping() {
+		Random random = new Random(6);
+		List<WayPoint> list1 = UnitTestUtils.randomRoute(random, 0, new double[] { 0, 0 }, 5_000, 0.01);
+		List<WayPoint> list2 = UnitTestUtils.randomRoute(random, 0, new double[] { 100_000, 0 }, 5_000, 0.01);
+		Route route1 = new ListRoute(list1);
+		Route route2 = new ListRoute(list2);
+		List<ClosestApproach> expected = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(list1, list2);
+		EngineMetrics.setEnabled(true);
+		EngineMetrics.reset();
+		List<ClosestApproach> actual = DetermineClosestApproachBetweenRoutes.computeClosestApproaches(route1,
+				new SpeedProfile(route1), route2, new SpeedProfile(route2));
+		long segments = EngineMetrics.snapshot().get("closestapproach_aligned_segments_total");
+		assertTrue(segments < 1_000, () -> segments + " segments");
+		assertSameApproaches(expected, actual);
+	}
+}
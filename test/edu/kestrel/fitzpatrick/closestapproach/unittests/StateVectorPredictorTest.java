@@ -0,0 +1,112 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenLinearSegments;
+import edu.kestrel.fitzpatrick.closestapproach.StateVectorApproach;
+import edu.kestrel.fitzpatrick.closestapproach.StateVectorPredictor;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for StateVectorPredictor.
+ */
+class StateVectorPredictorTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 100;
+
+	/*
+	 * Two tracks crossing head on.
+	 */
+	@Test
+	void testHeadOn() {
+		double[] states = { //
+				-10, 0, 1, 0, 0, //
+				10, 0, -1, 0, 0 };
+		StateVectorPredictor predictor = new StateVectorPredictor(2, 100, 1);
+		List<StateVectorApproach> approaches = predictor.predict(states, 0);
+		assertEquals(1, approaches.size());
+		assertEquals(0, approaches.get(0).track1());
+		assertEquals(1, approaches.get(0).track2());
+		assertEquals(10, approaches.get(0).time(), 1e-9);
+		assertEquals(0, approaches.get(0).distance(), 1e-9);
+	}
+
+	/*
+	 * Compare the grid-pruned, parallel prediction with all pairs, computed from
+	 * projected way points.
+	 */
+	@Test
+	void testRandomAgainstAllPairs() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			int dimensions = UnitTestUtils.randomInt(1, 4);
+			int n = UnitTestUtils.randomInt(2, 300);
+			double horizon = UnitTestUtils.randomDouble(1, 100);
+			double threshold = UnitTestUtils.randomDouble(1, 200);
+			double time = UnitTestUtils.randomDouble(0, 10);
+			int stride = StateVectorPredictor.stride(dimensions);
+			double[] states = new double[n * stride];
+			for (int t = 0; t < n; t++) {
+				for (int d = 0; d < dimensions; d++) {
+					states[t * stride + d] = UnitTestUtils.randomDouble(-1000, 1000);
+					states[t * stride + dimensions + d] = UnitTestUtils.randomDouble(-10, 10);
+				}
+				states[t * stride + 2 * dimensions] = UnitTestUtils.randomDouble(0, 10);
+			}
+
+			Map<Long, Double> expected = new HashMap<>();
+			for (int t1 = 0; t1 < n; t1++) {
+				for (int t2 = t1 + 1; t2 < n; t2++) {
+					ClosestApproach ca = new DetermineClosestApproachBetweenLinearSegments( //
+							project(states, t1, dimensions, time, horizon, 0),
+							project(states, t1, dimensions, time, horizon, 1),
+							project(states, t2, dimensions, time, horizon, 0),
+							project(states, t2, dimensions, time, horizon, 1)) //
+							.getClosestApproach();
+					if (ca.distance() < threshold - 1e-6) {
+						expected.put((long) t1 * n + t2, ca.distance());
+					}
+				}
+			}
+
+			Map<Long, Double> actual = new HashMap<>();
+			for (StateVectorApproach approach : new StateVectorPredictor(dimensions, horizon, threshold)
+					.predict(states, time)) {
+				actual.put((long) approach.track1() * n + approach.track2(), approach.distance());
+			}
+			for (Map.Entry<Long, Double> e : expected.entrySet()) {
+				assertEquals(e.getValue(), actual.get(e.getKey()), 1e-6);
+			}
+			for (double distance : actual.values()) {
+				assertTrue(distance < threshold);
+			}
+		}
+	}
+
+	/**
+	 * Project a track to the start (k = 0) or end (k = 1) of the prediction
+	 * period, as a way point (whose time is just the interpolation parameter).
+	 */
+	private static WayPoint project(double[] states, int track, int dimensions, double time, double horizon,
+			int k) {
+		int stride = StateVectorPredictor.stride(dimensions);
+		double[] c = new double[dimensions];
+		for (int d = 0; d < dimensions; d++) {
+			double p = states[track * stride + d];
+			double v = states[track * stride + dimensions + d];
+			double t = states[track * stride + 2 * dimensions];
+			c[d] = p + v * (time + k * horizon - t);
+		}
+		return new WayPoint(k, c);
+	}
+}
@@ -0,0 +1,172 @@
+package edu.kestrel.fitzpatrick.closestapproach.unittests;
+
+import static edu.kestrel.fitzpatrick.closestapproach.unittests.UnitTestUtils.wp;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import edu.kestrel.fitzpatrick.closestapproach.DetermineClosestApproachBetweenLinearSegments;
+import edu.kestrel.fitzpatrick.closestapproach.StreamingConflictDetector;
+import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
+
+/**
+ * 
+ * @author Stephen Fitzpatrick
+ * 
+ *         Unit tests for StreamingConflictDetector.
+ */
+class StreamingConflictDetectorTest {
+	// Number of random tests.
+	private static final int N_RANDOM_TESTS = 200;
+
+	/*
+	 * Objects reporting in lock step, each report arriving after the current time:
+	 * the conflicts are those of the parts of the report segments from the
+	 * current time on, found by brute force.
+	 */
+	@Test
+	void testRandomAgainstBruteForce() {
+		for (int r = 0; r < N_RANDOM_TESTS; r++) {
+			int nObjects = UnitTestUtils.randomInt(2, 20);
+			int nReports = UnitTestUtils.randomInt(2, 30);
+			long interval = 10;
+			double threshold = UnitTestUtils.randomDouble(10, 200);
+			WayPoint[][] reports = new WayPoint[nObjects][nReports];
+			for (int o = 0; o < nObjects; o++) {
+				for (int t = 0; t < nReports; t++) {
+					reports[o][t] = wp(t * interval, UnitTestUtils.randomDouble(0, 1000),
+							UnitTestUtils.randomDouble(0, 1000));
+				}
+			}
+
+			// Each step's reports arrive this long after the current time.
+			long lead = UnitTestUtils.randomInt(0, (int) interval + 1);
+			Set<List<Integer>> expected = new HashSet<>();
+			for (int t = 1; t < nReports; t++) {
+				long now = t * interval - lead;
+				for (int o1 = 0; o1 < nObjects; o1++) {
+					for (int o2 = o1 + 1; o2 < nObjects; o2++) {
+						WayPoint start1 = at(reports[o1][t - 1], reports[o1][t], now);
+						WayPoint start2 = at(reports[o2][t - 1], reports[o2][t], now);
+						double distance = lead == 0 ? start1.distance(start2)
+								: new DetermineClosestApproachBetweenLinearSegments(start1, reports[o1][t], start2,
+										reports[o2][t]).getClosestApproach().distance();
+						if (distance < threshold) {
+							expected.add(Arrays.asList(t, o1, o2));
+						}
+					}
+				}
+			}
+
+			Set<List<Integer>> actual = new HashSet<>();
+			int[] step = { 0 };
+			StreamingConflictDetector detector = new StreamingConflictDetector(threshold, 50, 0,
+					(object1, object2, approach) -> actual
+							.add(Arrays.asList(step[0], Math.min(object1, object2), Math.max(object1, object2))));
+			for (int t = 0; t < nReports; t++) {
+				step[0] = t;
+				detector.advance(Math.max(0, t * interval - lead));
+				for (int o = 0; o < nObjects; o++) {
+					detector.report(o, reports[o][t]);
+				}
+				assertTrue(detector.getSegmentCount() <= 2 * nObjects);
+			}
+			assertEquals(expected, actual);
+		}
+	}
+
+	/**
+	 * 
+	 * @return The way point at the given time on the segment from start to end.
+	 */
+	private static WayPoint at(WayPoint start, WayPoint end, long time) {
+		if (time == start.getTime()) {
+			return start;
+		} else if (time == end.getTime()) {
+			return end;
+		} else {
+			return WayPoint.interpolate(start, end, time);
+		}
+	}
+
+	/*
+	 * A predicted conflict within the horizon is reported; one beyond it is not,
+	 * and nothing is retained once the predictions have ended.
+	 */
+	@Test
+	void testPredictionHorizon() {
+		List<Integer> conflicts = new ArrayList<>();
+		StreamingConflictDetector detector = new StreamingConflictDetector(1, 100, 0,
+				(object1, object2, approach) -> conflicts.add((int) (long) approach.time()));
+		// Crossing at time 50.
+		detector.predict(0, Arrays.asList(wp(0, -50, 0), wp(100, 50, 0)));
+		detector.predict(1, Arrays.asList(wp(0, 0, -50), wp(100, 0, 50)));
+		assertEquals(Arrays.asList(50), conflicts);
+		// Crossing at time 250, beyond the horizon.
+		conflicts.clear();
+		detector.predict(2, Arrays.asList(wp(200, -50, 0), wp(300, 50, 0)));
+		detector.predict(3, Arrays.asList(wp(200, 0, -50), wp(300, 0, 50)));
+		assertTrue(conflicts.isEmpty());
+		assertEquals(2, detector.getSegmentCount());
+		assertEquals(4, detector.getObjectCount());
+		// A conflict on segments that started in the past, at a time that has
+		// passed, has already happened, so is not reported.
+		conflicts.clear();
+		detector.advance(60);
+		detector.predict(4, Arrays.asList(wp(0, 950, 1000), wp(100, 1050, 1000)));
+		detector.predict(5, Arrays.asList(wp(0, 1000, 950), wp(100, 1000, 1050)));
+		assertTrue(conflicts.isEmpty());
+		detector.advance(1_000);
+		assertEquals(0, detector.getSegmentCount());
+		assertEquals(0, detector.getObjectCount());
+	}
+
+	/*
+	 * Memory stays bounded over a long stream.
+	 */
+	@Test
+	void testBounded() {
+		StreamingConflictDetector detector = new StreamingConflictDetector(10, 100, 0, (o1, o2, a) -> {
+		});
+		int nObjects = 50;
+		for (long time = 0; time < 100_000; time += 10) {
+			detector.advance(time);
+			for (int o = 0; o < nObjects; o++) {
+				detector.report(o, wp(time, UnitTestUtils.randomDouble(0, 1000), UnitTestUtils.randomDouble(0, 1000)));
+			}
+			assertTrue(detector.getSegmentCount() <= nObjects);
+		}
+	}
+
+	/*
+	 * Predictions refreshed on every report are removed from the index when
+	 * withdrawn, so the index stays bounded by the live segments.
+	 */
+	@Test
+	void testRefreshedPredictions() {
+		long horizon = 600;
+		StreamingConflictDetector detector = new StreamingConflictDetector(10, horizon, 0, (o1, o2, a) -> {
+		});
+		int nObjects = 10;
+		for (long time = 0; time < 10_000; time++) {
+			detector.advance(time);
+			for (int o = 0; o < nObjects; o++) {
+				List<WayPoint> prediction = new ArrayList<>();
+				for (int i = 0; i <= 5; i++) {
+					prediction.add(wp(time + i * horizon / 5, 100 * o + i, 0));
+				}
+				detector.predict(o, prediction);
+			}
+			assertEquals(5 * nObjects, detector.getSegmentCount());
+			// Each segment overlaps a few of the 18 buckets.
+			assertTrue(detector.getEntryCount() <= 5 * nObjects * 5, () -> detector.getEntryCount() + " entries");
+		}
+	}
+}
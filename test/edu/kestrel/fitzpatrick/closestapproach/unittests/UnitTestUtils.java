@@ -1,9 +1,12 @@
 package edu.kestrel.fitzpatrick.closestapproach.unittests;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import edu.kestrel.fitzpatrick.closestapproach.ClosestApproach;
 import edu.kestrel.fitzpatrick.closestapproach.WayPoint;
 
 public class UnitTestUtils {
@@ -29,6 +32,34 @@ public class UnitTestUtils {
 		return min + random.nextInt(max - min);
 	}
 
+	/**
+	 * 
+	 * @param time A time
+	 * @param x    The x coordinate
+	 * @param y    The y coordinate
+	 * @return A two-dimensional way point
+	 */
+	public static WayPoint wp(long time, double x, double y) {
+		return new WayPoint(time, new double[] { x, y });
+	}
+
+	/**
+	 * Assert that two lists of closest approaches are identical: the same number,
+	 * with the same times, distances and way points, in the same order.
+	 * 
+	 * @param expected The expected closest approaches
+	 * @param actual   The actual closest approaches
+	 */
+	public static void assertSameApproaches(List<ClosestApproach> expected, List<ClosestApproach> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).time(), actual.get(i).time());
+			assertEquals(expected.get(i).distance(), actual.get(i).distance());
+			assertEquals(expected.get(i).wayPoint1(), actual.get(i).wayPoint1());
+			assertEquals(expected.get(i).wayPoint2(), actual.get(i).wayPoint2());
+		}
+	}
+
 	/**
 	 * Generate a random route.
 	 * 
@@ -39,14 +70,30 @@ public class UnitTestUtils {
 	 * @return A random route
 	 */
 	public static List<WayPoint> randomRoute(long startTime, double startX, double startY, int nWayPoints) {
+		return randomRoute(random, startTime, startX, startY, nWayPoints);
+	}
+
+	/**
+	 * Generate a random route, as {@link #randomRoute(long, double, double, int)},
+	 * using the given random number generator.
+	 * 
+	 * @param random     The random number generator
+	 * @param startTime  Start time of the route
+	 * @param startX     Start position's x coordinate
+	 * @param startY     Start position's y coordinate
+	 * @param nWayPoints Number of way points in the route
+	 * @return A random route
+	 */
+	public static List<WayPoint> randomRoute(Random random, long startTime, double startX, double startY,
+			int nWayPoints) {
 		long time = startTime;
 		double x = startX;
 		double y = startY;
 		List<WayPoint> route = new ArrayList<>();
 		for (int i = 0; i < nWayPoints; i++) {
-			time += randomInt(100, 10_000);
-			x += randomDouble(100, 10_000);
-			y += randomDouble(100, 10_000);
+			time += 100 + random.nextInt(9_900);
+			x += 100 + 9_900 * random.nextDouble();
+			y += 100 + 9_900 * random.nextDouble();
 			route.add(new WayPoint(time, new double[] { x, y }));
 		}
 		return route;
@@ -58,11 +105,84 @@ public class UnitTestUtils {
 	 * @return A random route.
 	 */
 	public static List<WayPoint> randomRoute() {
-		long startTime = randomInt(0, 1000);
-		double startX = randomDouble(-1000, 1000);
-		double startY = randomDouble(-1000, 1000);
-		int size = randomInt(2, 10);
-		return randomRoute(startTime, startX, startY, size);
+		return randomRoute(random);
+	}
+
+	/**
+	 * Generate a random route using default parameters and the given random number
+	 * generator.
+	 * 
+	 * @param random The random number generator
+	 * @return A random route.
+	 */
+	public static List<WayPoint> randomRoute(Random random) {
+		long startTime = random.nextInt(1000);
+		double startX = -1000 + 2000 * random.nextDouble();
+		double startY = -1000 + 2000 * random.nextDouble();
+		int size = 2 + random.nextInt(8);
+		return randomRoute(random, startTime, startX, startY, size);
+	}
+
+	/**
+	 * Generate a random route in any number of dimensions, using the given random
+	 * number generator (so that, if it is seeded, the route is reproducible). Way
+	 * points are 100 to 10,000 time units apart, and each coordinate changes at a
+	 * random rate in [-speed, speed) per time unit.
+	 * 
+	 * @param random     The random number generator
+	 * @param startTime  Start time of the route
+	 * @param start      Start position (not modified)
+	 * @param nWayPoints Number of way points in the route
+	 * @param speed      Maximum rate of change of each coordinate
+	 * @return A random route
+	 */
+	public static List<WayPoint> randomRoute(Random random, long startTime, double[] start, int nWayPoints,
+			double speed) {
+		long time = startTime;
+		double[] position = start.clone();
+		List<WayPoint> route = new ArrayList<>(nWayPoints);
+		for (int i = 0; i < nWayPoints; i++) {
+			if (i > 0) {
+				long step = 100 + random.nextInt(9_900);
+				time += step;
+				for (int d = 0; d < position.length; d++) {
+					position[d] += (2 * random.nextDouble() - 1) * speed * step;
+				}
+			}
+			route.add(new WayPoint(time, position.clone()));
+		}
+		return route;
+	}
+
+	/**
+	 * Generate a random fleet of routes, reproducibly for a given seed. Routes
+	 * start at positions uniformly distributed in a cube (so that the density of
+	 * the fleet is controlled by the cube's size) and at times uniformly
+	 * distributed in a period (so that the overlap of the routes in time is
+	 * controlled by the period's length).
+	 * 
+	 * @param seed       The seed for the random number generator
+	 * @param nRoutes    Number of routes
+	 * @param dimensions Number of dimensions
+	 * @param extent     Length of each side of the cube of start positions
+	 * @param period     Length of the period of start times (positive)
+	 * @param nWayPoints Number of way points in each route
+	 * @param speed      Maximum rate of change of each coordinate
+	 * @return The routes
+	 */
+	public static List<List<WayPoint>> randomFleet(long seed, int nRoutes, int dimensions, double extent,
+			long period, int nWayPoints, double speed) {
+		Random random = new Random(seed);
+		List<List<WayPoint>> fleet = new ArrayList<>(nRoutes);
+		for (int r = 0; r < nRoutes; r++) {
+			long startTime = (long) (random.nextDouble() * period);
+			double[] start = new double[dimensions];
+			for (int d = 0; d < dimensions; d++) {
+				start[d] = random.nextDouble() * extent;
+			}
+			fleet.add(randomRoute(random, startTime, start, nWayPoints, speed));
+		}
+		return fleet;
 	}
 
 	/**
@@ -103,6 +223,28 @@ public class UnitTestUtils {
 		}
 	}
 
+	/**
+	 * Create a closest approach whose way points must not be asked for, e.g., to
+	 * check that a consumer that does not keep coordinates does not fetch them.
+	 * 
+	 * @param time     The time of the closest approach
+	 * @param distance The distance of the closest approach
+	 * @return A closest approach that throws if its way points are asked for
+	 */
+	public static ClosestApproach approachWithoutWayPoints(long time, double distance) {
+		return new ClosestApproach(time, distance) {
+			@Override
+			public WayPoint wayPoint1() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public WayPoint wayPoint2() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
 	/**
 	 * Interpolate a route.
 	 * 